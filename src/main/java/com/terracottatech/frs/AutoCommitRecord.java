@@ -0,0 +1,336 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs;
+
+import com.terracottatech.frs.action.Action;
+import com.terracottatech.frs.action.ActionCodec;
+import com.terracottatech.frs.action.ActionCodecImpl;
+import com.terracottatech.frs.compaction.Compactor;
+import com.terracottatech.frs.log.LogRecord;
+import com.terracottatech.frs.object.ObjectManager;
+import com.terracottatech.frs.util.ByteBufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log record for an auto-commit put or remove, encoded straight into a buffer
+ * the record keeps across uses.  The bytes are exactly what the codec writes
+ * for a {@link PutAction} or {@link RemoveAction} so recovery reads them back
+ * as those actions.
+ *
+ * Records come from a {@link Pool} and go back to it when the log reports them
+ * written, so small auto-commit writes no longer make an action, its header
+ * buffers and a log record each.  They are not allocation free: a writer that
+ * runs off the end of a full commit list still makes the next one.
+ */
+final class AutoCommitRecord implements LogRecord {
+
+  private static final int PUT_HEADER_SIZE = (int) ActionCodecImpl.ACTION_HEADER_OVERHEAD + (int) PutAction.PUT_ACTION_OVERHEAD;
+  private static final int REMOVE_HEADER_SIZE = (int) ActionCodecImpl.ACTION_HEADER_OVERHEAD + ByteBufferUtils.LONG_SIZE;
+
+  private final Pool pool;
+  private final ByteBuffer[] payload = new ByteBuffer[1];
+  private ByteBuffer scratch;
+  private int length;
+  private long lsn;
+
+  private boolean put;
+  private ByteBuffer id;
+  private ByteBuffer key;
+  private ByteBuffer value;
+  private long invalidatedLsn;
+
+  private AutoCommitRecord(Pool pool) {
+    this.pool = pool;
+  }
+
+  private ByteBuffer scratch(int size) {
+    if (scratch == null || scratch.capacity() < size) {
+      scratch = ByteBuffer.allocate(Math.max(size, Math.min(pool.maxRecordSize, Integer.highestOneBit(size) << 1)));
+    }
+    scratch.clear();
+    return scratch;
+  }
+
+  private void encodePut(ByteBuffer id, ByteBuffer key, ByteBuffer value, boolean recovery) {
+    invalidatedLsn = pool.objectManager.getLsn(id, key);
+    if (invalidatedLsn == -1L && recovery) {
+      throw new IllegalStateException(
+              "Put over an unrecovered key is unsupported during recovery.");
+    }
+    this.put = true;
+    this.id = id;
+    this.key = key;
+    this.value = value;
+
+    ByteBuffer buffer = scratch(PUT_HEADER_SIZE + id.remaining() + key.remaining() + value.remaining());
+    buffer.put(pool.putHeader, 0, pool.putHeader.length);
+    buffer.putInt(id.remaining());
+    buffer.putInt(key.remaining());
+    buffer.putInt(value.remaining());
+    buffer.putLong(invalidatedLsn);
+    copy(id, buffer);
+    copy(key, buffer);
+    copy(value, buffer);
+    length = buffer.position();
+  }
+
+  private void encodeRemove(ByteBuffer id, ByteBuffer key, boolean recovery) {
+    invalidatedLsn = pool.objectManager.getLsn(id, key);
+    if (invalidatedLsn == -1L && recovery) {
+      throw new IllegalStateException(
+              "Removing a non-existent key is unsupported during recovery.");
+    }
+    this.put = false;
+    this.id = id;
+    this.key = key;
+
+    ByteBuffer buffer = scratch(REMOVE_HEADER_SIZE);
+    buffer.put(pool.removeHeader, 0, pool.removeHeader.length);
+    buffer.putLong(invalidatedLsn);
+    length = buffer.position();
+  }
+
+  /**
+   * copies without moving the source position, the caller's buffers may be
+   * shared with readers of the object manager
+   */
+  private static void copy(ByteBuffer src, ByteBuffer dest) {
+    int len = src.remaining();
+    if (src.hasArray()) {
+      dest.put(src.array(), src.arrayOffset() + src.position(), len);
+      return;
+    }
+    int from = src.position();
+    int end = from + len;
+    while (from + ByteBufferUtils.LONG_SIZE <= end) {
+      dest.putLong(src.getLong(from));
+      from += ByteBufferUtils.LONG_SIZE;
+    }
+    while (from < end) {
+      dest.put(src.get(from++));
+    }
+  }
+
+  @Override
+  public long getLsn() {
+    return lsn;
+  }
+
+  @Override
+  public void updateLsn(long lsn) {
+    this.lsn = lsn;
+    if (put) {
+      pool.objectManager.put(id, key, value, lsn);
+    } else {
+      pool.objectManager.remove(id, key);
+    }
+    if (invalidatedLsn != -1) {
+      pool.compactor.generatedGarbage(invalidatedLsn);
+    }
+  }
+
+  /**
+   * The same buffer comes back on every call, rewound, so only one reader at a
+   * time, which is how the log packs records.
+   */
+  @Override
+  public ByteBuffer[] getPayload() {
+    scratch.limit(length).position(0);
+    payload[0] = scratch;
+    return payload;
+  }
+
+  @Override
+  public long getPayloadSize() {
+    return length;
+  }
+
+  @Override
+  public void written() {
+    id = null;
+    key = null;
+    value = null;
+    pool.release(this);
+  }
+
+  @Override
+  public void close() {
+  }
+
+  @Override
+  public String toString() {
+    return "AutoCommitRecord{lsn=" + lsn + ", put=" + put + '}';
+  }
+
+  /**
+   * Hands out records to the writing threads and takes them back from the log.
+   * Records are made on demand until the pool holds its capacity, after that a
+   * writer waits for the log to hand one back.  The capacity bounds the records
+   * in flight, so once the log keeps pace a steady stream of writes makes
+   * nothing new.  A writer that waits longer than {@link #STALL_MILLIS}, say
+   * because the log is shutting down and will never report the records
+   * written, gets a fresh record that is dropped again on release.
+   */
+  static class Pool {
+    private static final long STALL_MILLIS = 100;
+
+    private final ObjectManager<ByteBuffer, ByteBuffer, ByteBuffer> objectManager;
+    private final Compactor compactor;
+    private final byte[] putHeader;
+    private final byte[] removeHeader;
+    private final int maxRecordSize;
+    private final FreeRecords free;
+    private final AtomicInteger created = new AtomicInteger();
+    private final int capacity;
+
+    Pool(ObjectManager<ByteBuffer, ByteBuffer, ByteBuffer> objectManager, Compactor compactor,
+         ActionCodec<ByteBuffer, ByteBuffer, ByteBuffer> codec, int capacity, int maxRecordSize) {
+      this.objectManager = objectManager;
+      this.compactor = compactor;
+      this.putHeader = header(codec, PutAction.class);
+      this.removeHeader = header(codec, RemoveAction.class);
+      this.maxRecordSize = maxRecordSize;
+      this.free = new FreeRecords(capacity);
+      this.capacity = capacity;
+    }
+
+    private static byte[] header(ActionCodec<ByteBuffer, ByteBuffer, ByteBuffer> codec,
+                                 Class<? extends Action> actionClass) {
+      ByteBuffer header = ByteBuffer.allocate((int) ActionCodecImpl.ACTION_HEADER_OVERHEAD);
+      codec.encodeHeader(actionClass, header);
+      return header.array();
+    }
+
+    private AutoCommitRecord take() {
+      AutoCommitRecord record = free.poll();
+      if (record != null) {
+        return record;
+      }
+      while (created.get() < capacity) {
+        int count = created.get();
+        if (created.compareAndSet(count, count + 1)) {
+          return new AutoCommitRecord(this);
+        }
+      }
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STALL_MILLIS);
+      while ((record = free.poll()) == null && System.nanoTime() - deadline < 0) {
+        LockSupport.parkNanos(this, 1000);
+      }
+      return (record == null) ? new AutoCommitRecord(this) : record;
+    }
+
+    private void release(AutoCommitRecord record) {
+      free.offer(record);
+    }
+
+    /**
+     * @return the encoded put or null if it is too big for a pooled record
+     */
+    AutoCommitRecord put(ByteBuffer id, ByteBuffer key, ByteBuffer value, boolean recovery) {
+      if ((long) PUT_HEADER_SIZE + id.remaining() + key.remaining() + value.remaining() > maxRecordSize) {
+        return null;
+      }
+      AutoCommitRecord record = take();
+      try {
+        record.encodePut(id, key, value, recovery);
+      } catch (RuntimeException e) {
+        record.written();
+        throw e;
+      }
+      return record;
+    }
+
+    AutoCommitRecord remove(ByteBuffer id, ByteBuffer key, boolean recovery) {
+      AutoCommitRecord record = take();
+      try {
+        record.encodeRemove(id, key, recovery);
+      } catch (RuntimeException e) {
+        record.written();
+        throw e;
+      }
+      return record;
+    }
+
+    /**
+     * Bounded lock free queue of free records, after Vyukov's array queue, so
+     * writers and the log thread meeting here allocate no lock nodes.
+     */
+    private static final class FreeRecords {
+      private final AtomicReferenceArray<AutoCommitRecord> records;
+      private final AtomicLongArray sequences;
+      private final int mask;
+      private final AtomicLong head = new AtomicLong();
+      private final AtomicLong tail = new AtomicLong();
+
+      FreeRecords(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+          size <<= 1;
+        }
+        this.records = new AtomicReferenceArray<AutoCommitRecord>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int x = 0; x < size; x++) {
+          sequences.set(x, x);
+        }
+      }
+
+      boolean offer(AutoCommitRecord record) {
+        long pos = tail.get();
+        while (true) {
+          int index = (int) pos & mask;
+          long difference = sequences.get(index) - pos;
+          if (difference == 0) {
+            if (tail.compareAndSet(pos, pos + 1)) {
+              records.lazySet(index, record);
+              sequences.set(index, pos + 1);
+              return true;
+            }
+          } else if (difference < 0) {
+            return false;
+          }
+          pos = tail.get();
+        }
+      }
+
+      AutoCommitRecord poll() {
+        long pos = head.get();
+        while (true) {
+          int index = (int) pos & mask;
+          long difference = sequences.get(index) - (pos + 1);
+          if (difference == 0) {
+            if (head.compareAndSet(pos, pos + 1)) {
+              AutoCommitRecord record = records.get(index);
+              records.lazySet(index, null);
+              sequences.set(index, pos + mask + 1);
+              return record;
+            }
+          } else if (difference < 0) {
+            return null;
+          }
+          pos = head.get();
+        }
+      }
+    }
+  }
+}
@@ -18,6 +18,7 @@ package com.terracottatech.frs;
 import com.terracottatech.frs.action.Action;
 import com.terracottatech.frs.action.ActionCodec;
 import com.terracottatech.frs.action.ActionFactory;
+import com.terracottatech.frs.action.KeyedAction;
 import com.terracottatech.frs.compaction.Compactor;
 import com.terracottatech.frs.object.ObjectManager;
 import com.terracottatech.frs.util.ByteBufferUtils;
@@ -31,7 +32,7 @@ import java.util.Set;
 /**
  * @author tim
  */
-public class PutAction implements GettableAction {
+public class PutAction implements GettableAction, KeyedAction {
   /* PutAction.getPayload
   4 bytes - PutAction.idByteCount
   4 bytes - PutAction.keyByteCount
@@ -113,6 +114,11 @@ public class PutAction implements GettableAction {
     return Collections.singleton(invalidatedLsn);
   }
 
+  @Override
+  public PutAction refresh() {
+    return new PutAction(objectManager, compactor, id, key, value, objectManager.getLsn(id, key));
+  }
+
   @Override
   public void setDisposable(Closeable c) {
     disposable = c;
@@ -27,7 +27,7 @@ import java.util.Set;
 /**
  * @author tim
  */
-class RemoveAction implements InvalidatingAction {
+class RemoveAction implements KeyedAction {
   public static final ActionFactory<ByteBuffer, ByteBuffer, ByteBuffer> FACTORY =
           new ActionFactory<ByteBuffer, ByteBuffer, ByteBuffer>() {
             @Override
@@ -63,6 +63,21 @@ class RemoveAction implements InvalidatingAction {
     return Collections.singleton(invalidatedLsn);
   }
 
+  @Override
+  public ByteBuffer getIdentifier() {
+    return id;
+  }
+
+  @Override
+  public ByteBuffer getKey() {
+    return key;
+  }
+
+  @Override
+  public RemoveAction refresh() {
+    return new RemoveAction(objectManager, compactor, id, key, false);
+  }
+
   @Override
   public void record(long lsn) {
     objectManager.remove(id, key);
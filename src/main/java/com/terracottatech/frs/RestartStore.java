@@ -18,6 +18,7 @@ package com.terracottatech.frs;
 import com.terracottatech.frs.recovery.RecoveryException;
 
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -58,6 +59,31 @@ public interface RestartStore<I, K, V> {
    * @return an auto-commit transaction context.
    */
   Transaction<I, K, V> beginAutoCommitTransaction(boolean synchronous);
+
+  /**
+   * Open a transaction whose commit returns once it is on disk, where the sync
+   * may be held back for up to the given time to share it with other commits.
+   *
+   * @param durableWithin longest time the commit's sync may be put off
+   * @param unit unit of the delay
+   * @return a transaction context
+   */
+  default Transaction<I, K, V> beginTransaction(long durableWithin, TimeUnit unit) {
+    return beginTransaction(true);
+  }
+
+  /**
+   * Open an auto-commit transaction whose actions are on disk when they
+   * return, where the sync may be held back for up to the given time to share
+   * it with other actions.
+   *
+   * @param durableWithin longest time the sync of each action may be put off
+   * @param unit unit of the delay
+   * @return an auto-commit transaction context.
+   */
+  default Transaction<I, K, V> beginAutoCommitTransaction(long durableWithin, TimeUnit unit) {
+    return beginAutoCommitTransaction(true);
+  }
   
   /**
    * randomly access a record from the log at a user provided marker
@@ -31,6 +31,7 @@ import com.terracottatech.frs.io.MaskingBufferSource;
 import com.terracottatech.frs.io.SLABBufferSource;
 import com.terracottatech.frs.io.SplittingBufferSource;
 import com.terracottatech.frs.io.nio.NIOManager;
+import com.terracottatech.frs.io.nio.StripedIOManager;
 import com.terracottatech.frs.log.LogManager;
 import com.terracottatech.frs.log.MasterLogRecordFactory;
 import com.terracottatech.frs.log.StagingLogManager;
@@ -77,15 +78,24 @@ public abstract class RestartStoreFactory {
       writingSource = new MaskingBufferSource(new SplittingBufferSource(64, memorySize, timeout));
     }
     
-    IOManager ioManager = new NIOManager(configuration,writingSource);
+    IOManager ioManager;
+    if ( configuration.getString(FrsProperty.IO_NIO_STRIPE_DIRECTORIES) != null ) {
+      ioManager = new StripedIOManager(configuration,writingSource);
+    } else if ( StripedIOManager.isStriped(dbHome) ) {
+      throw new IOException("log in " + dbHome + " is striped, " + 
+              FrsProperty.IO_NIO_STRIPE_DIRECTORIES.shortName() + " must be configured");
+    } else {
+      ioManager = new NIOManager(configuration,writingSource);
+    }
     ReadManager readManager = new ReadManagerImpl(ioManager, configuration.getString(FrsProperty.FORCE_LOG_REGION_FORMAT));
     LogManager logManager = new StagingLogManager(ioManager,writingSource,configuration);
-    ActionManager actionManager = new ActionManagerImpl(logManager, objectManager,
-                                                        createCodec(objectManager),
+    ActionCodec<ByteBuffer, ByteBuffer, ByteBuffer> codec = createCodec(objectManager);
+    ActionManager actionManager = new ActionManagerImpl(logManager, objectManager, codec,
                                                         new MasterLogRecordFactory());
-    TransactionManager transactionManager = new TransactionManagerImpl(actionManager);
+    TransactionManager transactionManager = new TransactionManagerImpl(actionManager,
+        configuration.getInt(FrsProperty.TRANSACTION_BATCH_ACTIONS));
     return new RestartStoreImpl(objectManager, transactionManager, logManager,
-                                actionManager, readManager, ioManager, configuration);
+                                actionManager, readManager, ioManager, configuration, codec);
   }
 
   public static RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> createStore(
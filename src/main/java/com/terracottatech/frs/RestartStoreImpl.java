@@ -19,6 +19,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.terracottatech.frs.action.Action;
+import com.terracottatech.frs.action.ActionCodec;
 import com.terracottatech.frs.action.ActionManager;
 import com.terracottatech.frs.compaction.Compactor;
 import com.terracottatech.frs.compaction.CompactorImpl;
@@ -36,6 +37,7 @@ import com.terracottatech.frs.recovery.RecoveryManager;
 import com.terracottatech.frs.recovery.RecoveryManagerImpl;
 import com.terracottatech.frs.transaction.TransactionHandle;
 import com.terracottatech.frs.transaction.TransactionManager;
+import com.terracottatech.frs.util.Log2LatencyBins;
 import com.terracottatech.frs.util.NullFuture;
 
 import java.io.File;
@@ -44,7 +46,10 @@ import java.io.InterruptedIOException;
 
 import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -71,6 +76,9 @@ public class RestartStoreImpl implements RestartStore<ByteBuffer, ByteBuffer, By
   private final ActionManager actionManager;
   private final ReadManager readManager;
   private final Configuration configuration;
+  private final AutoCommitRecord.Pool autoCommitRecords;
+  private final AutoCommitTransaction autoCommit = new AutoCommitTransaction(false, 0);
+  private final AutoCommitTransaction syncAutoCommit = new AutoCommitTransaction(true, 0);
 
   private final int maxPauseTime;
   private final ScheduledExecutorService pauseExecutionService;
@@ -85,6 +93,18 @@ public class RestartStoreImpl implements RestartStore<ByteBuffer, ByteBuffer, By
                    TransactionManager transactionManager, LogManager logManager,
                    ActionManager actionManager, ReadManager read, Compactor compactor,
                    Configuration configuration) {
+    this(objectManager, transactionManager, logManager, actionManager, read, compactor, configuration, null);
+  }
+
+  /**
+   * @param codec codec of the action manager, used to encode auto-commit puts
+   *        and removes into pooled records, null to always go through the
+   *        action manager's codec
+   */
+  RestartStoreImpl(ObjectManager<ByteBuffer, ByteBuffer, ByteBuffer> objectManager,
+                   TransactionManager transactionManager, LogManager logManager,
+                   ActionManager actionManager, ReadManager read, Compactor compactor,
+                   Configuration configuration, ActionCodec<ByteBuffer, ByteBuffer, ByteBuffer> codec) {
     this.transactionManager = transactionManager;
     this.objectManager = objectManager;
     this.logManager = logManager;
@@ -94,16 +114,31 @@ public class RestartStoreImpl implements RestartStore<ByteBuffer, ByteBuffer, By
     this.configuration = configuration;
     this.pauseExecutionService = Executors.newScheduledThreadPool(0);
     this.maxPauseTime = configuration.getInt(FrsProperty.STORE_MAX_PAUSE_TIME_IN_MILLIS);
+    int poolSize = configuration.getInt(FrsProperty.STORE_AUTOCOMMIT_POOL_SIZE);
+    if (codec != null && poolSize > 0) {
+      this.autoCommitRecords = new AutoCommitRecord.Pool(objectManager, compactor, codec, poolSize,
+          configuration.getInt(FrsProperty.STORE_AUTOCOMMIT_POOL_RECORD_SIZE));
+    } else {
+      this.autoCommitRecords = null;
+    }
   }
 
   public RestartStoreImpl(ObjectManager<ByteBuffer, ByteBuffer, ByteBuffer> objectManager,
                           TransactionManager transactionManager, LogManager logManager,
                           ActionManager actionManager, ReadManager read, IOManager ioManager,
                           Configuration configuration) throws RestartStoreException {
+    this(objectManager, transactionManager, logManager, actionManager, read, ioManager,
+         configuration, null);
+  }
+
+  RestartStoreImpl(ObjectManager<ByteBuffer, ByteBuffer, ByteBuffer> objectManager,
+                   TransactionManager transactionManager, LogManager logManager,
+                   ActionManager actionManager, ReadManager read, IOManager ioManager,
+                   Configuration configuration, ActionCodec<ByteBuffer, ByteBuffer, ByteBuffer> codec) throws RestartStoreException {
     this(objectManager, transactionManager, logManager, actionManager, read, 
          new CompactorImpl(objectManager, transactionManager, logManager, ioManager, configuration,
                            actionManager),
-         configuration);
+         configuration, codec);
   }
 
   @Override
@@ -156,7 +191,20 @@ public class RestartStoreImpl implements RestartStore<ByteBuffer, ByteBuffer, By
   @Override
   public Transaction<ByteBuffer, ByteBuffer, ByteBuffer> beginAutoCommitTransaction(boolean synchronous) {
     checkReadyState();
-    return new AutoCommitTransaction(synchronous);
+    return synchronous ? syncAutoCommit : autoCommit;
+  }
+
+  @Override
+  public Transaction<ByteBuffer, ByteBuffer, ByteBuffer> beginTransaction(long durableWithin, TimeUnit unit) {
+    checkReadyState();
+    return new TransactionImpl(true, unit.toNanos(durableWithin));
+  }
+
+  @Override
+  public Transaction<ByteBuffer, ByteBuffer, ByteBuffer> beginAutoCommitTransaction(long durableWithin, TimeUnit unit) {
+    checkReadyState();
+    long syncWithin = unit.toNanos(durableWithin);
+    return syncWithin > 0 ? new AutoCommitTransaction(true, syncWithin) : syncAutoCommit;
   }
 
   @Override
@@ -226,6 +274,26 @@ public class RestartStoreImpl implements RestartStore<ByteBuffer, ByteBuffer, By
         public long getExpiredSize() {
           return delegate.getExpiredSize();
         }
+
+        @Override
+        public double getCompressionRatio() {
+          return delegate.getCompressionRatio();
+        }
+
+        @Override
+        public long getAdmissionStalls() {
+          return delegate.getAdmissionStalls();
+        }
+
+        @Override
+        public long getAdmissionStallTime() {
+          return delegate.getAdmissionStallTime();
+        }
+
+        @Override
+        public Map<String, Log2LatencyBins> getStageLatencies() {
+          return delegate.getStageLatencies();
+        }
       };
   }
 
@@ -374,38 +442,58 @@ public class RestartStoreImpl implements RestartStore<ByteBuffer, ByteBuffer, By
   private class AutoCommitTransaction implements
           Transaction<ByteBuffer, ByteBuffer, ByteBuffer> {
     private final boolean synchronous;
+    private final long syncWithin;
 
-    private AutoCommitTransaction(boolean synchronous) {
+    private AutoCommitTransaction(boolean synchronous, long syncWithin) {
       this.synchronous = synchronous;
+      this.syncWithin = syncWithin;
     }
 
     private void happened(Action action) throws TransactionException {
-      if (synchronous) {
-        boolean interrupted = false;
-        Future<Void> written = actionManager.syncHappened(action);
-        while (true) {
-          try {
-            written.get();
-            break;
-          } catch (ExecutionException e) {
-            throw new TransactionException(e);
-          } catch (InterruptedException e) {
-            interrupted = true;
-          }
-        }
-        if (interrupted) {
-          Thread.currentThread().interrupt();
-        }
+      if (syncWithin > 0) {
+        await(actionManager.syncHappenedWithin(action, syncWithin, TimeUnit.NANOSECONDS));
+      } else if (synchronous) {
+        await(actionManager.syncHappened(action));
       } else {
         actionManager.happened(action);
       }
     }
 
+    private void happened(AutoCommitRecord record) throws TransactionException {
+      Future<Void> written = actionManager.happened(record, synchronous);
+      if (synchronous) {
+        await(written);
+      }
+    }
+
+    private void await(Future<Void> written) throws TransactionException {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          written.get();
+          break;
+        } catch (ExecutionException e) {
+          throw new TransactionException(e);
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
     @Override
     public Transaction<ByteBuffer, ByteBuffer, ByteBuffer> put(ByteBuffer id, ByteBuffer key, ByteBuffer value) throws
             TransactionException {
       checkReadyState();
-      happened(new PutAction(objectManager, compactor, id, key, value, isRecovering()));
+      AutoCommitRecord record = (autoCommitRecords == null || syncWithin > 0) ? null :
+          autoCommitRecords.put(id, key, value, isRecovering());
+      if (record != null) {
+        happened(record);
+      } else {
+        happened(new PutAction(objectManager, compactor, id, key, value, isRecovering()));
+      }
       return this;
   }
 
@@ -421,24 +509,40 @@ public class RestartStoreImpl implements RestartStore<ByteBuffer, ByteBuffer, By
     public Transaction<ByteBuffer, ByteBuffer, ByteBuffer> remove(ByteBuffer id, ByteBuffer key) throws
             TransactionException {
       checkReadyState();
-      happened(new RemoveAction(objectManager, compactor, id, key, isRecovering()));
+      if (autoCommitRecords != null && syncWithin == 0) {
+        happened(autoCommitRecords.remove(id, key, isRecovering()));
+      } else {
+        happened(new RemoveAction(objectManager, compactor, id, key, isRecovering()));
+      }
       return this;
     }
 
     @Override
     public void commit() throws TransactionException {
     }
+
+    @Override
+    public CompletionStage<Void> commitAsync() {
+      //  every action was recorded as it happened
+      return CompletableFuture.completedFuture(null);
+    }
   }
 
   private class TransactionImpl implements
           Transaction<ByteBuffer, ByteBuffer, ByteBuffer> {
     private final boolean synchronous;
+    private final long syncWithin;
     private final TransactionHandle handle;
     private boolean committed = false;
 
     TransactionImpl(boolean synchronous) {
+      this(synchronous, 0);
+    }
+
+    TransactionImpl(boolean synchronous, long syncWithin) {
       this.handle = transactionManager.begin();
       this.synchronous = synchronous;
+      this.syncWithin = syncWithin;
     }
 
     @Override
@@ -469,8 +573,21 @@ public class RestartStoreImpl implements RestartStore<ByteBuffer, ByteBuffer, By
     public synchronized void commit() throws TransactionException {
       checkReadyState();
       checkCommitted();
-      transactionManager.commit(handle, synchronous);
+      if (syncWithin > 0) {
+        transactionManager.commitWithin(handle, syncWithin, TimeUnit.NANOSECONDS);
+      } else {
+        transactionManager.commit(handle, synchronous);
+      }
+      committed = true;
+    }
+
+    @Override
+    public synchronized CompletionStage<Void> commitAsync() {
+      checkReadyState();
+      checkCommitted();
+      CompletionStage<Void> written = transactionManager.commitAsync(handle, synchronous);
       committed = true;
+      return written;
     }
 
     private void checkCommitted() {
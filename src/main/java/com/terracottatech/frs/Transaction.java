@@ -15,6 +15,9 @@
  */
 package com.terracottatech.frs;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 /**
  *
  * @author cdennis
@@ -57,4 +60,24 @@ public interface Transaction<I, K, V> {
    * @throws TransactionException
    */
   void commit() throws TransactionException;
+
+  /**
+   * Commit this transaction without blocking the calling thread.  The returned
+   * stage completes once the commit is written, and synced for synchronous
+   * transactions.  A failed commit completes the stage exceptionally with a
+   * {@link TransactionException}.  The default implementation commits on
+   * the calling thread and returns an already completed stage.
+   *
+   * @return stage completing when the commit reaches disk
+   */
+  default CompletionStage<Void> commitAsync() {
+    CompletableFuture<Void> committed = new CompletableFuture<Void>();
+    try {
+      commit();
+      committed.complete(null);
+    } catch (TransactionException e) {
+      committed.completeExceptionally(e);
+    }
+    return committed;
+  }
 }
@@ -28,4 +28,13 @@ public interface ActionCodec<I, K, V> {
   Action decode(ByteBuffer[] buffer);
 
   ByteBuffer[] encode(Action action);
+
+  /**
+   * Write the header {@link #encode(Action)} puts ahead of the payload of
+   * actions of the given class.
+   *
+   * @param actionClass registered action class
+   * @param into buffer to write the header into
+   */
+  void encodeHeader(Class<? extends Action> actionClass, ByteBuffer into);
 }
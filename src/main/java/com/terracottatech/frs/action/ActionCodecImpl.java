@@ -82,6 +82,14 @@ public final class ActionCodecImpl<I, K, V> implements ActionCodec<I, K, V> {
     return concatenate(headerBuffer(action), action.getPayload(this));
   }
 
+  @Override
+  public void encodeHeader(Class<? extends Action> actionClass, ByteBuffer into) {
+    ActionID id = classToId.get(actionClass);
+    if (id == null)
+      throw new IllegalArgumentException("Unknown action class " + actionClass);
+    into.putInt(id.collection).putInt(id.action);
+  }
+
   private ByteBuffer headerBuffer(Action action) {
     if (!classToId.containsKey(action.getClass()))
       throw new IllegalArgumentException("Unknown action class " + action.getClass());
@@ -17,7 +17,12 @@ package com.terracottatech.frs.action;
 
 import com.terracottatech.frs.log.LogRecord;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -41,6 +46,70 @@ public interface ActionManager {
    */
   Future<Void> happened(Action action);
 
+  /**
+   * Record the action and make sure it is synced within the given time.
+   *
+   * @param action {@link Action} to record into the log stream
+   * @param within longest time the sync may be put off to share it with other actions
+   * @param unit unit of the delay
+   * @return {@link Future} representing the sync of the action.
+   */
+  default Future<Void> syncHappenedWithin(Action action, long within, TimeUnit unit) {
+    return syncHappened(action);
+  }
+
+  /**
+   * Record the given {@link Action} into the log stream without blocking for the write.
+   * The default waits for the write on the calling thread and returns a completed stage.
+   *
+   * @param action {@link Action} to record
+   * @param sync whether the action must be synced to disk before the stage completes
+   * @return {@link CompletionStage} completing when the {@link Action} reaches disk.
+   */
+  default CompletionStage<Void> happenedAsync(Action action, boolean sync) {
+    CompletableFuture<Void> done = new CompletableFuture<Void>();
+    try {
+      (sync ? syncHappened(action) : happened(action)).get();
+      done.complete(null);
+    } catch (ExecutionException e) {
+      done.completeExceptionally(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      done.completeExceptionally(e);
+    }
+    return done;
+  }
+
+  /**
+   * Record the given {@link Action}s into the log stream as one batch, in the
+   * order given.
+   *
+   * @param actions {@link Action}s to record
+   * @param sync whether to initiate a sync once the batch is recorded
+   * @return {@link Future} that represents when every {@link Action} in the batch is written to disk.
+   */
+  default Future<Void> happenedBatch(List<? extends Action> actions, boolean sync) {
+    Future<Void> last = CompletableFuture.completedFuture(null);
+    for (int x = 0; x < actions.size(); x++) {
+      last = (sync && x == actions.size() - 1) ? syncHappened(actions.get(x)) : happened(actions.get(x));
+    }
+    return last;
+  }
+
+  /**
+   * Record an action the caller has already encoded into a {@link LogRecord},
+   * codec header included.  Only an action manager that owns its log can take
+   * such a record, and the store only hands one to the manager it builds
+   * together with the codec, so the default refuses it.
+   *
+   * @param record encoded action, the record is its own {@link com.terracottatech.frs.log.LSNEventListener}
+   * @param sync whether to initiate a sync
+   * @return {@link Future} that represents when the record is written to disk.
+   */
+  default Future<Void> happened(LogRecord record, boolean sync) {
+    throw new UnsupportedOperationException(getClass().getName() + " does not record pre-encoded log records");
+  }
+
   /**
    * Extract the {@link Action} from the given {@link LogRecord}
    *
@@ -22,7 +22,11 @@ import com.terracottatech.frs.log.LogRecordFactory;
 import com.terracottatech.frs.object.ObjectManager;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -77,6 +81,16 @@ public class ActionManagerImpl implements ActionManager {
     }
   }
 
+  @Override
+  public Future<Void> syncHappenedWithin(Action action, long within, TimeUnit unit) {
+    enterHappened();
+    try {
+      return logManager.appendAndSyncWithin(wrapAction(action), within, unit);
+    } finally {
+      exitHappened();
+    }
+  }
+
   @Override
   public Future<Void> happened(Action action) {
     enterHappened();
@@ -87,6 +101,40 @@ public class ActionManagerImpl implements ActionManager {
     }
   }
 
+  @Override
+  public Future<Void> happenedBatch(List<? extends Action> actions, boolean sync) {
+    enterHappened();
+    try {
+      List<LogRecord> records = new ArrayList<LogRecord>(actions.size());
+      for (Action action : actions) {
+        records.add(wrapAction(action));
+      }
+      return logManager.appendBatch(records, sync);
+    } finally {
+      exitHappened();
+    }
+  }
+
+  @Override
+  public CompletionStage<Void> happenedAsync(Action action, boolean sync) {
+    enterHappened();
+    try {
+      return logManager.appendAsync(wrapAction(action), sync);
+    } finally {
+      exitHappened();
+    }
+  }
+
+  @Override
+  public Future<Void> happened(LogRecord record, boolean sync) {
+    enterHappened();
+    try {
+      return sync ? logManager.appendAndSync(record) : logManager.append(record);
+    } finally {
+      exitHappened();
+    }
+  }
+
   @Override
   public Action extract(LogRecord record) {
     Action a = actionCodec.decode(record.getPayload());
@@ -0,0 +1,33 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.action;
+
+/**
+ * An action on a single key whose invalidated lsn is read from the object
+ * manager when the action is made.  An action held back before it is written
+ * is refreshed first, so that it invalidates what the key holds at that point
+ * rather than what it held when the action was made.
+ */
+public interface KeyedAction extends InvalidatingAction {
+  Object getIdentifier();
+
+  Object getKey();
+
+  /**
+   * @return the same action invalidating the key's current lsn
+   */
+  KeyedAction refresh();
+}
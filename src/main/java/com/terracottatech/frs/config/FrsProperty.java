@@ -22,7 +22,12 @@ public enum FrsProperty {
   IO_RECOVERY_QUEUE_SIZE("io.recoveryQueueSize", Type.INTEGER, 16),
   IO_COMMITLIST("io.commitList", Type.STRING, "ATOMIC"),
   IO_WAIT("io.wait", Type.INTEGER, 200),
+  IO_PACKING_THREADS("io.packingThreads", Type.INTEGER, 0),
+  IO_ADAPTIVE_LATENCY_GOAL("io.adaptive.latencyGoal", Type.LONG, 2000L),
   IO_DISABLE_SYNC("io.disableSync", Type.BOOLEAN, false),
+  IO_COMPRESS_REGIONS("io.compressRegions", Type.BOOLEAN, false),
+  IO_ZERO_COPY("io.zeroCopy", Type.BOOLEAN, false),
+  IO_MAX_INFLIGHT_BYTES("io.maxInflightBytes", Type.LONG, 0L),
   
   IO_NIO_SEGMENT_SIZE("io.nio.segmentSize", Type.LONG, 512L * 1024 * 1024),
   IO_NIO_RECOVERY_MEMORY_SIZE("io.nio.recoveryMemorySize", Type.LONG, -1L),
@@ -33,6 +38,9 @@ public enum FrsProperty {
   IO_NIO_BUFFER_BUILDER("io.nio.bufferBuilder", Type.STRING, null),
   IO_NIO_ACCESS_METHOD("io.nio.accessMethod", Type.STRING, "STREAM"),
   IO_NIO_BUFFER_SOURCE("io.nio.bufferSource", Type.STRING, "HILO"),
+  IO_NIO_STRIPE_DIRECTORIES("io.nio.stripeDirectories", Type.STRING, null),
+  IO_NIO_PIPELINED_SYNC("io.nio.pipelinedSync", Type.BOOLEAN, false),
+  IO_NIO_SEGMENT_POOL_SIZE("io.nio.segmentPoolSize", Type.INTEGER, 0),
   
   RECOVERY_COMPRESSED_SKIP_SET("recovery.compressedSkipSet", Type.BOOLEAN, true),
   RECOVERY_REPLAY_PER_BATCH_SIZE("recovery.replayPerBatchSize", Type.INTEGER, 512),
@@ -51,7 +59,11 @@ public enum FrsProperty {
   COMPACTOR_SIZEBASED_THRESHOLD("compactor.sizeBased.threshold", Type.DOUBLE, 0.50),
   COMPACTOR_SIZEBASED_AMOUNT("compactor.sizeBased.amount", Type.DOUBLE, 0.05),
 
+  TRANSACTION_BATCH_ACTIONS("transaction.batchActions", Type.INTEGER, 0),
+
   STORE_MAX_PAUSE_TIME_IN_MILLIS("store.maxPauseTimeInMillis", Type.INTEGER, 1000),
+  STORE_AUTOCOMMIT_POOL_SIZE("store.autoCommitPoolSize", Type.INTEGER, 4096),
+  STORE_AUTOCOMMIT_POOL_RECORD_SIZE("store.autoCommitPoolRecordSize", Type.INTEGER, 4096),
 
   FORCE_LOG_REGION_FORMAT("log.forceRegionFormat", Type.STRING, "FILE");
 
@@ -0,0 +1,436 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.flash;
+
+import com.terracottatech.frs.Disposable;
+import com.terracottatech.frs.RestartStore;
+import com.terracottatech.frs.Tuple;
+import com.terracottatech.frs.object.AbstractObjectManager;
+import com.terracottatech.frs.object.AbstractObjectManagerStripe;
+import com.terracottatech.frs.object.ObjectManagerEntry;
+import com.terracottatech.frs.object.ObjectManagerSegment;
+import com.terracottatech.frs.object.ObjectManagerStripe;
+import com.terracottatech.frs.object.SimpleObjectManagerEntry;
+import com.terracottatech.frs.object.heap.HeapLongValueSortedMap;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Object manager that keeps only keys and their lsns in memory and reads
+ * values back out of the log when they are asked for.
+ * <p>
+ * Recovery replays keys alone so a store much larger than memory restarts in
+ * the time it takes to scan its log.  A small cache per segment holds the most
+ * recently put values, everything else costs a random read through
+ * {@link RestartStore#get(long)}.  The store is created with this manager so
+ * it is attached afterwards with {@link #setRestartStore(RestartStore)}, before
+ * the first value is read or compacted.
+ */
+public class FlashObjectManager extends AbstractObjectManager<ByteBuffer, ByteBuffer, ByteBuffer> {
+
+  private final ConcurrentMap<ByteBuffer, ObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer>> maps =
+          new ConcurrentHashMap<ByteBuffer, ObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer>>();
+  private final int concurrency;
+  private final int cacheSize;
+  private volatile RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> store;
+
+  /**
+   * @param concurrency segments per identifier
+   * @param cacheSize values cached per identifier, spread over its segments
+   */
+  public FlashObjectManager(int concurrency, int cacheSize) {
+    this.concurrency = concurrency;
+    this.cacheSize = cacheSize;
+  }
+
+  public void setRestartStore(RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> store) {
+    this.store = store;
+  }
+
+  /**
+   * @return the current value of {@code key}, or {@code null} if it has none
+   */
+  public ByteBuffer get(ByteBuffer id, ByteBuffer key) {
+    ObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer> stripe = maps.get(id);
+    if (stripe == null) {
+      return null;
+    } else {
+      return ((FlashObjectManagerStripe) stripe).getValue(key);
+    }
+  }
+
+  @Override
+  protected ObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer> getStripeFor(ByteBuffer id) {
+    ObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer> stripe = maps.get(id);
+    if (stripe == null) {
+  //  during recovery id is a slice of a pooled read buffer, keep a copy
+      ByteBuffer identifier = copy(id, 0);
+      stripe = new FlashObjectManagerStripe(this, identifier, concurrency, Math.max(1, cacheSize / concurrency));
+      ObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer> racer = maps.putIfAbsent(identifier, stripe);
+      if (racer != null) {
+        stripe = racer;
+      }
+    }
+    return stripe;
+  }
+
+  @Override
+  public void delete(ByteBuffer id) {
+    maps.remove(id);
+    stripeRemoved(id);
+  }
+
+  @Override
+  protected Collection<ObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer>> getStripes() {
+    return maps.values();
+  }
+
+  ByteBuffer read(long lsn) {
+    RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> restartStore = store;
+    if (restartStore == null) {
+      throw new IllegalStateException("No restart store attached to read lsn " + lsn);
+    }
+    Tuple<ByteBuffer, ByteBuffer, ByteBuffer> tuple = restartStore.get(lsn);
+    if (tuple == null) {
+      throw new IllegalStateException("Interrupted reading lsn " + lsn);
+    }
+    try {
+      return copy(tuple.getValue(), 0);
+    } finally {
+      if (tuple instanceof Disposable) {
+        ((Disposable) tuple).dispose();
+      }
+    }
+  }
+
+  /**
+   * Exact sized heap copy with {@code header} spare bytes ahead of the content
+   * in the backing array.
+   */
+  static ByteBuffer copy(ByteBuffer buffer, int header) {
+    ByteBuffer copy = ByteBuffer.allocate(header + buffer.remaining());
+    copy.position(header);
+    copy.put(buffer.duplicate());
+    copy.position(header);
+    return copy.slice();
+  }
+
+  static class FlashObjectManagerStripe extends AbstractObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer> {
+
+    private final FlashObjectManagerSegment[] segments;
+
+    FlashObjectManagerStripe(FlashObjectManager manager, ByteBuffer identifier, int stripes, int cacheSize) {
+      this.segments = new FlashObjectManagerSegment[stripes];
+      for (int i = 0; i < segments.length; i++) {
+        segments[i] = new FlashObjectManagerSegment(manager, identifier, cacheSize);
+      }
+    }
+
+    @Override
+    public Collection<ObjectManagerSegment<ByteBuffer, ByteBuffer, ByteBuffer>> getSegments() {
+      return Arrays.<ObjectManagerSegment<ByteBuffer, ByteBuffer, ByteBuffer>>asList(segments);
+    }
+
+    @Override
+    protected ObjectManagerSegment<ByteBuffer, ByteBuffer, ByteBuffer> getSegmentFor(int hash, ByteBuffer key) {
+      return segments[Math.abs(hash % segments.length)];
+    }
+
+    @Override
+    protected int extractHashCode(ByteBuffer key) {
+      return key.hashCode();
+    }
+
+    ByteBuffer getValue(ByteBuffer key) {
+      int hash = extractHashCode(key);
+      return ((FlashObjectManagerSegment) getSegmentFor(hash, key)).getValue(key);
+    }
+
+    @Override
+    public void delete() {
+    //no-op
+    }
+  }
+
+  /*
+   * Keys are copied in with a four byte header in their backing array ahead of
+   * the key holding the length of the current value, which is all sizeInBytes
+   * needs without keeping a second map.
+   */
+  static class FlashObjectManagerSegment implements ObjectManagerSegment<ByteBuffer, ByteBuffer, ByteBuffer> {
+
+    private static final int VALUE_LENGTH_HEADER = 4;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final FlashObjectManager manager;
+    private final ByteBuffer identifier;
+    private final int identifierSize;
+
+    private final HeapLongValueSortedMap<ByteBuffer> lsnMap = new HeapLongValueSortedMap<ByteBuffer>();
+    private final Map<ByteBuffer, ByteBuffer> cache;
+    private long dataSize;
+
+    FlashObjectManagerSegment(FlashObjectManager manager, ByteBuffer identifier, final int cacheSize) {
+      this.manager = manager;
+      this.identifier = identifier;
+      this.identifierSize = identifier.remaining();
+      this.cache = new LinkedHashMap<ByteBuffer, ByteBuffer>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteBuffer, ByteBuffer> eldest) {
+          return size() > cacheSize;
+        }
+      };
+    }
+
+    ByteBuffer getValue(ByteBuffer key) {
+      while (true) {
+        long lsn;
+        Lock l = lock.readLock();
+        l.lock();
+        try {
+          ByteBuffer cached = cache.get(key);
+          if (cached != null) {
+            return cached.duplicate();
+          }
+          lsn = lsnMap.getLong(key, -1);
+          if (lsn < 0) {
+            return null;
+          }
+        } finally {
+          l.unlock();
+        }
+
+        ByteBuffer value;
+        try {
+          value = manager.read(lsn);
+        } catch (RuntimeException e) {
+        //  a put or compaction may have moved the key on and its old record with it
+          Long current = getLsn(0, key);
+          if (current != null && current == lsn) {
+            throw e;
+          } else {
+            continue;
+          }
+        }
+
+        l = lock.writeLock();
+        l.lock();
+        try {
+          if (lsnMap.getLong(key, -1) == lsn) {
+            cache.put(storedKey(key), value);
+            return value.duplicate();
+          }
+        } finally {
+          l.unlock();
+        }
+      }
+    }
+
+    /*
+     * An uncached value is read back from the log with the lock dropped, then
+     * the entry is handed out under the lock only if the key still sits at the
+     * lsn that was read, the same as getValue.
+     */
+    @Override
+    public ObjectManagerEntry<ByteBuffer, ByteBuffer, ByteBuffer> acquireCompactionEntry(long ceilingLsn) {
+      Lock l = lock.writeLock();
+      while (true) {
+        ByteBuffer firstKey;
+        long lsn;
+        l.lock();
+        try {
+          firstKey = lsnMap.firstKey();
+          if (firstKey == null || lsnMap.firstLongValue() >= ceilingLsn) {
+            l.unlock();
+            return null;
+          }
+          lsn = lsnMap.firstLongValue();
+          ByteBuffer cached = cache.get(firstKey);
+          if (cached != null) {
+            return new SimpleObjectManagerEntry<ByteBuffer, ByteBuffer, ByteBuffer>(identifier, firstKey.duplicate(), cached.duplicate(), lsn);
+          }
+        } catch (RuntimeException e) {
+          l.unlock();
+          throw e;
+        }
+        l.unlock();
+
+        ByteBuffer value;
+        try {
+          value = manager.read(lsn);
+        } catch (RuntimeException e) {
+          Long current = getLsn(0, firstKey);
+          if (current != null && current == lsn) {
+            throw e;
+          } else {
+            continue;
+          }
+        }
+
+        l.lock();
+        if (lsnMap.getLong(firstKey, -1) == lsn) {
+          return new SimpleObjectManagerEntry<ByteBuffer, ByteBuffer, ByteBuffer>(identifier, firstKey.duplicate(), value.duplicate(), lsn);
+        }
+        l.unlock();
+      }
+    }
+
+    @Override
+    public void releaseCompactionEntry(ObjectManagerEntry<ByteBuffer, ByteBuffer, ByteBuffer> entry) {
+      lock.writeLock().unlock();
+    }
+
+    @Override
+    public void updateLsn(int hash, ObjectManagerEntry<ByteBuffer, ByteBuffer, ByteBuffer> entry, long newLsn) {
+      Lock l = lock.writeLock();
+      l.lock();
+      try {
+        if (lsnMap.getLong(entry.getKey(), -1) == entry.getLsn()) {
+          lsnMap.put(entry.getKey(), newLsn);
+        }
+      } finally {
+        l.unlock();
+      }
+    }
+
+    @Override
+    public Long getLowestLsn() {
+      Lock l = lock.readLock();
+      l.lock();
+      try {
+        return lsnMap.firstValue();
+      } finally {
+        l.unlock();
+      }
+    }
+
+    @Override
+    public Long getLsn(int hash, ByteBuffer key) {
+      Lock l = lock.readLock();
+      l.lock();
+      try {
+        return lsnMap.get(key);
+      } finally {
+        l.unlock();
+      }
+    }
+
+    @Override
+    public void replayPut(int hash, ByteBuffer key, ByteBuffer value, long lsn) {
+      Lock l = lock.writeLock();
+      l.lock();
+      try {
+        store(key, value.remaining(), lsn);
+      } finally {
+        l.unlock();
+      }
+    }
+
+    @Override
+    public void put(int hash, ByteBuffer key, ByteBuffer value, long lsn) {
+      Lock l = lock.writeLock();
+      l.lock();
+      try {
+        cache.put(store(key, value.remaining(), lsn), copy(value, 0));
+      } finally {
+        l.unlock();
+      }
+    }
+
+    @Override
+    public void remove(int hash, ByteBuffer key) {
+      Lock l = lock.writeLock();
+      l.lock();
+      try {
+        ByteBuffer stored = storedKey(key);
+        if (stored != null) {
+          dataSize -= identifierSize + stored.remaining() + valueLength(stored);
+          lsnMap.remove(stored);
+          cache.remove(stored);
+        }
+      } finally {
+        l.unlock();
+      }
+    }
+
+    @Override
+    public long size() {
+      Lock l = lock.readLock();
+      l.lock();
+      try {
+        return lsnMap.size();
+      } finally {
+        l.unlock();
+      }
+    }
+
+    @Override
+    public long sizeInBytes() {
+      Lock l = lock.readLock();
+      l.lock();
+      try {
+        return dataSize;
+      } finally {
+        l.unlock();
+      }
+    }
+
+    /**
+     * @return the key instance held in the map, copied in if it is new
+     */
+    private ByteBuffer store(ByteBuffer key, int valueLength, long lsn) {
+      ByteBuffer stored = storedKey(key);
+      if (stored == null) {
+        stored = copy(key, VALUE_LENGTH_HEADER);
+        dataSize += identifierSize + stored.remaining() + valueLength;
+      } else {
+        dataSize += valueLength - valueLength(stored);
+      }
+      valueLength(stored, valueLength);
+      lsnMap.put(stored, lsn);
+      return stored;
+    }
+
+    private ByteBuffer storedKey(ByteBuffer key) {
+      return lsnMap.getKey(key);
+    }
+
+    private static int valueLength(ByteBuffer stored) {
+      byte[] array = stored.array();
+      int offset = stored.arrayOffset() - VALUE_LENGTH_HEADER;
+      return ((array[offset] & 0xff) << 24) | ((array[offset + 1] & 0xff) << 16)
+             | ((array[offset + 2] & 0xff) << 8) | (array[offset + 3] & 0xff);
+    }
+
+    private static void valueLength(ByteBuffer stored, int length) {
+      byte[] array = stored.array();
+      int offset = stored.arrayOffset() - VALUE_LENGTH_HEADER;
+      array[offset] = (byte) (length >>> 24);
+      array[offset + 1] = (byte) (length >>> 16);
+      array[offset + 2] = (byte) (length >>> 8);
+      array[offset + 3] = (byte) length;
+    }
+  }
+}
@@ -86,7 +86,8 @@ public class ReadManagerImpl implements ReadManager {
     Chunk c = ioManager.scan(marker);
     try {
 // maybe try and cache this
-        LogRecord send = LogRegionPacker.extract(Signature.NONE, forceLogRegionFormat, c, marker);
+// only verifies the returned record and only if it was written with a checksum
+        LogRecord send = LogRegionPacker.extract(Signature.CRC32C, forceLogRegionFormat, c, marker);
         
         if ( send == null ) {
           throw new RuntimeException("not found");
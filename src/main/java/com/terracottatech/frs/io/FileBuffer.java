@@ -29,6 +29,12 @@ import java.util.Arrays;
  */
 public class FileBuffer extends AbstractChunk implements Closeable {
 
+    /**
+     * most buffers handed to the kernel in one gathering write, the smallest 
+     * IOV_MAX of the supported platforms
+     */
+    public static final int IOV_MAX = 1024;
+
     protected final FileChannel channel;
     protected final BufferSource source;
     protected final ByteBuffer base;
@@ -270,6 +276,38 @@ public class FileBuffer extends AbstractChunk implements Closeable {
         return lt;
     }
 
+    /**
+     * Write the next count buffers straight from the memory they live in with 
+     * gathering writes of at most IOV_MAX buffers each.  Unlike write, small 
+     * and heap buffers are not coalesced into this buffer's private memory, 
+     * callers must keep inserted buffers unchanged until this returns.
+     */
+    public long gatheringWrite(int count) throws IOException {
+        for (int x = mark; x < mark + count; x++) {
+            if (!ref[x].isReadOnly()) {
+                ref[x].flip();
+            }
+        }
+
+        long lt = 0;
+        int next = mark;
+        int end = mark + count;
+        while (next < end && !ref[next].hasRemaining()) {
+            next++;
+        }
+        while (next < end) {
+            lt += channel.write(ref, next, Math.min(IOV_MAX, end - next));
+            while (next < end && !ref[next].hasRemaining()) {
+                next++;
+            }
+        }
+        offset = channel.position();
+
+        mark += count;
+        total += lt;
+        return lt;
+    }
+
     @Override
     public Chunk getChunk(long length) {
       if ( this.remaining() < length ) {
@@ -17,6 +17,8 @@ package com.terracottatech.frs.io;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Future;
 
 /**
@@ -38,6 +40,18 @@ public interface IOManager extends Closeable {
   long seek(long marker) throws IOException;
   
   void sync() throws IOException;
+
+  /**
+   * Start syncing everything written so far without waiting for it, writes
+   * may carry on while the sync runs.
+   *
+   * @return stage that completes once everything written before the call is
+   * on disk
+   */
+  default CompletionStage<Void> syncAsync() throws IOException {
+    sync();
+    return CompletableFuture.completedFuture(null);
+  }
   
   Future<Void> clean(long timeout) throws IOException;
   
@@ -15,6 +15,11 @@
  */
 package com.terracottatech.frs.io;
 
+import com.terracottatech.frs.util.Log2LatencyBins;
+
+import java.util.Collections;
+import java.util.Map;
+
 /**
  *
  * @author mscott
@@ -26,4 +31,32 @@ public interface IOStatistics {
     long getTotalRead();
     long getLiveSize();
     long getExpiredSize();
+    /**
+     * @return bytes of log records packed over bytes written for them, 1.0 
+     * when regions are not compressed
+     */
+    default double getCompressionRatio() {
+        return 1.0;
+    }
+    /**
+     * @return number of appends that waited for in-flight log bytes to drain
+     */
+    default long getAdmissionStalls() {
+        return 0;
+    }
+    /**
+     * @return total nanoseconds appends spent waiting for in-flight log bytes 
+     * to drain
+     */
+    default long getAdmissionStallTime() {
+        return 0;
+    }
+    /**
+     * @return live latency histograms of the write pipeline by stage, in the 
+     * order records pass through them: append, contiguous, packing, queue, 
+     * write and fsync
+     */
+    default Map<String, Log2LatencyBins> getStageLatencies() {
+        return Collections.emptyMap();
+    }
 }
@@ -0,0 +1,492 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.io.nio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A file channel that bypasses the page cache.  The file is opened with
+ * O_DIRECT, which only accepts transfers that start and end on a block boundary
+ * from block aligned memory, so every transfer goes through an aligned bounce
+ * buffer.  A write that ends part way into a block pads the block with zeros
+ * on disk and remembers it so the next append does not have to read it back.
+ *
+ * The channel keeps the logical size of what has been written and cuts the
+ * padding off when it is truncated or closed, so the files look the same as
+ * ones written through the page cache.  A crash can leave the padding in place,
+ * which recovery treats like the zeros at the end of a preallocated segment.
+ *
+ * O_DIRECT is a JDK 10 feature and only exists on some platforms and file
+ * systems, {@link #open} returns null when it cannot be used and the caller
+ * falls back to a regular channel.
+ */
+class DirectFileChannel extends FileChannel {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectFileChannel.class);
+    private static final int DEFAULT_BLOCK_SIZE = 4096;
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+    private static final int READ_BUFFER_SIZE = 128 * 1024;
+    private static final OpenOption DIRECT = directOption();
+    private static final AtomicBoolean WARNED = new AtomicBoolean();
+
+    private final FileChannel delegate;
+    private final boolean writable;
+    private final int blockSize;
+    private final ByteBuffer bounce;
+    private final ByteBuffer tail;
+    private long tailStart = -1;
+    private long position;
+    private long size;
+
+    DirectFileChannel(FileChannel delegate, boolean writable, int blockSize, ByteBuffer bounce, ByteBuffer tail) throws IOException {
+        if ( Integer.bitCount(blockSize) != 1 || bounce.capacity() < blockSize || bounce.capacity() % blockSize != 0 ) {
+            throw new IllegalArgumentException("bounce buffer of " + bounce.capacity() + " does not fit blocks of " + blockSize);
+        }
+        this.delegate = delegate;
+        this.writable = writable;
+        this.blockSize = blockSize;
+        this.bounce = bounce;
+        this.tail = tail;
+        this.size = delegate.size();
+    }
+
+    /**
+     * @param write open for writing, otherwise read only
+     * @param truncate create the file or empty an existing one
+     * @return the channel or null if direct I/O is not available for this file
+     */
+    static FileChannel open(File file, boolean write, boolean truncate) {
+        if ( DIRECT == null ) {
+            warn(file, "direct I/O needs JDK 10 or later", null);
+            return null;
+        }
+        Set<OpenOption> options = new HashSet<OpenOption>();
+        options.add(StandardOpenOption.READ);
+        options.add(DIRECT);
+        if ( write ) {
+            options.add(StandardOpenOption.WRITE);
+            if ( truncate ) {
+                options.add(StandardOpenOption.CREATE);
+                options.add(StandardOpenOption.TRUNCATE_EXISTING);
+            }
+        }
+        FileChannel channel = null;
+        try {
+            Path path = file.toPath();
+            int block = blockSize(Files.getFileStore(file.exists() ? path : path.toAbsolutePath().getParent()));
+            channel = FileChannel.open(path, options);
+            return new DirectFileChannel(channel, write,
+                    block, aligned(write ? WRITE_BUFFER_SIZE : READ_BUFFER_SIZE, block),
+                    write ? aligned(block, block) : null);
+        } catch ( IOException | UnsupportedOperationException | IllegalArgumentException e ) {
+            if ( channel != null ) {
+                try {
+                    channel.close();
+                } catch ( IOException ignored ) {
+                }
+            }
+            warn(file, "direct I/O is not supported", e);
+            return null;
+        }
+    }
+
+    private static void warn(File file, String reason, Exception cause) {
+        if ( WARNED.compareAndSet(false, true) ) {
+            LOGGER.warn(reason + " for " + file + ", falling back to buffered I/O", cause);
+        }
+    }
+
+    private static OpenOption directOption() {
+        try {
+            Class<?> extended = Class.forName("com.sun.nio.file.ExtendedOpenOption");
+            Field direct = extended.getField("DIRECT");
+            return (OpenOption)direct.get(null);
+        } catch ( ReflectiveOperationException | LinkageError e ) {
+            return null;
+        }
+    }
+
+    private static int blockSize(FileStore store) {
+        try {
+            Method m = FileStore.class.getMethod("getBlockSize");
+            long block = (Long)m.invoke(store);
+            if ( block > 0 && block <= WRITE_BUFFER_SIZE && Long.bitCount(block) == 1 ) {
+                return (int)block;
+            }
+        } catch ( ReflectiveOperationException e ) {
+  //  getBlockSize is JDK 10 as well, use the common size
+        }
+        return DEFAULT_BLOCK_SIZE;
+    }
+
+    private static ByteBuffer aligned(int capacity, int block) {
+        ByteBuffer raw = ByteBuffer.allocateDirect(capacity + block);
+        try {
+            Method m = ByteBuffer.class.getMethod("alignedSlice", int.class);
+            ByteBuffer slice = (ByteBuffer)m.invoke(raw, block);
+            slice.limit(capacity);
+            return slice.slice();
+        } catch ( ReflectiveOperationException e ) {
+            throw new UnsupportedOperationException(e);
+        }
+    }
+
+    private long blockStart(long pos) {
+        return pos & -blockSize;
+    }
+
+    private int roundUp(int length) {
+        return (length + blockSize - 1) & -blockSize;
+    }
+
+    /**
+     * load the block at start into the bounce buffer at offset as it is on
+     * disk, zeros past the end of the file
+     */
+    private void readBlock(long start, int offset) throws IOException {
+        bounce.limit(offset + blockSize).position(offset);
+        if ( start == tailStart ) {
+            tail.clear();
+            bounce.put(tail);
+            return;
+        }
+        fill(start - offset);
+        while ( bounce.hasRemaining() ) {
+            bounce.put((byte)0);
+        }
+    }
+
+    /**
+     * read into the rest of the bounce buffer, bounce position 0 being the
+     * file at base.  Only the end of the file cuts a read short of a block.
+     */
+    private void fill(long base) throws IOException {
+        while ( bounce.hasRemaining() ) {
+            if ( delegate.read(bounce, base + bounce.position()) <= 0 || (bounce.position() & (blockSize - 1)) != 0 ) {
+                break;
+            }
+        }
+    }
+
+    private synchronized long writeAt(ByteBuffer[] srcs, int offset, int length, long pos) throws IOException {
+        if ( !writable ) {
+            throw new NonWritableChannelException();
+        }
+        try {
+            return writeBlocks(srcs, offset, length, pos);
+        } catch ( ClosedChannelException closed ) {
+            throw lost(closed);
+        }
+    }
+
+    private long writeBlocks(ByteBuffer[] srcs, int offset, int length, long pos) throws IOException {
+        long total = 0;
+        int next = offset;
+        int end = offset + length;
+        while ( next < end ) {
+            long start = blockStart(pos);
+            int head = (int)(pos - start);
+            long available = 0;
+            for ( int x = next; x < end; x++ ) {
+                available += srcs[x].remaining();
+            }
+            int used = (int)Math.min(head + available, bounce.capacity());
+            int padded = roundUp(used);
+            long written = start + used;
+  //  the first and last blocks are only partly covered, fill in the rest from disk
+            if ( head > 0 ) {
+                readBlock(start, 0);
+            }
+            if ( padded > used && (head == 0 || padded > blockSize) ) {
+                if ( written < size ) {
+                    readBlock(start + padded - blockSize, padded - blockSize);
+                } else {
+                    bounce.limit(padded).position(padded - blockSize);
+                    while ( bounce.hasRemaining() ) {
+                        bounce.put((byte)0);
+                    }
+                }
+            }
+            bounce.limit(used).position(head);
+            while ( bounce.hasRemaining() ) {
+                ByteBuffer src = srcs[next];
+                if ( src.remaining() <= bounce.remaining() ) {
+                    bounce.put(src);
+                    next += 1;
+                } else {
+                    int limit = src.limit();
+                    src.limit(src.position() + bounce.remaining());
+                    bounce.put(src);
+                    src.limit(limit);
+                }
+            }
+            while ( next < end && !srcs[next].hasRemaining() ) {
+                next += 1;
+            }
+            bounce.limit(padded).position(0);
+            while ( bounce.hasRemaining() ) {
+                delegate.write(bounce, start + bounce.position());
+            }
+            if ( padded > used ) {
+                bounce.limit(padded).position(padded - blockSize);
+                tail.clear();
+                tail.put(bounce);
+                tailStart = start + padded - blockSize;
+            } else {
+                tailStart = -1;
+            }
+            total += written - pos;
+            pos = written;
+            size = Math.max(size, pos);
+        }
+        return total;
+    }
+
+    private synchronized long readAt(ByteBuffer dst, long pos) throws IOException {
+        try {
+            return readBlocks(dst, pos);
+        } catch ( ClosedChannelException closed ) {
+            throw lost(closed);
+        }
+    }
+
+  //  an interrupt closes the file underneath, close this as well so callers see it closed
+    private ClosedChannelException lost(ClosedChannelException closed) {
+        try {
+            close();
+        } catch ( IOException ignored ) {
+        }
+        return closed;
+    }
+
+    private long readBlocks(ByteBuffer dst, long pos) throws IOException {
+        long limit = size();
+        if ( pos >= limit ) {
+            return -1;
+        }
+        long total = 0;
+        while ( dst.hasRemaining() && pos < limit ) {
+            long start = blockStart(pos);
+            int head = (int)(pos - start);
+            int want = (int)Math.min(Math.min(dst.remaining(), bounce.capacity() - head), limit - pos);
+            bounce.clear().limit(roundUp(head + want));
+            fill(start);
+            int got = Math.min(bounce.position() - head, want);
+            if ( got <= 0 ) {
+                break;
+            }
+            bounce.limit(head + got).position(head);
+            dst.put(bounce);
+            total += got;
+            pos += got;
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        int read = (int)readAt(dst, position);
+        if ( read > 0 ) {
+            position += read;
+        }
+        return read;
+    }
+
+    @Override
+    public synchronized long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        long total = 0;
+        for ( int x = offset; x < offset + length; x++ ) {
+            if ( !dsts[x].hasRemaining() ) {
+                continue;
+            }
+            int read = read(dsts[x]);
+            if ( read < 0 ) {
+                return ( total == 0 ) ? -1 : total;
+            }
+            total += read;
+            if ( dsts[x].hasRemaining() ) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long pos) throws IOException {
+        return (int)readAt(dst, pos);
+    }
+
+    @Override
+    public synchronized int write(ByteBuffer src) throws IOException {
+        return (int)write(new ByteBuffer[] {src}, 0, 1);
+    }
+
+    @Override
+    public synchronized long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        long written = writeAt(srcs, offset, length, position);
+        position += written;
+        return written;
+    }
+
+    @Override
+    public int write(ByteBuffer src, long pos) throws IOException {
+        return (int)writeAt(new ByteBuffer[] {src}, 0, 1, pos);
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        return position;
+    }
+
+    @Override
+    public synchronized FileChannel position(long newPosition) throws IOException {
+        if ( newPosition < 0 ) {
+            throw new IllegalArgumentException();
+        }
+        position = newPosition;
+        return this;
+    }
+
+    /**
+     * @return the written size when writing, the size on disk when only reading
+     * a file someone else may be appending to
+     */
+    @Override
+    public synchronized long size() throws IOException {
+        return ( writable ) ? size : delegate.size();
+    }
+
+    @Override
+    public synchronized FileChannel truncate(long newSize) throws IOException {
+        if ( newSize < 0 ) {
+            throw new IllegalArgumentException();
+        }
+        if ( !writable ) {
+            throw new NonWritableChannelException();
+        }
+        if ( newSize < delegate.size() ) {
+            delegate.truncate(newSize);
+        }
+        if ( tailStart >= 0 && tailStart + blockSize > newSize ) {
+            tailStart = -1;
+        }
+        size = Math.min(size, newSize);
+        position = Math.min(position, newSize);
+        return this;
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+        try {
+            delegate.force(metaData);
+        } catch ( ClosedChannelException closed ) {
+            throw lost(closed);
+        }
+    }
+
+    @Override
+    public long transferTo(long pos, long count, WritableByteChannel target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(count, READ_BUFFER_SIZE));
+        long total = 0;
+        while ( total < count ) {
+            buffer.clear();
+            if ( count - total < buffer.capacity() ) {
+                buffer.limit((int)(count - total));
+            }
+            if ( readAt(buffer, pos + total) <= 0 ) {
+                break;
+            }
+            buffer.flip();
+            while ( buffer.hasRemaining() ) {
+                total += target.write(buffer);
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long pos, long count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(count, WRITE_BUFFER_SIZE));
+        long total = 0;
+        while ( total < count ) {
+            buffer.clear();
+            if ( count - total < buffer.capacity() ) {
+                buffer.limit((int)(count - total));
+            }
+            if ( src.read(buffer) <= 0 ) {
+                break;
+            }
+            buffer.flip();
+            total += writeAt(new ByteBuffer[] {buffer}, 0, 1, pos + total);
+        }
+        return total;
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long pos, long length) throws IOException {
+        throw new UnsupportedOperationException("direct I/O files are not mapped");
+    }
+
+    @Override
+    public FileLock lock(long pos, long length, boolean shared) throws IOException {
+        return delegate.lock(pos, length, shared);
+    }
+
+    @Override
+    public FileLock tryLock(long pos, long length, boolean shared) throws IOException {
+        return delegate.tryLock(pos, length, shared);
+    }
+
+  //  drop the padding past the last write so the file ends where the data does
+    @Override
+    protected synchronized void implCloseChannel() throws IOException {
+        try {
+            if ( writable && delegate.isOpen() && delegate.size() > size ) {
+                delegate.truncate(size);
+                delegate.force(true);
+            }
+        } finally {
+            delegate.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DirectFileChannel{" + "delegate=" + delegate + ", blockSize=" + blockSize + ", size=" + size + '}';
+    }
+}
@@ -27,25 +27,48 @@ import java.util.Arrays;
 class FileChannelReadOpener implements ChannelOpener {
   private static final Logger LOGGER = LoggerFactory.getLogger(FileChannelReadOpener.class);
   private final File fileToOpen;
+  private final boolean direct;
   private FileInputStream currentStream;
+  private FileChannel currentDirect;
   private volatile boolean closed;
 
   FileChannelReadOpener(File fileToOpen) {
+    this(fileToOpen, false);
+  }
+
+  /**
+   * @param direct read around the page cache if the platform allows it
+   */
+  FileChannelReadOpener(File fileToOpen, boolean direct) {
     this.fileToOpen = fileToOpen;
+    this.direct = direct;
     this.currentStream = null;
     this.closed = false;
   }
 
   synchronized FileChannel open() throws IOException {
     closed = false;
+    return openChannel();
+  }
+
+  private FileChannel openChannel() throws IOException {
+    if (direct) {
+      currentDirect = DirectFileChannel.open(fileToOpen, false, false);
+      if (currentDirect != null) {
+        return currentDirect;
+      }
+    }
     currentStream = new FileInputStream(fileToOpen);
     return currentStream.getChannel();
   }
 
-  @Override
-  public synchronized FileChannel reopen() throws IOException {
-    if (closed) {
-      throw new IOException("Channel for file " + fileToOpen.getName() + " cannot be reopened");
+  private void closeCurrent() {
+    if (currentDirect != null) {
+      try {
+        currentDirect.close();
+      } catch (IOException ignored) {
+      }
+      currentDirect = null;
     }
     if (currentStream != null) {
       try {
@@ -53,8 +76,16 @@ class FileChannelReadOpener implements ChannelOpener {
       } catch (IOException ignored) {
       }
     }
-    currentStream = new FileInputStream(fileToOpen);
-    return currentStream.getChannel();
+    currentStream = null;
+  }
+
+  @Override
+  public synchronized FileChannel reopen() throws IOException {
+    if (closed) {
+      throw new IOException("Channel for file " + fileToOpen.getName() + " cannot be reopened");
+    }
+    closeCurrent();
+    return openChannel();
   }
 
   @Override
@@ -78,12 +109,6 @@ class FileChannelReadOpener implements ChannelOpener {
       LOGGER.trace(stackTrace.toString());
     }
     closed = true;
-    if (currentStream != null) {
-      try {
-        currentStream.close();
-      } catch (IOException ignored) {
-      }
-    }
-    currentStream = null;
+    closeCurrent();
   }
 }
\ No newline at end of file
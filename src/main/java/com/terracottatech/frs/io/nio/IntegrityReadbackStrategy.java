@@ -37,6 +37,8 @@ public class IntegrityReadbackStrategy extends AbstractReadbackStrategy {
     private final WritingSegmentJumpList jumpList = new WritingSegmentJumpList();
     private long lastGood = 0;
     private long lastMarker = 0;
+    private final long baseMarker;
+    private final boolean ordered;
     private boolean primed = false;
     private boolean done = false;
     private int exitStatus;
@@ -44,6 +46,18 @@ public class IntegrityReadbackStrategy extends AbstractReadbackStrategy {
 
     public IntegrityReadbackStrategy(FileBuffer src) {
         buffer = src;
+        baseMarker = 0;
+        ordered = false;
+    }
+
+    /**
+     * stops at the first chunk whose marker is below the segment's base or not
+     * past the one before it, an old chunk left in a recycled file
+     */
+    IntegrityReadbackStrategy(FileBuffer src, long baseMarker) {
+        buffer = src;
+        this.baseMarker = baseMarker;
+        ordered = true;
     }
 
     public FileBuffer getFileBuffer() {
@@ -106,7 +120,11 @@ public class IntegrityReadbackStrategy extends AbstractReadbackStrategy {
                 if (clen != size) {
                     throw new IOException("inconsistent");
                 }
-                lastMarker = buffer.getLong();
+                long marker = buffer.getLong();
+                if (ordered && (marker < baseMarker || marker <= lastMarker)) {
+                    throw new IOException("stale chunk marker " + marker + " after " + lastMarker);
+                }
+                lastMarker = marker;
                 if (SegmentHeaders.FILE_CHUNK.validate(buffer.getInt())) {
                     lastGood = buffer.position();
                 }
@@ -20,7 +20,12 @@ package com.terracottatech.frs.io.nio;
  * @author mscott
  */
 public enum NIOAccessMethod {
-    NONE,STREAM,MAPPED;
+    NONE,STREAM,MAPPED,
+    /**
+     * read and write segments with O_DIRECT, reading back like {@link #STREAM}.
+     * Falls back to {@link #STREAM} where direct I/O is not available.
+     */
+    DIRECT;
     
     public static NIOAccessMethod getDefault() {
         return MAPPED;
@@ -60,6 +60,34 @@ public abstract class NIOConstants {
     }
   }
 
+  public static final String SPARE_NAME_FORMAT = "spare%09d";
+  public static final String SPARE_READY_SUFFIX = ".frs";
+  public static final String SPARE_FILL_SUFFIX = ".fill";
+
+  public static final FilenameFilter SPARE_FILENAME_FILTER = new FilenameFilter() {
+    @Override
+    public boolean accept(File file, String string) {
+      return string.startsWith("spare") && (string.endsWith(SPARE_READY_SUFFIX) || string.endsWith(SPARE_FILL_SUFFIX));
+    }
+  };
+
+  public static String convertToSpareFileName(int spare, boolean ready) {
+    return String.format(SPARE_NAME_FORMAT, spare) + (ready ? SPARE_READY_SUFFIX : SPARE_FILL_SUFFIX);
+  }
+
+  public static boolean isReadySpare(File f) {
+    return f.getName().endsWith(SPARE_READY_SUFFIX);
+  }
+
+  public static int convertSpareNumber(File f) {
+    String name = f.getName();
+    try {
+      return new DecimalFormat(NIOConstants.SEG_NUM_FORMAT).parse(name.substring(5, name.lastIndexOf('.'))).intValue();
+    } catch ( ParseException pe ) {
+      throw new RuntimeException("bad filename",pe);
+    }
+  }
+
   public static final Comparator<String> SEGMENT_NAME_COMPARATOR = new Comparator<String>() {
     @Override
     public int compare(String o1, String o2) {
@@ -44,6 +44,7 @@ import java.util.Collections;
 import java.util.Formatter;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Future;
 
 
@@ -102,7 +103,11 @@ public class NIOManager implements IOManager {
     }
     
     public NIOManager(Configuration config, BufferSource writer) throws IOException {
-        this(config.getDBHome().getAbsolutePath(),
+        this(config, config.getDBHome(), writer);
+    }
+    
+    public NIOManager(Configuration config, File home, BufferSource writer) throws IOException {
+        this(home.getAbsolutePath(),
             config.getString(FrsProperty.IO_NIO_ACCESS_METHOD),
             config.getString(FrsProperty.IO_NIO_BUFFER_SOURCE),
             config.getLong(FrsProperty.IO_NIO_SEGMENT_SIZE),
@@ -133,6 +138,19 @@ public class NIOManager implements IOManager {
         if ( config.getBoolean(FrsProperty.IO_DISABLE_SYNC) ) {
           this.backend.disableSync(true);
         }
+        
+        if ( config.getBoolean(FrsProperty.IO_ZERO_COPY) ) {
+          this.backend.useGatheringWrites(true);
+        }
+        
+        if ( config.getBoolean(FrsProperty.IO_NIO_PIPELINED_SYNC) ) {
+          this.backend.usePipelinedSync(true);
+        }
+        
+        int spares = config.getInt(FrsProperty.IO_NIO_SEGMENT_POOL_SIZE);
+        if ( spares > 0 ) {
+          this.backend.useSegmentPool(spares);
+        }
     }
 // for tests
     void setBufferBuilder(BufferBuilder builder) {
@@ -193,6 +211,14 @@ public class NIOManager implements IOManager {
         }
         long pos = backend.sync();
     }
+
+    @Override
+    public CompletionStage<Void> syncAsync() throws IOException {
+        if (backend == null) {
+            throw new IOException("stream is closed");
+        }
+        return backend.syncAsync();
+    }
     
     @Override
     public long seek(long marker) throws IOException {
@@ -215,7 +241,7 @@ public class NIOManager implements IOManager {
     }
     
     private BufferSource getRecoveryBufferSource(NIOAccessMethod method) {
-      return ( this.memorySize < 0 || method != NIOAccessMethod.STREAM ) ? mainBuffers :
+      return ( this.memorySize < 0 || (method != NIOAccessMethod.STREAM && method != NIOAccessMethod.DIRECT) ) ? mainBuffers :
         new MaskingBufferSource(( useSlabs ) ? 
             new SLABBufferSource((int)this.memorySize) : 
             new SplittingBufferSource(64, (int)this.memorySize));
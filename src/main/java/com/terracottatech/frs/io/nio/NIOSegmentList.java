@@ -34,6 +34,7 @@ class NIOSegmentList implements Iterable<File> {
     private int                           position;
     private int                           segmentId;
     private long                           cachedTotalSize; 
+    private NIOSegmentPool                 pool;
     private static final Logger LOGGER = LoggerFactory.getLogger(NIOSegmentList.class);
 
     NIOSegmentList(File directory) throws IOException {
@@ -53,6 +54,10 @@ class NIOSegmentList implements Iterable<File> {
         }
     }    
     
+    synchronized void setPool(NIOSegmentPool pool) {
+        this.pool = pool;
+    }
+    
     long getTotalSize() {
         long size = cachedTotalSize;
         synchronized ( this ) {
@@ -122,7 +127,7 @@ class NIOSegmentList implements Iterable<File> {
         while ( count < position ) {
             File f = segments.remove(0);
             size += f.length();
-            if ( !f.delete() ) {
+            if ( !discard(f) ) {
                 size -= f.length();
                 segments.add(0,f);
                 break;
@@ -140,6 +145,14 @@ class NIOSegmentList implements Iterable<File> {
         return size;
     }
     
+//  dead segments go back to the pool to be reused as spares when it has room
+    private boolean discard(File f) {
+        if ( pool != null && pool.recycle(f) ) {
+            return true;
+        }
+        return f.delete();
+    }
+    
     synchronized long removeFilesFromHead() throws IOException {
         long size = 0;
         while ( position+1 < segments.size()) {
@@ -0,0 +1,292 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.io.nio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Spare segment files kept ready for the writer.  A helper thread creates them
+ * zero filled at full segment size, or takes back segments cleaned off the log
+ * tail.  A recycled segment only has its head zeroed, the old chunks past it 
+ * carry markers below anything written over them, so the integrity scan of a 
+ * crashed head stops where the new data ends.
+ *
+ * The writer renames a ready spare to the next segment name and only falls
+ * back to creating a new file when none is ready, it never waits on the pool.
+ * Spares are named outside the segment pattern so recovery never sees them.
+ */
+class NIOSegmentPool implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NIOSegmentPool.class);
+    private static final int FILL_SIZE = 1024 * 1024;
+    /**
+     * the file header and the start of the first chunk
+     */
+    private static final int HEAD_SIZE = 4096;
+    private static final long MIN_BACKOFF = 100;
+    private static final long MAX_BACKOFF = 60 * 1000;
+
+    private final File directory;
+    private final long segmentSize;
+    private final int capacity;
+    private final Deque<File> ready = new ArrayDeque<File>();
+    private final Deque<File> recycled = new ArrayDeque<File>();
+    private int filling = 0;
+    private int nextSpare = 0;
+    private boolean closed = false;
+    private final Thread filler;
+
+    private long taken;
+    private long missed;
+    private long recycles;
+
+    NIOSegmentPool(File directory, long segmentSize, int capacity) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.capacity = capacity;
+
+        File[] found = directory.listFiles(NIOConstants.SPARE_FILENAME_FILTER);
+        if ( found != null ) {
+            for ( File f : found ) {
+                nextSpare = Math.max(nextSpare, NIOConstants.convertSpareNumber(f) + 1);
+                if ( ready.size() + recycled.size() >= capacity ) {
+                    f.delete();
+                } else if ( NIOConstants.isReadySpare(f) ) {
+                    ready.add(f);
+                } else {
+  //  left half filled by the last run
+                    recycled.add(f);
+                }
+            }
+        }
+
+        filler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                fill();
+            }
+        }, "segment pool - " + directory);
+        filler.setDaemon(true);
+        filler.start();
+    }
+
+    /**
+     * rename a ready spare to the segment file
+     *
+     * @return false if no spare was ready and the caller has to create the file
+     */
+    boolean take(File segment) {
+        File spare;
+        synchronized (this) {
+            spare = ready.poll();
+            if ( spare == null ) {
+                missed += 1;
+                return false;
+            }
+            notifyAll();
+        }
+        if ( !spare.renameTo(segment) ) {
+            LOGGER.warn("unable to use spare segment " + spare);
+            spare.delete();
+            return false;
+        }
+        synchronized (this) {
+            taken += 1;
+        }
+        return true;
+    }
+
+    /**
+     * take back a segment cleaned off the log tail in place of deleting it
+     *
+     * @return false if the pool is full and the caller has to delete the file
+     */
+    boolean recycle(File segment) {
+        File spare;
+        synchronized (this) {
+            if ( closed || ready.size() + recycled.size() + filling >= capacity ) {
+                return false;
+            }
+            spare = new File(directory, NIOConstants.convertToSpareFileName(nextSpare++, false));
+            if ( !segment.renameTo(spare) ) {
+                return false;
+            }
+            recycled.add(spare);
+            recycles += 1;
+            notifyAll();
+        }
+        return true;
+    }
+
+    private void fill() {
+        ByteBuffer zeros = ByteBuffer.allocateDirect(FILL_SIZE);
+        long backoff = MIN_BACKOFF;
+        try {
+            while ( true ) {
+                File next;
+                boolean reuse;
+                synchronized (this) {
+                    while ( !closed && recycled.isEmpty() && ready.size() + filling >= capacity ) {
+                        wait();
+                    }
+                    if ( closed ) {
+                        return;
+                    }
+                    next = recycled.poll();
+                    reuse = next != null;
+                    if ( !reuse ) {
+                        next = new File(directory, NIOConstants.convertToSpareFileName(nextSpare++, false));
+                    }
+                    filling += 1;
+                }
+                boolean failed = false;
+                try {
+                    File spare = zero(next, zeros, reuse);
+                    synchronized (this) {
+                        if ( spare != null ) {
+                            ready.add(spare);
+                        }
+                    }
+                } catch ( IOException ioe ) {
+                    LOGGER.error("unable to prepare spare segment " + next + ", retrying in " + backoff + "ms", ioe);
+                    next.delete();
+                    failed = true;
+                } finally {
+                    synchronized (this) {
+                        filling -= 1;
+                    }
+                }
+  //  no point hammering a full or failing disk, the writer creates its own 
+  //  files meanwhile
+                if ( failed ) {
+                    backOff(backoff);
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF);
+                } else {
+                    backoff = MIN_BACKOFF;
+                }
+            }
+        } catch ( InterruptedException ie ) {
+  //  closing
+        }
+    }
+
+    private synchronized void backOff(long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        long left = millis;
+        while ( !closed && left > 0 ) {
+            wait(left);
+            left = deadline - System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * @param reuse the file is a recycled segment, only its head and anything
+     * past its old end need zeros
+     * @return the ready spare or null if the pool closed while filling
+     */
+    private File zero(File target, ByteBuffer zeros, boolean reuse) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(target, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            long end = Math.max(segmentSize, size);
+            if ( !reuse ) {
+                size = 0;
+            }
+            if ( !zero(channel, zeros, 0, Math.min(HEAD_SIZE, end)) 
+                    || !zero(channel, zeros, Math.max(HEAD_SIZE, size), end) ) {
+                return null;
+            }
+            channel.force(true);
+        } finally {
+            raf.close();
+        }
+        File spare = new File(directory, NIOConstants.convertToSpareFileName(NIOConstants.convertSpareNumber(target), true));
+        if ( !target.renameTo(spare) ) {
+            throw new IOException("unable to rename " + target + " to " + spare);
+        }
+        return spare;
+    }
+
+    /**
+     * @return false if the pool closed while filling
+     */
+    private boolean zero(FileChannel channel, ByteBuffer zeros, long pos, long end) throws IOException {
+        while ( pos < end ) {
+            synchronized (this) {
+                if ( closed ) {
+                    return false;
+                }
+            }
+            zeros.clear();
+            if ( end - pos < zeros.remaining() ) {
+                zeros.limit((int)(end - pos));
+            }
+            pos += channel.write(zeros, pos);
+        }
+        return true;
+    }
+
+    synchronized int getReady() {
+        return ready.size();
+    }
+
+    /**
+     * @return segments that were started on a spare
+     */
+    synchronized long getTaken() {
+        return taken;
+    }
+
+    /**
+     * @return segments the writer had to create because no spare was ready
+     */
+    synchronized long getMissed() {
+        return missed;
+    }
+
+    synchronized long getRecycled() {
+        return recycles;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            filler.join();
+        } catch ( InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "NIOSegmentPool{" + "ready=" + ready.size() + ", taken=" + taken + ", missed=" + missed + ", recycled=" + recycles + '}';
+    }
+}
@@ -40,7 +40,10 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.Exchanger;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BooleanSupplier;
@@ -66,6 +69,7 @@ class NIOStreamImpl implements Stream {
     private final long segmentSize;
     
     private boolean syncDisabled = false;
+    private boolean gatheringWrites = false;
 
     private UUID streamId;
     private volatile long lowestMarker = Constants.GENESIS_LSN;
@@ -79,6 +83,9 @@ class NIOStreamImpl implements Stream {
     private final BufferSource filePool;
     private BufferSource replayPool;
     private FSyncer syncer;
+    private NIOSegmentPool pool;
+    private long headLength = 0;
+    private volatile long headReserve = 0;
     private volatile boolean closed = false;
     private BufferBuilder createBuffer;
     private final NIOAccessMethod method;
@@ -165,6 +172,52 @@ class NIOStreamImpl implements Stream {
       syncDisabled = disabled;
     }
     
+    /**
+     * write the buffers of each chunk as they are handed in rather than 
+     * coalescing them into the segment's write buffer
+     */
+    void useGatheringWrites(boolean gather) {
+      gatheringWrites = gather;
+    }
+    
+    boolean isGatheringWrites() {
+      return gatheringWrites;
+    }
+    
+    /**
+     * force the write head on a helper thread so the next region can be 
+     * written while the last one is flushed
+     */
+    void usePipelinedSync(boolean pipelined) {
+      if ( pipelined && syncer == null ) {
+        syncer = new FSyncer();
+        syncer.start();
+      } else if ( !pipelined && syncer != null ) {
+        syncer.shutdown();
+        syncer = null;
+      }
+    }
+    
+    /**
+     * keep spare segment files ready in the background so rolling over to a
+     * new segment is a rename, and reuse cleaned segments as spares
+     */
+    void useSegmentPool(int spares) throws IOException {
+      if ( pool != null ) {
+        segments.setPool(null);
+        pool.close();
+        pool = null;
+      }
+      if ( spares > 0 ) {
+        pool = new NIOSegmentPool(directory, segmentSize, spares);
+        segments.setPool(pool);
+      }
+    }
+    
+    NIOSegmentPool getSegmentPool() {
+      return pool;
+    }
+    
     private void hintRandomAccess(long marker, int segmentId) {
         if ( randomAccess != null ) {
             randomAccess.hint(marker, segmentId);
@@ -226,10 +279,6 @@ class NIOStreamImpl implements Stream {
         }
 
     boolean open() throws IOException {
-/* TODO:   disable fsyncer for now.  validate for speed and accuracy
-        syncer = new FSyncer();
-        syncer.start();
-*/
         if (segments.isEmpty()) {
             return false;
         }
@@ -418,9 +467,11 @@ class NIOStreamImpl implements Stream {
     public long append(Chunk c, long marker) throws IOException {
       if (writeHead == null || writeHead.isClosed()) {
             File f = segments.appendFile();
+            boolean spare = pool != null && pool.take(f);
+            headLength = spare ? f.length() : 0;
             
             try {
-                writeHead = new WritingSegment(this, f).open();
+                writeHead = new WritingSegment(this, f, spare).open();
             } catch ( HeaderException header ) {
                 throw new IOException(header);
             }
@@ -431,49 +482,136 @@ class NIOStreamImpl implements Stream {
 
         long w = writeHead.append(c, marker);
         updateCurrentMarker(marker);
-        if (writeHead.size() > segmentSize || c instanceof SnapshotRequest ) {
+        long size = writeHead.size();
+        headReserve = Math.max(headLength - size, 0);
+        if (size > segmentSize || c instanceof SnapshotRequest ) {
             closeSegment(writeHead);
         }
         return w;
 
     }
 
+    /**
+     * Forces the write head on its own thread.  Requests that arrive while a 
+     * force is running are all answered by the next one, the writer only waits 
+     * on a force in progress when it has to close the segment under it.
+     */
     class FSyncer extends Thread {
 
-        private Exchanger<WritingSegment> pivot = new Exchanger<WritingSegment>();
+        private final ArrayDeque<PendingSync> pending = new ArrayDeque<PendingSync>();
+        private WritingSegment target;
+        private long requested;
+        private boolean forcing = false;
+        private boolean stopped = false;
+        private IOException failure;
 
-        public FSyncer() {
-            setName("fsync helper");
+        FSyncer() {
+            setName("fsync helper - " + directory);
             setDaemon(true);
         }
 
-        WritingSegment pivot(WritingSegment target) {
+        synchronized CompletionStage<Void> request(WritingSegment seg, long marker) {
+            CompletableFuture<Void> done = new CompletableFuture<Void>();
+            if ( failure != null ) {
+                done.completeExceptionally(failure);
+            } else if ( stopped ) {
+                done.completeExceptionally(new IOException("stream is closed"));
+            } else {
+                pending.add(new PendingSync(marker, done));
+                target = seg;
+                requested = marker;
+                notifyAll();
+            }
+            return done;
+        }
+
+        /**
+         * wait out a force of the segment so it can be closed
+         */
+        synchronized void closing(WritingSegment seg) throws InterruptedIOException {
+            try {
+                while ( forcing ) {
+                    wait();
+                }
+            } catch ( InterruptedException ie ) {
+                throw new InterruptedIOException();
+            }
+            if ( target == seg ) {
+                target = null;
+            }
+        }
+
+        synchronized void synced(long marker) {
+            while ( !pending.isEmpty() && pending.peek().marker <= marker ) {
+                pending.poll().done.complete(null);
+            }
+        }
+
+        private synchronized void failed(IOException ioe) {
+            failure = ioe;
+            while ( !pending.isEmpty() ) {
+                pending.poll().done.completeExceptionally(ioe);
+            }
+        }
+
+        void shutdown() {
+            synchronized (this) {
+                stopped = true;
+                notifyAll();
+            }
             try {
-                return pivot.exchange(target);
-            } catch (InterruptedException ie) {
-            } 
-            return null;
+                join();
+            } catch ( InterruptedException ie ) {
+                Thread.currentThread().interrupt();
+            }
+            failed(new IOException("stream is closed"));
         }
 
         public void run() {
             try {
-                WritingSegment seg = null;
-                seg = pivot.exchange(seg);
-                while (!Thread.interrupted()) {
-                    if ( seg == null ) {
-                        
-                    } else if (seg.isClosed()) {
-                        seg.close();
-                    } else {
+                while ( true ) {
+                    WritingSegment seg;
+                    long marker;
+                    synchronized (this) {
+                        while ( target == null && !stopped ) {
+                            wait();
+                        }
+                        if ( target == null ) {
+                            return;
+                        }
+                        seg = target;
+                        marker = requested;
+                        target = null;
+                        forcing = true;
+                    }
+                    try {
                         seg.fsync(false);
+                        lowestMarkerOnDisk = seg.getMinimumMarker();
+                    } finally {
+                        synchronized (this) {
+                            forcing = false;
+                            notifyAll();
+                        }
                     }
-                    updateSyncMarker(seg.getMaximumMarker());
-                    lowestMarkerOnDisk = seg.getMinimumMarker();
-                    seg = pivot.exchange(seg);
+                    updateSyncMarker(marker);
+                    synced(marker);
                 }
-            } catch (InterruptedException ie) {
-            } catch (IOException ioe) {
-            } 
+            } catch ( InterruptedException ie ) {
+                failed(new InterruptedIOException());
+            } catch ( IOException ioe ) {
+                LOGGER.warn("fsync failed", ioe);
+                failed(ioe);
+            }
+        }
+    }
+    
+    private static class PendingSync {
+        private final long marker;
+        private final CompletableFuture<Void> done;
+
+        PendingSync(long marker, CompletableFuture<Void> done) {
+            this.marker = marker;
+            this.done = done;
         }
     }
     //  fsync current segment.  old segments are fsyncd on close
@@ -487,10 +625,13 @@ class NIOStreamImpl implements Stream {
             if (this.currentMarker == this.fsyncdMarker) {
               return writeHead.position();
             } else if (syncer != null) {
-                syncer.pivot(writeHead);
-            //  get it back
-                WritingSegment check = syncer.pivot(null);
-                assert(check == writeHead);
+                try {
+                    syncer.request(writeHead, currentMarker).toCompletableFuture().get();
+                } catch ( InterruptedException ie ) {
+                    throw new InterruptedIOException();
+                } catch ( ExecutionException ee ) {
+                    throw ( ee.getCause() instanceof IOException ) ? (IOException)ee.getCause() : new IOException(ee.getCause());
+                }
                 return  writeHead.position();
             } else {
                 long pos = writeHead.fsync(false);
@@ -504,6 +645,19 @@ class NIOStreamImpl implements Stream {
         
         return -1;
     }
+    
+    /**
+     * sync without waiting when the stream is pipelined, otherwise the same as
+     * {@link #sync()}
+     */
+    CompletionStage<Void> syncAsync() throws IOException {
+        if ( syncer == null || syncDisabled || writeHead == null || writeHead.isClosed() 
+                || currentMarker == fsyncdMarker ) {
+            sync();
+            return CompletableFuture.completedFuture(null);
+        }
+        return syncer.request(writeHead, currentMarker);
+    }
     //  segment implementation forces before close.  neccessary?
 
     @Override
@@ -525,14 +679,13 @@ class NIOStreamImpl implements Stream {
         }
 
         if (syncer != null) {
-            syncer.interrupt();
-            try {
-                syncer.join();
-            } catch ( InterruptedException ie ) {
-                throw new IOException(ie);
-            }
+            syncer.shutdown();
         } 
         
+        if ( pool != null ) {
+            pool.close();
+        }
+        
         if ( randomAccess != null ) {
           randomAccess.close();
         }
@@ -604,8 +757,11 @@ class NIOStreamImpl implements Stream {
     }
     
     private synchronized void updateSyncMarker(long marker) {
-      this.fsyncdMarker = marker;
-      if ( this.currentMarker != this.fsyncdMarker ) {
+      if ( marker > this.fsyncdMarker ) {
+        this.fsyncdMarker = marker;
+      }
+  //  a pipelined sync trails the writer
+      if ( syncer == null && this.currentMarker != this.fsyncdMarker ) {
           throw new AssertionError("IO race");
       }
       if (markerWaiters > 0) {
@@ -690,7 +846,8 @@ class NIOStreamImpl implements Stream {
     }
     
     long getTotalSize() {
-        return segments.getTotalSize();
+//  the unwritten part of a spare under the write head is not log
+        return segments.getTotalSize() - headReserve;
     }
     
     int getSegmentCount() {
@@ -736,14 +893,17 @@ class NIOStreamImpl implements Stream {
     }
 
     private void closeSegment(WritingSegment nio) throws IOException {
+        headReserve = 0;
         nio.prepareForClose();
         if ( syncer != null ) {
-          syncer.pivot(nio);
-        } else {
-          nio.close();
-          this.currentMarker = nio.getMaximumMarker();
-          updateSyncMarker(this.currentMarker);
-          lowestMarkerOnDisk = nio.getMinimumMarker();
+          syncer.closing(nio);
+        }
+        nio.close();
+        this.currentMarker = nio.getMaximumMarker();
+        updateSyncMarker(this.currentMarker);
+        lowestMarkerOnDisk = nio.getMinimumMarker();
+        if ( syncer != null ) {
+          syncer.synced(this.currentMarker);
         }
     }
 
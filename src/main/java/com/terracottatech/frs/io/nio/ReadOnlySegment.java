@@ -44,7 +44,7 @@ class ReadOnlySegment extends NIOSegment implements Closeable {
         super(parent,buffer);
         this.dir = dir;
         this.method = strat;
-        this.opener = new FileChannelReadOpener(getFile());
+        this.opener = new FileChannelReadOpener(getFile(), strat == NIOAccessMethod.DIRECT);
     }
     
     public synchronized ReadOnlySegment load(BufferSource src) throws IOException {
@@ -94,7 +94,7 @@ class ReadOnlySegment extends NIOSegment implements Closeable {
           try {
             if (method == NIOAccessMethod.MAPPED) {
               return new MappedReadbackStrategy(source, Direction.REVERSE, opener);
-            } else if (method == NIOAccessMethod.STREAM) {
+            } else if (method == NIOAccessMethod.STREAM || method == NIOAccessMethod.DIRECT) {
               return new MinimalReadbackStrategy(Direction.REVERSE, getMinimumMarker(), source, src, opener);
             } else {
               throw new RuntimeException("unrecognized readback method");
@@ -123,7 +123,7 @@ class ReadOnlySegment extends NIOSegment implements Closeable {
           try {
             if (method == NIOAccessMethod.MAPPED) {
               return new MappedReadbackStrategy(source, Direction.RANDOM, opener);
-            } else if (method == NIOAccessMethod.STREAM) {
+            } else if (method == NIOAccessMethod.STREAM || method == NIOAccessMethod.DIRECT) {
               return new MinimalReadbackStrategy(Direction.RANDOM, getMinimumMarker(), source, src, opener);
             } else {
               throw new RuntimeException("unrecognized readback method");
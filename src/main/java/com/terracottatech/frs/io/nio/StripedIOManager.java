@@ -0,0 +1,749 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.io.nio;
+
+import com.terracottatech.frs.Constants;
+import com.terracottatech.frs.Snapshot;
+import com.terracottatech.frs.SnapshotRequest;
+import com.terracottatech.frs.config.Configuration;
+import com.terracottatech.frs.config.FrsProperty;
+import com.terracottatech.frs.io.BufferSource;
+import com.terracottatech.frs.io.Chunk;
+import com.terracottatech.frs.io.Direction;
+import com.terracottatech.frs.io.IOManager;
+import com.terracottatech.frs.io.IOStatistics;
+import com.terracottatech.frs.io.WrappingChunk;
+import com.terracottatech.frs.util.NullFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * IOManager striping log regions over several independent NIO streams, each
+ * in its own directory, ideally each on its own device.  Regions are dealt to
+ * the stripes round robin and a sync forces every stripe written since the
+ * last sync in parallel.
+ *
+ * Every region is written behind a stripe header carrying its global lsn
+ * range, the marker the stripe knows it by, the highest lsn known durable and
+ * the lowest live lsn at the time of the write.  Each stripe numbers its
+ * regions with its own marker sequence so every stream stays strictly
+ * increasing however the global lsns are dealt.
+ *
+ * Recovery merges the stripes back into global lsn order.  A crash can keep a
+ * later region on one stripe and lose an earlier one on another, so on open
+ * the unsynced tail of each stripe is checked and the log is cut at the first
+ * gap above the last sync.  Regions above the cut are left on disk, a fence
+ * written to every stripe before the next write makes later recoveries skip
+ * them.
+ *
+ * Assume single threaded writing from the LogManager IO thread, scan may be
+ * called from any thread.
+ */
+public class StripedIOManager implements IOManager {
+
+    static final String STRIPES_FILE = "frs.stripes";
+    static final int STRIPE_HEADER_SIZE = 48;
+
+    private static final int REGION = 0x53545247;   //  STRG
+    private static final int FENCE = 0x53544643;    //  STFC
+    private static final int ROLL = 0x5354524c;     //  STRL
+    private static final int STRIPE_BITS = 8;
+    private static final int MAX_STRIPES = 1 << STRIPE_BITS;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IOManager.class);
+
+    private final IOManager[] stripes;
+    private final long[] stripeMarkers;
+    private final boolean[] dirty;
+    private final ExecutorService syncers;
+    /**
+     * global end lsn of each region to its stripe and stripe marker
+     */
+    private final ConcurrentSkipListMap<Long, Long> regions = new ConcurrentSkipListMap<Long, Long>();
+    private final Object writeWaiters = new Object();
+
+    private volatile long current = Constants.GENESIS_LSN;
+    private volatile long synced = Constants.GENESIS_LSN;
+    private volatile long lowest = Constants.GENESIS_LSN;
+    private long recovered = Constants.GENESIS_LSN;
+    private long fence = -1;
+    private int next = 0;
+
+    private StripeCursor[] cursors;
+    private Region[] heads;
+
+    public StripedIOManager(Configuration config, BufferSource writer) throws IOException {
+        this(openStripes(config, writer));
+    }
+
+    StripedIOManager(IOManager... stripes) throws IOException {
+        if ( stripes.length == 0 || stripes.length > MAX_STRIPES ) {
+            throw new IllegalArgumentException("between 1 and " + MAX_STRIPES + " stripes are supported");
+        }
+        this.stripes = stripes;
+        this.stripeMarkers = new long[stripes.length];
+        this.dirty = new boolean[stripes.length];
+        for (int x=0;x<stripes.length;x++) {
+            stripeMarkers[x] = stripes[x].getCurrentMarker();
+        }
+        this.syncers = ( stripes.length == 1 ) ? null : Executors.newFixedThreadPool(stripes.length - 1, new ThreadFactory() {
+            int count = 1;
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r);
+                t.setName("stripe sync - " + count++);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        recoverTail();
+    }
+
+    private static IOManager[] openStripes(Configuration config, BufferSource writer) throws IOException {
+        List<File> directories = new ArrayList<File>();
+        directories.add(config.getDBHome());
+        for ( String dir : config.getString(FrsProperty.IO_NIO_STRIPE_DIRECTORIES).split(File.pathSeparator) ) {
+            if ( dir.trim().length() > 0 ) {
+                directories.add(new File(dir.trim()));
+            }
+        }
+        checkLayout(config.getDBHome(), directories);
+
+        IOManager[] stripes = new IOManager[directories.size()];
+        try {
+            for (int x=0;x<stripes.length;x++) {
+                stripes[x] = new NIOManager(config, directories.get(x), writer);
+            }
+        } catch ( IOException ioe ) {
+            for ( IOManager opened : stripes ) {
+                if ( opened != null ) {
+                    opened.close();
+                }
+            }
+            throw ioe;
+        }
+        return stripes;
+    }
+
+    /**
+     * @return true if the log in this directory was written striped
+     */
+    public static boolean isStriped(File home) {
+        return new File(home, STRIPES_FILE).exists();
+    }
+
+    /**
+     * records the stripe directories with the first striped log written in home
+     * and refuses to open it with any other layout
+     */
+    static void checkLayout(File home, List<File> directories) throws IOException {
+        File layout = new File(home, STRIPES_FILE);
+        Properties stripes = new Properties();
+        for (int x=0;x<directories.size();x++) {
+            stripes.setProperty("stripe." + x, directories.get(x).getCanonicalPath());
+        }
+        if ( !layout.exists() ) {
+            String[] segments = home.list(NIOConstants.SEGMENT_FILENAME_FILTER);
+            if ( segments != null && segments.length > 0 ) {
+                throw new IOException("log in " + home + " was not written striped");
+            }
+            FileOutputStream out = new FileOutputStream(layout);
+            try {
+                stripes.store(out, "log stripe directories, do not edit");
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+        } else {
+            Properties existing = new Properties();
+            FileInputStream in = new FileInputStream(layout);
+            try {
+                existing.load(in);
+            } finally {
+                in.close();
+            }
+            if ( !existing.equals(stripes) ) {
+                throw new IOException("log in " + home + " is striped over " + existing.values() +
+                        " not " + stripes.values());
+            }
+        }
+    }
+
+    @Override
+    public long write(Chunk region, long marker) throws IOException {
+        if ( fence > 0 ) {
+            writeFences();
+        }
+        int s = next;
+        next = (next + 1) % stripes.length;
+
+        long stripeMarker = ++stripeMarkers[s];
+        ByteBuffer header = formHeader(REGION, current + 1, marker, stripeMarker);
+        regions.put(marker, (stripeMarker << STRIPE_BITS) | s);
+
+        long w;
+        if ( region instanceof SnapshotRequest ) {
+            w = writeSnapshot(s, stripeMarker, header, region);
+        } else {
+            w = stripes[s].write(prefix(header, region), stripeMarker);
+        }
+        dirty[s] = true;
+
+        synchronized (writeWaiters) {
+            current = marker;
+            writeWaiters.notifyAll();
+        }
+        return w;
+    }
+
+    /**
+     * a snapshot must cover every stripe, roll every other stripe to a new
+     * segment along with the one holding the snapshot region
+     */
+    private long writeSnapshot(int s, long stripeMarker, ByteBuffer header, Chunk region) throws IOException {
+        List<Snapshot> snapshots = new ArrayList<Snapshot>(stripes.length);
+        StripeSnapshot regionSnapshot = new StripeSnapshot(prefix(header, region).getBuffers());
+        long w = stripes[s].write(regionSnapshot, stripeMarker);
+        snapshots.add(regionSnapshot.snapshot);
+        for (int x=0;x<stripes.length;x++) {
+            if ( x != s ) {
+                long rollMarker = ++stripeMarkers[x];
+                StripeSnapshot roll = new StripeSnapshot(new ByteBuffer[] {formHeader(ROLL, current + 1, current, rollMarker)});
+                w += stripes[x].write(roll, rollMarker);
+                snapshots.add(roll.snapshot);
+                dirty[x] = true;
+            }
+        }
+        ((SnapshotRequest)region).setSnapshot(new StripedSnapshot(snapshots));
+        return w;
+    }
+
+    private void writeFences() throws IOException {
+        for (int x=0;x<stripes.length;x++) {
+            long stripeMarker = ++stripeMarkers[x];
+            stripes[x].write(new WrappingChunk(formHeader(FENCE, fence, fence - 1, stripeMarker)), stripeMarker);
+            dirty[x] = true;
+        }
+   //  the fences must be on disk before any region that reuses the lsns they cut off
+        sync();
+        fence = -1;
+    }
+
+    private ByteBuffer formHeader(int kind, long base, long end, long stripeMarker) {
+        ByteBuffer header = ByteBuffer.allocate(STRIPE_HEADER_SIZE);
+        header.putInt(kind);
+        header.putInt(0);
+        header.putLong(base);
+        header.putLong(end);
+        header.putLong(stripeMarker);
+        header.putLong(synced);
+        header.putLong(lowest);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * uses the space packers leave in front of a single region buffer for the
+     * header where possible so the stream can still write the region in one go
+     */
+    private static Chunk prefix(ByteBuffer header, Chunk region) {
+        ByteBuffer[] raw = region.getBuffers();
+        if ( raw.length == 1 && !raw[0].isReadOnly() && raw[0].position() >= STRIPE_HEADER_SIZE ) {
+            ByteBuffer target = raw[0];
+            int start = target.position() - STRIPE_HEADER_SIZE;
+            target.position(start);
+            target.put(header);
+            target.position(start);
+            return new WrappingChunk(target);
+        }
+        ByteBuffer[] striped = new ByteBuffer[raw.length + 1];
+        striped[0] = header;
+        System.arraycopy(raw, 0, striped, 1, raw.length);
+        return new WrappingChunk(striped);
+    }
+
+    @Override
+    public void sync() throws IOException {
+        long target = current;
+        List<Future<Void>> pending = new ArrayList<Future<Void>>(stripes.length);
+        int local = -1;
+        for (int x=0;x<stripes.length;x++) {
+            if ( dirty[x] ) {
+                dirty[x] = false;
+                if ( local < 0 ) {
+                    local = x;
+                } else {
+                    final IOManager stripe = stripes[x];
+                    pending.add(syncers.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            stripe.sync();
+                            return null;
+                        }
+                    }));
+                }
+            }
+        }
+        if ( local >= 0 ) {
+            stripes[local].sync();
+        }
+        try {
+            for ( Future<Void> f : pending ) {
+                f.get();
+            }
+        } catch ( InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("stripe sync interrupted");
+        } catch ( ExecutionException ee ) {
+            if ( ee.getCause() instanceof IOException ) {
+                throw (IOException)ee.getCause();
+            }
+            throw new IOException(ee.getCause());
+        }
+        synced = target;
+    }
+
+    @Override
+    public void setMinimumMarker(long marker) throws IOException {
+        lowest = marker;
+        if ( cursors != null ) {
+   //  still recovering, the region map is not complete
+            return;
+        }
+        regions.headMap(marker).clear();
+        boolean[] found = new boolean[stripes.length];
+        int count = 0;
+        Iterator<Long> live = regions.values().iterator();
+        while ( count < stripes.length && live.hasNext() ) {
+            long location = live.next();
+            int s = (int)(location & (MAX_STRIPES - 1));
+            if ( !found[s] ) {
+                found[s] = true;
+                count++;
+                stripes[s].setMinimumMarker(location >>> STRIPE_BITS);
+            }
+        }
+        for (int x=0;x<stripes.length;x++) {
+            if ( !found[x] ) {
+                stripes[x].setMinimumMarker(stripeMarkers[x]);
+            }
+        }
+    }
+
+    @Override
+    public long getMinimumMarker() throws IOException {
+        return lowest;
+    }
+
+    @Override
+    public long getCurrentMarker() throws IOException {
+        return current;
+    }
+
+    /**
+     * reads the unsynced tail of every stripe to find the highest lsn with all
+     * lower regions present
+     */
+    private void recoverTail() throws IOException {
+        long durable = Constants.GENESIS_LSN;
+        List<Region> tail = new ArrayList<Region>();
+        List<Region> below = new ArrayList<Region>();
+        for (int x=0;x<stripes.length;x++) {
+            stripes[x].seek(Seek.END.getValue());
+            StripeCursor cursor = new StripeCursor(x);
+            Region r = cursor.next();
+            if ( r == null ) {
+                continue;
+            }
+            long stripeDurable = r.durable;
+            durable = Math.max(durable, stripeDurable);
+            while ( r != null && r.end > stripeDurable ) {
+                tail.add(r);
+                r.close();
+                r = cursor.next();
+            }
+            if ( r != null ) {
+                below.add(r);
+                r.close();
+            }
+        }
+
+        Collections.sort(tail, new Comparator<Region>() {
+            @Override
+            public int compare(Region o1, Region o2) {
+                return Long.compare(o1.base, o2.base);
+            }
+        });
+        long end = durable;
+        for ( Region r : tail ) {
+            if ( r.end <= end ) {
+                continue;
+            }
+            if ( r.base > end + 1 ) {
+                break;
+            }
+            end = r.end;
+        }
+
+        long low = Constants.GENESIS_LSN;
+        boolean cut = false;
+        below.addAll(tail);
+        for ( Region r : below ) {
+            if ( r.end <= end ) {
+                low = Math.max(low, r.lowest);
+            } else {
+                cut = true;
+            }
+        }
+        if ( cut ) {
+            LOGGER.warn("log stripes were not synced together, recovering up to lsn " + end);
+            fence = end + 1;
+        }
+        recovered = end;
+        current = end;
+        synced = end;
+        lowest = low;
+    }
+
+    @Override
+    public Chunk read(Direction dir) throws IOException {
+        if ( dir != Direction.REVERSE ) {
+            throw new IOException("striped logs can only be read in reverse");
+        }
+        if ( cursors == null ) {
+            return null;
+        }
+        if ( heads == null ) {
+            heads = new Region[stripes.length];
+            for (int x=0;x<stripes.length;x++) {
+                heads[x] = nextRecovered(cursors[x]);
+            }
+        }
+        int pick = -1;
+        for (int x=0;x<heads.length;x++) {
+            if ( heads[x] != null && (pick < 0 || heads[x].end > heads[pick].end) ) {
+                pick = x;
+            }
+        }
+        if ( pick < 0 ) {
+            return null;
+        }
+        Region r = heads[pick];
+        heads[pick] = nextRecovered(cursors[pick]);
+        regions.put(r.end, (r.stripeMarker << STRIPE_BITS) | pick);
+        return r.chunk;
+    }
+
+    private Region nextRecovered(StripeCursor cursor) throws IOException {
+        Region r = cursor.next();
+        while ( r != null && r.end > recovered ) {
+            r.close();
+            r = cursor.next();
+        }
+        return r;
+    }
+
+    @Override
+    public Chunk scan(long marker) throws IOException {
+        Map.Entry<Long, Long> location = regions.ceilingEntry(marker);
+        if ( location == null && marker > current ) {
+            synchronized (writeWaiters) {
+                try {
+                    while ( marker > current ) {
+                        writeWaiters.wait();
+                    }
+                } catch ( InterruptedException ie ) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("random access interrupted");
+                }
+            }
+            location = regions.ceilingEntry(marker);
+        }
+        if ( location == null ) {
+            throw new AssertionError("Marker " + marker + ":" + current + " not found in any stripe during scan");
+        }
+        int s = (int)(location.getValue() & (MAX_STRIPES - 1));
+        Chunk c = stripes[s].scan(location.getValue() >>> STRIPE_BITS);
+        c.skip(STRIPE_HEADER_SIZE);
+        return c;
+    }
+
+    @Override
+    public long seek(long marker) throws IOException {
+        if ( marker == Seek.END.getValue() ) {
+            closeHeads();
+            cursors = new StripeCursor[stripes.length];
+            for (int x=0;x<stripes.length;x++) {
+                stripes[x].seek(marker);
+                cursors[x] = new StripeCursor(x);
+            }
+        } else if ( marker == Seek.BEGINNING.getValue() ) {
+   //  recovery is over
+            closeHeads();
+            cursors = null;
+            for ( IOManager stripe : stripes ) {
+                stripe.seek(marker);
+            }
+            setMinimumMarker(lowest);
+        } else {
+            throw new IOException("striped logs can only seek to the beginning or end");
+        }
+        return marker;
+    }
+
+    private void closeHeads() throws IOException {
+        if ( heads != null ) {
+            for ( Region r : heads ) {
+                if ( r != null ) {
+                    r.close();
+                }
+            }
+            heads = null;
+        }
+    }
+
+    @Override
+    public Future<Void> clean(long timeout) throws IOException {
+        for ( IOManager stripe : stripes ) {
+            stripe.clean(timeout);
+        }
+        return NullFuture.INSTANCE;
+    }
+
+    @Override
+    public IOStatistics getStatistics() throws IOException {
+        IOStatistics[] stats = new IOStatistics[stripes.length];
+        for (int x=0;x<stripes.length;x++) {
+            stats[x] = stripes[x].getStatistics();
+        }
+        return new StripedStatistics(stats);
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException first = null;
+        if ( syncers != null ) {
+            syncers.shutdown();
+        }
+        for ( IOManager stripe : stripes ) {
+            try {
+                stripe.close();
+            } catch ( IOException ioe ) {
+                if ( first == null ) {
+                    first = ioe;
+                }
+            }
+        }
+        if ( first != null ) {
+            throw first;
+        }
+    }
+
+    int getStripeCount() {
+        return stripes.length;
+    }
+
+    @Override
+    public String toString() {
+        return "Striped - " + Arrays.toString(stripes);
+    }
+
+    /**
+     * reads one stripe in reverse skipping fences and everything a fence cut off
+     */
+    private class StripeCursor {
+        private final int stripe;
+        private long limit = Long.MAX_VALUE;
+
+        StripeCursor(int stripe) {
+            this.stripe = stripe;
+        }
+
+        Region next() throws IOException {
+            while ( true ) {
+                Chunk c = stripes[stripe].read(Direction.REVERSE);
+                if ( c == null ) {
+                    return null;
+                }
+                Region r = new Region(c);
+                if ( r.kind == FENCE ) {
+                    limit = Math.min(limit, r.base);
+                    r.close();
+                } else if ( r.kind == ROLL || r.end >= limit ) {
+                    r.close();
+                } else {
+                    return r;
+                }
+            }
+        }
+    }
+
+    private static class Region {
+        private final Chunk chunk;
+        private final int kind;
+        private final long base;
+        private final long end;
+        private final long stripeMarker;
+        private final long durable;
+        private final long lowest;
+
+        Region(Chunk chunk) throws IOException {
+            this.chunk = chunk;
+            this.kind = chunk.getInt();
+            if ( kind != REGION && kind != FENCE && kind != ROLL ) {
+                close();
+                throw new IOException("log region is not striped");
+            }
+            chunk.getInt();
+            this.base = chunk.getLong();
+            this.end = chunk.getLong();
+            this.stripeMarker = chunk.getLong();
+            this.durable = chunk.getLong();
+            this.lowest = chunk.getLong();
+        }
+
+        void close() throws IOException {
+            if ( chunk instanceof Closeable ) {
+                ((Closeable)chunk).close();
+            }
+        }
+    }
+
+    private static class StripeSnapshot extends WrappingChunk implements SnapshotRequest {
+        private Snapshot snapshot;
+
+        StripeSnapshot(ByteBuffer[] bufs) {
+            super(bufs);
+        }
+
+        @Override
+        public void setSnapshot(Snapshot snap) {
+            this.snapshot = snap;
+        }
+    }
+
+    private static class StripedSnapshot implements Snapshot {
+        private final List<Snapshot> snapshots;
+
+        StripedSnapshot(List<Snapshot> snapshots) {
+            this.snapshots = snapshots;
+        }
+
+        @Override
+        public Iterator<File> iterator() {
+            List<File> files = new ArrayList<File>();
+            for ( Snapshot s : snapshots ) {
+                for ( File f : s ) {
+                    files.add(f);
+                }
+            }
+            return Collections.unmodifiableList(files).iterator();
+        }
+
+        @Override
+        public void close() throws IOException {
+            for ( Snapshot s : snapshots ) {
+                s.close();
+            }
+        }
+    }
+
+    private static class StripedStatistics implements IOStatistics {
+        private final IOStatistics[] stripes;
+
+        StripedStatistics(IOStatistics[] stripes) {
+            this.stripes = stripes;
+        }
+
+        @Override
+        public long getTotalAvailable() {
+            long total = 0;
+            for ( IOStatistics s : stripes ) {
+                total += s.getTotalAvailable();
+            }
+            return total;
+        }
+
+        @Override
+        public long getTotalUsed() {
+            long total = 0;
+            for ( IOStatistics s : stripes ) {
+                total += s.getTotalUsed();
+            }
+            return total;
+        }
+
+        @Override
+        public long getTotalWritten() {
+            long total = 0;
+            for ( IOStatistics s : stripes ) {
+                total += s.getTotalWritten();
+            }
+            return total;
+        }
+
+        @Override
+        public long getTotalRead() {
+            long total = 0;
+            for ( IOStatistics s : stripes ) {
+                total += s.getTotalRead();
+            }
+            return total;
+        }
+
+        @Override
+        public long getLiveSize() {
+            long total = 0;
+            for ( IOStatistics s : stripes ) {
+                total += s.getLiveSize();
+            }
+            return total;
+        }
+
+        @Override
+        public long getExpiredSize() {
+            long total = 0;
+            for ( IOStatistics s : stripes ) {
+                total += s.getExpiredSize();
+            }
+            return total;
+        }
+    }
+}
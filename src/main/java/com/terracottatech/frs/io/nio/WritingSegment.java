@@ -42,6 +42,7 @@ class WritingSegment extends NIOSegment implements Iterable<Chunk>, Closeable {
     private WritingSegmentJumpList writeJumpList;
     private long totalWrite;
     private boolean existingFile = false;
+    private boolean preallocated = false;
 
     WritingSegment(NIOStreamImpl p, File file) {
         super(p, file);
@@ -50,6 +51,19 @@ class WritingSegment extends NIOSegment implements Iterable<Chunk>, Closeable {
         } 
     }
 
+    /**
+     * @param preallocated the file is a zero filled spare from the segment pool,
+     * written from the start like a new file and cut back to what was written
+     * when closed
+     */
+    WritingSegment(NIOStreamImpl p, File file, boolean preallocated) {
+        super(p, file);
+        this.preallocated = preallocated;
+        if ( !preallocated && file.exists() ) {
+            existingFile = true;
+        }
+    }
+
     long getMaximumMarker() {
         return maxMarker;
     }
@@ -101,7 +115,13 @@ class WritingSegment extends NIOSegment implements Iterable<Chunk>, Closeable {
     }
     
     private FileChannel createFileChannel() throws IOException {
-        if ( existingFile ) {
+        if ( !existingFile && getStream() != null && getStream().getAccessMethod() == NIOAccessMethod.DIRECT ) {
+            FileChannel direct = DirectFileChannel.open(getFile(), true, !preallocated);
+            if ( direct != null ) {
+                return direct;
+            }
+        }
+        if ( existingFile || preallocated ) {
             return new RandomAccessFile(getFile(), "rw").getChannel();
         } else {
             return new FileOutputStream(getFile()).getChannel();
@@ -160,6 +180,9 @@ class WritingSegment extends NIOSegment implements Iterable<Chunk>, Closeable {
             buffer.put(SegmentHeaders.FILE_CHUNK.getBytes());
             writeCount = raw.length + 2;
             try {
+                if ( getStream() != null && getStream().isGatheringWrites() ) {
+                    return buffer.gatheringWrite(writeCount);
+                }
                 return buffer.write(writeCount);
             } finally {
                 writeJumpList.add(buffer.offset());
@@ -169,6 +192,7 @@ class WritingSegment extends NIOSegment implements Iterable<Chunk>, Closeable {
 
     synchronized void prepareForClose() throws IOException {
         if (buffer != null && buffer.isOpen()) {
+            cutPreallocation();
             buffer.clear();
             buffer.put(SegmentHeaders.CLOSE_FILE.getBytes());
             writeJumpList(buffer);
@@ -181,6 +205,7 @@ class WritingSegment extends NIOSegment implements Iterable<Chunk>, Closeable {
         totalWrite = 0;
         //  don't need any memory buffers anymore       
         if ( buffer != null && buffer.isOpen() ) {
+            cutPreallocation();
             totalWrite = buffer.getTotal();
             long delta = System.nanoTime();
             buffer.sync(true);
@@ -199,6 +224,9 @@ class WritingSegment extends NIOSegment implements Iterable<Chunk>, Closeable {
     @Override
     public long size() {
         try {
+            if ( preallocated ) {
+                return buffer.getFileChannel().position();
+            }
             return buffer.size();
         } catch (IOException ioe) {
             return -1;
@@ -263,6 +291,17 @@ class WritingSegment extends NIOSegment implements Iterable<Chunk>, Closeable {
         target.put(SegmentHeaders.JUMP_LIST.getBytes());
     }
 
+//  the jump list is read back from the end of the file so drop the zeros left 
+//  past the written data before the close marks go down
+    private void cutPreallocation() throws IOException {
+        FileChannel channel = buffer.getFileChannel();
+        long end = channel.position();
+        if ( channel.size() > end ) {
+            channel.truncate(end);
+        }
+        preallocated = false;
+    }
+
     public long position() throws IOException {
         return (buffer == null) ? 0 : buffer.position();
     }
@@ -285,6 +324,7 @@ class WritingSegment extends NIOSegment implements Iterable<Chunk>, Closeable {
             throw new IOException("segment is closed");
         }
         buffer.position(pos);
+        cutPreallocation();
         
         buffer.put(SegmentHeaders.CLOSE_FILE.getBytes());
         writeJumpList(buffer);
@@ -301,7 +341,7 @@ class WritingSegment extends NIOSegment implements Iterable<Chunk>, Closeable {
         }
         buffer.clear();
         buffer.position(FILE_HEADER_SIZE);
-        IntegrityReadbackStrategy find = new IntegrityReadbackStrategy(buffer);
+        IntegrityReadbackStrategy find = new IntegrityReadbackStrategy(buffer, getBaseMarker());
         int count = 0;
         try {
             while (find.hasMore(Direction.FORWARD)) {
@@ -0,0 +1,165 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AtomicCommitList whose size and wait time are chosen per region from the
+ * observed record arrival rate and the latency of recent synchronous writes.
+ *
+ * Each region is sized to hold the records expected to arrive during one
+ * write cycle.  When enough records are expected inside the latency goal,
+ * a sync request no longer closes the region immediately, the region stays
+ * open for the remaining latency budget so more committers share the fsync.
+ */
+public class AdaptiveCommitList extends AtomicCommitList {
+
+    private final Window window;
+    private final long created = System.nanoTime();
+    private final boolean batchSyncs;
+    private volatile long ready;
+
+    public AdaptiveCommitList(long startLsn, int maxSize, int idleWait, long latencyGoal, TimeUnit unit) {
+        this(startLsn, new Window(maxSize, TimeUnit.MILLISECONDS.toNanos(idleWait), unit.toNanos(latencyGoal)));
+    }
+
+    AdaptiveCommitList(long startLsn, Window window) {
+        this(startLsn, window, window.batchSize(), window.batchSyncs());
+    }
+
+    private AdaptiveCommitList(long startLsn, Window window, int size, boolean batchSyncs) {
+        super(startLsn, size, window.waitTime(batchSyncs), TimeUnit.NANOSECONDS);
+        this.window = window;
+        this.batchSyncs = batchSyncs;
+    }
+
+    @Override
+    public CommitList create(long nextLsn) {
+        return new AdaptiveCommitList(nextLsn, window);
+    }
+
+    @Override
+    protected boolean closeOnSync() {
+        return !batchSyncs;
+    }
+
+    @Override
+    public void waitForContiguous() throws InterruptedException {
+        super.waitForContiguous();
+        ready = System.nanoTime();
+        if ( !isEmpty() ) {
+            window.regionReady(getEndLsn() - getBaseLsn() + 1, created, ready);
+        }
+    }
+
+    @Override
+    public void written() {
+        if ( ready > 0 && isSyncRequested() ) {
+            window.regionSynced(System.nanoTime() - ready);
+        }
+        super.written();
+    }
+
+    Window getWindow() {
+        return window;
+    }
+
+    /**
+     * Shared by every list in a chain.  The arrival rate is only updated by the
+     * thread waiting for contiguous regions and the sync latency only by the
+     * thread completing writes, the estimates are smoothed with a moving average.
+     */
+    static class Window {
+        private static final double SMOOTHING = 0.2;
+        private static final int MINIMUM_SIZE = 32;
+        private static final long MINIMUM_WAIT = TimeUnit.MICROSECONDS.toNanos(50);
+
+        private final int maxSize;
+        private final long idleWait;
+        private final long latencyGoal;
+
+        private volatile double arrivalRate;    //  records per nanosecond
+        private volatile double syncLatency;    //  nanoseconds
+        private long lastReady;
+
+        Window(int maxSize, long idleWait, long latencyGoal) {
+            this.maxSize = Math.max(maxSize, MINIMUM_SIZE);
+            this.idleWait = Math.max(idleWait, MINIMUM_WAIT);
+            this.latencyGoal = latencyGoal;
+        }
+
+        synchronized void regionReady(long records, long created, long now) {
+            long start = ( lastReady > 0 ) ? lastReady : created;
+            lastReady = now;
+            long elapsed = Math.max(now - start, 1);
+            arrivalRate = smooth(arrivalRate, (double)records / elapsed);
+        }
+
+        synchronized void regionSynced(long latency) {
+            syncLatency = smooth(syncLatency, latency);
+        }
+
+        private static double smooth(double current, double sample) {
+            return ( current == 0 ) ? sample : current + (sample - current) * SMOOTHING;
+        }
+
+        /**
+         * @return the part of the latency goal not already spent waiting for the disk
+         */
+        long budget() {
+            return Math.max(latencyGoal - (long)syncLatency, 0);
+        }
+
+        /**
+         * @return true if more than one record is expected to arrive while a
+         * sync request waits out the latency budget
+         */
+        boolean batchSyncs() {
+            return arrivalRate * budget() >= 1.0;
+        }
+
+        long waitTime(boolean batchSyncs) {
+            return batchSyncs ? Math.max(budget(), MINIMUM_WAIT) : idleWait;
+        }
+
+        /**
+         * @return the number of records expected to arrive in one full write
+         * cycle, the wait for the batch plus the sync itself
+         */
+        int batchSize() {
+            double expected = arrivalRate * (budget() + syncLatency);
+            if ( expected >= maxSize ) {
+                return maxSize;
+            }
+            return Math.max((int)expected, MINIMUM_SIZE);
+        }
+
+        double getArrivalRate() {
+            return arrivalRate;
+        }
+
+        double getSyncLatency() {
+            return syncLatency;
+        }
+
+        @Override
+        public String toString() {
+            return "Window{" + "arrivals/ms=" + (arrivalRate * 1e6) + ", sync(us)=" + (syncLatency * 1e-3) +
+                    ", size=" + batchSize() + ", batching=" + batchSyncs() + '}';
+        }
+    }
+}
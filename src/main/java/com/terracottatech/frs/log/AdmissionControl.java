@@ -0,0 +1,200 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounds the record bytes appended to the log but not yet written.  Appenders
+ * take space before their record gets an lsn and the IO thread gives it back
+ * once the region holding the record is on disk.
+ *
+ * Admission is a single compare and set while there is room, the lock is only
+ * taken by appenders that have to wait and by releases that have someone to
+ * wake.  A record is always admitted when nothing else is in flight so records
+ * bigger than the limit still get written.
+ */
+public class AdmissionControl {
+
+    private final long limit;
+    private final AtomicLong inflight = new AtomicLong();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition space = lock.newCondition();
+    private volatile boolean closed = false;
+
+    private final AtomicLong stalls = new AtomicLong();
+    private final AtomicLong stallTime = new AtomicLong();
+
+    public AdmissionControl(long limit) {
+        if ( limit <= 0 ) {
+            throw new IllegalArgumentException("admission limit must be positive");
+        }
+        this.limit = limit;
+    }
+
+    static long sizeOf(LogRecord record) {
+        return record.getPayloadSize();
+    }
+
+    static long sizeOf(Iterable<LogRecord> records) {
+        long size = 0;
+        for ( LogRecord record : records ) {
+            size += sizeOf(record);
+        }
+        return size;
+    }
+
+    private boolean admit(long bytes) {
+        long current = inflight.get();
+        while ( current == 0 || current + bytes <= limit ) {
+            if ( inflight.compareAndSet(current, current + bytes) ) {
+                return true;
+            }
+            current = inflight.get();
+        }
+        return false;
+    }
+
+    /**
+     * wait for space as long as it takes.  Interrupts are held until space is
+     * admitted.
+     *
+     * @return false if admission was closed before the space was admitted, the
+     * caller then holds nothing to release
+     */
+    boolean acquire(long bytes) {
+        if ( admit(bytes) ) {
+            return true;
+        }
+        if ( closed ) {
+            return false;
+        }
+        boolean admitted = false;
+        boolean interrupted = false;
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            waiting.incrementAndGet();
+            while ( !closed && !(admitted = admit(bytes)) ) {
+                try {
+                    space.await();
+                } catch ( InterruptedException ie ) {
+                    interrupted = true;
+                }
+            }
+            waiting.decrementAndGet();
+        } finally {
+            lock.unlock();
+            stalled(start);
+        }
+        if ( interrupted ) {
+            Thread.currentThread().interrupt();
+        }
+        return admitted;
+    }
+
+    /**
+     * @return false if the space could not be admitted within the timeout or
+     * admission has been closed
+     */
+    boolean tryAcquire(long bytes, long timeout, TimeUnit unit) throws InterruptedException {
+        if ( closed ) {
+            return false;
+        }
+        if ( admit(bytes) ) {
+            return true;
+        }
+        long start = System.nanoTime();
+        long remaining = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            waiting.incrementAndGet();
+            try {
+                while ( !closed ) {
+                    if ( admit(bytes) ) {
+                        return true;
+                    }
+                    if ( remaining <= 0 ) {
+                        return false;
+                    }
+                    remaining = space.awaitNanos(remaining);
+                }
+                return false;
+            } finally {
+                waiting.decrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+            stalled(start);
+        }
+    }
+
+    void release(long bytes) {
+        inflight.addAndGet(-bytes);
+        if ( waiting.get() > 0 ) {
+            signal();
+        }
+    }
+
+    /**
+     * lets every waiting appender through, used when the log stops taking records
+     */
+    void close() {
+        closed = true;
+        signal();
+    }
+
+    private void signal() {
+        lock.lock();
+        try {
+            space.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void stalled(long start) {
+        stalls.incrementAndGet();
+        stallTime.addAndGet(System.nanoTime() - start);
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    public long getInflightBytes() {
+        return inflight.get();
+    }
+
+    /**
+     * @return number of appends that had to wait for space
+     */
+    public long getStalls() {
+        return stalls.get();
+    }
+
+    /**
+     * @return total nanoseconds appends spent waiting for space
+     */
+    public long getStallTime() {
+        return stallTime.get();
+    }
+}
@@ -41,15 +41,21 @@ public class AtomicCommitList implements CommitList {
     private final AtomicLong syncRequest = new AtomicLong();
     private final CompletableFuture<Void> written = new CompletableFuture<>();
     private volatile CommitList next;
-    private final int      wait;
+    private final long     wait;
+    private final TimeUnit waitUnit;
     private volatile boolean        atHead = false;
 
     public AtomicCommitList(long startLsn, int maxSize,int waitTime) {
+        this(startLsn, maxSize, waitTime, TimeUnit.MILLISECONDS);
+    }
+
+    protected AtomicCommitList(long startLsn, int maxSize, long waitTime, TimeUnit unit) {
         baseLsn = startLsn;
         endLsn = new AtomicLong();
         regions = new AtomicReferenceArray<LogRecord>(maxSize);
         goLatch = new CountDownLatch(maxSize);
         wait = waitTime;
+        waitUnit = unit;
     }
     
     @Override
@@ -76,7 +82,7 @@ public class AtomicCommitList implements CommitList {
         
         if ( regions.compareAndSet((int) (record.getLsn() - baseLsn), null, record) ) {
             goLatch.countDown();
-            if ( (atHead && close && syncRequest.get() == record.getLsn()) || record instanceof SnapshotRequest) {
+            if ( (atHead && close && syncRequest.get() == record.getLsn() && closeOnSync()) || record instanceof SnapshotRequest) {
               checkForClosed();
             }
         } else {
@@ -119,7 +125,15 @@ public class AtomicCommitList implements CommitList {
     
     @Override
     public CommitList create(long nextLsn) {
-        return new AtomicCommitList( nextLsn, regions.length(), wait);
+        return new AtomicCommitList( nextLsn, regions.length(), wait, waitUnit);
+    }
+
+    /**
+     * @return true if a sync request arriving at the head of the list should 
+     * close the list immediately rather than waiting for more records to batch
+     */
+    protected boolean closeOnSync() {
+        return true;
     }
 
     @Override
@@ -205,7 +219,7 @@ public class AtomicCommitList implements CommitList {
             checkForClosed();
         }
         
-        while ( !goLatch.await(wait, TimeUnit.MILLISECONDS) ) {
+        while ( !goLatch.await(wait, waitUnit) ) {
             if ( goLatch.getCount() != regions.length() ) {
                 checkForClosed();
             }
@@ -30,7 +30,11 @@ public class CopyingPacker extends LogRegionPacker {
     private static final int FUTURE_SPACER = 64;
     
     public CopyingPacker(Signature sig, String forceLogRegionFormat, BufferSource copyInto) {
-        super(sig, forceLogRegionFormat);
+        this(sig, forceLogRegionFormat, copyInto, null);
+    }   
+    
+    public CopyingPacker(Signature sig, String forceLogRegionFormat, BufferSource copyInto, RegionCompression compression) {
+        super(sig, null, forceLogRegionFormat, compression);
         pool = copyInto;
     }   
 
@@ -19,8 +19,13 @@ import com.terracottatech.frs.Snapshot;
 import com.terracottatech.frs.io.IOStatistics;
 
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  *
@@ -42,6 +47,83 @@ public interface LogManager {
   
   Future<Void> appendAndSync(LogRecord record);
 
+  /**
+   * Append a record that must be synced to disk within the given time.  The
+   * log may hold the sync back until then so that one sync covers the records
+   * of many callers.
+   *
+   * @param record record to append
+   * @param within longest time the sync may be put off
+   * @param unit unit of the delay
+   * @return future completing once the record has been synced
+   */
+  default Future<Void> appendAndSyncWithin(LogRecord record, long within, TimeUnit unit) {
+    return appendAndSync(record);
+  }
+
+  /**
+   * Append a record, waiting at most the timeout for the log to admit it when
+   * the configured limit of in-flight bytes is reached.  The default has no 
+   * limit to wait on and appends straight away.
+   *
+   * @param record record to append
+   * @param sync true to sync the record to disk, as {@link #appendAndSync(LogRecord)}
+   * @param timeout longest time to wait for admission
+   * @param unit unit of the timeout
+   * @return future for the write
+   * @throws TimeoutException if the record was not admitted in time, the record
+   *         is not appended
+   * @throws InterruptedException if interrupted while waiting for admission
+   */
+  default Future<Void> tryAppend(LogRecord record, boolean sync, long timeout, TimeUnit unit) throws TimeoutException, InterruptedException {
+    return sync ? appendAndSync(record) : append(record);
+  }
+
+  /**
+   * Append a record without handing back a future to block on.  The stage 
+   * completes from the log's IO thread once the region holding the record is 
+   * written, and synced when sync is requested, so stages chained to it without 
+   * an executor run on that thread and must not block.  The default waits for 
+   * the write on the calling thread and hands back a completed stage.
+   *
+   * @param record record to append
+   * @param sync true to complete only once the record is durable
+   * @return stage completing when the record reaches disk
+   */
+  default CompletionStage<Void> appendAsync(LogRecord record, boolean sync) {
+    CompletableFuture<Void> done = new CompletableFuture<Void>();
+    try {
+      (sync ? appendAndSync(record) : append(record)).get();
+      done.complete(null);
+    } catch (ExecutionException e) {
+      done.completeExceptionally(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      done.completeExceptionally(e);
+    }
+    return done;
+  }
+
+  /**
+   * Append records as one batch.  The records get consecutive lsns in the order
+   * given and the batch costs the caller a single lsn reservation and a single
+   * future rather than one of each per record.  The default appends the records
+   * one at a time, which only keeps the lsns consecutive while nothing else is
+   * appending, a log shared between threads has to override it.
+   *
+   * @param records records to append, in lsn order
+   * @param sync true to sync the batch to disk, as {@link #appendAndSync(LogRecord)}
+   * @return future completing once every record in the batch has been written
+   */
+  default Future<Void> appendBatch(List<LogRecord> records, boolean sync) {
+    Future<Void> last = CompletableFuture.completedFuture(null);
+    for (int x = 0; x < records.size(); x++) {
+  //  the log writes in lsn order so the last record covers the whole batch
+      last = (sync && x == records.size() - 1) ? appendAndSync(records.get(x)) : append(records.get(x));
+    }
+    return last;
+  }
+
   Snapshot snapshot() throws ExecutionException, InterruptedException;
 
   Future<Snapshot> snapshotAsync();
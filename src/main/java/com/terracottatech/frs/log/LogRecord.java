@@ -29,4 +29,22 @@ public interface LogRecord extends Closeable {
   void updateLsn(long lsn);
    
   ByteBuffer[] getPayload();
+
+  /**
+   * @return bytes in the payload, without copying it as {@link #getPayload()} may
+   */
+  default long getPayloadSize() {
+    long size = 0;
+    for (ByteBuffer bb : getPayload()) {
+      size += bb.remaining();
+    }
+    return size;
+  }
+
+  /**
+   * Called once the record has been written to the log stream, after which
+   * the log no longer touches it.
+   */
+  default void written() {
+  }
 }
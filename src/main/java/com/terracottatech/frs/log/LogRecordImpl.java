@@ -29,12 +29,18 @@ public class LogRecordImpl implements LogRecord {
     
     private long lsn;
     private ByteBuffer[] payload;
+    private final long payloadSize;
     
     private final LSNEventListener listener;
 
     public LogRecordImpl(ByteBuffer[] buffers, LSNEventListener listener) {
         this.payload = buffers;
         this.listener = listener;
+        long size = 0;
+        for (ByteBuffer bb : buffers) {
+            size += bb.remaining();
+        }
+        this.payloadSize = size;
     }
     
     @Override
@@ -51,6 +57,11 @@ public class LogRecordImpl implements LogRecord {
         return bufs;
     }
 
+    @Override
+    public long getPayloadSize() {
+        return payloadSize;
+    }
+
     @Override
     public void updateLsn(long lsn) {
         this.lsn = lsn;
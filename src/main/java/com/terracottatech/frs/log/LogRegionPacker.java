@@ -21,6 +21,7 @@ import com.terracottatech.frs.io.BufferSource;
 import com.terracottatech.frs.io.Chunk;
 import com.terracottatech.frs.io.SimpleBufferSource;
 import com.terracottatech.frs.util.ByteBufferUtils;
+import com.terracottatech.frs.util.CRC32CChecksum;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -33,6 +34,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.zip.Adler32;
+import java.util.zip.Checksum;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,12 +50,16 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
     private static final Logger LOGGER = LoggerFactory.getLogger(LogManager.class);    
     
     static final int LOG_RECORD_HEADER_SIZE = ByteBufferUtils.SHORT_SIZE + (2 * ByteBufferUtils.LONG_SIZE);
+    static final int CHECKED_RECORD_HEADER_SIZE = LOG_RECORD_HEADER_SIZE + ByteBufferUtils.INT_SIZE;
     static final int LOG_REGION_HEADER_SIZE = (2 * ByteBufferUtils.SHORT_SIZE) + (2 * ByteBufferUtils.LONG_SIZE);
 
     /* LogRegionPacker.formRecordHeader
     2 bytes - LR_FORMAT
     8 bytes - lsn
     8 bytes - payload length
+    
+    LR_CHECKED_FORMAT adds
+    4 bytes - CRC32C of lsn, payload length and payload
     */
     private static final long RECORD_HEADER_OVERHEAD = 18;
 
@@ -67,13 +73,18 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
     //we only use the first two US-ASCII bytes of these strings (limited space in the header)
     public static final String OLD_REGION_FORMAT_STRING = "NF";
     public static final String NEW_REGION_FORMAT_STRING = "HT";
+    //hinted region with the record area block compressed
+    public static final String COMPRESSED_REGION_FORMAT_STRING = "HZ";
     //the old region format bytes sequence (notice the default charset use!)
     static final byte[] OLD_REGION_FORMAT = OLD_REGION_FORMAT_STRING.getBytes();
     static final byte[] NEW_REGION_FORMAT = NEW_REGION_FORMAT_STRING.getBytes(US_ASCII);
+    static final byte[] COMPRESSED_REGION_FORMAT = COMPRESSED_REGION_FORMAT_STRING.getBytes(US_ASCII);
     static final short LR_FORMAT = 02;
+    static final short LR_CHECKED_FORMAT = 03;
     private static final String BAD_CHECKSUM = "bad checksum";
     private final Signature cType;
     private final String forcedLogRegionFormat;
+    private final RegionCompression compression;
 
     private static final ThreadLocal<byte[]> buffer = new ThreadLocal<byte[]>();
      
@@ -82,12 +93,21 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
     }   
     
     public LogRegionPacker(Signature sig, BufferSource src, String forcedLogRegionFormat) {
+        this(sig, src, forcedLogRegionFormat, null);
+    }   
+    
+    /**
+     * @param compression compresses the record area of each region, null 
+     *        writes uncompressed regions
+     */
+    public LogRegionPacker(Signature sig, BufferSource src, String forcedLogRegionFormat, RegionCompression compression) {
         cType = sig;
         
-        assert(cType == Signature.NONE || cType == Signature.ADLER32);
+        assert(cType == Signature.NONE || cType == Signature.ADLER32 || cType == Signature.CRC32C);
         
         this.source = ( src == null ) ? new SimpleBufferSource() : src;
         this.forcedLogRegionFormat = forcedLogRegionFormat;
+        this.compression = compression;
     }   
     
     @Override
@@ -128,8 +148,16 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
         }
     }
     
+  /**
+   * @param type ADLER32 verifies the region checksum and the checksum of the 
+   *        returned record, CRC32C only verifies the returned record, NONE 
+   *        verifies nothing.  Records are only verified if they were written 
+   *        with a checksum.
+   */
     public static LogRecord extract(Signature type, String forcedLogRegionFormat, Chunk data, long match) throws FormatException, IOException {
-        long[] spreads = readRegionHeader(forcedLogRegionFormat, data,type == Signature.ADLER32);
+        Region region = readRegionHeader(forcedLogRegionFormat, data,type == Signature.ADLER32);
+        long[] spreads = region.spreads;
+        data = region.records;
         long skip = 0;
         for ( long j : spreads ) {
           long mark = data.getLong(data.position() + skip + j + ByteBufferUtils.SHORT_SIZE);
@@ -147,29 +175,29 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
           if ( !data.hasRemaining() ) {
             return null;
           }
-          target = readRecord(data,match);
+          target = readRecord(data,match,type != Signature.NONE);
         }
         return target;
     }
     
     public static List<LogRecord> unpack(Signature type, String forcedLogRegionFormat, Chunk data) throws FormatException {
-        readRegionHeader(forcedLogRegionFormat, data,type == Signature.ADLER32);
+        data = readRegionHeader(forcedLogRegionFormat, data,type == Signature.ADLER32).records;
         
         LinkedList<LogRecord> queue = new LinkedList<LogRecord>();
                 
         while ( data.hasRemaining() ) {
-            queue.add(readRecord(data,-1));
+            queue.add(readRecord(data,-1,type != Signature.NONE));
         }
         return queue;
     }
     
      public static List<LogRecord> unpackInReverse(Signature type, String forcedLogRegionFormat, Chunk data) throws FormatException {
-        readRegionHeader(forcedLogRegionFormat, data,type == Signature.ADLER32);
+        data = readRegionHeader(forcedLogRegionFormat, data,type == Signature.ADLER32).records;
         
         LinkedList<LogRecord> queue = new LinkedList<LogRecord>();
                 
         while ( data.hasRemaining() ) {
-            queue.push(readRecord(data,-1));
+            queue.push(readRecord(data,-1,type != Signature.NONE));
         }
         return queue;
     }   
@@ -177,12 +205,12 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
 
     @Override
     public List<LogRecord> unpack(Chunk data) throws FormatException {
-        readRegionHeader(forcedLogRegionFormat, data,false);
+        data = readRegionHeader(forcedLogRegionFormat, data,false).records;
         
         ArrayList<LogRecord> queue = new ArrayList<LogRecord>();
                 
         while ( data.hasRemaining() ) {
-            queue.add(readRecord(data,-1));
+            queue.add(readRecord(data,-1,false));
         }
         return queue;
     }
@@ -200,6 +228,8 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
         buffers.add(hints);
         
         ArrayList<Long> spreads = new ArrayList<Long>(HINTS_MAX_SIZE+1);
+        final boolean checked = recordChecksums();
+        final int recordHeaderSize = checked ? CHECKED_RECORD_HEADER_SIZE : LOG_RECORD_HEADER_SIZE;
         long pos = 0;
         for (LogRecord record : records) {
             if ( pos > 0 && count % hintSpread == 0 ) {
@@ -222,7 +252,7 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
                 hintSpread <<= 1;
               }
             }
-            ByteBuffer rhead = source.getBuffer(LOG_RECORD_HEADER_SIZE);
+            ByteBuffer rhead = source.getBuffer(recordHeaderSize);
             
             buffers.add(rhead);
 
@@ -233,9 +263,12 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
                 buffers.add(bb);
             }
             pos += len;
-            pos += LOG_RECORD_HEADER_SIZE;
+            pos += recordHeaderSize;
             count++;
             formRecordHeader(len,record.getLsn(),rhead);
+            if ( checked ) {
+                rhead.putInt((int)recordChecksum(record.getLsn(), len, Arrays.asList(payload)));
+            }
             rhead.flip();
         }
         
@@ -246,7 +279,18 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
         
         hints.flip();
 
-        formRegionHeader(doChecksum() ? checksum(buffers.subList(2, buffers.size())) : 0,regionHeader);
+        byte[] format = NEW_REGION_FORMAT;
+        if ( compression != null ) {
+            List<ByteBuffer> recordArea = buffers.subList(2, buffers.size());
+            ByteBuffer compressed = compression.compress(recordArea, source);
+            if ( compressed != null ) {
+                recordArea.clear();
+                buffers.add(compressed);
+                format = COMPRESSED_REGION_FORMAT;
+            }
+        }
+
+        formRegionHeader(doChecksum() ? checksum(buffers.subList(2, buffers.size())) : 0,regionHeader,format);
         tuningMax = tuningMax + (int)Math.round((count - tuningMax) * .1);
         
         return new BufferListWrapper(buffers, source);
@@ -256,7 +300,11 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
         return cType == Signature.ADLER32;
     }
     
-    private static long[] readRegionHeader(String forcedLogRegionFormat, Chunk data, boolean checksum) throws FormatException {
+    protected boolean recordChecksums() {
+        return cType == Signature.CRC32C;
+    }
+    
+    private static Region readRegionHeader(String forcedLogRegionFormat, Chunk data, boolean checksum) throws FormatException {
         Chunk header = data.getChunk(ByteBufferUtils.LONG_SIZE * 2 + ByteBufferUtils.SHORT_SIZE + 2);
         try {
             short region = header.getShort();
@@ -281,7 +329,8 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
             }
 
             long[] spreads;
-            if (Arrays.equals(NEW_REGION_FORMAT, regionFormat)) {
+            boolean compressed = Arrays.equals(COMPRESSED_REGION_FORMAT, regionFormat);
+            if (compressed || Arrays.equals(NEW_REGION_FORMAT, regionFormat)) {
                 spreads = readSpreads(data);
             } else {
                 spreads = new long[0];
@@ -296,7 +345,7 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
                 }
             }    
             
-            return spreads;
+            return new Region(spreads, compressed ? RegionCompression.decompress(data) : data);
         } catch ( IOException ioe ) {
           throw new RuntimeException(ioe);
         } finally {
@@ -310,6 +359,19 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
         }
     }
     
+  /**
+   * hints are offsets into the uncompressed record area
+   */
+    private static class Region {
+        private final long[] spreads;
+        private final Chunk records;
+
+        Region(long[] spreads, Chunk records) {
+            this.spreads = spreads;
+            this.records = records;
+        }
+    }
+    
     private static long[] readSpreads(Chunk data) throws IOException {
       short len = data.getShort();
       long[] list = new long[len];
@@ -323,28 +385,33 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
       return list;
     }
     
-    protected int formRegionHeader(long checksum, ByteBuffer header) {
+    protected int formRegionHeader(long checksum, ByteBuffer header, byte[] format) {
         header.clear();
         header.putShort(REGION_VERSION);
         header.putLong(checksum);
         header.putLong(checksum);
-        header.put(NEW_REGION_FORMAT);
+        header.put(format);
         header.flip();
 
         return header.remaining();
     }
     
     protected int formRecordHeader(long length, long lsn, ByteBuffer header) {
-        header.putShort(LR_FORMAT);
+        header.putShort(recordChecksums() ? LR_CHECKED_FORMAT : LR_FORMAT);
         header.putLong(lsn);
         header.putLong(length);
         return header.remaining();
     }
     
     protected static long checksum(Chunk bufs) {
+        Adler32 checksum = new Adler32();
+        update(checksum, bufs);
+        return checksum.getValue();
+    }
+    
+    private static void update(Checksum checksum, Chunk bufs) {
         long pos = bufs.position();
         long lim = bufs.length();
-        Adler32 checksum = new Adler32();
         byte[] temp = new byte[8192];
         while (bufs.hasRemaining()) {
             int got = bufs.get(temp);
@@ -353,11 +420,15 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
         bufs.clear();
         bufs.skip(pos);
         bufs.limit(lim);
-        return checksum.getValue();
     }
     
     protected static long checksum(Iterable<ByteBuffer> bufs) {
         Adler32 checksum = new Adler32();
+        update(checksum, bufs);
+        return checksum.getValue();
+    }
+    
+    private static void update(Checksum checksum, Iterable<ByteBuffer> bufs) {
         for (ByteBuffer buf : bufs) {
             if (buf.hasArray()) {
                 checksum.update(buf.array(),buf.arrayOffset() + buf.position(),(buf.limit()-buf.position()));
@@ -376,8 +447,34 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
                 buf.reset();
             }
         }
-
-        return checksum.getValue();
+    }
+    
+    static long recordChecksum(long lsn, long length, Iterable<ByteBuffer> payload) {
+        Checksum crc = recordChecksumHeader(lsn, length);
+        update(crc, payload);
+        return crc.getValue();
+    }
+    
+    private static long recordChecksum(long lsn, long length, Chunk payload) {
+        Checksum crc = recordChecksumHeader(lsn, length);
+        ByteBuffer[] bufs = payload.getBuffers();
+        if ( bufs == null ) {
+            update(crc, payload);
+        } else {
+            update(crc, Arrays.asList(bufs));
+        }
+        return crc.getValue();
+    }
+    
+    private static Checksum recordChecksumHeader(long lsn, long length) {
+        Checksum crc = CRC32CChecksum.newInstance();
+        for ( int shift = 56; shift >= 0; shift -= 8 ) {
+            crc.update((int)(lsn >>> shift));
+        }
+        for ( int shift = 56; shift >= 0; shift -= 8 ) {
+            crc.update((int)(length >>> shift));
+        }
+        return crc;
     }
     
     protected static byte[] md5(Iterable<ByteBuffer> bufs) {
@@ -400,26 +497,26 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
         }
     }  
     
-    private static LogRecord readRecord(Chunk buffer,long match) throws FormatException {
+    private static LogRecord readRecord(Chunk buffer,long match,boolean verify) throws FormatException {
         Chunk header = buffer.getChunk(ByteBufferUtils.LONG_SIZE * 2 + ByteBufferUtils.SHORT_SIZE);
         long lsn = 0;
         long len = 0;
+        long crc = -1;
+        Chunk payload;
         try {
             short format = header.getShort();
             lsn = header.getLong();
             len = header.getLong();
+            if ( format == LR_CHECKED_FORMAT ) {
+                crc = buffer.getInt() & 0xffffffffL;
+            }
 
             if ( match < 0 || match == lsn ) {
-                if ( format != LR_FORMAT ) {
+                if ( format != LR_FORMAT && format != LR_CHECKED_FORMAT ) {
                     throw new FormatException("log record has an unrecognized version code");
                 }
 
-                Chunk payload = buffer.getChunk(len);
-                LogRecord record = ( payload instanceof Closeable ) ? 
-                        new DisposableLogRecordImpl(payload) : 
-                        new LogRecordImpl(payload.getBuffers(), null);
-                record.updateLsn(lsn);
-                return record;
+                payload = buffer.getChunk(len);
             } else {
                 if ( lsn > match ) {
                   throw new AssertionError();
@@ -438,6 +535,19 @@ public class LogRegionPacker implements LogRegionFactory<LogRecord> {
                 }
             }
         }
+        
+        if ( verify && crc >= 0 ) {
+            long value = recordChecksum(lsn, len, payload);
+            if ( value != crc ) {
+                throw new FormatException("CRC32C checksum of record " + lsn + " is not correct",crc,value,len);
+            }
+        }
+
+        LogRecord record = ( payload instanceof Closeable ) ? 
+                new DisposableLogRecordImpl(payload) : 
+                new LogRecordImpl(payload.getBuffers(), null);
+        record.updateLsn(lsn);
+        return record;
     }
 
     public static long getMinimumRecordOverhead() {
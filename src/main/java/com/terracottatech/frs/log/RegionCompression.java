@@ -0,0 +1,131 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.log;
+
+import com.terracottatech.frs.io.BufferSource;
+import com.terracottatech.frs.io.Chunk;
+import com.terracottatech.frs.io.WrappingChunk;
+import com.terracottatech.frs.util.ByteBufferUtils;
+import com.terracottatech.frs.util.LZBlockCodec;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Block compression of the record area of a log region.  The compressed area
+ * is the uncompressed length as an int followed by a single {@link LZBlockCodec}
+ * block.  Regions that do not shrink are left uncompressed.
+ *
+ * One instance is shared by all the packers of a log so the byte counts
+ * cover every region written.
+ */
+public class RegionCompression {
+
+    private static final ThreadLocal<int[]> table = new ThreadLocal<int[]>();
+    private static final ThreadLocal<byte[]> raw = new ThreadLocal<byte[]>();
+    private static final ThreadLocal<byte[]> packed = new ThreadLocal<byte[]>();
+
+    private final AtomicLong packedBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    /**
+     * @return the compressed area or null if compression does not save space
+     */
+    ByteBuffer compress(List<ByteBuffer> records, BufferSource source) {
+        int length = 0;
+        for ( ByteBuffer bb : records ) {
+            length += bb.remaining();
+        }
+
+        byte[] input = scratch(raw, length);
+        int pos = 0;
+        for ( ByteBuffer bb : records ) {
+            int count = bb.remaining();
+            bb.mark();
+            bb.get(input, pos, count);
+            bb.reset();
+            pos += count;
+        }
+
+        int[] hashes = table.get();
+        if ( hashes == null ) {
+            hashes = new int[LZBlockCodec.HASH_TABLE_SIZE];
+            table.set(hashes);
+        }
+        byte[] output = scratch(packed, LZBlockCodec.maxCompressedLength(length));
+        int size = LZBlockCodec.compress(input, 0, length, output, 0, hashes);
+
+        packedBytes.addAndGet(length);
+        if ( size + ByteBufferUtils.INT_SIZE >= length ) {
+            storedBytes.addAndGet(length);
+            return null;
+        }
+        storedBytes.addAndGet(size + ByteBufferUtils.INT_SIZE);
+
+        ByteBuffer area = source.getBuffer(size + ByteBufferUtils.INT_SIZE);
+        area.putInt(length);
+        area.put(output, 0, size);
+        area.flip();
+        return area;
+    }
+
+    static Chunk decompress(Chunk data) throws FormatException {
+        int length = data.getInt();
+        if ( length < 0 ) {
+            throw new FormatException("compressed log region has a negative length");
+        }
+        byte[] block = new byte[(int)data.remaining()];
+        data.get(block);
+        byte[] records = new byte[length];
+        try {
+            LZBlockCodec.decompress(block, 0, block.length, records, 0, length);
+        } catch ( IllegalArgumentException bad ) {
+            throw new FormatException("compressed log region is corrupt: " + bad.getMessage());
+        }
+        return new WrappingChunk(ByteBuffer.wrap(records));
+    }
+
+    private static byte[] scratch(ThreadLocal<byte[]> holder, int size) {
+        byte[] b = holder.get();
+        if ( b == null || b.length < size ) {
+            b = new byte[size];
+            holder.set(b);
+        }
+        return b;
+    }
+
+    /**
+     * @return bytes of record area handed to the packer
+     */
+    public long getPackedBytes() {
+        return packedBytes.get();
+    }
+
+    /**
+     * @return bytes of record area actually written to the log
+     */
+    public long getStoredBytes() {
+        return storedBytes.get();
+    }
+
+    /**
+     * @return uncompressed over stored bytes, 1.0 until a region is packed
+     */
+    public double getRatio() {
+        long stored = storedBytes.get();
+        return ( stored == 0 ) ? 1.0 : (double)packedBytes.get() / stored;
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.log;
+
+import com.terracottatech.frs.SnapshotRequest;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * CommitList backed by a preallocated ring of record slots shared by every
+ * list in the chain.  A record lives in the slot picked by its lsn, so lists
+ * only carry their lsn range and closing a list never moves records.
+ *
+ * Appending claims the lsn in the list with a single CAS on the list state
+ * and publishes the record into the ring.  The write thread waits on the
+ * contiguous run of published slots rather than a per-list latch.  Slots are
+ * released for reuse when the list is written.
+ */
+public class RingCommitList implements CommitList {
+
+    private final Ring ring;
+    private final long baseLsn;
+    private final int size;
+    private final long wait;
+  /**
+   * open: highest lsn claimed in this list (baseLsn - 1 when empty)
+   * closed: the bitwise complement of the end lsn
+   */
+    private final AtomicLong state;
+    private final AtomicLong syncRequest = new AtomicLong();
+    private final CompletableFuture<Void> written = new CompletableFuture<>();
+    private final Object guard = new Object();
+    private volatile CommitList next;
+    private volatile boolean atHead = false;
+
+    public RingCommitList(long startLsn, int maxSize, int waitTime) {
+        this(startLsn, maxSize, TimeUnit.MILLISECONDS.toNanos(waitTime), new Ring(maxSize * 4, startLsn));
+    }
+
+    private RingCommitList(long startLsn, int maxSize, long waitNanos, Ring ring) {
+        if ( maxSize > ring.capacity() ) {
+            throw new IllegalArgumentException("commit list larger than the ring");
+        }
+        this.baseLsn = startLsn;
+        this.size = maxSize;
+        this.wait = waitNanos;
+        this.ring = ring;
+        this.state = new AtomicLong(startLsn - 1);
+    }
+
+    @Override
+    public boolean append(LogRecord record, boolean sync) {
+        if ( record == null ) return true;
+
+        long lsn = record.getLsn();
+        assert (lsn >= baseLsn);
+
+        if ( lsn >= baseLsn + size ) {
+            return false;
+        }
+
+        long s = state.get();
+        while ( s >= 0 && lsn > s && !state.compareAndSet(s, lsn) ) {
+            s = state.get();
+        }
+        if ( s < 0 && lsn > ~s ) {
+            return false;
+        }
+
+        boolean close = sync && setSyncRequest(lsn);
+
+        if ( !ring.publish(lsn, record) ) {
+            return false;
+        }
+
+        if ( (atHead && close && syncRequest.get() == lsn) || record instanceof SnapshotRequest ) {
+            close(lsn);
+        } else if ( ring.waitingFor == lsn ) {
+            ring.wake();
+        }
+        return true;
+    }
+
+    private boolean setSyncRequest(long newRequest) {
+        long csync = syncRequest.get();
+        while ( csync < newRequest ) {
+            if ( !syncRequest.compareAndSet(csync, newRequest) ) {
+                csync = syncRequest.get();
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean close(long end) {
+        if ( end >= baseLsn + size ) {
+            return false;
+        }
+        long s = state.get();
+        while ( s >= 0 ) {
+   //  never close below an lsn that has already been claimed
+            if ( state.compareAndSet(s, ~Math.max(s, end)) ) {
+                ring.wake();
+                return true;
+            }
+            s = state.get();
+        }
+        return end <= ~s;
+    }
+
+    @Override
+    public void waitForContiguous() throws InterruptedException {
+        atHead = true;
+        ring.consumer = Thread.currentThread();
+
+        long s = state.get();
+        if ( s >= baseLsn ) {
+            close(s);
+        }
+
+        long cursor = baseLsn;
+        long deadline = System.nanoTime() + wait;
+        try {
+            while ( true ) {
+                s = state.get();
+                long limit = ( s < 0 ) ? ~s : baseLsn + size - 1;
+                while ( cursor <= limit && ring.isPublished(cursor) ) {
+                    cursor++;
+                }
+                if ( cursor > limit ) {
+                    if ( s < 0 ) {
+                        break;
+                    }
+   //  filled all the slots with no close
+                    close(limit);
+                    continue;
+                }
+                if ( Thread.interrupted() ) {
+                    throw new InterruptedException();
+                }
+                ring.waitingFor = cursor;
+                if ( ring.isPublished(cursor) || state.get() != s ) {
+                    continue;
+                }
+                long now = System.nanoTime();
+                if ( now - deadline >= 0 ) {
+                    if ( s >= baseLsn ) {
+                        close(s);
+                    }
+                    deadline = now + wait;
+                } else {
+                    LockSupport.parkNanos(this, deadline - now);
+                }
+            }
+        } finally {
+            ring.waitingFor = -1;
+        }
+    }
+
+    @Override
+    public CommitList next() {
+        if ( next == null ) {
+            long s = state.get();
+            while ( s >= 0 && !state.compareAndSet(s, ~(baseLsn + size - 1)) ) {
+                s = state.get();
+            }
+            synchronized (guard) {
+                if ( next == null ) next = new RingCommitList(getEndLsn() + 1, size, wait, ring);
+            }
+        }
+        return next;
+    }
+
+  /**
+   * starts a new chain at an arbitrary lsn, the chain gets its own ring
+   */
+    @Override
+    public CommitList create(long nextLsn) {
+        return new RingCommitList(nextLsn, size, wait, new Ring(ring.capacity(), nextLsn));
+    }
+
+    @Override
+    public boolean isSyncRequested() {
+        return syncRequest.get() > 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return baseLsn > getEndLsn();
+    }
+
+    @Override
+    public long getEndLsn() {
+        long s = state.get();
+        return ( s < 0 ) ? ~s : 0;
+    }
+
+    @Override
+    public long getBaseLsn() {
+        return baseLsn;
+    }
+
+    @Override
+    public void written() {
+        release();
+        written.complete(null);
+    }
+
+    @Override
+    public void exceptionThrown(Exception exp) {
+        CommitList chain;
+        release();
+        written.completeExceptionally(exp);
+        synchronized (guard) {
+            chain = next;
+        }
+        if ( chain != null ) {
+            chain.exceptionThrown(exp);
+        }
+    }
+
+    private void release() {
+        long s = state.get();
+        long end = ( s < 0 ) ? ~s : s;
+        for ( long lsn = baseLsn; lsn <= end; lsn++ ) {
+            ring.release(lsn);
+        }
+    }
+
+    @Override
+    public Future<Void> getWriteFuture() {
+        return written;
+    }
+
+    @Override
+    public Iterator<LogRecord> iterator() {
+        assert (getEndLsn() > 0);
+
+        final long end = getEndLsn();
+
+        return new Iterator<LogRecord>() {
+            long current = baseLsn;
+
+            @Override
+            public boolean hasNext() {
+                return current <= end;
+            }
+
+            @Override
+            public LogRecord next() {
+                if ( current > end ) {
+                    throw new NoSuchElementException();
+                }
+                return ring.get(current++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+  /**
+   * Every slot carries the only lsn allowed to fill it next.  A slot is handed
+   * on to the lsn one lap further around the ring when its record is released,
+   * so appenders running a full lap ahead wait for the write instead of
+   * taking a slot an older record still needs.
+   */
+    private static class Ring {
+        private final AtomicReferenceArray<LogRecord> slots;
+        private final AtomicLongArray sequence;
+        private final int mask;
+        volatile Thread consumer;
+        volatile long waitingFor = -1;
+
+        Ring(int minimum, long origin) {
+            int capacity = Integer.highestOneBit(Math.max(minimum, 2) - 1) << 1;
+            slots = new AtomicReferenceArray<LogRecord>(capacity);
+            sequence = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+            for (int x=0;x<capacity;x++) {
+                sequence.set(x, origin + ((x - origin) & mask));
+            }
+        }
+
+        int capacity() {
+            return slots.length();
+        }
+
+        boolean publish(long lsn, LogRecord record) {
+            int index = (int)(lsn & mask);
+            long expected = sequence.get(index);
+            while ( expected < lsn ) {
+   //  the ring wrapped, wait for the older list to be written
+                LockSupport.parkNanos(this, 1000);
+                expected = sequence.get(index);
+            }
+   //  a later sequence or a full slot means this lsn was already appended
+            return expected == lsn && slots.compareAndSet(index, null, record);
+        }
+
+        boolean isPublished(long lsn) {
+            LogRecord held = slots.get((int)(lsn & mask));
+            return held != null && held.getLsn() == lsn;
+        }
+
+        LogRecord get(long lsn) {
+            return slots.get((int)(lsn & mask));
+        }
+
+  /**
+   * The slot sequence still reads lsn until the slot is handed on, so release
+   * goes by that rather than the held record, which may already have been
+   * recycled and stamped with a later lsn.
+   */
+        void release(long lsn) {
+            int index = (int)(lsn & mask);
+            if ( sequence.get(index) == lsn && slots.get(index) != null ) {
+                slots.set(index, null);
+                sequence.set(index, lsn + slots.length());
+            }
+        }
+
+        void wake() {
+            Thread waiter = consumer;
+            if ( waiter != null ) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+}
@@ -20,5 +20,5 @@ package com.terracottatech.frs.log;
  * @author mscott
  */
 public enum Signature {
-    NONE,CRC32,ADLER32,MD5,SHA1
+    NONE,CRC32,ADLER32,MD5,SHA1,CRC32C
 }
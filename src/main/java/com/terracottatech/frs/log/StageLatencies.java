@@ -0,0 +1,95 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.log;
+
+import com.terracottatech.frs.util.Log2LatencyBins;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Live latency histograms for each step a record takes from the appending
+ * thread to disk.  The bins start at about a microsecond so the cheap steps
+ * do not all land in the first bin.
+ */
+class StageLatencies {
+    static final String APPEND = "append";
+    static final String CONTIGUOUS = "contiguous";
+    static final String PACKING = "packing";
+    static final String QUEUE = "queue";
+    static final String WRITE = "write";
+    static final String FSYNC = "fsync";
+
+    private static final int BIN_COUNT = 24;
+    private static final int SMALLEST_RESOLUTION = 10;
+
+    /**
+     * lsn reservation and placing the record in a commit list, admission
+     * stalls are counted on their own
+     */
+    final Log2LatencyBins append = bins(APPEND);
+    /**
+     * write queue waiting for a commit list to fill or close
+     */
+    final Log2LatencyBins contiguous = bins(CONTIGUOUS);
+    /**
+     * packing the records of a commit list into a region
+     */
+    final Log2LatencyBins packing = bins(PACKING);
+    /**
+     * packed region waiting on the queue for the IO thread
+     */
+    final Log2LatencyBins queue = bins(QUEUE);
+    /**
+     * handing the region to the io layer
+     */
+    final Log2LatencyBins write = bins(WRITE);
+    /**
+     * syncs the log asked for, from the request to the data being durable
+     */
+    final Log2LatencyBins fsync = bins(FSYNC);
+
+    private final Map<String, Log2LatencyBins> stages;
+
+    StageLatencies() {
+        Map<String, Log2LatencyBins> map = new LinkedHashMap<String, Log2LatencyBins>();
+        for ( Log2LatencyBins bin : new Log2LatencyBins[] {append, contiguous, packing, queue, write, fsync} ) {
+            map.put(bin.getName(), bin);
+        }
+        stages = Collections.unmodifiableMap(map);
+    }
+
+    private static Log2LatencyBins bins(String stage) {
+        return new Log2LatencyBins(stage, BIN_COUNT, SMALLEST_RESOLUTION);
+    }
+
+    /**
+     * @return histograms by stage name in pipeline order
+     */
+    Map<String, Log2LatencyBins> asMap() {
+        return stages;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for ( Log2LatencyBins bin : stages.values() ) {
+            sb.append("\n").append(bin.toString(Log2LatencyBins.ToString.RANGES_NO_ZEROS));
+        }
+        return sb.toString();
+    }
+}
@@ -28,16 +28,26 @@ import com.terracottatech.frs.io.IOManager;
 import com.terracottatech.frs.io.IOStatistics;
 import com.terracottatech.frs.io.MaskingBufferSource;
 import com.terracottatech.frs.io.SplittingBufferSource;
+import com.terracottatech.frs.util.Log2LatencyBins;
 import java.io.Closeable;
 
 import java.io.IOException;
 import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.Formatter;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -63,18 +73,49 @@ public class StagingLogManager implements LogManager {
     private final AtomicLong currentLsn = new AtomicLong(100);
     private final AtomicLong lowestLsn = new AtomicLong(0);
     private final AtomicLong highestOnDisk = new AtomicLong(Constants.GENESIS_LSN);
+    private final AtomicLong highestSynced = new AtomicLong(Constants.GENESIS_LSN);
+    /**
+     * highest lsn appended with a sync that may not be put off
+     */
+    private final AtomicLong strictSync = new AtomicLong(Constants.GENESIS_LSN);
     private Signature  checksumStyle;
     private final IOManager io;
     private volatile LogMachineState   state = LogMachineState.IDLE;
     
     private int MAX_QUEUE_SIZE;
     private int RECOVERY_QUEUE_SIZE = 64;
+    private int PACKING_THREADS = 0;
     private String forceLogRegionFormat;
+    private RegionCompression compression;
+    private boolean zeroCopy = false;
+    private AdmissionControl admission;
 
     private ChunkExchange                               exchanger;
     private final BlockingQueue<WritingPackage>         queue = new ArrayBlockingQueue<WritingPackage>(8);
     
     private BufferSource    buffers;
+    /**
+     * asynchronous appends by lsn, completed by the IO thread as regions reach disk
+     */
+    private final ConcurrentSkipListMap<Long, CompletableFuture<Void>> waiters = 
+            new ConcurrentSkipListMap<Long, CompletableFuture<Void>>();
+    /**
+     * appends that must be synced by a deadline, by lsn, completed by the IO 
+     * thread once a sync covers them
+     */
+    private final ConcurrentSkipListMap<Long, SyncWaiter> syncWaiters = 
+            new ConcurrentSkipListMap<Long, SyncWaiter>();
+    /**
+     * the same waiters by deadline, so the IO thread finds the next one due 
+     * without looking through them all
+     */
+    private final ConcurrentSkipListSet<SyncWaiter> syncDeadlines = 
+            new ConcurrentSkipListSet<SyncWaiter>(SyncWaiter.BY_DEADLINE);
+    /**
+     * wakes the IO thread to look at the deferred syncs again
+     */
+    private final WritingPackage syncCheck = new WritingPackage(emptyCommitList(), null);
+    private final StageLatencies latencies = new StageLatencies();
 
     public StagingLogManager(IOManager io) {
         this(Signature.ADLER32,new AtomicCommitList( Constants.FIRST_LSN, 1024, 200),io, null);
@@ -87,25 +128,54 @@ public class StagingLogManager implements LogManager {
         this.forceLogRegionFormat = config.getString(FrsProperty.FORCE_LOG_REGION_FORMAT);
         this.MAX_QUEUE_SIZE = config.getInt(FrsProperty.IO_COMMIT_QUEUE_SIZE);
         this.RECOVERY_QUEUE_SIZE = config.getInt(FrsProperty.IO_RECOVERY_QUEUE_SIZE);
+        this.PACKING_THREADS = config.getInt(FrsProperty.IO_PACKING_THREADS);
+        if ( config.getBoolean(FrsProperty.IO_COMPRESS_REGIONS) ) {
+            this.compression = new RegionCompression();
+        }
+        this.zeroCopy = config.getBoolean(FrsProperty.IO_ZERO_COPY);
+        setMaxInflightBytes(config.getLong(FrsProperty.IO_MAX_INFLIGHT_BYTES));
         String commitList = config.getString(FrsProperty.IO_COMMITLIST);
         if ( commitList.equals("ATOMIC") ) {
             this.currentRegion = new AtomicCommitList(Constants.FIRST_LSN, MAX_QUEUE_SIZE, config.getInt(FrsProperty.IO_WAIT));
         } else if ( commitList.equals("STACKING") ) {
             this.currentRegion = new StackingCommitList(Constants.FIRST_LSN, MAX_QUEUE_SIZE, config.getInt(FrsProperty.IO_WAIT));
+        } else if ( commitList.equals("RING") ) {
+            this.currentRegion = new RingCommitList(Constants.FIRST_LSN, MAX_QUEUE_SIZE, config.getInt(FrsProperty.IO_WAIT));
+        } else if ( commitList.equals("ADAPTIVE") ) {
+            this.currentRegion = new AdaptiveCommitList(Constants.FIRST_LSN, MAX_QUEUE_SIZE, config.getInt(FrsProperty.IO_WAIT), 
+                    config.getLong(FrsProperty.IO_ADAPTIVE_LATENCY_GOAL), TimeUnit.MICROSECONDS);
         }
 
     }
 
     public StagingLogManager(Signature check, CommitList list, IOManager io, BufferSource src) {
+        this(check, list, io, src, 0);
+    }
+
+    /**
+     * @param packingThreads number of threads used to pack regions concurrently.  
+     *        Packed regions are still handed to the IO thread in lsn order.  Zero 
+     *        packs every region on the write queue thread.
+     */
+    public StagingLogManager(Signature check, CommitList list, IOManager io, BufferSource src, int packingThreads) {
         this.currentRegion = list;
         this.io = io;
         currentLsn.set(list.getBaseLsn());
         this.checksumStyle = check;
         this.forceLogRegionFormat = (String) FrsProperty.FORCE_LOG_REGION_FORMAT.defaultValue();
         this.MAX_QUEUE_SIZE = 1024;
+        this.PACKING_THREADS = packingThreads;
         this.buffers =  ( src != null ) ? src : new MaskingBufferSource(new SplittingBufferSource(512,16 * 1024 * 1024));
     }
 
+    /**
+     * @param bytes record bytes appended but not yet written before appenders
+     *        wait, zero or less for no limit.  Set before startup.
+     */
+    public void setMaxInflightBytes(long bytes) {
+        this.admission = ( bytes > 0 ) ? new AdmissionControl(bytes) : null;
+    }
+
     @Override
     public long currentLsn() { 
       return currentLsn.get();
@@ -158,6 +228,7 @@ public class StagingLogManager implements LogManager {
         
         currentLsn.set(lastLsn + 1);
         highestOnDisk.set(lastLsn);
+        highestSynced.set(lastLsn);
         if ( lowest < Constants.FIRST_LSN ) lowest = Constants.FIRST_LSN;
         lowestLsn.set(lowest);
         
@@ -182,8 +253,12 @@ public class StagingLogManager implements LogManager {
       long processing;
       
       volatile boolean        stopped = false;
-      private final LogRegionFactory  regionFactory = new CopyingPacker(checksumStyle, forceLogRegionFormat, buffers);
-      private final ExecutorService   asyncPacker = Executors.newCachedThreadPool(new ThreadFactory() {
+  //  without copying, record payloads go to the io layer as handed in.  The commit list 
+  //  holds the records, and with them the caller's buffers, until the region is written
+      private final LogRegionFactory  regionFactory = ( zeroCopy ) ? 
+              new LogRegionPacker(checksumStyle, null, forceLogRegionFormat, compression) :
+              new CopyingPacker(checksumStyle, forceLogRegionFormat, buffers, compression);
+      private final ExecutorService   asyncPacker = ( PACKING_THREADS > 0 ) ? Executors.newFixedThreadPool(PACKING_THREADS, new ThreadFactory() {
 
             int count = 1;
           
@@ -194,7 +269,7 @@ public class StagingLogManager implements LogManager {
                 t.setDaemon(true);
                 return t;
             }
-        });
+        }) : null;
       
       WriteQueuer() {
         setDaemon(true);
@@ -225,6 +300,7 @@ public class StagingLogManager implements LogManager {
               oldRegion.waitForContiguous();
               last = System.nanoTime();
               waiting += (last - mark);
+              latencies.contiguous.record(last - mark);
               last = System.nanoTime();
               currentRegion = oldRegion.next();
 
@@ -235,13 +311,18 @@ public class StagingLogManager implements LogManager {
                   if ( state.acceptRecords() ) continue;
               }
 
-              WritingPackage wp = new WritingPackage(oldRegion,regionFactory);
+              WritingPackage wp = new WritingPackage(oldRegion,regionFactory,admission != null);
               if ( wp.isEmpty() ) {
                   continue;
+              } else if ( asyncPacker != null ) {
+  //  queue order is lsn order, the IO thread will block in take() until 
+  //  this region is packed if it gets there first
+                  asyncPacker.execute(wp);
               } else {
                   wp.run();                
               }
 
+              wp.queued();
               while ( !queue.offer(wp,200,TimeUnit.MICROSECONDS) ) {
                   if ( stopped ) break;
               }
@@ -253,7 +334,7 @@ public class StagingLogManager implements LogManager {
   //  if in synchronous mode, wait here so more log records are batched in the next region
               if ( state.acceptRecords() && oldRegion.isSyncRequested() ) {
                   try {
-                      oldRegion.getWriteFuture().get();
+                      wp.getIssuedFuture().get();
                   } catch ( ExecutionException ee ) {
                       //  ignore this, this wait is a performace optimization
                   }
@@ -267,7 +348,9 @@ public class StagingLogManager implements LogManager {
             }
           }
 
-          asyncPacker.shutdown();
+          if ( asyncPacker != null ) {
+              asyncPacker.shutdown();
+          }
           if ( turns == 0 ) turns = 1;
           if ( LOGGER.isDebugEnabled() ) {
               LOGGER.debug(new Formatter(new StringBuilder()).format("==PERFORMANCE(processing)== waiting: %.3f active: %.3f ave. queue: %d fill: %d",
@@ -283,6 +366,13 @@ public class StagingLogManager implements LogManager {
       long waiting;
       long writing;
       long written;
+      long syncTime;
+      /**
+       * regions written but not yet finished, in lsn order, the head is 
+       * finished once its sync if any is done
+       */
+      private final Deque<WrittenPackage> syncing = new ArrayDeque<WrittenPackage>();
+      private long lastTaken = Constants.GENESIS_LSN;
     
       IODaemon() {
         setDaemon(true);
@@ -290,6 +380,91 @@ public class StagingLogManager implements LogManager {
         setPriority(MAX_PRIORITY);
       }
 
+      /**
+       * @return the next region to write or null when a deferred sync is due
+       */
+      private WritingPackage nextPackage() throws InterruptedException {
+          SyncWaiter next = nextDeadline();
+          if ( next == null ) {
+              return queue.take();
+          }
+  //  early by about as long as a sync takes
+          long wait = next.deadline - syncTime - System.nanoTime();
+          if ( wait > 0 ) {
+              return queue.poll(wait, TimeUnit.NANOSECONDS);
+          }
+  //  a record not on disk yet has its region on the way, write that first
+          return ( next.lsn > highestOnDisk.get() ) ? queue.take() : null;
+      }
+
+      /**
+       * @return the waiter with the earliest deadline or null if none are waiting
+       */
+      private SyncWaiter nextDeadline() {
+          SyncWaiter next = syncDeadlines.ceiling(SyncWaiter.EARLIEST);
+          while ( next != null && next.isDone() ) {
+              syncDeadlines.remove(next);
+              next = syncDeadlines.ceiling(SyncWaiter.EARLIEST);
+          }
+          return next;
+      }
+
+      private void sync(long onDisk) throws IOException {
+          long start = System.nanoTime();
+          io.sync();
+          long time = System.nanoTime() - start;
+          latencies.fsync.record(time);
+          syncTime += (time - syncTime) / 4;
+          synced(onDisk);
+      }
+
+      private CompletableFuture<Void> syncAsync() throws IOException {
+          long start = System.nanoTime();
+          CompletableFuture<Void> sync = io.syncAsync().toCompletableFuture();
+          if ( !sync.isDone() ) {
+  //  wake the IO thread to finish the regions this sync covers
+              sync.whenComplete((v, t) -> {
+                  latencies.fsync.record(System.nanoTime() - start);
+                  queue.offer(syncCheck);
+              });
+          } else {
+              latencies.fsync.record(System.nanoTime() - start);
+          }
+          return sync;
+      }
+
+      /**
+       * finish the written regions in order up to the first still waiting on 
+       * its sync
+       */
+      private void finishSynced() throws IOException {
+          WrittenPackage next = syncing.peek();
+          while ( next != null && (next.sync == null || next.sync.isDone()) ) {
+              if ( next.sync != null && next.sync.isCompletedExceptionally() ) {
+                  try {
+                      next.sync.join();
+                  } catch ( CompletionException ce ) {
+                      throw ( ce.getCause() instanceof IOException ) ? (IOException)ce.getCause() : new IOException(ce.getCause());
+                  }
+              }
+              syncing.poll();
+              finished(next.packer, next.sync != null);
+              next = syncing.peek();
+          }
+      }
+
+      private void finished(WritingPackage packer, boolean synced) {
+          highestOnDisk.set(packer.endLsn());
+          packer.written();
+          completeWaiters(packer.endLsn());
+          if (synced) {
+              synced(packer.endLsn());
+          }
+          if (admission != null) {
+              admission.release(packer.admittedBytes());
+          }
+      }
+
       @Override
       public void run() {
         WriteQueuer queuer = new WriteQueuer();
@@ -298,38 +473,66 @@ public class StagingLogManager implements LogManager {
         while ( state.acceptRecords() || currentLsn.get() - 1 != highestOnDisk.get()) {
             long start = System.nanoTime();
             try {
-              WritingPackage packer = queue.take();
+              WritingPackage packer = nextPackage();
               long taken = System.nanoTime();
               try {
                 waiting += (taken - start);
+                
+                finishSynced();
+
+                if (packer == null) {
+  //  a deferred sync is due
+                  sync(highestOnDisk.get());
+                  continue;
+                }
+
+                if (packer == syncCheck) {
+                  continue;
+                }
 
                 if (packer.isEmpty()) {
-                  io.sync();
+                  sync(highestOnDisk.get());
                   continue;
                 }
 
+                latencies.queue.record(taken - packer.queuedAt());
                 Chunk c = packer.take();
+                latencies.packing.record(packer.packingTime());
                 if (io.getCurrentMarker() + 1 != packer.baseLsn()) {
                   throw new AssertionError("lsns not sequenced " + io.getCurrentMarker() + 1 + " != " + packer.baseLsn());
                 }
 
+                long write = System.nanoTime();
                 written += io.write(c, packer.endLsn());
+                latencies.write.record(System.nanoTime() - write);
 
                 if (c instanceof Closeable) {
                   ((Closeable) c).close();
                 }
 
-                if (packer.doSync()) {
-                  io.sync();
-                }
-
-                highestOnDisk.set(packer.endLsn());
-                packer.written();
+                lastTaken = packer.endLsn();
+                boolean strict = packer.doSync() && strictSync.get() >= packer.baseLsn();
+  //  a pipelined sync runs while the next region is written, the regions 
+  //  finish in batches as syncs complete
+                syncing.add(new WrittenPackage(packer, strict ? syncAsync() : null));
+                finishSynced();
               } catch (Exception e) {
-                packer.list.exceptionThrown(e);
+  //  failing the oldest list fails every list chained after it
+                WritingPackage oldest = syncing.isEmpty() ? packer : syncing.peek().packer;
+                syncing.clear();
+                if (oldest != null && oldest != syncCheck) {
+                  oldest.list.exceptionThrown(e);
+                }
                 state = state.checkException(e);
+                failWaiters(e);
+                if (admission != null) {
+                  admission.close();
+                }
                 break;
               } finally {
+                if (packer != null) {
+                  packer.issued();
+                }
                 writing += (System.nanoTime() - taken);
               }
             } catch (InterruptedException ie) {
@@ -337,13 +540,24 @@ public class StagingLogManager implements LogManager {
             }
         }
         
+        if ( !state.isErrorState() && !syncWaiters.isEmpty() ) {
+            try {
+                sync(highestOnDisk.get());
+            } catch ( IOException ioe ) {
+                failWaiters(ioe);
+            }
+        }
+        
         try {
             if ( state.isErrorState() ) {
 //  clear any items in the queue
-                long floatingLsn = highestOnDisk.get();
+                long floatingLsn = Math.max(highestOnDisk.get(), lastTaken);
                 while ( currentLsn.get() - 1 != floatingLsn ) {
-                    CommitList next = queue.take().list;
-                    floatingLsn = next.getEndLsn();
+                    WritingPackage next = queue.take();
+                    next.issued();
+                    if ( next != syncCheck ) {
+                        floatingLsn = next.list.getEndLsn();
+                    }
                 }
             } else if ( !queue.isEmpty() ) {
                 while ( !queue.isEmpty() ) {
@@ -361,6 +575,7 @@ public class StagingLogManager implements LogManager {
         if ( LOGGER.isDebugEnabled() ) {
             LOGGER.debug(new Formatter(new StringBuilder()).format("==PERFORMANCE(logwrite)== waiting: %.3f active: %.3f written: %d",waiting*1e-6,writing*1e-6,written).out().toString());
             LOGGER.debug("==PERFORMANCE(memory)==" + buffers.toString());
+            LOGGER.debug("==PERFORMANCE(stages)==" + latencies.toString());
         }
       }
     }
@@ -473,7 +688,11 @@ public class StagingLogManager implements LogManager {
     // this tries to put an empty WritingPackage on the queue
     // so the daemon wakes up. This speeds shutdown,
     // as it will wake the daemon thread.
-    queue.offer(new WritingPackage(new CommitList() {
+    queue.offer(new WritingPackage(emptyCommitList(), null));
+  }
+
+  private static CommitList emptyCommitList() {
+    return new CommitList() {
     @Override
       public Future<Void> getWriteFuture() {
         return CompletableFuture.completedFuture(null);
@@ -539,10 +758,10 @@ public class StagingLogManager implements LogManager {
       public CommitList create(long baseLsn) {
         throw new UnsupportedOperationException();
       }
-    }, null));
+    };
   }
 
-  private CommitList _append(LogRecord record, boolean sync) {
+  private void checkAccepting() {
         if ( !state.acceptRecords() ) {
           throw new LogWriteError();
         }
@@ -554,28 +773,113 @@ public class StagingLogManager implements LogManager {
                 throw new RuntimeException(it);
             }
         }
+  }
+  
+  private CommitList _append(LogRecord record, boolean sync) {
+        return _append(record, sync, sync);
+  }
+  
+  /**
+   * @param strict false if the sync may be put off to a deadline
+   */
+  private CommitList _append(LogRecord record, boolean sync, boolean strict) {
+        checkAccepting();
+        if ( admission != null ) {
+            long size = AdmissionControl.sizeOf(record);
+            if ( !admission.acquire(size) ) {
+                throw new LogWriteError();
+            }
+            return admitted(record, sync, strict, size);
+        }
+        return place(record, sync, strict);
+  }
+  
+  /**
+   * the log may have stopped taking records while the appender waited for space
+   */
+  private CommitList admitted(LogRecord record, boolean sync, boolean strict, long size) {
+        if ( !state.acceptRecords() ) {
+            admission.release(size);
+            throw new LogWriteError();
+        }
+        return place(record, sync, strict);
+  }
         
+  private CommitList place(LogRecord record, boolean sync, boolean strict) {
+        long start = System.nanoTime();
         CommitList mine = currentRegion;
         long lsn = currentLsn.getAndIncrement();
+        if ( strict ) {
+  //  raised before the record can be seen in a list so the IO thread never 
+  //  mistakes it for a sync that can wait
+            long current = strictSync.get();
+            while ( current < lsn && !strictSync.compareAndSet(current, lsn) ) {
+                current = strictSync.get();
+            }
+        }
         try {
             record.updateLsn(lsn);
         } catch ( Error e ) {
             throw e;
         } finally {
-       
-            int spincount = 0;
-  //  if we hit this, try and spread out
-            int waitspin = 2 + (Math.round((float)(Math.random() * 1024f)));
-            while ( !mine.append(record,sync) ) {
-                if ( spincount++ > waitspin ) {
-                    futureWait(mine);
-                    waitspin += (Math.round((float)(Math.random() * 512f)));
+            mine = slot(mine, record, sync);
+            latencies.append.record(System.nanoTime() - start);
+        }
+        return mine;
+    }
+  
+  /**
+   * One lsn reservation for the whole batch.  The records fill consecutive 
+   * slots so a batch that fits a commit list lands in one list, or spills into
+   * the next one, and only the last record carries the sync request.
+   */
+  private CommitList placeBatch(List<LogRecord> records, boolean sync) {
+        long start = System.nanoTime();
+        int count = records.size();
+        CommitList mine = currentRegion;
+        long base = currentLsn.getAndAdd(count);
+        if ( sync ) {
+            long last = base + count - 1;
+            long current = strictSync.get();
+            while ( current < last && !strictSync.compareAndSet(current, last) ) {
+                current = strictSync.get();
+            }
+        }
+        Throwable failure = null;
+        for ( int x = 0; x < count; x++ ) {
+            LogRecord record = records.get(x);
+            try {
+                record.updateLsn(base + x);
+            } catch ( RuntimeException | Error e ) {
+  //  the rest of the batch still fills its slots or the log stalls on the gap
+                if ( failure == null ) {
+                    failure = e;
                 }
-                mine = mine.next();
             }
+            mine = slot(mine, record, sync && x == count - 1);
+        }
+        latencies.append.record(System.nanoTime() - start);
+        if ( failure instanceof Error ) {
+            throw (Error)failure;
+        } else if ( failure != null ) {
+            throw (RuntimeException)failure;
         }
         return mine;
-    }
+  }
+  
+  private CommitList slot(CommitList mine, LogRecord record, boolean sync) {
+        int spincount = 0;
+  //  if we hit this, try and spread out
+        int waitspin = 2 + (Math.round((float)(Math.random() * 1024f)));
+        while ( !mine.append(record,sync) ) {
+            if ( spincount++ > waitspin ) {
+                futureWait(mine);
+                waitspin += (Math.round((float)(Math.random() * 512f)));
+            }
+            mine = mine.next();
+        }
+        return mine;
+  }
         
     private void futureWait(CommitList mine) {
       try {                      
@@ -598,6 +902,150 @@ public class StagingLogManager implements LogManager {
         return _append(record,true).getWriteFuture();
     }
 
+    @Override
+    public Future<Void> appendAndSyncWithin(LogRecord record, long within, TimeUnit unit) {
+        if ( within <= 0 ) {
+            return appendAndSync(record);
+        }
+        long deadline = System.nanoTime() + unit.toNanos(within);
+  //  closes the region like any sync, the IO thread decides when to sync it
+        _append(record, true, false);
+        long lsn = record.getLsn();
+        SyncWaiter done = new SyncWaiter(deadline, lsn);
+  //  by deadline first, anything taken out by lsn is then sure to be found
+        syncDeadlines.add(done);
+        syncWaiters.put(lsn, done);
+  //  the IO thread may have passed this lsn before the waiter was visible
+        if ( highestSynced.get() >= lsn ) {
+            synced(highestSynced.get());
+        } else if ( state.isErrorState() ) {
+            failWaiters(new LogWriteError());
+        } else if ( highestOnDisk.get() >= lsn ) {
+            queue.offer(syncCheck);
+        }
+        return done;
+    }
+
+    @Override
+    public Future<Void> appendBatch(List<LogRecord> records, boolean sync) {
+        if ( records.isEmpty() ) {
+            return CompletableFuture.completedFuture(null);
+        }
+        checkAccepting();
+        if ( admission != null ) {
+            long size = AdmissionControl.sizeOf(records);
+            if ( !admission.acquire(size) ) {
+                throw new LogWriteError();
+            }
+            if ( !state.acceptRecords() ) {
+                admission.release(size);
+                throw new LogWriteError();
+            }
+        }
+  //  lists are written in order, once the list holding the last record is
+  //  written the whole batch is on disk
+        return placeBatch(records, sync).getWriteFuture();
+    }
+
+    @Override
+    public Future<Void> tryAppend(LogRecord record, boolean sync, long timeout, TimeUnit unit) throws TimeoutException, InterruptedException {
+        checkAccepting();
+        if ( admission == null ) {
+            return place(record, sync, sync).getWriteFuture();
+        }
+        long size = AdmissionControl.sizeOf(record);
+        if ( !admission.tryAcquire(size, timeout, unit) ) {
+            checkAccepting();
+            throw new TimeoutException("log has " + admission.getInflightBytes() + " bytes in flight, no room for " + size + " more");
+        }
+        return admitted(record, sync, sync, size).getWriteFuture();
+    }
+
+    @Override
+    public CompletionStage<Void> appendAsync(LogRecord record, boolean sync) {
+        CompletableFuture<Void> done = new CompletableFuture<Void>();
+        try {
+            _append(record, sync);
+        } catch ( LogWriteError e ) {
+            done.completeExceptionally(e);
+            return done;
+        }
+        long lsn = record.getLsn();
+        waiters.put(lsn, done);
+  //  the IO thread may have passed this lsn before the waiter was visible
+        if ( highestOnDisk.get() >= lsn ) {
+            completeWaiters(highestOnDisk.get());
+        } else if ( state.isErrorState() ) {
+            failWaiters(new LogWriteError());
+        }
+        return done;
+    }
+    
+    private void completeWaiters(long onDisk) {
+        Map.Entry<Long, CompletableFuture<Void>> next = waiters.firstEntry();
+        while ( next != null && next.getKey() <= onDisk ) {
+            if ( waiters.remove(next.getKey(), next.getValue()) ) {
+                next.getValue().complete(null);
+            }
+            next = waiters.firstEntry();
+        }
+    }
+    
+    private void synced(long onDisk) {
+        long current = highestSynced.get();
+        while ( current < onDisk && !highestSynced.compareAndSet(current, onDisk) ) {
+            current = highestSynced.get();
+        }
+        Map.Entry<Long, SyncWaiter> next = syncWaiters.firstEntry();
+        while ( next != null && next.getKey() <= onDisk ) {
+            if ( syncWaiters.remove(next.getKey(), next.getValue()) ) {
+                syncDeadlines.remove(next.getValue());
+                next.getValue().complete(null);
+            }
+            next = syncWaiters.firstEntry();
+        }
+    }
+    
+    private void failWaiters(Throwable cause) {
+        Map.Entry<Long, CompletableFuture<Void>> next = waiters.pollFirstEntry();
+        while ( next != null ) {
+            next.getValue().completeExceptionally(cause);
+            next = waiters.pollFirstEntry();
+        }
+        Map.Entry<Long, SyncWaiter> sync = syncWaiters.pollFirstEntry();
+        while ( sync != null ) {
+            syncDeadlines.remove(sync.getValue());
+            sync.getValue().completeExceptionally(cause);
+            sync = syncWaiters.pollFirstEntry();
+        }
+    }
+    
+    private static class WrittenPackage {
+        private final WritingPackage packer;
+        private final CompletableFuture<Void> sync;
+
+        WrittenPackage(WritingPackage packer, CompletableFuture<Void> sync) {
+            this.packer = packer;
+            this.sync = sync;
+        }
+    }
+    
+    private static class SyncWaiter extends CompletableFuture<Void> {
+        private static final Comparator<SyncWaiter> BY_DEADLINE = (a, b) -> {
+            int order = Long.compare(a.deadline, b.deadline);
+            return ( order != 0 ) ? order : Long.compare(a.lsn, b.lsn);
+        };
+        private static final SyncWaiter EARLIEST = new SyncWaiter(Long.MIN_VALUE, Long.MIN_VALUE);
+
+        private final long deadline;
+        private final long lsn;
+
+        SyncWaiter(long deadline, long lsn) {
+            this.deadline = deadline;
+            this.lsn = lsn;
+        }
+    }
+
     @Override
     public Snapshot snapshot() throws ExecutionException {
         SnapshotRecord snapshot = new SnapshotRecord();
@@ -631,7 +1079,8 @@ public class StagingLogManager implements LogManager {
   @Override
     public IOStatistics getIOStatistics() {
       try {
-        return io.getStatistics();
+        IOStatistics stats = io.getStatistics();
+        return new LogIOStatistics(stats, ( compression == null ) ? 1.0 : compression.getRatio(), admission, latencies);
       } catch ( IOException ioe ) {
         LOGGER.error("error collecting io statistics",ioe);
         return new IOStatistics() {
@@ -665,10 +1114,99 @@ public class StagingLogManager implements LogManager {
           public long getExpiredSize() {
             return 0;
           }
+
+          @Override
+          public double getCompressionRatio() {
+            return ( compression == null ) ? 1.0 : compression.getRatio();
+          }
+
+          @Override
+          public long getAdmissionStalls() {
+            return ( admission == null ) ? 0 : admission.getStalls();
+          }
+
+          @Override
+          public long getAdmissionStallTime() {
+            return ( admission == null ) ? 0 : admission.getStallTime();
+          }
+
+          @Override
+          public Map<String, Log2LatencyBins> getStageLatencies() {
+            return latencies.asMap();
+          }
         };
       }
     }
 
+  /**
+   * io statistics plus what only the log layer knows
+   */
+    private static class LogIOStatistics implements IOStatistics {
+        private final IOStatistics delegate;
+        private final double ratio;
+        private final long stalls;
+        private final long stallTime;
+        private final StageLatencies latencies;
+
+        LogIOStatistics(IOStatistics delegate, double ratio, AdmissionControl admission, StageLatencies latencies) {
+            this.delegate = delegate;
+            this.ratio = ratio;
+            this.stalls = ( admission == null ) ? 0 : admission.getStalls();
+            this.stallTime = ( admission == null ) ? 0 : admission.getStallTime();
+            this.latencies = latencies;
+        }
+
+        @Override
+        public long getTotalAvailable() {
+            return delegate.getTotalAvailable();
+        }
+
+        @Override
+        public long getTotalUsed() {
+            return delegate.getTotalUsed();
+        }
+
+        @Override
+        public long getTotalWritten() {
+            return delegate.getTotalWritten();
+        }
+
+        @Override
+        public long getTotalRead() {
+            return delegate.getTotalRead();
+        }
+
+        @Override
+        public long getLiveSize() {
+            return delegate.getLiveSize();
+        }
+
+        @Override
+        public long getExpiredSize() {
+            return delegate.getExpiredSize();
+        }
+
+        @Override
+        public double getCompressionRatio() {
+            return ratio;
+        }
+
+        @Override
+        public long getAdmissionStalls() {
+            return stalls;
+        }
+
+        @Override
+        public long getAdmissionStallTime() {
+            return stallTime;
+        }
+
+        @Override
+        public Map<String, Log2LatencyBins> getStageLatencies() {
+            return latencies.asMap();
+        }
+    }
+
     static class WritingPackage implements Runnable {
         /**
          * list of writes to make
@@ -682,10 +1220,27 @@ public class StagingLogManager implements LogManager {
          * bytes to write to disk
          */
         private volatile Chunk                  data;
+        /**
+         * record bytes to hand back to admission control once written
+         */
+        private final boolean                   measure;
+        private long                            admitted;
+        /**
+         * done once the IO thread has written the region and synced it or, 
+         * when the sync is pipelined, started the sync
+         */
+        private final CompletableFuture<Void>   issued = new CompletableFuture<Void>();
+        private long                            packingTime;
+        private volatile long                   queuedAt;
         
         WritingPackage(CommitList list, LogRegionFactory factory) {
+            this(list, factory, false);
+        }
+        
+        WritingPackage(CommitList list, LogRegionFactory factory, boolean measure) {
             this.list= list;
             this.factory = factory;
+            this.measure = measure;
         }
 
         @SuppressWarnings("unchecked")
@@ -693,8 +1248,14 @@ public class StagingLogManager implements LogManager {
         public void run() {
             if ( data == null ) {
                 synchronized (list) {
-                   if ( data == null ) {
+   //  a null factory means the data has already been taken by the IO thread
+                   if ( data == null && factory != null ) {
+                      long start = System.nanoTime();
+                      if ( measure ) {
+                          admitted = AdmissionControl.sizeOf(list);
+                      }
                       data = factory.pack(list);
+                      packingTime = System.nanoTime() - start;
                    }
                 }
             }
@@ -717,17 +1278,52 @@ public class StagingLogManager implements LogManager {
         }
 
         public void written() {
+  //  records are recycled while the list can still iterate them, ring slots
+  //  are released by lsn sequence so a restamped record cannot pin its slot
+            for ( LogRecord record : list ) {
+                record.written();
+            }
             list.written();
         }
         
+        void issued() {
+            issued.complete(null);
+        }
+        
+        void queued() {
+            queuedAt = System.nanoTime();
+        }
+        
+        long queuedAt() {
+            return queuedAt;
+        }
+        
+        long packingTime() {
+            synchronized (list) {
+                return packingTime;
+            }
+        }
+        
+        Future<Void> getIssuedFuture() {
+            return issued;
+        }
+        
+        long admittedBytes() {
+            synchronized (list) {
+                return admitted;
+            }
+        }
+        
         public Chunk take() {
             try {
                 run();
                 assert(data != null);
                 return data;
             } finally {
-                data = null;
-                factory = null;
+                synchronized (list) {
+                    factory = null;
+                    data = null;
+                }
             }
         }
     }
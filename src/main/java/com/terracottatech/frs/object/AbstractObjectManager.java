@@ -16,15 +16,30 @@
 package com.terracottatech.frs.object;
 
 import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
+ * Object manager over a stripe per identifier.
+ * <p>
+ * The lowest lsn across the stripes is maintained as they change.  Each stripe's
+ * last reported lowest is held in a sorted count of lowests, updated only
+ * when a put, remove or lsn update moves the stripe's lowest, so
+ * {@link #getLowestLsn()} reads the head of that count rather than visiting
+ * every stripe.  Subclasses that drop a stripe other than through
+ * {@link #delete(Object)} must call {@link #stripeRemoved(Object)}.
  *
  * @author Chris Dennis
  */
 public abstract class AbstractObjectManager<I, K, V> implements ObjectManager<I, K, V> {
 
+  private static final long NONE = Long.MAX_VALUE;
+
   private final ConcurrentLinkedQueue<ObjectManagerSegment<I, K, V>> compactionTargets = new ConcurrentLinkedQueue<ObjectManagerSegment<I, K, V>>();
+  private final ConcurrentMap<I, StripeLowest<I, K, V>> stripeLowests = new ConcurrentHashMap<I, StripeLowest<I, K, V>>();
+  private final ConcurrentSkipListMap<Long, Integer> lowests = new ConcurrentSkipListMap<Long, Integer>();
   
   @Override
   public long getLsn(I id, K key) {
@@ -34,27 +49,37 @@ public abstract class AbstractObjectManager<I, K, V> implements ObjectManager<I,
 
   @Override
   public void put(I id, K key, V value, long lsn) {
-    getStripeFor(id).put(key, value, lsn);
+    ObjectManagerStripe<I, K, V> stripe = getStripeFor(id);
+    stripe.put(key, value, lsn);
+    trackLowestLsn(id, stripe);
   }
 
   @Override
   public void delete(I id) {
-    getStripeFor(id).delete();
+    ObjectManagerStripe<I, K, V> stripe = getStripeFor(id);
+    stripe.delete();
+    trackLowestLsn(id, stripe);
   }
 
   @Override
   public void remove(I id, K key) {
-    getStripeFor(id).remove(key);
+    ObjectManagerStripe<I, K, V> stripe = getStripeFor(id);
+    stripe.remove(key);
+    trackLowestLsn(id, stripe);
   }
 
   @Override
   public void replayPut(I id, K key, V value, long lsn) {
-    getStripeFor(id).replayPut(key, value, lsn);
+    ObjectManagerStripe<I, K, V> stripe = getStripeFor(id);
+    stripe.replayPut(key, value, lsn);
+    trackLowestLsn(id, stripe);
   }
 
   @Override
   public void updateLsn(ObjectManagerEntry<I, K, V> entry, long newLsn) {
-    getStripeFor(entry.getId()).updateLsn(entry, newLsn);
+    ObjectManagerStripe<I, K, V> stripe = getStripeFor(entry.getId());
+    stripe.updateLsn(entry, newLsn);
+    trackLowestLsn(entry.getId(), stripe);
   }
 
   /**
@@ -98,18 +123,10 @@ public abstract class AbstractObjectManager<I, K, V> implements ObjectManager<I,
     getStripeFor(entry.getId()).releaseCompactionEntry(entry);
   }
 
-    @Override
+  @Override
   public long getLowestLsn() {
-    long lowest = -1;
-    for (ObjectManagerStripe<I, K, V> stripe : getStripes()) {
-      Long lowestInStripe = stripe.getLowestLsn();
-      if (lowestInStripe != null) {
-        if (lowest < 0 || lowestInStripe < lowest) {
-          lowest = lowestInStripe;
-        }
-      }
-    }
-    return lowest;
+    Long lowest = lowests.ceilingKey(Long.MIN_VALUE);
+    return lowest == null ? -1 : lowest;
   }
 
   public long size() {
@@ -129,6 +146,70 @@ public abstract class AbstractObjectManager<I, K, V> implements ObjectManager<I,
     return size;
   }
 
+  /**
+   * Brings the stripe's entry in the lowest lsn count up to date with the
+   * stripe, for subclasses that add or change stripes other than through this
+   * class.
+   */
+  protected void trackLowestLsn(I id, ObjectManagerStripe<I, K, V> stripe) {
+    StripeLowest<I, K, V> cached = stripeLowests.get(id);
+    if (cached == null) {
+      cached = new StripeLowest<I, K, V>();
+      StripeLowest<I, K, V> racer = stripeLowests.putIfAbsent(id, cached);
+      if (racer != null) {
+        cached = racer;
+      }
+    }
+    if (cached.stripe == stripe && cached.lsn == lowestOf(stripe)) {
+      return;
+    }
+    // re-read under the monitor so an update in flight never installs a stale lowest
+    synchronized (cached) {
+      if (cached.removed) {
+        return;
+      }
+      cached.stripe = stripe;
+      long lsn = lowestOf(stripe);
+      long old = cached.lsn;
+      if (lsn != old) {
+        if (lsn != NONE) {
+          lowests.merge(lsn, 1, Integer::sum);
+        }
+        if (old != NONE) {
+          lowests.computeIfPresent(old, (l, count) -> count == 1 ? null : count - 1);
+        }
+        cached.lsn = lsn;
+      }
+    }
+  }
+
+  /**
+   * Drops a stripe that is no longer reachable from the lowest lsn.
+   */
+  protected void stripeRemoved(I id) {
+    StripeLowest<I, K, V> cached = stripeLowests.remove(id);
+    if (cached != null) {
+      synchronized (cached) {
+        cached.removed = true;
+        if (cached.lsn != NONE) {
+          lowests.computeIfPresent(cached.lsn, (l, count) -> count == 1 ? null : count - 1);
+          cached.lsn = NONE;
+        }
+      }
+    }
+  }
+
+  private static long lowestOf(ObjectManagerStripe<?, ?, ?> stripe) {
+    Long l = stripe.getLowestLsn();
+    return l == null ? NONE : l;
+  }
+
+  private static class StripeLowest<I, K, V> {
+    volatile ObjectManagerStripe<I, K, V> stripe;
+    volatile long lsn = NONE;
+    boolean removed;
+  }
+
   /**
    * Returns the stripes of a segmented sorted map.
    * <p>
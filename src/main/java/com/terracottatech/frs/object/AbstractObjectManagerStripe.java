@@ -15,23 +15,31 @@
  */
 package com.terracottatech.frs.object;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Stripe over a fixed set of segments.
+ * <p>
+ * The lowest lsn of the stripe is kept up to date as its segments change rather
+ * than gathered from every segment when asked for.  After each put, remove or
+ * lsn update the segment touched is asked for its lowest lsn and only when that
+ * moved is the stripe's lowest revisited, so reading it is a volatile read.
+ */
 public abstract class AbstractObjectManagerStripe<I, K, V> implements ObjectManagerStripe<I, K, V> {
+  private static final long NONE = Long.MAX_VALUE;
+
   private final ConcurrentHashMap<K, Integer> extractedHashCodes = new ConcurrentHashMap<>();
-  
+
+  private final Object lowestLock = new Object();
+  private volatile Map<ObjectManagerSegment<I, K, V>, SegmentLowest> segmentLowests;
+  private volatile long lowest = NONE;
+
   @Override
   public Long getLowestLsn() {
-    Long lowest = null;
-    for (ObjectManagerSegment<I, K, V> segment : getSegments()) {
-      Long firstLsn = segment.getLowestLsn();
-      if (firstLsn != null) {
-        if (lowest == null || firstLsn < lowest) {
-          lowest = firstLsn;
-        }
-      }
-    }
-    return lowest;
+    long l = lowest;
+    return l == NONE ? null : l;
   }
 
   @Override
@@ -43,13 +51,17 @@ public abstract class AbstractObjectManagerStripe<I, K, V> implements ObjectMana
   @Override
   public void put(K key, V value, long lsn) {
     int hash = extractHashCode(key);
-    getSegmentFor(hash, key).put(hash, key, value, lsn);
+    ObjectManagerSegment<I, K, V> segment = getSegmentFor(hash, key);
+    segment.put(hash, key, value, lsn);
+    trackLowestLsn(segment);
   }
 
   @Override
   public void remove(K key) {
     int hash = extractHashCode(key);
-    getSegmentFor(hash, key).remove(hash, key);
+    ObjectManagerSegment<I, K, V> segment = getSegmentFor(hash, key);
+    segment.remove(hash, key);
+    trackLowestLsn(segment);
   }
 
   @Override
@@ -58,7 +70,9 @@ public abstract class AbstractObjectManagerStripe<I, K, V> implements ObjectMana
     if (hash == null) {
       hash = extractHashCode(key);
     }
-    getSegmentFor(hash, key).replayPut(hash, key, value, lsn);
+    ObjectManagerSegment<I, K, V> segment = getSegmentFor(hash, key);
+    segment.replayPut(hash, key, value, lsn);
+    trackLowestLsn(segment);
   }
 
   @Override
@@ -71,7 +85,9 @@ public abstract class AbstractObjectManagerStripe<I, K, V> implements ObjectMana
   @Override
   public void updateLsn(ObjectManagerEntry<I, K, V> entry, long newLsn) {
     int hash = extractHashCode(entry.getKey());
-    getSegmentFor(hash, entry.getKey()).updateLsn(hash, entry, newLsn);
+    ObjectManagerSegment<I, K, V> segment = getSegmentFor(hash, entry.getKey());
+    segment.updateLsn(hash, entry, newLsn);
+    trackLowestLsn(segment);
   }
 
   @Override
@@ -97,6 +113,80 @@ public abstract class AbstractObjectManagerStripe<I, K, V> implements ObjectMana
     return size;
   }
 
+  /**
+   * Re-reads the lowest lsn of every segment, for subclasses that change their
+   * segments other than through this class.
+   */
+  protected void refreshLowestLsn() {
+    for (ObjectManagerSegment<I, K, V> segment : getSegments()) {
+      trackLowestLsn(segment);
+    }
+  }
+
+  /*
+   * The segment's cached lowest is only rewritten under its own monitor and
+   * from a fresh read taken there, so a thread that finds the cache current
+   * outside the monitor can leave it: any update still in flight will read the
+   * segment again.  The stripe's lowest is then adjusted under the stripe's
+   * monitor by whoever moved a segment, the last of them seeing every cache.
+   */
+  private void trackLowestLsn(ObjectManagerSegment<I, K, V> segment) {
+    SegmentLowest cached = segmentLowestFor(segment);
+    if (cached.lsn != lowestOf(segment)) {
+      synchronized (cached) {
+        long lsn = lowestOf(segment);
+        long old = cached.lsn;
+        if (lsn != old) {
+          cached.lsn = lsn;
+          synchronized (lowestLock) {
+            if (lsn < lowest) {
+              lowest = lsn;
+            } else if (old == lowest) {
+              long l = NONE;
+              for (SegmentLowest s : segmentLowests.values()) {
+                l = Math.min(l, s.lsn);
+              }
+              lowest = l;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private SegmentLowest segmentLowestFor(ObjectManagerSegment<I, K, V> segment) {
+    Map<ObjectManagerSegment<I, K, V>, SegmentLowest> lowests = segmentLowests;
+    SegmentLowest cached = lowests == null ? null : lowests.get(segment);
+    if (cached == null) {
+      synchronized (lowestLock) {
+        lowests = segmentLowests;
+        if (lowests == null) {
+          lowests = new IdentityHashMap<ObjectManagerSegment<I, K, V>, SegmentLowest>();
+          for (ObjectManagerSegment<I, K, V> s : getSegments()) {
+            lowests.put(s, new SegmentLowest());
+          }
+        }
+        cached = lowests.get(segment);
+        if (cached == null) {
+          lowests = new IdentityHashMap<ObjectManagerSegment<I, K, V>, SegmentLowest>(lowests);
+          cached = new SegmentLowest();
+          lowests.put(segment, cached);
+        }
+        segmentLowests = lowests;
+      }
+    }
+    return cached;
+  }
+
+  private static long lowestOf(ObjectManagerSegment<?, ?, ?> segment) {
+    Long l = segment.getLowestLsn();
+    return l == null ? NONE : l;
+  }
+
+  private static class SegmentLowest {
+    volatile long lsn = NONE;
+  }
+
   protected abstract ObjectManagerSegment<I, K, V> getSegmentFor(int hash, K key);
   
   protected abstract int extractHashCode(K key);
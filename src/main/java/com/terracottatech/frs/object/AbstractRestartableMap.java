@@ -0,0 +1,357 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.object;
+
+import com.terracottatech.frs.RestartStore;
+import com.terracottatech.frs.object.heap.HeapLongValueSortedMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Common base of the restartable maps.
+ * <p>
+ * Holds the map's identifier, its restart store and the live data, and
+ * provides {@link MapSegment}, a lock guarding the lsns of a set of keys that
+ * doubles as the {@link ObjectManagerSegment} over them.  Subclasses decide how
+ * keys are spread over segments and when writes reach the log.
+ */
+public abstract class AbstractRestartableMap<K, V, RI, RK, RV> implements ConcurrentMap<K, V>, RestartableObject<RI, RK, RV> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(AbstractRestartableMap.class);
+
+  final RI identifier;
+  final RestartStore<RI, RK, RV> restartability;
+  final boolean synchronousWrites;
+  final long identifierByteSize;
+
+  final ConcurrentMap<K, V> dataMap = new ConcurrentHashMap<K, V>();
+
+  AbstractRestartableMap(RI identifier, RestartStore<RI, RK, RV> restartability, boolean synchronousWrites, long identifierByteSize) {
+    this.identifier = identifier;
+    this.restartability = restartability;
+    this.synchronousWrites = synchronousWrites;
+    this.identifierByteSize = identifierByteSize;
+  }
+
+  AbstractRestartableMap(RI identifier, RestartStore<RI, RK, RV> restartability, boolean synchronousWrites) {
+    this(identifier, restartability, synchronousWrites, identifierByteSize(identifier));
+  }
+
+  private static long identifierByteSize(Object identifier) {
+    if (identifier instanceof ByteBuffer) {
+      return ((ByteBuffer) identifier).remaining();
+    } else {
+      LOGGER.warn("Strange identifier: expected: " + ByteBuffer.class + " found: " + identifier.getClass());
+      return 0;
+    }
+  }
+
+  @Override
+  public RI getId() {
+    return identifier;
+  }
+
+  @Override
+  public void putAll(Map<? extends K, ? extends V> m) {
+    for (Entry<? extends K, ? extends V> e : m.entrySet()) {
+      put(e.getKey(), e.getValue());
+    }
+  }
+
+  protected void replayPut(K key, V value) {
+    dataMap.put(key, value);
+  }
+
+  protected abstract RK encodeKey(K key);
+
+  protected abstract RV encodeValue(V value);
+
+  protected abstract K decodeKey(RK rKey);
+
+  protected abstract V decodeValue(RV rValue);
+
+  protected abstract long keyByteSize(K key, RK encodedKey);
+
+  protected abstract long valueByteSize(V value, RV encodedValue);
+
+  /**
+   * @return false if compaction must leave the key where it is for now, called
+   * with the key's segment write locked
+   */
+  boolean isCompactable(K key) {
+    return true;
+  }
+
+  /**
+   * Waits for a commit to reach disk when writes are synchronous.  Interrupts
+   * are held until it does, a failed commit is rethrown unchecked.
+   */
+  void await(CompletionStage<Void> written) {
+    if (written == null || !synchronousWrites) {
+      return;
+    }
+    boolean interrupted = false;
+    while (true) {
+      try {
+        written.toCompletableFuture().get();
+        break;
+      } catch (ExecutionException e) {
+        throw new RuntimeException(e.getCause());
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * The lsns and byte size of a set of keys, under one lock.  The map's writes
+   * to those keys take the same lock, so the lsns are recorded in the order the
+   * map changed.
+   */
+  class MapSegment implements ObjectManagerSegment<RI, RK, RV> {
+
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    final HeapLongValueSortedMap<K> lsnMap = new HeapLongValueSortedMap<K>();
+
+    long byteSize = 0;
+
+    /**
+     * Accounts for {@code key} now mapping to {@code value} rather than
+     * {@code old}, with the write lock held.
+     */
+    void putBytes(K key, RK encodedKey, V value, RV encodedValue, V old) {
+      if (old == null) {
+        byteSize += identifierByteSize + keyByteSize(key, encodedKey) + valueByteSize(value, encodedValue);
+      } else {
+        byteSize += valueByteSize(value, encodedValue) - valueByteSize(old, encodeValue(old));
+      }
+    }
+
+    /**
+     * Accounts for {@code key} no longer mapping to {@code removed}, with the
+     * write lock held.
+     */
+    void removeBytes(K key, RK encodedKey, V removed) {
+      byteSize -= identifierByteSize + keyByteSize(key, encodedKey) + valueByteSize(removed, encodeValue(removed));
+    }
+
+    @Override
+    public Long getLowestLsn() {
+      Lock l = lock.readLock();
+      l.lock();
+      try {
+        return lsnMap.firstValue();
+      } finally {
+        l.unlock();
+      }
+    }
+
+    @Override
+    public Long getLsn(int hash, RK key) {
+      Lock l = lock.readLock();
+      l.lock();
+      try {
+        return lsnMap.get(decodeKey(key));
+      } finally {
+        l.unlock();
+      }
+    }
+
+    @Override
+    public void put(int hash, RK rKey, RV rValue, long lsn) {
+      K key = decodeKey(rKey);
+      Lock l = lock.writeLock();
+      l.lock();
+      try {
+        if (dataMap.containsKey(key)) {
+          lsnMap.put(key, lsn);
+        } else {
+          throw new AssertionError();
+        }
+      } finally {
+        l.unlock();
+      }
+    }
+
+    @Override
+    public void remove(int hash, RK rKey) {
+      K key = decodeKey(rKey);
+      Lock l = lock.writeLock();
+      l.lock();
+      try {
+        if (dataMap.containsKey(key)) {
+          throw new AssertionError();
+        } else {
+          lsnMap.remove(key);
+        }
+      } finally {
+        l.unlock();
+      }
+    }
+
+    public void delete() {
+      Lock l = lock.writeLock();
+      l.lock();
+      try {
+        if (dataMap.isEmpty()) {
+          lsnMap.clear();
+        } else {
+          throw new AssertionError();
+        }
+      } finally {
+        l.unlock();
+      }
+    }
+
+    @Override
+    public void replayPut(int hash, RK rKey, RV rValue, long lsn) {
+      K key = decodeKey(rKey);
+      V value = decodeValue(rValue);
+
+      Lock l = lock.writeLock();
+      l.lock();
+      try {
+        if (dataMap.containsKey(key)) {
+          throw new AssertionError();
+        } else {
+          AbstractRestartableMap.this.replayPut(key, value);
+          byteSize += identifierByteSize + keyByteSize(key, rKey) + valueByteSize(value, rValue);
+          lsnMap.put(key, lsn);
+        }
+      } finally {
+        l.unlock();
+      }
+    }
+
+    @Override
+    public void updateLsn(int hash, ObjectManagerEntry<RI, RK, RV> entry, long newLsn) {
+      K key = decodeKey(entry.getKey());
+      if (entry.getLsn() == lsnMap.getLong(key, -1)) {
+        lsnMap.put(key, newLsn);
+      } else {
+        throw new AssertionError();
+      }
+    }
+
+    @Override
+    public ObjectManagerEntry<RI, RK, RV> acquireCompactionEntry(long ceilingLsn) {
+      Lock l = lock.writeLock();
+      l.lock();
+      try {
+        K key = lsnMap.firstKey();
+        if (key == null || !isCompactable(key)) {
+          l.unlock();
+          return null;
+        }
+        long lsn = lsnMap.firstLongValue();
+        if (lsn >= ceilingLsn) {
+          l.unlock();
+          return null;
+        }
+        RK rKey = encodeKey(key);
+        RV rValue = encodeValue(dataMap.get(key));
+        return new SimpleObjectManagerEntry<RI, RK, RV>(identifier, rKey, rValue, lsn);
+      } catch (RuntimeException e) {
+        l.unlock();
+        throw e;
+      } catch (Error e) {
+        l.unlock();
+        throw e;
+      }
+    }
+
+    @Override
+    public void releaseCompactionEntry(ObjectManagerEntry<RI, RK, RV> entry) {
+      if (entry == null) {
+        throw new NullPointerException("Tried to release a null entry.");
+      } else {
+        lock.writeLock().unlock();
+      }
+    }
+
+    @Override
+    public long size() {
+      Lock l = lock.readLock();
+      l.lock();
+      try {
+        return lsnMap.size();
+      } finally {
+        l.unlock();
+      }
+    }
+
+    @Override
+    public long sizeInBytes() {
+      Lock l = lock.readLock();
+      l.lock();
+      try {
+        return byteSize;
+      } finally {
+        l.unlock();
+      }
+    }
+  }
+
+  /**
+   * A single segment serving as the whole stripe, for maps that guard every
+   * key with one lock.
+   */
+  class MapObjectManagerStripe extends MapSegment implements ObjectManagerStripe<RI, RK, RV> {
+
+    @Override
+    public Long getLsn(RK key) {
+      return getLsn(0, key);
+    }
+
+    @Override
+    public void put(RK key, RV value, long lsn) {
+      put(0, key, value, lsn);
+    }
+
+    @Override
+    public void remove(RK key) {
+      remove(0, key);
+    }
+
+    @Override
+    public void replayPut(RK key, RV value, long lsn) {
+      replayPut(0, key, value, lsn);
+    }
+
+    @Override
+    public Collection<ObjectManagerSegment<RI, RK, RV>> getSegments() {
+      return Collections.<ObjectManagerSegment<RI, RK, RV>>singleton(this);
+    }
+
+    @Override
+    public void updateLsn(ObjectManagerEntry<RI, RK, RV> entry, long newLsn) {
+      updateLsn(0, entry, newLsn);
+    }
+  }
+}
@@ -54,11 +54,13 @@ public class RegisterableObjectManager<I, K, V> extends AbstractObjectManager<I,
     if (previous != null) {
       throw new IllegalStateException(id + " already mapped");
     }
+    trackLowestLsn(id, stripe);
   }
   
   public void unregisterStripe(I id) {
     if (stripes.remove(id) == null) {
       throw new AssertionError(id + " not mapped");
     } 
+    stripeRemoved(id);
   }
 }
@@ -17,64 +17,32 @@ package com.terracottatech.frs.object;
 
 import com.terracottatech.frs.RestartStore;
 import com.terracottatech.frs.TransactionException;
-import com.terracottatech.frs.object.heap.HeapValueSortedMap;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-public abstract class RestartableMap<K, V, RI, RK, RV> implements ConcurrentMap<K, V>, RestartableObject<RI, RK, RV> {
-  private static final Logger LOGGER = LoggerFactory.getLogger(RestartableMap.class);
+public abstract class RestartableMap<K, V, RI, RK, RV> extends AbstractRestartableMap<K, V, RI, RK, RV> {
 
-  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-  private final ObjectManagerStripe<RI, RK, RV> objectManagerStripe = new MapObjectManagerStripe();
-  private final RestartStore<RI, RK, RV> restartability;
-  private final RI identifier;
-  private final long identifierByteSize;
-  
-  private final Map<K, V> dataMap = new ConcurrentHashMap<K, V>();
-  private final HeapValueSortedMap<K, Long> lsnMap = new HeapValueSortedMap<K, Long>();
+  private final MapObjectManagerStripe objectManagerStripe = new MapObjectManagerStripe();
+  private final ReentrantReadWriteLock lock = objectManagerStripe.lock;
 
-  private final boolean synchronousWrites;
-  
-  private long byteSize = 0;
-  
   private Set<K> keySet;
   private Set<Entry<K, V>> entrySet;
 
   public RestartableMap(RI identifier, RestartStore<RI, RK, RV> restartability, boolean synchronousWrites, int identifierByteSize) {
-    this.identifier = identifier;
-    this.restartability = restartability;
-    this.synchronousWrites = synchronousWrites;
-    this.identifierByteSize = identifierByteSize;
+    super(identifier, restartability, synchronousWrites, identifierByteSize);
   }
 
   public RestartableMap(RI identifier, RestartStore<RI, RK, RV> restartability, boolean synchronousWrites) {
-    this.identifier = identifier;
-    this.restartability = restartability;
-    this.synchronousWrites = synchronousWrites;
-
-    if (identifier instanceof ByteBuffer) {
-      identifierByteSize = ((ByteBuffer) identifier).remaining();
-    } else {
-      LOGGER.warn("Strange identifier: expected: " + ByteBuffer.class + " found: " + identifier.getClass());
-      identifierByteSize = 0;
-    }
+    super(identifier, restartability, synchronousWrites);
   }
   
   public RestartableMap(RI identifier, RestartStore<RI, RK, RV> restartability) {
     this(identifier, restartability, true);
   }
 
-  public RI getId() {
-    return identifier;
-  }
-  
+  @Override
   public ObjectManagerStripe<RI, RK, RV> getObjectManagerStripe() {
     return objectManagerStripe;
   }
@@ -142,11 +110,7 @@ public abstract class RestartableMap<K, V, RI, RK, RV> implements ConcurrentMap<
       V old = dataMap.put(key, value);
       RK encodedKey = encodeKey(key);
       RV encodedValue = encodeValue(value);
-      if(old == null) {
-        byteSize += identifierByteSize + keyByteSize(key, encodedKey) + valueByteSize(value, encodedValue);
-      } else {
-        byteSize += valueByteSize(value, encodedValue) - valueByteSize(old, encodeValue(old));
-      }
+      objectManagerStripe.putBytes(key, encodedKey, value, encodedValue, old);
       
       restartability.beginTransaction(synchronousWrites).put(identifier, encodedKey, encodedValue).commit();
       return old;
@@ -166,7 +130,7 @@ public abstract class RestartableMap<K, V, RI, RK, RV> implements ConcurrentMap<
       V removed = dataMap.remove(key);
       if (removed != null) {
         RK encodedKey = encodeKey((K) key);
-        byteSize -= identifierByteSize + keyByteSize((K) key, encodedKey) + valueByteSize(removed, encodeValue(removed));
+        objectManagerStripe.removeBytes((K) key, encodedKey, removed);
         restartability.beginTransaction(synchronousWrites).remove(identifier, encodedKey).commit();
       }
       return removed;
@@ -177,13 +141,6 @@ public abstract class RestartableMap<K, V, RI, RK, RV> implements ConcurrentMap<
     }
   }
 
-  @Override
-  public void putAll(Map<? extends K, ? extends V> m) {
-    for (Entry<? extends K, ? extends V> e : m.entrySet()) {
-      put(e.getKey(), e.getValue());
-    }
-  }
-
   @Override
   public void clear() {
     Lock l = lock.writeLock();
@@ -191,7 +148,7 @@ public abstract class RestartableMap<K, V, RI, RK, RV> implements ConcurrentMap<
     try {
       dataMap.clear();
       restartability.beginTransaction(synchronousWrites).delete(identifier).commit();
-      byteSize = 0;
+      objectManagerStripe.byteSize = 0;
     } catch (TransactionException e) {
       throw new RuntimeException(e);
     } finally {
@@ -278,22 +235,6 @@ public abstract class RestartableMap<K, V, RI, RK, RV> implements ConcurrentMap<
     return es != null ? es : (entrySet = new LockedSet<Entry<K, V>>(dataMap.entrySet()));
   }
 
-  protected void replayPut(K key, V value) {
-    dataMap.put(key, value);
-  }
-  
-  protected abstract RK encodeKey(K key);
-  
-  protected abstract RV encodeValue(V value);
-  
-  protected abstract K decodeKey(RK rKey);
-  
-  protected abstract V decodeValue(RV rValue);
-  
-  protected abstract long keyByteSize(K key, RK encodedKey);
-  
-  protected abstract long valueByteSize(V value, RV encodedValue);
-
   private final class LockedSet<T> extends AbstractSet<T> {
 
     private final Set<T> delegate;
@@ -369,194 +310,4 @@ public abstract class RestartableMap<K, V, RI, RK, RV> implements ConcurrentMap<
       throw new UnsupportedOperationException();
     }
   }
-  
-  private final class MapObjectManagerStripe implements ObjectManagerStripe<RI, RK, RV>, ObjectManagerSegment<RI, RK, RV> {
-
-    @Override
-    public Long getLowestLsn() {
-      Lock l = lock.readLock();
-      l.lock();
-      try {
-        return lsnMap.firstValue();
-      } finally {
-        l.unlock();
-      }
-    }
-
-    @Override
-    public Long getLsn(RK key) {
-      Lock l = lock.readLock();
-      l.lock();
-      try {
-        return lsnMap.get(decodeKey(key));
-      } finally {
-        l.unlock();
-      }
-    }
-
-    @Override
-    public void put(RK rKey, RV rValue, long lsn) {
-      K key = decodeKey(rKey);
-      Lock l = lock.writeLock();
-      l.lock();
-      try {
-        if (dataMap.containsKey(key)) {
-          lsnMap.put(key, lsn);
-        } else {
-          throw new AssertionError();
-        }
-      } finally {
-        l.unlock();
-      }
-    }
-
-    @Override
-    public void remove(RK rKey) {
-      K key = decodeKey(rKey);
-      Lock l = lock.writeLock();
-      l.lock();
-      try {
-        if (dataMap.containsKey(key)) {
-          throw new AssertionError();
-        } else {
-          lsnMap.remove(key);
-        }
-      } finally {
-        l.unlock();
-      }
-    }
-
-    @Override
-    public void delete() {
-      Lock l = lock.writeLock();
-      l.lock();
-      try {
-        if (dataMap.isEmpty()) {
-          lsnMap.clear();
-        } else {
-          throw new AssertionError();
-        }
-      } finally {
-        l.unlock();
-      }
-    }
-
-    @Override
-    public void replayPut(RK rKey, RV rValue, long lsn) {
-      K key = decodeKey(rKey);
-      V value = decodeValue(rValue);
-
-      Lock l = lock.writeLock();
-      l.lock();
-      try {
-        if (dataMap.containsKey(key)) {
-          throw new AssertionError();
-        } else {
-          RestartableMap.this.replayPut(key, value);
-          byteSize += identifierByteSize + keyByteSize(key, rKey) + valueByteSize(value, rValue);
-          lsnMap.put(key, lsn);
-        }
-      } finally {
-        l.unlock();
-      }
-    }
-
-    @Override
-    public Collection<ObjectManagerSegment<RI, RK, RV>> getSegments() {
-      return Collections.<ObjectManagerSegment<RI, RK, RV>>singleton(this);
-    }
-
-    @Override
-    public void updateLsn(ObjectManagerEntry<RI, RK, RV> entry, long newLsn) {
-      K key = decodeKey(entry.getKey());
-      if (entry.getLsn() == lsnMap.get(key)) {
-        lsnMap.put(key, newLsn);
-      } else {
-        throw new AssertionError();
-      }
-    }
-
-    @Override
-    public ObjectManagerEntry<RI, RK, RV> acquireCompactionEntry(long ceilingLsn) {
-      Lock l = lock.writeLock();
-      l.lock();
-      try {
-        K key = lsnMap.firstKey();
-        if (key == null) {
-          l.unlock();
-          return null;
-        }
-        long lsn = lsnMap.firstValue();
-        if (lsn >= ceilingLsn) {
-          l.unlock();
-          return null;
-        }
-        RK rKey = encodeKey(key);
-        RV rValue = encodeValue(dataMap.get(key));
-        return new SimpleObjectManagerEntry<RI, RK, RV>(identifier, rKey, rValue, lsn);
-      } catch (RuntimeException e) {
-        l.unlock();
-        throw e;
-      } catch (Error e) {
-        l.unlock();
-        throw e;
-      }
-    }
-
-    @Override
-    public void releaseCompactionEntry(ObjectManagerEntry<RI, RK, RV> entry) {
-      if (entry == null) {
-        throw new NullPointerException("Tried to release a null entry.");
-      } else {
-        lock.writeLock().unlock();
-      }
-    }
-
-    @Override
-    public long size() {
-      Lock l = lock.readLock();
-      l.lock();
-      try {
-        return lsnMap.size();
-      } finally {
-        l.unlock();
-      }
-    }
-
-    @Override
-    public long sizeInBytes() {
-      Lock l = lock.writeLock();
-      l.lock();
-      try {
-        return byteSize;
-      } finally {
-        l.unlock();
-      }
-    }
-
-    @Override
-    public void updateLsn(int hash, ObjectManagerEntry<RI, RK, RV> entry, long newLsn) {
-      updateLsn(entry, newLsn);
-    }
-
-    @Override
-    public Long getLsn(int hash, RK key) {
-      return getLsn(key);
-    }
-
-    @Override
-    public void put(int hash, RK key, RV value, long lsn) {
-      put(key, value, lsn);
-    }
-
-    @Override
-    public void replayPut(int hash, RK key, RV value, long lsn) {
-      replayPut(key, value, lsn);
-    }
-
-    @Override
-    public void remove(int hash, RK key) {
-      remove(key);
-    }
-  }
 }
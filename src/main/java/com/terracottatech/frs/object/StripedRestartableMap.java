@@ -0,0 +1,317 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.object;
+
+import com.terracottatech.frs.RestartStore;
+import com.terracottatech.frs.TransactionException;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A {@link RestartableMap} alternative that locks per segment of keys rather
+ * than per map.
+ * <p>
+ * Reads go straight to the underlying {@code ConcurrentHashMap}.  A write
+ * takes the write lock of its key's segment only while it updates the map and
+ * appends its transaction to the log, which is where the lsn, and so the order
+ * of writes to a key, is fixed.  The wait for a synchronous commit to reach
+ * disk happens after the lock is released, so writes to other keys, and later
+ * writes to the same key, are appended meanwhile and share its sync.  A reader
+ * can therefore see a value whose commit has not yet returned to the writer.
+ * <p>
+ * Each segment doubles as an {@link ObjectManagerSegment}, holding the lsns of
+ * its keys, so compaction of one segment does not stall writers to the others.
+ */
+public abstract class StripedRestartableMap<K, V, RI, RK, RV> extends AbstractRestartableMap<K, V, RI, RK, RV> {
+
+  private static final int DEFAULT_CONCURRENCY = 16;
+
+  private final MapSegment[] segments;
+  private final SegmentedStripe objectManagerStripe = new SegmentedStripe();
+
+  public StripedRestartableMap(RI identifier, RestartStore<RI, RK, RV> restartability, boolean synchronousWrites, int concurrency) {
+    super(identifier, restartability, synchronousWrites);
+    if (concurrency <= 0) {
+      throw new IllegalArgumentException("concurrency must be positive " + concurrency);
+    }
+    segments = createSegments(concurrency);
+  }
+
+  public StripedRestartableMap(RI identifier, RestartStore<RI, RK, RV> restartability, boolean synchronousWrites) {
+    this(identifier, restartability, synchronousWrites, DEFAULT_CONCURRENCY);
+  }
+
+  public StripedRestartableMap(RI identifier, RestartStore<RI, RK, RV> restartability) {
+    this(identifier, restartability, true);
+  }
+
+  @Override
+  public ObjectManagerStripe<RI, RK, RV> getObjectManagerStripe() {
+    return objectManagerStripe;
+  }
+
+  @Override
+  public int size() {
+    return dataMap.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return dataMap.isEmpty();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return dataMap.containsKey(key);
+  }
+
+  @Override
+  public boolean containsValue(Object value) {
+    return dataMap.containsValue(value);
+  }
+
+  @Override
+  public V get(Object key) {
+    return dataMap.get(key);
+  }
+
+  @Override
+  public V put(K key, V value) {
+    MapSegment segment = segmentFor(key);
+    V old;
+    CompletionStage<Void> written;
+    Lock l = segment.lock.writeLock();
+    l.lock();
+    try {
+      old = dataMap.put(key, value);
+      written = logPut(segment, key, value, old);
+    } finally {
+      l.unlock();
+    }
+    await(written);
+    return old;
+  }
+
+  @Override
+  public V remove(Object key) {
+    MapSegment segment = segmentFor(key);
+    V removed;
+    CompletionStage<Void> written = null;
+    Lock l = segment.lock.writeLock();
+    l.lock();
+    try {
+      removed = dataMap.remove(key);
+      if (removed != null) {
+        written = logRemove(segment, key, removed);
+      }
+    } finally {
+      l.unlock();
+    }
+    await(written);
+    return removed;
+  }
+
+  @Override
+  public void clear() {
+    CompletionStage<Void> written;
+    for (MapSegment segment : segments) {
+      segment.lock.writeLock().lock();
+    }
+    try {
+      dataMap.clear();
+      for (MapSegment segment : segments) {
+        segment.byteSize = 0;
+      }
+      written = restartability.beginTransaction(synchronousWrites).delete(identifier).commitAsync();
+    } catch (TransactionException e) {
+      throw new RuntimeException(e);
+    } finally {
+      for (int i = segments.length - 1; i >= 0; i--) {
+        segments[i].lock.writeLock().unlock();
+      }
+    }
+    await(written);
+  }
+
+  @Override
+  public V putIfAbsent(K key, V value) {
+    MapSegment segment = segmentFor(key);
+    V old;
+    CompletionStage<Void> written = null;
+    Lock l = segment.lock.writeLock();
+    l.lock();
+    try {
+      old = dataMap.putIfAbsent(key, value);
+      if (old == null) {
+        written = logPut(segment, key, value, null);
+      }
+    } finally {
+      l.unlock();
+    }
+    await(written);
+    return old;
+  }
+
+  @Override
+  public boolean remove(Object key, Object value) {
+    MapSegment segment = segmentFor(key);
+    CompletionStage<Void> written;
+    Lock l = segment.lock.writeLock();
+    l.lock();
+    try {
+      if (dataMap.remove(key, value)) {
+        @SuppressWarnings("unchecked")
+        V removed = (V) value;
+        written = logRemove(segment, key, removed);
+      } else {
+        return false;
+      }
+    } finally {
+      l.unlock();
+    }
+    await(written);
+    return true;
+  }
+
+  @Override
+  public boolean replace(K key, V oldValue, V newValue) {
+    MapSegment segment = segmentFor(key);
+    CompletionStage<Void> written;
+    Lock l = segment.lock.writeLock();
+    l.lock();
+    try {
+      if (dataMap.replace(key, oldValue, newValue)) {
+        written = logPut(segment, key, newValue, oldValue);
+      } else {
+        return false;
+      }
+    } finally {
+      l.unlock();
+    }
+    await(written);
+    return true;
+  }
+
+  @Override
+  public V replace(K key, V value) {
+    MapSegment segment = segmentFor(key);
+    V old;
+    CompletionStage<Void> written = null;
+    Lock l = segment.lock.writeLock();
+    l.lock();
+    try {
+      old = dataMap.replace(key, value);
+      if (old != null) {
+        written = logPut(segment, key, value, old);
+      }
+    } finally {
+      l.unlock();
+    }
+    await(written);
+    return old;
+  }
+
+  @Override
+  public Set<K> keySet() {
+    return Collections.unmodifiableSet(dataMap.keySet());
+  }
+
+  @Override
+  public Collection<V> values() {
+    return Collections.unmodifiableCollection(dataMap.values());
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    return Collections.unmodifiableSet(dataMap.entrySet());
+  }
+
+  /*
+   * Called with the segment's write lock held.  Appending the transaction
+   * records the put against the segment, so both happen before the lock is
+   * released and the segment's lsns follow the order of the map's writes.
+   */
+  private CompletionStage<Void> logPut(MapSegment segment, K key, V value, V old) {
+    RK encodedKey = encodeKey(key);
+    RV encodedValue = encodeValue(value);
+    segment.putBytes(key, encodedKey, value, encodedValue, old);
+    try {
+      return restartability.beginTransaction(synchronousWrites).put(identifier, encodedKey, encodedValue).commitAsync();
+    } catch (TransactionException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private CompletionStage<Void> logRemove(MapSegment segment, Object key, V removed) {
+    RK encodedKey = encodeKey((K) key);
+    segment.removeBytes((K) key, encodedKey, removed);
+    try {
+      return restartability.beginTransaction(synchronousWrites).remove(identifier, encodedKey).commitAsync();
+    } catch (TransactionException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private MapSegment[] createSegments(int concurrency) {
+    MapSegment[] created = new AbstractRestartableMap.MapSegment[concurrency];
+    for (int i = 0; i < created.length; i++) {
+      created[i] = new MapSegment();
+    }
+    return created;
+  }
+
+  private MapSegment segmentFor(Object key) {
+    return segments[Math.abs(hash(key) % segments.length)];
+  }
+
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private final class SegmentedStripe extends AbstractObjectManagerStripe<RI, RK, RV> {
+
+    @Override
+    public Collection<ObjectManagerSegment<RI, RK, RV>> getSegments() {
+      return Arrays.<ObjectManagerSegment<RI, RK, RV>>asList(segments);
+    }
+
+    @Override
+    protected ObjectManagerSegment<RI, RK, RV> getSegmentFor(int hash, RK key) {
+      return segments[Math.abs(hash % segments.length)];
+    }
+
+    @Override
+    protected int extractHashCode(RK key) {
+      return hash(decodeKey(key));
+    }
+
+    @Override
+    public void delete() {
+      for (MapSegment segment : segments) {
+        segment.delete();
+      }
+      refreshLowestLsn();
+    }
+  }
+}
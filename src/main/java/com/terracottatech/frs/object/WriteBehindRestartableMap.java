@@ -0,0 +1,433 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.object;
+
+import com.terracottatech.frs.RestartStore;
+import com.terracottatech.frs.Transaction;
+import com.terracottatech.frs.TransactionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A restartable map that logs its writes behind the caller.
+ * <p>
+ * Puts and removes change the map and mark their key dirty, nothing more.  The
+ * dirty keys are flushed as one transaction holding a single put or remove per
+ * key, however many times it changed since the last flush, once
+ * {@code maxPending} keys are dirty or {@code maxDelay} after the first of
+ * them changed, whichever comes first.  The write that fills the buffer
+ * flushes it before returning, so the buffer is bounded and writers are held
+ * back if the log cannot keep up.  The delay is kept by a daemon thread started
+ * with the first buffered write and stopped by {@link #shutdown()}.
+ * <p>
+ * Recovery restores the last flushed state: the map as it stood at the most
+ * recent flush to reach the log, which for synchronous writes is the most
+ * recent flush to complete.  Anything written since is lost on a crash, so the
+ * map should be shut down, or at least {@link #flush() flushed}, before its
+ * restart store is.
+ */
+public abstract class WriteBehindRestartableMap<K, V, RI, RK, RV> extends AbstractRestartableMap<K, V, RI, RK, RV> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindRestartableMap.class);
+
+  private final MapObjectManagerStripe objectManagerStripe = new MapObjectManagerStripe();
+  private final ReentrantReadWriteLock lock = objectManagerStripe.lock;
+  private final Condition flushDue = lock.writeLock().newCondition();
+
+  private final Set<K> pending = new LinkedHashSet<K>();
+
+  private final int maxPending;
+  private final long maxDelayNanos;
+
+  private long firstPendingAt;
+  private boolean alive = true;
+  private FlushThread flusher;
+
+  /**
+   * @param maxPending dirty keys that trigger a flush
+   * @param maxDelay longest a write waits to be flushed
+   * @param unit unit of {@code maxDelay}
+   */
+  public WriteBehindRestartableMap(RI identifier, RestartStore<RI, RK, RV> restartability, boolean synchronousWrites,
+                                   int maxPending, long maxDelay, TimeUnit unit) {
+    super(identifier, restartability, synchronousWrites);
+    if (maxPending <= 0) {
+      throw new IllegalArgumentException("maxPending must be positive " + maxPending);
+    }
+    this.maxPending = maxPending;
+    this.maxDelayNanos = unit.toNanos(maxDelay);
+  }
+
+  @Override
+  public ObjectManagerStripe<RI, RK, RV> getObjectManagerStripe() {
+    return objectManagerStripe;
+  }
+
+  @Override
+  public int size() {
+    return dataMap.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return dataMap.isEmpty();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return dataMap.containsKey(key);
+  }
+
+  @Override
+  public boolean containsValue(Object value) {
+    return dataMap.containsValue(value);
+  }
+
+  @Override
+  public V get(Object key) {
+    return dataMap.get(key);
+  }
+
+  @Override
+  public V put(K key, V value) {
+    V old;
+    CompletionStage<Void> written;
+    Lock l = lock.writeLock();
+    l.lock();
+    try {
+      old = putLocked(key, value);
+      written = flushIfFull();
+    } finally {
+      l.unlock();
+    }
+    await(written);
+    return old;
+  }
+
+  @Override
+  public V remove(Object key) {
+    V removed;
+    CompletionStage<Void> written;
+    Lock l = lock.writeLock();
+    l.lock();
+    try {
+      removed = removeLocked(key);
+      written = flushIfFull();
+    } finally {
+      l.unlock();
+    }
+    await(written);
+    return removed;
+  }
+
+  /**
+   * Clears the map and logs the delete straight away, discarding any writes
+   * still waiting to be flushed.
+   */
+  @Override
+  public void clear() {
+    CompletionStage<Void> written;
+    Lock l = lock.writeLock();
+    l.lock();
+    try {
+      dataMap.clear();
+      pending.clear();
+      objectManagerStripe.byteSize = 0;
+      written = restartability.beginTransaction(synchronousWrites).delete(identifier).commitAsync();
+    } catch (TransactionException e) {
+      throw new RuntimeException(e);
+    } finally {
+      l.unlock();
+    }
+    await(written);
+  }
+
+  @Override
+  public V putIfAbsent(K key, V value) {
+    V old;
+    CompletionStage<Void> written = null;
+    Lock l = lock.writeLock();
+    l.lock();
+    try {
+      old = dataMap.get(key);
+      if (old == null) {
+        putLocked(key, value);
+        written = flushIfFull();
+      }
+    } finally {
+      l.unlock();
+    }
+    await(written);
+    return old;
+  }
+
+  @Override
+  public boolean remove(Object key, Object value) {
+    CompletionStage<Void> written;
+    Lock l = lock.writeLock();
+    l.lock();
+    try {
+      if (value.equals(dataMap.get(key))) {
+        removeLocked(key);
+        written = flushIfFull();
+      } else {
+        return false;
+      }
+    } finally {
+      l.unlock();
+    }
+    await(written);
+    return true;
+  }
+
+  @Override
+  public boolean replace(K key, V oldValue, V newValue) {
+    CompletionStage<Void> written;
+    Lock l = lock.writeLock();
+    l.lock();
+    try {
+      if (oldValue.equals(dataMap.get(key))) {
+        putLocked(key, newValue);
+        written = flushIfFull();
+      } else {
+        return false;
+      }
+    } finally {
+      l.unlock();
+    }
+    await(written);
+    return true;
+  }
+
+  @Override
+  public V replace(K key, V value) {
+    V old;
+    CompletionStage<Void> written = null;
+    Lock l = lock.writeLock();
+    l.lock();
+    try {
+      old = dataMap.get(key);
+      if (old != null) {
+        putLocked(key, value);
+        written = flushIfFull();
+      }
+    } finally {
+      l.unlock();
+    }
+    await(written);
+    return old;
+  }
+
+  @Override
+  public Set<K> keySet() {
+    return Collections.unmodifiableSet(dataMap.keySet());
+  }
+
+  @Override
+  public Collection<V> values() {
+    return Collections.unmodifiableCollection(dataMap.values());
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    return Collections.unmodifiableSet(dataMap.entrySet());
+  }
+
+  /**
+   * Flushes every write made so far, waiting for it to reach disk if writes
+   * are synchronous.
+   */
+  public void flush() {
+    CompletionStage<Void> written;
+    Lock l = lock.writeLock();
+    l.lock();
+    try {
+      written = flushLocked();
+    } finally {
+      l.unlock();
+    }
+    await(written);
+  }
+
+  /**
+   * Stops the flush thread and flushes what is left.  Writes made afterwards
+   * are flushed as they happen.
+   */
+  public void shutdown() throws InterruptedException {
+    FlushThread thread;
+    CompletionStage<Void> written;
+    Lock l = lock.writeLock();
+    l.lock();
+    try {
+      alive = false;
+      thread = flusher;
+      flushDue.signalAll();
+      written = flushLocked();
+    } finally {
+      l.unlock();
+    }
+    if (thread != null) {
+      thread.join();
+    }
+    await(written);
+  }
+
+  private V putLocked(K key, V value) {
+    V old = dataMap.put(key, value);
+    objectManagerStripe.putBytes(key, encodeKey(key), value, encodeValue(value), old);
+    dirty(key);
+    return old;
+  }
+
+  @SuppressWarnings("unchecked")
+  private V removeLocked(Object key) {
+    V removed = dataMap.remove(key);
+    if (removed != null) {
+      objectManagerStripe.removeBytes((K) key, encodeKey((K) key), removed);
+      dirty((K) key);
+    }
+    return removed;
+  }
+
+  private void dirty(K key) {
+    if (pending.add(key) && pending.size() == 1) {
+      firstPendingAt = System.nanoTime();
+      flushDue.signal();
+    }
+    if (alive && flusher == null) {
+      flusher = new FlushThread();
+      flusher.start();
+    }
+  }
+
+  private CompletionStage<Void> flushIfFull() {
+    if (pending.size() >= maxPending || !alive) {
+      return flushLocked();
+    } else {
+      return null;
+    }
+  }
+
+  /*
+   * Called with the write lock held, which is also what the object manager
+   * callbacks and compaction take, so every key's value and lsn stay as the
+   * batch left them until it has been appended.  A dirty key whose value is
+   * gone is only logged as a remove if an earlier flush put it.  Everything is
+   * encoded before the transaction begins, so a failing codec leaves the keys
+   * dirty and no transaction open to hold back compaction.
+   */
+  private CompletionStage<Void> flushLocked() {
+    if (pending.isEmpty()) {
+      return null;
+    }
+    List<RK> keys = new ArrayList<RK>(pending.size());
+    List<RV> values = new ArrayList<RV>(pending.size());
+    for (K key : pending) {
+      V value = dataMap.get(key);
+      if (value != null) {
+        keys.add(encodeKey(key));
+        values.add(encodeValue(value));
+      } else if (objectManagerStripe.lsnMap.getLong(key, -1) >= 0) {
+        keys.add(encodeKey(key));
+        values.add(null);
+      }
+    }
+    if (keys.isEmpty()) {
+      pending.clear();
+      return null;
+    }
+    try {
+      Transaction<RI, RK, RV> transaction = restartability.beginTransaction(synchronousWrites);
+      for (int i = 0; i < keys.size(); i++) {
+        RV value = values.get(i);
+        if (value != null) {
+          transaction.put(identifier, keys.get(i), value);
+        } else {
+          transaction.remove(identifier, keys.get(i));
+        }
+      }
+      pending.clear();
+      return transaction.commitAsync();
+    } catch (TransactionException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private class FlushThread extends Thread {
+    FlushThread() {
+      setDaemon(true);
+      setName("WriteBehindFlushThread");
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        CompletionStage<Void> written;
+        Lock l = lock.writeLock();
+        l.lock();
+        try {
+          while (alive && pending.isEmpty()) {
+            flushDue.await();
+          }
+          long wait;
+          while (alive && !pending.isEmpty() && (wait = firstPendingAt + maxDelayNanos - System.nanoTime()) > 0) {
+            flushDue.awaitNanos(wait);
+          }
+          if (!alive) {
+            return;
+          }
+          written = flushLocked();
+        } catch (InterruptedException e) {
+          LOGGER.info("Write behind flush thread is interrupted. Shutting down.");
+          flusher = null;
+          return;
+        } catch (RuntimeException e) {
+          LOGGER.error("Write behind flush of " + identifier + " failed, the next write will retry.", e);
+          flusher = null;
+          return;
+        } finally {
+          l.unlock();
+        }
+        try {
+          await(written);
+        } catch (RuntimeException e) {
+          LOGGER.error("Write behind flush of " + identifier + " failed.", e);
+        }
+      }
+    }
+  }
+
+  /*
+   * The map holds the latest value of a key, not the flushed one, so a dirty
+   * key cannot be rewritten without leaking an unflushed write into the log.
+   * Its next flush moves it on instead, and until then compaction waits.
+   */
+  @Override
+  boolean isCompactable(K key) {
+    return !pending.contains(key);
+  }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.object.heap;
+
+import com.terracottatech.frs.object.ValueSortedMap;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link ValueSortedMap} of {@code long} values held in parallel arrays.
+ * <p>
+ * Keys sit in an open addressing table, linear probing with backward shift
+ * deletion, alongside their hash, value and position in a binary min heap of
+ * slot numbers.  A live entry costs a key reference and 20 bytes of table
+ * divided by the load factor plus 4 bytes of heap, with nothing allocated per
+ * entry, and put, remove and update are all logarithmic in the size.
+ *
+ * @param <K> key type
+ */
+public class HeapLongValueSortedMap<K> implements ValueSortedMap<K, Long> {
+
+  private static final int MINIMUM_CAPACITY = 16;
+
+  private Object[] keys;
+  private int[] hashes;
+  private long[] values;
+  private int[] positions;
+  private int[] heap;
+  private int mask;
+  private int threshold;
+  private int size;
+
+  public HeapLongValueSortedMap() {
+    allocate(MINIMUM_CAPACITY);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public K firstKey() {
+    if (size == 0) {
+      return null;
+    } else {
+      return (K) keys[heap[0]];
+    }
+  }
+
+  @Override
+  public Long firstValue() {
+    if (size == 0) {
+      return null;
+    } else {
+      return values[heap[0]];
+    }
+  }
+
+  /**
+   * @return the lowest value in the map
+   * @throws NoSuchElementException if the map is empty
+   */
+  public long firstLongValue() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    } else {
+      return values[heap[0]];
+    }
+  }
+
+  @Override
+  public void put(K key, Long value) {
+    put(key, value.longValue());
+  }
+
+  public void put(K key, long value) {
+    int hash = hash(key);
+    int slot = find(hash, key);
+    if (slot < 0) {
+      if (size >= threshold) {
+        allocate((mask + 1) << 1);
+      }
+      slot = probe(hash);
+      keys[slot] = key;
+      hashes[slot] = hash;
+      values[slot] = value;
+      siftUp(size++, slot, value);
+    } else {
+      values[slot] = value;
+      reposition(positions[slot], slot, value, size);
+    }
+  }
+
+  @Override
+  public void remove(K key) {
+    int slot = find(hash(key), key);
+    if (slot >= 0) {
+      int last = --size;
+      int position = positions[slot];
+      if (position != last) {
+        int moved = heap[last];
+        reposition(position, moved, values[moved], last);
+      }
+      delete(slot);
+    }
+  }
+
+  @Override
+  public Long get(K key) {
+    int slot = find(hash(key), key);
+    if (slot < 0) {
+      return null;
+    } else {
+      return values[slot];
+    }
+  }
+
+  /**
+   * @return the key instance held by the map that equals {@code key}, or
+   * {@code null} if there is none
+   */
+  @SuppressWarnings("unchecked")
+  public K getKey(K key) {
+    int slot = find(hash(key), key);
+    if (slot < 0) {
+      return null;
+    } else {
+      return (K) keys[slot];
+    }
+  }
+
+  /**
+   * @return the value mapped to {@code key} or {@code absent} if there is none
+   */
+  public long getLong(K key, long absent) {
+    int slot = find(hash(key), key);
+    if (slot < 0) {
+      return absent;
+    } else {
+      return values[slot];
+    }
+  }
+
+  /**
+   * {@link #getLong(Object, long)} for optimistic readers that do not exclude
+   * writers.  It reads each array once and bounds its probe so a racing writer
+   * cannot make it loop, but the result, or any runtime exception it throws,
+   * means nothing unless the caller then validates that no write happened.
+   */
+  public long optimisticGetLong(K key, long absent) {
+    Object[] k = keys;
+    int[] h = hashes;
+    long[] v = values;
+    int m = k.length - 1;
+    int hash = hash(key);
+    int slot = hash & m;
+    for (int probes = 0; probes <= m; probes++) {
+      Object candidate = k[slot];
+      if (candidate == null) {
+        return absent;
+      } else if (h[slot] == hash && (candidate == key || candidate.equals(key))) {
+        return v[slot];
+      }
+      slot = (slot + 1) & m;
+    }
+    return absent;
+  }
+
+  /**
+   * {@link #firstLongValue()} for optimistic readers, with the same caveats as
+   * {@link #optimisticGetLong(Object, long)}.
+   */
+  public long optimisticFirstLongValue(long absent) {
+    int[] h = heap;
+    long[] v = values;
+    if (size == 0) {
+      return absent;
+    } else {
+      return v[h[0]];
+    }
+  }
+
+  public void clear() {
+    Arrays.fill(keys, null);
+    size = 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  private void allocate(int capacity) {
+    Object[] oldKeys = keys;
+    int[] oldHashes = hashes;
+    long[] oldValues = values;
+    int[] oldPositions = positions;
+
+    keys = new Object[capacity];
+    hashes = new int[capacity];
+    values = new long[capacity];
+    positions = new int[capacity];
+    mask = capacity - 1;
+    threshold = capacity - (capacity >>> 2);
+    heap = heap == null ? new int[threshold] : Arrays.copyOf(heap, threshold);
+
+    if (oldKeys != null) {
+      for (int s = 0; s < oldKeys.length; s++) {
+        if (oldKeys[s] != null) {
+          int slot = probe(oldHashes[s]);
+          keys[slot] = oldKeys[s];
+          hashes[slot] = oldHashes[s];
+          values[slot] = oldValues[s];
+          positions[slot] = oldPositions[s];
+          heap[oldPositions[s]] = slot;
+        }
+      }
+    }
+  }
+
+  private int find(int hash, Object key) {
+    int slot = hash & mask;
+    while (true) {
+      Object k = keys[slot];
+      if (k == null) {
+        return -1;
+      } else if (hashes[slot] == hash && (k == key || k.equals(key))) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private int probe(int hash) {
+    int slot = hash & mask;
+    while (keys[slot] != null) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void delete(int slot) {
+    int hole = slot;
+    int next = (hole + 1) & mask;
+    while (keys[next] != null) {
+      int ideal = hashes[next] & mask;
+      if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+        keys[hole] = keys[next];
+        hashes[hole] = hashes[next];
+        values[hole] = values[next];
+        positions[hole] = positions[next];
+        heap[positions[hole]] = hole;
+        hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    keys[hole] = null;
+  }
+
+  private void reposition(int position, int slot, long value, int count) {
+    if (position > 0 && value < values[heap[(position - 1) >>> 1]]) {
+      siftUp(position, slot, value);
+    } else {
+      siftDown(position, slot, value, count);
+    }
+  }
+
+  private void siftUp(int position, int slot, long value) {
+    while (position > 0) {
+      int parent = (position - 1) >>> 1;
+      int parentSlot = heap[parent];
+      if (values[parentSlot] <= value) {
+        break;
+      }
+      heap[position] = parentSlot;
+      positions[parentSlot] = position;
+      position = parent;
+    }
+    heap[position] = slot;
+    positions[slot] = position;
+  }
+
+  private void siftDown(int position, int slot, long value, int count) {
+    while (true) {
+      int child = (position << 1) + 1;
+      if (child >= count) {
+        break;
+      }
+      int childSlot = heap[child];
+      if (child + 1 < count && values[heap[child + 1]] < values[childSlot]) {
+        childSlot = heap[++child];
+      }
+      if (values[childSlot] >= value) {
+        break;
+      }
+      heap[position] = childSlot;
+      positions[childSlot] = position;
+      position = child;
+    }
+    heap[position] = slot;
+    positions[slot] = position;
+  }
+
+  private static int hash(Object key) {
+    int h = key.hashCode() * 0x9e3779b9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -23,6 +23,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  *
@@ -32,9 +33,21 @@ public class HeapObjectManager<I, K, V> extends AbstractObjectManager<I, K, V> {
 
   private final ConcurrentMap<I, ObjectManagerStripe<I, K, V>> maps = new ConcurrentHashMap<I, ObjectManagerStripe<I, K, V>>();
   private final int concurrency;
+  private final boolean optimisticReads;
   
   public HeapObjectManager(int concurrency) {
+    this(concurrency, false);
+  }
+
+  /**
+   * @param concurrency segments per identifier
+   * @param optimisticReads use segments whose lsn lookups read optimistically
+   *                        under a {@link StampedLock} rather than taking a
+   *                        read lock
+   */
+  public HeapObjectManager(int concurrency, boolean optimisticReads) {
     this.concurrency = concurrency;
+    this.optimisticReads = optimisticReads;
   }
   
   
@@ -54,6 +67,7 @@ public class HeapObjectManager<I, K, V> extends AbstractObjectManager<I, K, V> {
   @Override
   public void delete(I id) {
     maps.remove(id);
+    stripeRemoved(id);
   }
 
   @Override
@@ -62,18 +76,26 @@ public class HeapObjectManager<I, K, V> extends AbstractObjectManager<I, K, V> {
   }
   
   private ObjectManagerStripe<I, K, V> createStripes(I identifier) {
-    return new InHeapObjectManagerStripe<I, K, V>(identifier, concurrency);
+    return new InHeapObjectManagerStripe<I, K, V>(identifier, concurrency, optimisticReads);
   }
   
   static class InHeapObjectManagerStripe<I, K, V> extends AbstractObjectManagerStripe<I, K, V> {
     
     private final ObjectManagerSegment<I, K, V>[] segments;
 
-    @SuppressWarnings("unchecked")
     public InHeapObjectManagerStripe(I identifier, int stripes) {
+      this(identifier, stripes, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    public InHeapObjectManagerStripe(I identifier, int stripes, boolean optimisticReads) {
       this.segments = new ObjectManagerSegment[stripes];
       for (int i = 0; i < segments.length; i++) {
-        segments[i] = new InHeapObjectManagerSegment<I, K, V>(identifier);
+        if (optimisticReads) {
+          segments[i] = new StampedObjectManagerSegment<I, K, V>(identifier);
+        } else {
+          segments[i] = new InHeapObjectManagerSegment<I, K, V>(identifier);
+        }
       }
     }
     
@@ -121,7 +143,7 @@ public class HeapObjectManager<I, K, V> extends AbstractObjectManager<I, K, V> {
     private final I identifier;
     
     private final Map<K, V> dataMap = new HashMap<K, V>();
-    private final ValueSortedMap<K, Long> lsnMap = new HeapValueSortedMap<K, Long>();
+    private final HeapLongValueSortedMap<K> lsnMap = new HeapLongValueSortedMap<K>();
 
     private ObjectManagerEntry<I, K, V> compactingEntry;
     
@@ -137,11 +159,11 @@ public class HeapObjectManager<I, K, V> extends AbstractObjectManager<I, K, V> {
         assert compactingEntry == null;
         K firstKey = lsnMap.firstKey();
         if (firstKey != null) {
-          if (lsnMap.firstValue() >= ceilingLsn) {
+          long lsn = lsnMap.firstLongValue();
+          if (lsn >= ceilingLsn) {
             l.unlock();
             return null;
           }
-          long lsn = lsnMap.get(firstKey);
           V value = dataMap.get(firstKey);
           compactingEntry = new SimpleObjectManagerEntry<I, K, V>(identifier, firstKey, value, lsn);
           return compactingEntry;
@@ -165,7 +187,7 @@ public class HeapObjectManager<I, K, V> extends AbstractObjectManager<I, K, V> {
       Lock l = lock.writeLock();
       l.lock();
       try {
-        if (lsnMap.get(entry.getKey()) == entry.getLsn()) {
+        if (lsnMap.getLong(entry.getKey(), -1) == entry.getLsn()) {
           lsnMap.put(entry.getKey(), newLsn);
         }
       } finally {
@@ -244,4 +266,174 @@ public class HeapObjectManager<I, K, V> extends AbstractObjectManager<I, K, V> {
       throw new UnsupportedOperationException("Size in bytes not supported.");
     }
   }
+  /*
+   * The same maps as InHeapObjectManagerSegment behind a StampedLock.  Lookups
+   * read optimistically and only fall back to the read lock when a write
+   * overlapped them, so readers never write to the lock's cache line.
+   *
+   * A StampedLock is not reentrant.  The compactor holds the write lock from
+   * acquireCompactionEntry to releaseCompactionEntry and calls updateLsn in
+   * between, so every path recognises the compacting thread and goes straight
+   * through.
+   */
+  static class StampedObjectManagerSegment<I, K, V> implements ObjectManagerSegment<I, K, V> {
+
+    private final StampedLock lock = new StampedLock();
+    private final I identifier;
+
+    private final Map<K, V> dataMap = new HashMap<K, V>();
+    private final HeapLongValueSortedMap<K> lsnMap = new HeapLongValueSortedMap<K>();
+
+    private ObjectManagerEntry<I, K, V> compactingEntry;
+    private Thread compactingThread;
+    private long compactingStamp;
+
+    public StampedObjectManagerSegment(I identifier) {
+      this.identifier = identifier;
+    }
+
+    @Override
+    public ObjectManagerEntry<I, K, V> acquireCompactionEntry(long ceilingLsn) {
+      long stamp = lock.writeLock();
+      try {
+        assert compactingEntry == null;
+        K firstKey = lsnMap.firstKey();
+        if (firstKey == null || lsnMap.firstLongValue() >= ceilingLsn) {
+          lock.unlockWrite(stamp);
+          return null;
+        }
+        compactingEntry = new SimpleObjectManagerEntry<I, K, V>(identifier, firstKey, dataMap.get(firstKey), lsnMap.firstLongValue());
+        compactingThread = Thread.currentThread();
+        compactingStamp = stamp;
+        return compactingEntry;
+      } catch (RuntimeException e) {
+        lock.unlockWrite(stamp);
+        throw e;
+      }
+    }
+
+    @Override
+    public void releaseCompactionEntry(ObjectManagerEntry<I, K, V> entry) {
+      assert entry == compactingEntry;
+      long stamp = compactingStamp;
+      compactingEntry = null;
+      compactingThread = null;
+      lock.unlockWrite(stamp);
+    }
+
+    @Override
+    public void updateLsn(int hash, ObjectManagerEntry<I, K, V> entry, long newLsn) {
+      long stamp = writeLock();
+      try {
+        if (lsnMap.getLong(entry.getKey(), -1) == entry.getLsn()) {
+          lsnMap.put(entry.getKey(), newLsn);
+        }
+      } finally {
+        unlockWrite(stamp);
+      }
+    }
+
+    @Override
+    public Long getLowestLsn() {
+      if (compactingThread == Thread.currentThread()) {
+        return lsnMap.firstValue();
+      }
+      long stamp = lock.tryOptimisticRead();
+      if (stamp != 0) {
+        try {
+          long lsn = lsnMap.optimisticFirstLongValue(-1);
+          if (lock.validate(stamp)) {
+            return lsn < 0 ? null : lsn;
+          }
+        } catch (RuntimeException e) {
+        //  torn by a writer, validation fails below
+        }
+      }
+      stamp = lock.readLock();
+      try {
+        return lsnMap.firstValue();
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    @Override
+    public Long getLsn(int hash, K key) {
+      if (compactingThread == Thread.currentThread()) {
+        return lsnMap.get(key);
+      }
+      long stamp = lock.tryOptimisticRead();
+      if (stamp != 0) {
+        try {
+          long lsn = lsnMap.optimisticGetLong(key, -1);
+          if (lock.validate(stamp)) {
+            return lsn < 0 ? null : lsn;
+          }
+        } catch (RuntimeException e) {
+        //  torn by a writer, validation fails below
+        }
+      }
+      stamp = lock.readLock();
+      try {
+        return lsnMap.get(key);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    @Override
+    public void replayPut(int hash, K key, V value, long lsn) {
+      put(hash, key, value, lsn);
+    }
+
+    @Override
+    public void put(int hash, K key, V value, long lsn) {
+      long stamp = writeLock();
+      try {
+        dataMap.put(key, value);
+        lsnMap.put(key, lsn);
+      } finally {
+        unlockWrite(stamp);
+      }
+    }
+
+    @Override
+    public void remove(int hash, K key) {
+      long stamp = writeLock();
+      try {
+        dataMap.remove(key);
+        lsnMap.remove(key);
+      } finally {
+        unlockWrite(stamp);
+      }
+    }
+
+    @Override
+    public long size() {
+      return lsnMap.size();
+    }
+
+    @Override
+    public long sizeInBytes() {
+      throw new UnsupportedOperationException("Size in bytes not supported.");
+    }
+
+    /**
+     * @return the stamp to unlock with, zero if the compacting thread already
+     * holds the lock
+     */
+    private long writeLock() {
+      if (compactingThread == Thread.currentThread()) {
+        return 0;
+      } else {
+        return lock.writeLock();
+      }
+    }
+
+    private void unlockWrite(long stamp) {
+      if (stamp != 0) {
+        lock.unlockWrite(stamp);
+      }
+    }
+  }
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.object.offheap;
+
+import com.terracottatech.frs.object.AbstractObjectManager;
+import com.terracottatech.frs.object.AbstractObjectManagerStripe;
+import com.terracottatech.frs.object.ObjectManagerSegment;
+import com.terracottatech.frs.object.ObjectManagerStripe;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Object manager for {@code ByteBuffer} identifiers, keys and values that
+ * keeps its entries in direct memory.
+ * <p>
+ * Each segment holds an open addressing table of hash, lsn and record address,
+ * a binary heap of lsns for compaction and the lowest lsn, and an arena of
+ * key and value bytes.  None of it is visible to the collector.  A live entry
+ * costs between 47 and 86 bytes of table, heap and record header depending on
+ * how recently the table doubled, plus its key and value and up to as much
+ * again of free arena.
+ */
+public class OffHeapObjectManager extends AbstractObjectManager<ByteBuffer, ByteBuffer, ByteBuffer> {
+
+  private static final int DEFAULT_INITIAL_CAPACITY = 64;
+
+  private final ConcurrentMap<ByteBuffer, ObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer>> maps =
+          new ConcurrentHashMap<ByteBuffer, ObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer>>();
+  private final int concurrency;
+  private final int initialCapacity;
+
+  public OffHeapObjectManager(int concurrency) {
+    this(concurrency, DEFAULT_INITIAL_CAPACITY);
+  }
+
+  /**
+   * @param concurrency segments per identifier
+   * @param initialCapacity entries each segment sizes its table for up front
+   */
+  public OffHeapObjectManager(int concurrency, int initialCapacity) {
+    if (concurrency <= 0) {
+      throw new IllegalArgumentException("concurrency must be positive " + concurrency);
+    }
+    this.concurrency = concurrency;
+    this.initialCapacity = initialCapacity;
+  }
+
+  @Override
+  protected ObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer> getStripeFor(ByteBuffer id) {
+    ObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer> stripe = maps.get(id);
+    if (stripe == null) {
+      stripe = new OffHeapObjectManagerStripe(id, concurrency, initialCapacity);
+      ObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer> racer = maps.putIfAbsent(id, stripe);
+      if (racer != null) {
+        stripe = racer;
+      }
+    }
+    return stripe;
+  }
+
+  @Override
+  public void delete(ByteBuffer id) {
+    ObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer> stripe = maps.remove(id);
+    stripeRemoved(id);
+    if (stripe != null) {
+      stripe.delete();
+    }
+  }
+
+  @Override
+  protected Collection<ObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer>> getStripes() {
+    return maps.values();
+  }
+
+  /**
+   * @return direct memory reserved by every segment, free space included
+   */
+  public long allocatedMemory() {
+    long total = 0;
+    for (ObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer> stripe : getStripes()) {
+      for (ObjectManagerSegment<ByteBuffer, ByteBuffer, ByteBuffer> segment : stripe.getSegments()) {
+        total += ((OffHeapObjectManagerSegment) segment).allocatedMemory();
+      }
+    }
+    return total;
+  }
+
+  static class OffHeapObjectManagerStripe extends AbstractObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer> {
+
+    private final OffHeapObjectManagerSegment[] segments;
+
+    OffHeapObjectManagerStripe(ByteBuffer identifier, int stripes, int initialCapacity) {
+      this.segments = new OffHeapObjectManagerSegment[stripes];
+      for (int i = 0; i < segments.length; i++) {
+        segments[i] = new OffHeapObjectManagerSegment(identifier, initialCapacity);
+      }
+    }
+
+    @Override
+    public Collection<ObjectManagerSegment<ByteBuffer, ByteBuffer, ByteBuffer>> getSegments() {
+      return Arrays.<ObjectManagerSegment<ByteBuffer, ByteBuffer, ByteBuffer>>asList(segments);
+    }
+
+    @Override
+    protected ObjectManagerSegment<ByteBuffer, ByteBuffer, ByteBuffer> getSegmentFor(int hash, ByteBuffer key) {
+      return segments[Math.abs(hash % segments.length)];
+    }
+
+    @Override
+    protected int extractHashCode(ByteBuffer key) {
+      return key.hashCode();
+    }
+
+    @Override
+    public void delete() {
+      for (OffHeapObjectManagerSegment segment : segments) {
+        segment.destroy();
+      }
+      refreshLowestLsn();
+    }
+  }
+}
@@ -0,0 +1,523 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.object.offheap;
+
+import com.terracottatech.frs.object.ObjectManagerEntry;
+import com.terracottatech.frs.object.ObjectManagerSegment;
+import com.terracottatech.frs.object.SimpleObjectManagerEntry;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One segment of an {@link OffHeapObjectManager}, three direct buffers behind
+ * a read write lock.
+ * <p>
+ * The table is open addressed with linear probing and backward shift deletion
+ * so there are no tombstones.  A slot is 20 bytes: lsn, key hash, arena address
+ * of the record and the slot's position in the heap.  An address of zero marks
+ * an empty slot, the arena never hands it out.
+ * <p>
+ * The heap is a binary min heap of 12 byte entries, lsn and slot, sized with
+ * the table.  Slots and heap entries point at each other so an update or
+ * remove repositions a single heap entry in log time.
+ * <p>
+ * The arena holds records of key length, value length, key and value and is
+ * only ever appended to.  Replaced and removed records are counted as garbage
+ * and dropped when the arena next fills, by copying the live records into a
+ * fresh arena that is at least half free.
+ */
+class OffHeapObjectManagerSegment implements ObjectManagerSegment<ByteBuffer, ByteBuffer, ByteBuffer> {
+
+  private static final int SLOT_LSN = 0;
+  private static final int SLOT_HASH = 8;
+  private static final int SLOT_RECORD = 12;
+  private static final int SLOT_HEAP = 16;
+  private static final int SLOT_SIZE = 20;
+
+  private static final int HEAP_LSN = 0;
+  private static final int HEAP_SLOT = 8;
+  private static final int HEAP_ENTRY_SIZE = 12;
+
+  private static final int RECORD_KEY_LENGTH = 0;
+  private static final int RECORD_VALUE_LENGTH = 4;
+  private static final int RECORD_HEADER_SIZE = 8;
+
+  private static final int EMPTY = 0;
+  private static final int ARENA_START = 8;
+
+  private static final int MINIMUM_SLOTS = 16;
+  /**
+   * largest power of two table that fits in one buffer
+   */
+  private static final int MAXIMUM_SLOTS = 1 << 26;
+  private static final int INITIAL_ARENA = 4096;
+  private static final int MAXIMUM_ARENA = Integer.MAX_VALUE - 8;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final ByteBuffer identifier;
+  private final int identifierSize;
+  private final int initialSlots;
+
+  private ByteBuffer table;
+  private int mask;
+  private int threshold;
+  private ByteBuffer heap;
+  private ByteBuffer arena;
+  private ByteBuffer arenaWriter;
+  private int arenaTop;
+  private long garbage;
+
+  private volatile int size;
+  private volatile long dataSize;
+
+  private ObjectManagerEntry<ByteBuffer, ByteBuffer, ByteBuffer> compactingEntry;
+
+  OffHeapObjectManagerSegment(ByteBuffer identifier, int initialCapacity) {
+    this.identifier = identifier;
+    this.identifierSize = identifier.remaining();
+    int slots = MINIMUM_SLOTS;
+    while (slots - (slots >>> 2) < initialCapacity && slots < MAXIMUM_SLOTS) {
+      slots <<= 1;
+    }
+    this.initialSlots = slots;
+    reset();
+  }
+
+  @Override
+  public ObjectManagerEntry<ByteBuffer, ByteBuffer, ByteBuffer> acquireCompactionEntry(long ceilingLsn) {
+    Lock l = lock.writeLock();
+    l.lock();
+    try {
+      assert compactingEntry == null;
+      if (size == 0 || heap.getLong(HEAP_LSN) >= ceilingLsn) {
+        l.unlock();
+        return null;
+      }
+      int slot = heap.getInt(HEAP_SLOT);
+      int record = recordAt(slot);
+      int keyLength = arena.getInt(record + RECORD_KEY_LENGTH);
+      int valueLength = arena.getInt(record + RECORD_VALUE_LENGTH);
+      ByteBuffer key = copy(record + RECORD_HEADER_SIZE, keyLength);
+      ByteBuffer value = copy(record + RECORD_HEADER_SIZE + keyLength, valueLength);
+      compactingEntry = new SimpleObjectManagerEntry<ByteBuffer, ByteBuffer, ByteBuffer>(identifier, key, value, lsnAt(slot));
+      return compactingEntry;
+    } catch (RuntimeException e) {
+      l.unlock();
+      throw e;
+    }
+  }
+
+  @Override
+  public void releaseCompactionEntry(ObjectManagerEntry<ByteBuffer, ByteBuffer, ByteBuffer> entry) {
+    assert entry == compactingEntry;
+    compactingEntry = null;
+    lock.writeLock().unlock();
+  }
+
+  @Override
+  public void updateLsn(int hash, ObjectManagerEntry<ByteBuffer, ByteBuffer, ByteBuffer> entry, long newLsn) {
+    Lock l = lock.writeLock();
+    l.lock();
+    try {
+      int slot = find(hash, entry.getKey());
+      if (slot >= 0 && lsnAt(slot) == entry.getLsn()) {
+        table.putLong(slot * SLOT_SIZE + SLOT_LSN, newLsn);
+        heapUpdate(heapIndexAt(slot), newLsn);
+      }
+    } finally {
+      l.unlock();
+    }
+  }
+
+  @Override
+  public Long getLowestLsn() {
+    Lock l = lock.readLock();
+    l.lock();
+    try {
+      if (size == 0) {
+        return null;
+      } else {
+        return heap.getLong(HEAP_LSN);
+      }
+    } finally {
+      l.unlock();
+    }
+  }
+
+  @Override
+  public Long getLsn(int hash, ByteBuffer key) {
+    Lock l = lock.readLock();
+    l.lock();
+    try {
+      int slot = find(hash, key);
+      if (slot < 0) {
+        return null;
+      } else {
+        return lsnAt(slot);
+      }
+    } finally {
+      l.unlock();
+    }
+  }
+
+  @Override
+  public void replayPut(int hash, ByteBuffer key, ByteBuffer value, long lsn) {
+    put(hash, key, value, lsn);
+  }
+
+  @Override
+  public void put(int hash, ByteBuffer key, ByteBuffer value, long lsn) {
+    Lock l = lock.writeLock();
+    l.lock();
+    try {
+      if (size >= threshold) {
+        resize();
+      }
+      int keyLength = key.remaining();
+      int valueLength = value.remaining();
+      int record = allocate(RECORD_HEADER_SIZE + keyLength + valueLength);
+      arena.putInt(record + RECORD_KEY_LENGTH, keyLength);
+      arena.putInt(record + RECORD_VALUE_LENGTH, valueLength);
+      arenaWriter.clear();
+      arenaWriter.position(record + RECORD_HEADER_SIZE);
+      arenaWriter.put(key.duplicate());
+      arenaWriter.put(value.duplicate());
+
+      int slot = find(hash, key);
+      if (slot < 0) {
+        slot = probe(hash);
+        int base = slot * SLOT_SIZE;
+        table.putLong(base + SLOT_LSN, lsn);
+        table.putInt(base + SLOT_HASH, hash);
+        table.putInt(base + SLOT_RECORD, record);
+        siftUp(size, slot, lsn);
+        size++;
+        dataSize += identifierSize + keyLength + valueLength;
+      } else {
+        int base = slot * SLOT_SIZE;
+        int old = table.getInt(base + SLOT_RECORD);
+        garbage += recordSize(old);
+        dataSize += valueLength - arena.getInt(old + RECORD_VALUE_LENGTH);
+        table.putLong(base + SLOT_LSN, lsn);
+        table.putInt(base + SLOT_RECORD, record);
+        heapUpdate(table.getInt(base + SLOT_HEAP), lsn);
+      }
+    } finally {
+      l.unlock();
+    }
+  }
+
+  @Override
+  public void remove(int hash, ByteBuffer key) {
+    Lock l = lock.writeLock();
+    l.lock();
+    try {
+      int slot = find(hash, key);
+      if (slot >= 0) {
+        int record = recordAt(slot);
+        garbage += recordSize(record);
+        dataSize -= identifierSize + arena.getInt(record + RECORD_KEY_LENGTH) + arena.getInt(record + RECORD_VALUE_LENGTH);
+        heapRemove(heapIndexAt(slot));
+        deleteSlot(slot);
+        if (--size == 0) {
+          arenaTop = ARENA_START;
+          garbage = 0;
+        }
+      }
+    } finally {
+      l.unlock();
+    }
+  }
+
+  @Override
+  public long size() {
+    return size;
+  }
+
+  /**
+   * @return identifier, key and value bytes of the live entries, what they
+   * would occupy in the log
+   */
+  @Override
+  public long sizeInBytes() {
+    return dataSize;
+  }
+
+  long allocatedMemory() {
+    Lock l = lock.readLock();
+    l.lock();
+    try {
+      return (long) table.capacity() + heap.capacity() + arena.capacity();
+    } finally {
+      l.unlock();
+    }
+  }
+
+  void destroy() {
+    Lock l = lock.writeLock();
+    l.lock();
+    try {
+      reset();
+    } finally {
+      l.unlock();
+    }
+  }
+
+  private void reset() {
+    heap = null;
+    allocateTable(initialSlots);
+    arena = ByteBuffer.allocateDirect(INITIAL_ARENA);
+    arenaWriter = arena.duplicate();
+    arenaTop = ARENA_START;
+    garbage = 0;
+    size = 0;
+    dataSize = 0;
+  }
+
+  private void allocateTable(int slots) {
+    ByteBuffer oldHeap = heap;
+    table = ByteBuffer.allocateDirect(slots * SLOT_SIZE);
+    mask = slots - 1;
+    threshold = slots - (slots >>> 2);
+    heap = ByteBuffer.allocateDirect(threshold * HEAP_ENTRY_SIZE);
+    if (oldHeap != null) {
+      ByteBuffer entries = oldHeap.duplicate();
+      entries.clear();
+      entries.limit(size * HEAP_ENTRY_SIZE);
+      heap.duplicate().put(entries);
+    }
+  }
+
+  private void resize() {
+    int slots = mask + 1;
+    if (slots >= MAXIMUM_SLOTS) {
+      throw new IllegalStateException("Segment is full at " + size + " entries");
+    }
+    ByteBuffer old = table;
+    allocateTable(slots << 1);
+    for (int s = 0; s < slots; s++) {
+      int base = s * SLOT_SIZE;
+      if (old.getInt(base + SLOT_RECORD) != EMPTY) {
+        int slot = probe(old.getInt(base + SLOT_HASH));
+        copySlot(old, base, slot);
+      }
+    }
+  }
+
+  private int allocate(int recordSize) {
+    if (arena.capacity() - arenaTop < recordSize) {
+      long required = ARENA_START + (arenaTop - ARENA_START - garbage) + recordSize;
+      long capacity = arena.capacity();
+      while (capacity < required * 2 && capacity < MAXIMUM_ARENA) {
+        capacity <<= 1;
+      }
+      capacity = Math.min(capacity, MAXIMUM_ARENA);
+      if (capacity < required) {
+        throw new IllegalStateException("Segment is full at " + size + " entries, cannot store a " + recordSize + " byte record");
+      }
+      compactArena((int) capacity);
+    }
+    int record = arenaTop;
+    arenaTop += recordSize;
+    return record;
+  }
+
+  private void compactArena(int capacity) {
+    ByteBuffer fresh = ByteBuffer.allocateDirect(capacity);
+    ByteBuffer source = arena.duplicate();
+    fresh.position(ARENA_START);
+    for (int s = 0; s <= mask; s++) {
+      int base = s * SLOT_SIZE;
+      int record = table.getInt(base + SLOT_RECORD);
+      if (record != EMPTY) {
+        source.clear();
+        source.position(record);
+        source.limit(record + recordSize(record));
+        table.putInt(base + SLOT_RECORD, fresh.position());
+        fresh.put(source);
+      }
+    }
+    arenaTop = fresh.position();
+    garbage = 0;
+    fresh.clear();
+    arena = fresh;
+    arenaWriter = arena.duplicate();
+  }
+
+  private int find(int hash, ByteBuffer key) {
+    int slot = index(hash);
+    while (true) {
+      int base = slot * SLOT_SIZE;
+      int record = table.getInt(base + SLOT_RECORD);
+      if (record == EMPTY) {
+        return -1;
+      } else if (table.getInt(base + SLOT_HASH) == hash && keyMatches(record, key)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private int probe(int hash) {
+    int slot = index(hash);
+    while (recordAt(slot) != EMPTY) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void deleteSlot(int slot) {
+    int hole = slot;
+    int next = (hole + 1) & mask;
+    while (recordAt(next) != EMPTY) {
+      int ideal = index(table.getInt(next * SLOT_SIZE + SLOT_HASH));
+      if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+        copySlot(table, next * SLOT_SIZE, hole);
+        hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    table.putInt(hole * SLOT_SIZE + SLOT_RECORD, EMPTY);
+  }
+
+  private void copySlot(ByteBuffer from, int base, int slot) {
+    int to = slot * SLOT_SIZE;
+    int heapIndex = from.getInt(base + SLOT_HEAP);
+    table.putLong(to + SLOT_LSN, from.getLong(base + SLOT_LSN));
+    table.putInt(to + SLOT_HASH, from.getInt(base + SLOT_HASH));
+    table.putInt(to + SLOT_RECORD, from.getInt(base + SLOT_RECORD));
+    table.putInt(to + SLOT_HEAP, heapIndex);
+    heap.putInt(heapIndex * HEAP_ENTRY_SIZE + HEAP_SLOT, slot);
+  }
+
+  private boolean keyMatches(int record, ByteBuffer key) {
+    int length = arena.getInt(record + RECORD_KEY_LENGTH);
+    if (length != key.remaining()) {
+      return false;
+    }
+    int stored = record + RECORD_HEADER_SIZE;
+    int offered = key.position();
+    for (int i = 0; i < length; i++) {
+      if (arena.get(stored + i) != key.get(offered + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private ByteBuffer copy(int offset, int length) {
+    ByteBuffer source = arena.duplicate();
+    source.position(offset);
+    source.limit(offset + length);
+    ByteBuffer copy = ByteBuffer.allocate(length);
+    copy.put(source);
+    copy.flip();
+    return copy;
+  }
+
+  private int index(int hash) {
+    int h = hash * 0x9e3779b9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  private int recordAt(int slot) {
+    return table.getInt(slot * SLOT_SIZE + SLOT_RECORD);
+  }
+
+  private long lsnAt(int slot) {
+    return table.getLong(slot * SLOT_SIZE + SLOT_LSN);
+  }
+
+  private int heapIndexAt(int slot) {
+    return table.getInt(slot * SLOT_SIZE + SLOT_HEAP);
+  }
+
+  private int recordSize(int record) {
+    return RECORD_HEADER_SIZE + arena.getInt(record + RECORD_KEY_LENGTH) + arena.getInt(record + RECORD_VALUE_LENGTH);
+  }
+
+  private void heapUpdate(int index, long lsn) {
+    int slot = heap.getInt(index * HEAP_ENTRY_SIZE + HEAP_SLOT);
+    if (index > 0 && lsn < heapLsn((index - 1) >>> 1)) {
+      siftUp(index, slot, lsn);
+    } else {
+      siftDown(index, slot, lsn, size);
+    }
+  }
+
+  private void heapRemove(int index) {
+    int last = size - 1;
+    if (index != last) {
+      int slot = heap.getInt(last * HEAP_ENTRY_SIZE + HEAP_SLOT);
+      long lsn = heapLsn(last);
+      if (index > 0 && lsn < heapLsn((index - 1) >>> 1)) {
+        siftUp(index, slot, lsn);
+      } else {
+        siftDown(index, slot, lsn, last);
+      }
+    }
+  }
+
+  private void siftUp(int index, int slot, long lsn) {
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      long parentLsn = heapLsn(parent);
+      if (parentLsn <= lsn) {
+        break;
+      }
+      heapSet(index, heap.getInt(parent * HEAP_ENTRY_SIZE + HEAP_SLOT), parentLsn);
+      index = parent;
+    }
+    heapSet(index, slot, lsn);
+  }
+
+  private void siftDown(int index, int slot, long lsn, int count) {
+    while (true) {
+      int child = (index << 1) + 1;
+      if (child >= count) {
+        break;
+      }
+      long childLsn = heapLsn(child);
+      if (child + 1 < count) {
+        long rightLsn = heapLsn(child + 1);
+        if (rightLsn < childLsn) {
+          child++;
+          childLsn = rightLsn;
+        }
+      }
+      if (childLsn >= lsn) {
+        break;
+      }
+      heapSet(index, heap.getInt(child * HEAP_ENTRY_SIZE + HEAP_SLOT), childLsn);
+      index = child;
+    }
+    heapSet(index, slot, lsn);
+  }
+
+  private long heapLsn(int index) {
+    return heap.getLong(index * HEAP_ENTRY_SIZE + HEAP_LSN);
+  }
+
+  private void heapSet(int index, int slot, long lsn) {
+    int base = index * HEAP_ENTRY_SIZE;
+    heap.putLong(base + HEAP_LSN, lsn);
+    heap.putInt(base + HEAP_SLOT, slot);
+    table.putInt(slot * SLOT_SIZE + SLOT_HEAP, index);
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.transaction;
+
+import com.terracottatech.frs.action.Action;
+import com.terracottatech.frs.action.ActionCodec;
+import com.terracottatech.frs.action.ActionFactory;
+import com.terracottatech.frs.object.ObjectManager;
+import com.terracottatech.frs.util.ByteBufferUtils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Ends a transaction written as one batch.  The batch is appended in a single
+ * call to the log so its records take consecutive lsns, and this commit, the
+ * last of them, marks the {@code count} lsns just below its own as committed.
+ * A batch cut short by a crash has no commit and recovery drops what made it
+ * to disk.
+ */
+class BatchCommitAction implements Action {
+  public static final ActionFactory<ByteBuffer, ByteBuffer, ByteBuffer> FACTORY =
+          new ActionFactory<ByteBuffer, ByteBuffer, ByteBuffer>() {
+            @Override
+            public Action create(ObjectManager<ByteBuffer, ByteBuffer, ByteBuffer> objectManager,
+                                 ActionCodec codec, ByteBuffer[] buffers) {
+              return new BatchCommitAction(ByteBufferUtils.getInt(buffers));
+            }
+          };
+
+  private final int count;
+
+  BatchCommitAction(int count) {
+    this.count = count;
+  }
+
+  /**
+   * @return number of {@link BatchedAction}s directly preceding this commit
+   */
+  int getCount() {
+    return count;
+  }
+
+  @Override
+  public void record(long lsn) {
+  }
+
+  @Override
+  public void replay(long lsn) {
+  }
+
+  @Override
+  public ByteBuffer[] getPayload(ActionCodec codec) {
+    ByteBuffer header = ByteBuffer.allocate(ByteBufferUtils.INT_SIZE);
+    header.putInt(count).flip();
+    return new ByteBuffer[]{header};
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    BatchCommitAction that = (BatchCommitAction) o;
+
+    return count == that.count;
+  }
+
+  @Override
+  public int hashCode() {
+    return count;
+  }
+
+  @Override
+  public String toString() {
+    return "BatchCommitAction{" +
+            "count=" + count +
+            '}';
+  }
+}
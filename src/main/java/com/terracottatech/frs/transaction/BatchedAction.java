@@ -0,0 +1,167 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.transaction;
+
+import com.terracottatech.frs.Disposable;
+import com.terracottatech.frs.DisposableLifecycle;
+import com.terracottatech.frs.GettableAction;
+import com.terracottatech.frs.action.Action;
+import com.terracottatech.frs.action.ActionCodec;
+import com.terracottatech.frs.action.ActionFactory;
+import com.terracottatech.frs.action.InvalidatingAction;
+import com.terracottatech.frs.object.ObjectManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * An action written as part of a transaction batch.  Unlike a
+ * {@link TransactionalAction} it carries no transaction handle, the
+ * {@link BatchCommitAction} that ends the batch covers it by lsn.
+ */
+class BatchedAction implements GettableAction {
+  public static final ActionFactory<ByteBuffer, ByteBuffer, ByteBuffer> FACTORY =
+          new ActionFactory<ByteBuffer, ByteBuffer, ByteBuffer>() {
+            @Override
+            public Action create(ObjectManager<ByteBuffer, ByteBuffer, ByteBuffer> objectManager,
+                                 ActionCodec codec, ByteBuffer[] buffers) {
+              return new BatchedAction(codec.decode(buffers));
+            }
+          };
+
+  private final Action action;
+
+  BatchedAction(Action action) {
+    this.action = action;
+  }
+
+  Action getAction() {
+    return action;
+  }
+
+  @Override
+  public ByteBuffer getIdentifier() {
+    if ( action instanceof GettableAction ) {
+      return ((GettableAction)action).getIdentifier();
+    }
+    return null;
+  }
+
+  @Override
+  public ByteBuffer getKey() {
+    if ( action instanceof GettableAction ) {
+      return ((GettableAction)action).getKey();
+    }
+    return null;
+  }
+
+  @Override
+  public ByteBuffer getValue() {
+    if ( action instanceof GettableAction ) {
+      return ((GettableAction)action).getValue();
+    }
+    return null;
+  }
+
+  @Override
+  public long getLsn() {
+    if ( action instanceof GettableAction ) {
+      return ((GettableAction)action).getLsn();
+    }
+    return 0;
+  }
+
+  @Override
+  public Set<Long> getInvalidatedLsns() {
+    if (action instanceof InvalidatingAction) {
+      return ((InvalidatingAction) action).getInvalidatedLsns();
+    } else {
+      return Collections.emptySet();
+    }
+  }
+
+  @Override
+  public void setDisposable(Closeable c) {
+    if ( action instanceof DisposableLifecycle ) {
+      ((DisposableLifecycle)action).setDisposable(c);
+    } else {
+      try {
+        c.close();
+      } catch ( IOException ioe ) {
+        throw new RuntimeException(ioe);
+      }
+    }
+  }
+
+  @Override
+  public void dispose() {
+    if ( action instanceof Disposable ) {
+      ((Disposable)action).dispose();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if ( action instanceof Closeable ) {
+      ((Closeable)action).close();
+    }
+  }
+
+  @Override
+  public void record(long lsn) {
+    action.record(lsn);
+  }
+
+  @Override
+  public void replay(long lsn) {
+    action.replay(lsn);
+  }
+
+  @Override
+  public int replayConcurrency() {
+    return action.replayConcurrency();
+  }
+
+  @Override
+  public ByteBuffer[] getPayload(ActionCodec codec) {
+    return codec.encode(action);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    BatchedAction that = (BatchedAction) o;
+
+    return action.equals(that.action);
+  }
+
+  @Override
+  public int hashCode() {
+    return action != null ? action.hashCode() : 0;
+  }
+
+  @Override
+  public String toString() {
+    return "BatchedAction{" +
+            "action=" + action +
+            '}';
+  }
+}
@@ -26,5 +26,7 @@ public abstract class TransactionActions {
   public static void registerActions(int id, ActionCodec<ByteBuffer, ByteBuffer, ByteBuffer> codec) {
     codec.registerAction(id, 0, TransactionalAction.class, TransactionalAction.FACTORY);
     codec.registerAction(id, 1, TransactionCommitAction.class, TransactionCommitAction.FACTORY);
+    codec.registerAction(id, 2, BatchedAction.class, BatchedAction.FACTORY);
+    codec.registerAction(id, 3, BatchCommitAction.class, BatchCommitAction.FACTORY);
   }
 }
@@ -28,6 +28,9 @@ import java.util.Set;
 public class TransactionFilter extends AbstractAdaptingFilter<Action, Action> {
   private final Set<TransactionHandle> openTransactions =
           new HashSet<TransactionHandle>();
+  //  lsns of the last batch commit seen, batches never interleave so one is enough
+  private long batchStart = Long.MAX_VALUE;
+  private long batchEnd = Long.MAX_VALUE;
 
   public TransactionFilter(Filter<Action> nextFilter) {
     super(nextFilter);
@@ -37,6 +40,8 @@ public class TransactionFilter extends AbstractAdaptingFilter<Action, Action> {
   protected Action convert(Action element) {
     if (element instanceof TransactionalAction) {
       return ((TransactionalAction) element).getAction();
+    } else if (element instanceof BatchedAction) {
+      return ((BatchedAction) element).getAction();
     } else {
       return element;
     }
@@ -66,6 +71,15 @@ public class TransactionFilter extends AbstractAdaptingFilter<Action, Action> {
       }
 
       return replayed;
+    } else if (element instanceof BatchCommitAction) {
+      if (!filtered) {
+        batchStart = lsn - ((BatchCommitAction) element).getCount();
+        batchEnd = lsn;
+      }
+      return true;
+    } else if (element instanceof BatchedAction) {
+      boolean committed = lsn >= batchStart && lsn < batchEnd;
+      return delegate(((BatchedAction) element).getAction(), lsn, filtered || !committed);
     } else {
       return delegate(element, lsn, filtered);
     }
@@ -18,6 +18,10 @@ package com.terracottatech.frs.transaction;
 import com.terracottatech.frs.TransactionException;
 import com.terracottatech.frs.action.Action;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
 /**
  *
  * @author cdennis
@@ -40,6 +44,33 @@ public interface TransactionManager {
    */
   void commit(TransactionHandle handle, boolean synchronous) throws TransactionException;
 
+  /**
+   * Commit the transaction, returning once the commit is on disk.  The sync
+   * may be held back for up to {@code within} to share it with other commits.
+   */
+  default void commitWithin(TransactionHandle handle, long within, TimeUnit unit) throws TransactionException {
+    commit(handle, true);
+  }
+
+  /**
+   * Commit the transaction without blocking for the commit record to be written.
+   *
+   * @param handle handle to the transaction to commit.
+   * @param synchronous whether the commit must be synced to disk before the stage completes
+   * @return stage completing when the commit is written, or exceptionally with a
+   *         {@link TransactionException} if the write fails
+   */
+  default CompletionStage<Void> commitAsync(TransactionHandle handle, boolean synchronous) {
+    CompletableFuture<Void> committed = new CompletableFuture<Void>();
+    try {
+      commit(handle, synchronous);
+      committed.complete(null);
+    } catch (TransactionException e) {
+      committed.completeExceptionally(e);
+    }
+    return committed;
+  }
+
   /**
    * Record the {@link Action} under the given transaction
    *
@@ -18,14 +18,42 @@ package com.terracottatech.frs.transaction;
 import com.terracottatech.frs.TransactionException;
 import com.terracottatech.frs.action.Action;
 import com.terracottatech.frs.action.ActionManager;
+import com.terracottatech.frs.action.KeyedAction;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Transactions of up to {@code batchActions} actions are held back until
+ * commit and written as one batch, each action framed by a {@link BatchedAction}
+ * and closed by a single {@link BatchCommitAction}, in place of a handle on
+ * every action and a commit record of their own.  The held actions reach the
+ * log, and are recorded, only when the transaction commits.  A transaction that
+ * outgrows the batch, or commits with {@link #commitWithin} or
+ * {@link #commitAsync}, is written action by action as before.
+ * <p>
+ * A held action only keeps the last change to its key, and is refreshed as it
+ * is written so that it invalidates the key's lsn at that point.  The lsn it
+ * read when it was made may since have been replaced by another transaction,
+ * and recovery would otherwise replay both records for the key.
+ * <p>
+ * Nothing here takes a lock shared between transactions.  Live transactions
+ * sit in a concurrent map and the first lsn of each one that has reached the
+ * log is kept in a sorted concurrent set, so the lowest open lsn the compactor
+ * asks for is the head of that set rather than a scan of every transaction.
+ *
  * @author tim
  */
 public class TransactionManagerImpl implements TransactionManager {
@@ -33,51 +61,104 @@ public class TransactionManagerImpl implements TransactionManager {
           new AtomicLong();
   private final Map<TransactionHandle, TransactionAccount> liveTransactions     =
           new ConcurrentHashMap<TransactionHandle, TransactionAccount>();
+  private final ConcurrentSkipListSet<Long>               openLsns             =
+          new ConcurrentSkipListSet<Long>();
 
   private final ActionManager           actionManager;
+  private final int                     batchActions;
 
   public TransactionManagerImpl(ActionManager actionManager) {
+    this(actionManager, 0);
+  }
+
+  /**
+   * @param batchActions largest transaction, in actions, written as one batch
+   *                     at commit, 0 to write every action as it happens
+   */
+  public TransactionManagerImpl(ActionManager actionManager, int batchActions) {
     this.actionManager = actionManager;
+    this.batchActions = batchActions;
   }
 
   @Override
   public TransactionHandle begin() {
     TransactionHandle handle =
             new TransactionHandleImpl(currentTransactionId.incrementAndGet());
-    TransactionAccount account = new TransactionAccount();
+    TransactionAccount account = new TransactionAccount(openLsns);
     liveTransactions.put(handle, account);
     return handle;
   }
 
   @Override
   public void commit(TransactionHandle handle, boolean synchronous) throws TransactionException {
-    TransactionAccount account = liveTransactions.remove(handle);
-    if (account == null) {
-      throw new IllegalArgumentException(
-              handle + " does not belong to a live transaction.");
+    TransactionAccount account = remove(handle);
+    List<Action> batch = account.batch();
+    if (batch != null) {
+      Future<Void> written = actionManager.happenedBatch(batch, synchronous);
+      if (synchronous) {
+        await(written);
+      }
+      return;
     }
     TransactionCommitAction action = new TransactionCommitAction(handle, account.begin());
     if (synchronous) {
-      Future<Void> written = actionManager.syncHappened(action);
-      boolean interrupted = false;
-      while (true) {
-        try {
-          written.get();
-          break;
-        } catch (ExecutionException e) {
-          throw new TransactionException("Commit failed.", e);
-        } catch (InterruptedException e) {
-          interrupted = true;
-        }
-      }
-      if (interrupted) {
-        Thread.currentThread().interrupt();
-      }
+      await(actionManager.syncHappened(action));
     } else {
       actionManager.happened(action);
     }
   }
 
+  @Override
+  public void commitWithin(TransactionHandle handle, long within, TimeUnit unit) throws TransactionException {
+    await(actionManager.syncHappenedWithin(commitAction(handle), within, unit));
+  }
+
+  private static void await(Future<Void> written) throws TransactionException {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        written.get();
+        break;
+      } catch (ExecutionException e) {
+        throw new TransactionException("Commit failed.", e);
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public CompletionStage<Void> commitAsync(TransactionHandle handle, boolean synchronous) {
+    CompletableFuture<Void> committed = new CompletableFuture<Void>();
+    actionManager.happenedAsync(commitAction(handle), synchronous).whenComplete((written, failure) -> {
+      if (failure == null) {
+        committed.complete(null);
+      } else {
+        committed.completeExceptionally(new TransactionException("Commit failed.", failure));
+      }
+    });
+    return committed;
+  }
+
+  private TransactionAccount remove(TransactionHandle handle) {
+    TransactionAccount account = liveTransactions.remove(handle);
+    if (account == null) {
+      throw new IllegalArgumentException(
+              handle + " does not belong to a live transaction.");
+    }
+    account.close();
+    return account;
+  }
+
+  private TransactionCommitAction commitAction(TransactionHandle handle) {
+    TransactionAccount account = remove(handle);
+    spill(handle, account);
+    return new TransactionCommitAction(handle, account.begin());
+  }
+
   @Override
   public void happened(TransactionHandle handle, Action action) {
     TransactionAccount account = liveTransactions.get(handle);
@@ -85,38 +166,122 @@ public class TransactionManagerImpl implements TransactionManager {
       throw new IllegalArgumentException(
               handle + " does not belong to a live transaction.");
     }
+    if (account.hold(action, batchActions)) {
+      return;
+    }
+    spill(handle, account);
     Action transactionalAction = new TransactionalAction(handle, account.begin(), false, action, account);
     actionManager.happened(transactionalAction);
   }
 
+  //  write out what was held for a batch one action at a time
+  private void spill(TransactionHandle handle, TransactionAccount account) {
+    for (Action held : account.release()) {
+      actionManager.happened(new TransactionalAction(handle, account.begin(), false, refresh(held), account));
+    }
+  }
+
+  private static Action refresh(Action action) {
+    return (action instanceof KeyedAction) ? ((KeyedAction) action).refresh() : action;
+  }
+
   @Override
   public long getLowestOpenTransactionLsn() {
-    Long lowest = Long.MAX_VALUE;
-    for (TransactionAccount account : liveTransactions.values()) {
-      lowest = Math.min(account.lsn, lowest);
-    }
-    return lowest;
+    Long lowest = openLsns.ceiling(Long.MIN_VALUE);
+    return lowest == null ? Long.MAX_VALUE : lowest;
   }
 
   private static class TransactionAccount implements TransactionLSNCallback {
-    private long lsn = Long.MAX_VALUE;
-    private boolean beginWritten = false;
+    private static final long CLOSED = Long.MIN_VALUE;
 
-    synchronized boolean begin() {
-      if (beginWritten) {
+    private final ConcurrentSkipListSet<Long> openLsns;
+    private final AtomicLong lsn = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicBoolean beginWritten = new AtomicBoolean();
+    //  guarded by the account, only the caller driving the transaction takes it
+    private List<Action> held;
+    private boolean spilled = false;
+
+    TransactionAccount(ConcurrentSkipListSet<Long> openLsns) {
+      this.openLsns = openLsns;
+    }
+
+    synchronized boolean hold(Action action, int limit) {
+      if (spilled || limit <= 0) {
         return false;
-      } else {
-        beginWritten = true;
+      }
+      if (held == null) {
+        held = new ArrayList<Action>();
+      }
+      if (action instanceof KeyedAction) {
+        supersede((KeyedAction) action);
+      }
+      if (held.size() < limit) {
+        held.add(action);
         return true;
       }
+      spilled = true;
+      return false;
     }
 
-    public synchronized void setLsn(long lsn) {
-      if (this.lsn == Long.MAX_VALUE) {
-        this.lsn = lsn;
+    //  drop the held change to the same key, only the last one is written
+    private void supersede(KeyedAction action) {
+      Iterator<Action> it = held.iterator();
+      while (it.hasNext()) {
+        Action previous = it.next();
+        if (previous instanceof KeyedAction
+            && ((KeyedAction) previous).getIdentifier().equals(action.getIdentifier())
+            && ((KeyedAction) previous).getKey().equals(action.getKey())) {
+          it.remove();
+          return;
+        }
+      }
+    }
+
+    synchronized List<Action> release() {
+      List<Action> released = (held == null) ? Collections.<Action>emptyList() : held;
+      held = null;
+      spilled = true;
+      return released;
+    }
+
+    /**
+     * @return the held actions framed as a batch, or null if nothing is held
+     */
+    synchronized List<Action> batch() {
+      if (held == null || held.isEmpty()) {
+        return null;
+      }
+      List<Action> batch = new ArrayList<Action>(held.size() + 1);
+      for (Action action : held) {
+        batch.add(new BatchedAction(refresh(action)));
+      }
+      batch.add(new BatchCommitAction(held.size()));
+      held = null;
+      return batch;
+    }
+
+    boolean begin() {
+      return !beginWritten.getAndSet(true);
+    }
+
+    @Override
+    public void setLsn(long lsn) {
+      if (this.lsn.compareAndSet(Long.MAX_VALUE, lsn)) {
+        openLsns.add(lsn);
+  //  a commit racing the first record may have missed the add
+        if (this.lsn.get() == CLOSED) {
+          openLsns.remove(lsn);
+        }
       } else {
         // This shouldn't happen as we're getting LSNs in increasing order
-        assert lsn > this.lsn;
+        assert this.lsn.get() == CLOSED || lsn > this.lsn.get();
+      }
+    }
+
+    void close() {
+      long first = lsn.getAndSet(CLOSED);
+      if (first != Long.MAX_VALUE && first != CLOSED) {
+        openLsns.remove(first);
       }
     }
   }
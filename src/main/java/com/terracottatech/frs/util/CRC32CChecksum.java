@@ -0,0 +1,92 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.util;
+
+import java.lang.reflect.Constructor;
+import java.util.zip.Checksum;
+
+/**
+ * CRC32C (Castagnoli) checksums.  Uses java.util.zip.CRC32C when the running
+ * JVM has it, where the update loop is intrinsified, and falls back to a
+ * table driven implementation producing the same values on Java 8.
+ */
+public class CRC32CChecksum implements Checksum {
+
+  private static final int POLYNOMIAL = 0x82F63B78;
+  private static final int[] TABLE = new int[256];
+  private static final Constructor<? extends Checksum> PLATFORM = platform();
+
+  static {
+    for (int n = 0; n < 256; n++) {
+      int c = n;
+      for (int k = 0; k < 8; k++) {
+        c = ((c & 1) != 0) ? (c >>> 1) ^ POLYNOMIAL : c >>> 1;
+      }
+      TABLE[n] = c;
+    }
+  }
+
+  private int crc = 0xffffffff;
+
+  /**
+   * @return a new CRC32C checksum, the platform implementation if available
+   */
+  public static Checksum newInstance() {
+    if (PLATFORM != null) {
+      try {
+        return PLATFORM.newInstance();
+      } catch (ReflectiveOperationException e) {
+        //  fall through to the portable version
+      }
+    }
+    return new CRC32CChecksum();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Constructor<? extends Checksum> platform() {
+    try {
+      return (Constructor<? extends Checksum>) Class.forName("java.util.zip.CRC32C").getConstructor();
+    } catch (ClassNotFoundException e) {
+      return null;
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public void update(int b) {
+    crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xff];
+  }
+
+  @Override
+  public void update(byte[] b, int off, int len) {
+    int c = crc;
+    for (int i = off; i < off + len; i++) {
+      c = (c >>> 8) ^ TABLE[(c ^ b[i]) & 0xff];
+    }
+    crc = c;
+  }
+
+  @Override
+  public long getValue() {
+    return (~crc) & 0xffffffffL;
+  }
+
+  @Override
+  public void reset() {
+    crc = 0xffffffff;
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.util;
+
+import java.util.Arrays;
+
+/**
+ * Byte oriented LZ77 block codec in the style of LZ4.  A block is a run of
+ * sequences, each a token byte (literal count in the high nibble, match
+ * length - 4 in the low nibble), optional length extension bytes, the
+ * literals and a two byte little endian match offset.  The last sequence
+ * carries only literals.
+ *
+ * Matches are found through a single hash table probe so compression is
+ * one pass and favors speed over ratio.
+ */
+public class LZBlockCodec {
+
+  public static final int HASH_TABLE_SIZE = 1 << 14;
+
+  private static final int MIN_MATCH = 4;
+  private static final int MAX_OFFSET = 0xffff;
+  //  matches never cover the tail of the block, keeps the match search in bounds
+  private static final int LAST_LITERALS = 5;
+  private static final int MATCH_FIND_LIMIT = 12;
+  private static final int SKIP_TRIGGER = 6;
+  private static final int HASH_SHIFT = 32 - 14;
+
+  private LZBlockCodec() {
+  }
+
+  public static int maxCompressedLength(int length) {
+    return length + (length / 255) + 16;
+  }
+
+  /**
+   * @param table scratch of {@link #HASH_TABLE_SIZE} entries, not shared between threads
+   * @return number of bytes written to dest
+   */
+  public static int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int[] table) {
+    final int end = srcOff + srcLen;
+    final int matchLimit = end - LAST_LITERALS;
+    final int findLimit = end - MATCH_FIND_LIMIT;
+
+    int sp = srcOff;
+    int anchor = srcOff;
+    int dp = destOff;
+
+    if ( srcLen >= MATCH_FIND_LIMIT + 1 ) {
+      Arrays.fill(table, -1);
+      int misses = 0;
+      while ( sp < findLimit ) {
+        int seq = readInt(src, sp);
+        int h = hash(seq);
+        int ref = table[h];
+        table[h] = sp;
+        if ( ref < 0 || sp - ref > MAX_OFFSET || readInt(src, ref) != seq ) {
+  //  step faster through data that is not compressing
+          sp += 1 + (misses++ >>> SKIP_TRIGGER);
+          continue;
+        }
+        misses = 0;
+        while ( sp > anchor && ref > srcOff && src[sp - 1] == src[ref - 1] ) {
+          sp--;
+          ref--;
+        }
+        int len = MIN_MATCH;
+        while ( sp + len < matchLimit && src[sp + len] == src[ref + len] ) {
+          len++;
+        }
+        dp = writeSequence(src, anchor, sp - anchor, sp - ref, len, dest, dp);
+        sp += len;
+        anchor = sp;
+        if ( sp - 2 > srcOff && sp < findLimit ) {
+          table[hash(readInt(src, sp - 2))] = sp - 2;
+        }
+      }
+    }
+
+    return writeSequence(src, anchor, end - anchor, 0, 0, dest, dp) - destOff;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the block is corrupt or does not
+   * expand to exactly destLen bytes
+   */
+  public static void decompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int destLen) {
+    final int srcEnd = srcOff + srcLen;
+    final int destEnd = destOff + destLen;
+    int sp = srcOff;
+    int dp = destOff;
+
+    while ( sp < srcEnd ) {
+      int token = src[sp++] & 0xff;
+      int literals = token >>> 4;
+      if ( literals == 0xf ) {
+        int b;
+        do {
+          checkBounds(sp < srcEnd);
+          b = src[sp++] & 0xff;
+          literals += b;
+        } while ( b == 0xff );
+      }
+      checkBounds(literals <= srcEnd - sp && literals <= destEnd - dp);
+      System.arraycopy(src, sp, dest, dp, literals);
+      sp += literals;
+      dp += literals;
+
+      if ( sp == srcEnd ) {
+        break;
+      }
+
+      checkBounds(srcEnd - sp >= 2);
+      int offset = (src[sp++] & 0xff) | ((src[sp++] & 0xff) << 8);
+      checkBounds(offset > 0 && offset <= dp - destOff);
+      int len = token & 0xf;
+      if ( len == 0xf ) {
+        int b;
+        do {
+          checkBounds(sp < srcEnd);
+          b = src[sp++] & 0xff;
+          len += b;
+        } while ( b == 0xff );
+      }
+      len += MIN_MATCH;
+      checkBounds(len <= destEnd - dp);
+      int ref = dp - offset;
+      if ( offset >= len ) {
+        System.arraycopy(dest, ref, dest, dp, len);
+        dp += len;
+      } else {
+  //  overlapping match repeats the last offset bytes
+        for ( int x = 0; x < len; x++ ) {
+          dest[dp++] = dest[ref++];
+        }
+      }
+    }
+
+    if ( dp != destEnd ) {
+      throw new IllegalArgumentException("compressed block expands to " + (dp - destOff) + " bytes, expected " + destLen);
+    }
+  }
+
+  private static int writeSequence(byte[] src, int start, int literals, int offset, int matchLength, byte[] dest, int dp) {
+    int tokenAt = dp++;
+    int token;
+    if ( literals >= 0xf ) {
+      token = 0xf << 4;
+      dp = writeLength(literals - 0xf, dest, dp);
+    } else {
+      token = literals << 4;
+    }
+    System.arraycopy(src, start, dest, dp, literals);
+    dp += literals;
+
+    if ( matchLength > 0 ) {
+      dest[dp++] = (byte) offset;
+      dest[dp++] = (byte) (offset >>> 8);
+      int len = matchLength - MIN_MATCH;
+      if ( len >= 0xf ) {
+        token |= 0xf;
+        dp = writeLength(len - 0xf, dest, dp);
+      } else {
+        token |= len;
+      }
+    }
+    dest[tokenAt] = (byte) token;
+    return dp;
+  }
+
+  private static int writeLength(int remaining, byte[] dest, int dp) {
+    while ( remaining >= 0xff ) {
+      dest[dp++] = (byte) 0xff;
+      remaining -= 0xff;
+    }
+    dest[dp++] = (byte) remaining;
+    return dp;
+  }
+
+  private static void checkBounds(boolean ok) {
+    if ( !ok ) {
+      throw new IllegalArgumentException("malformed compressed block");
+    }
+  }
+
+  private static int readInt(byte[] src, int i) {
+    return (src[i] & 0xff) | ((src[i + 1] & 0xff) << 8) | ((src[i + 2] & 0xff) << 16) | ((src[i + 3] & 0xff) << 24);
+  }
+
+  private static int hash(int seq) {
+    return (seq * -1640531535) >>> HASH_SHIFT;
+  }
+}
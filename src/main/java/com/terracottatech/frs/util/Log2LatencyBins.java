@@ -98,6 +98,16 @@ public class Log2LatencyBins {
     }
   }
 
+  /**
+   * Record a single latency, without the array the varargs form needs.
+   *
+   * @param latencyInNanos latency to record.
+   */
+  public void record(long latencyInNanos) {
+    bins[binIndexFor(latencyInNanos)].increment();
+    counter.increment();
+  }
+
   /**
    * Record some latencies.
    *
@@ -0,0 +1,126 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs;
+
+import com.terracottatech.frs.config.FrsProperty;
+import com.terracottatech.frs.object.NullObjectManager;
+import com.terracottatech.frs.object.ObjectManager;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Properties;
+
+/**
+ * Measures the bytes the calling thread allocates per auto-commit put and
+ * remove against a real store, once the pool, the commit lists and the IO
+ * thread have settled into a steady state.  The pooled path still pays a few
+ * bytes per operation for the commit lists writers create.  The result depends
+ * on the JIT, so it is not part of the unit suite, run it by hand.
+ */
+public class AutoCommitAllocationBenchmark {
+
+  private static final int WARMUP = 600000;
+  private static final int OPERATIONS = 100000;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void pooledRecords() throws Exception {
+    com.sun.management.ThreadMXBean threads = threads();
+    RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> store = createStore(new Properties());
+    try {
+      Transaction<ByteBuffer, ByteBuffer, ByteBuffer> auto = store.beginAutoCommitTransaction(false);
+      ByteBuffer id = ByteBuffer.allocate(4).putInt(0, 1);
+      ByteBuffer key = ByteBuffer.allocate(8);
+      ByteBuffer value = ByteBuffer.allocateDirect(128);
+
+      run(auto, id, key, value, WARMUP);
+      report("pooled records", allocated(threads, auto, id, key, value));
+    } finally {
+      store.shutdown();
+    }
+  }
+
+  @Test
+  public void actionPath() throws Exception {
+    com.sun.management.ThreadMXBean threads = threads();
+    Properties properties = new Properties();
+    properties.setProperty(FrsProperty.STORE_AUTOCOMMIT_POOL_SIZE.shortName(), "0");
+    RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> store = createStore(properties);
+    try {
+      Transaction<ByteBuffer, ByteBuffer, ByteBuffer> auto = store.beginAutoCommitTransaction(false);
+      ByteBuffer id = ByteBuffer.allocate(4).putInt(0, 1);
+      ByteBuffer key = ByteBuffer.allocate(8);
+      ByteBuffer value = ByteBuffer.allocateDirect(128);
+
+      run(auto, id, key, value, WARMUP);
+      report("action path", allocated(threads, auto, id, key, value));
+    } finally {
+      store.shutdown();
+    }
+  }
+
+  private static void report(String path, long allocated) {
+    System.out.println(path + ": " + allocated + " bytes over " + OPERATIONS + " operations, "
+                       + ((double) allocated / OPERATIONS) + " bytes/op");
+  }
+
+  private static com.sun.management.ThreadMXBean threads() {
+    Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+    return threads;
+  }
+
+  private static long allocated(com.sun.management.ThreadMXBean threads, Transaction<ByteBuffer, ByteBuffer, ByteBuffer> auto,
+                                ByteBuffer id, ByteBuffer key, ByteBuffer value) throws TransactionException {
+    long thread = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(thread);
+    run(auto, id, key, value, OPERATIONS);
+    return threads.getThreadAllocatedBytes(thread) - before;
+  }
+
+  private static void run(Transaction<ByteBuffer, ByteBuffer, ByteBuffer> auto, ByteBuffer id, ByteBuffer key,
+                          ByteBuffer value, int count) throws TransactionException {
+    for (int x = 0; x < count; x++) {
+      key.putLong(0, x);
+      if ((x & 7) == 7) {
+        auto.remove(id, key);
+      } else {
+        auto.put(id, key, value);
+      }
+    }
+  }
+
+  private RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> createStore(Properties properties) throws Exception {
+    ObjectManager<ByteBuffer, ByteBuffer, ByteBuffer> objectManager = new NullObjectManager<ByteBuffer, ByteBuffer, ByteBuffer>() {
+      @Override
+      public long getLsn(ByteBuffer id, ByteBuffer key) {
+        return -1;
+      }
+    };
+    RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> store = RestartStoreFactory.createStore(objectManager,
+        folder.newFolder(), properties);
+    store.startup().get();
+    return store;
+  }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs;
+
+import com.terracottatech.frs.config.FrsProperty;
+import java.util.Properties;
+
+public class DirectOnHeapTest extends OnHeapTest {
+
+  @Override
+  public Properties configure(Properties props) {
+    props.setProperty(FrsProperty.IO_NIO_ACCESS_METHOD.shortName(), "DIRECT");
+    return props;
+  }
+  
+}
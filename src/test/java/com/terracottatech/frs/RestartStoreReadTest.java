@@ -29,8 +29,12 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import static com.terracottatech.frs.util.TestUtils.byteBufferWithInt;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import junit.framework.Assert;
 
 /**
@@ -102,6 +106,206 @@ public class RestartStoreReadTest  {
     }
   }
   
+  @Test
+  public void testCommitAsync() throws Throwable {
+    List<CompletableFuture<Void>> commits = new ArrayList<CompletableFuture<Void>>();
+    for (int x = 0; x < 100; x++) {
+      commits.add(restart.beginTransaction(true).put(byteBufferWithInt(1), byteBufferWithInt(x), byteBufferWithInt(x)).commitAsync().toCompletableFuture());
+    }
+    CompletableFuture.allOf(commits.toArray(new CompletableFuture[commits.size()])).get(10, TimeUnit.SECONDS);
+    for (int x = 0; x < 100; x++) {
+      Tuple<ByteBuffer,ByteBuffer,ByteBuffer> tuple = restart.get(omgr.getLsn(byteBufferWithInt(1), byteBufferWithInt(x)));
+      Assert.assertTrue(tuple.getValue().getInt() == x);
+      if ( tuple instanceof Disposable ) {
+        ((Disposable)tuple).dispose();
+      }
+    }
+  }
+
+  @Test
+  public void testAutoCommitWrite() throws Throwable {
+    File home = folder.newFolder();
+    ObjectManager<ByteBuffer,ByteBuffer,ByteBuffer> objects = new HeapObjectManager<ByteBuffer,ByteBuffer,ByteBuffer>(1);
+    RestartStore<ByteBuffer,ByteBuffer,ByteBuffer> store = RestartStoreFactory.createStore(objects, home, properties);
+    store.startup().get();
+    Transaction<ByteBuffer,ByteBuffer,ByteBuffer> auto = store.beginAutoCommitTransaction(false);
+    for (int x = 0; x < 100; x++) {
+  //  every tenth value is too big for a pooled record
+      ByteBuffer value = (x % 10 == 0) ? ByteBuffer.allocate(8 * 1024) : ByteBuffer.allocateDirect(16);
+      value.putInt(0, x);
+      auto.put(byteBufferWithInt(1), byteBufferWithInt(x), value);
+      Assert.assertEquals(0, value.position());
+    }
+    auto.remove(byteBufferWithInt(1), byteBufferWithInt(5));
+    store.beginAutoCommitTransaction(true).put(byteBufferWithInt(1), byteBufferWithInt(100), byteBufferWithInt(100));
+    for (int x = 0; x <= 100; x++) {
+      if (x == 5) {
+        continue;
+      }
+      Tuple<ByteBuffer,ByteBuffer,ByteBuffer> tuple = store.get(objects.getLsn(byteBufferWithInt(1), byteBufferWithInt(x)));
+      Assert.assertEquals(x, tuple.getKey().getInt());
+      Assert.assertEquals(x, tuple.getValue().getInt());
+      if ( tuple instanceof Disposable ) {
+        ((Disposable)tuple).dispose();
+      }
+    }
+    store.shutdown();
+
+    objects = new HeapObjectManager<ByteBuffer,ByteBuffer,ByteBuffer>(1);
+    store = RestartStoreFactory.createStore(objects, home, properties);
+    store.startup().get();
+    try {
+      Assert.assertEquals(100, objects.size());
+      Assert.assertEquals(-1L, objects.getLsn(byteBufferWithInt(1), byteBufferWithInt(5)));
+    } finally {
+      store.shutdown();
+    }
+  }
+
+  @Test
+  public void testDeadlineDurableWrite() throws Throwable {
+    File home = folder.newFolder();
+    ObjectManager<ByteBuffer,ByteBuffer,ByteBuffer> objects = new HeapObjectManager<ByteBuffer,ByteBuffer,ByteBuffer>(1);
+    RestartStore<ByteBuffer,ByteBuffer,ByteBuffer> store = RestartStoreFactory.createStore(objects, home, properties);
+    store.startup().get();
+    Transaction<ByteBuffer,ByteBuffer,ByteBuffer> auto = store.beginAutoCommitTransaction(5, TimeUnit.MILLISECONDS);
+    for (int x = 0; x < 10; x++) {
+      auto.put(byteBufferWithInt(1), byteBufferWithInt(x), byteBufferWithInt(x));
+    }
+    Transaction<ByteBuffer,ByteBuffer,ByteBuffer> txn = store.beginTransaction(5, TimeUnit.MILLISECONDS);
+    for (int x = 10; x < 20; x++) {
+      txn.put(byteBufferWithInt(1), byteBufferWithInt(x), byteBufferWithInt(x));
+    }
+    txn.commit();
+    store.shutdown();
+
+    objects = new HeapObjectManager<ByteBuffer,ByteBuffer,ByteBuffer>(1);
+    store = RestartStoreFactory.createStore(objects, home, properties);
+    store.startup().get();
+    try {
+      Assert.assertEquals(20, objects.size());
+    } finally {
+      store.shutdown();
+    }
+  }
+
+  @Test
+  public void testBatchedTransactions() throws Throwable {
+    File home = folder.newFolder();
+    Properties batched = new Properties();
+    batched.putAll(properties);
+    batched.setProperty(FrsProperty.TRANSACTION_BATCH_ACTIONS.shortName(), "8");
+    ObjectManager<ByteBuffer,ByteBuffer,ByteBuffer> objects = new HeapObjectManager<ByteBuffer,ByteBuffer,ByteBuffer>(1);
+    RestartStore<ByteBuffer,ByteBuffer,ByteBuffer> store = RestartStoreFactory.createStore(objects, home, batched);
+    store.startup().get();
+    for (int t = 0; t < 20; t++) {
+  //  every fifth transaction is too big for a batch
+      int size = (t % 5 == 0) ? 12 : 4;
+      Transaction<ByteBuffer,ByteBuffer,ByteBuffer> txn = store.beginTransaction(false);
+      for (int x = 0; x < size; x++) {
+        txn.put(byteBufferWithInt(1), byteBufferWithInt(t * 100 + x), byteBufferWithInt(t));
+      }
+      txn.commit();
+    }
+    Transaction<ByteBuffer,ByteBuffer,ByteBuffer> last = store.beginTransaction(true);
+    last.remove(byteBufferWithInt(1), byteBufferWithInt(101));
+    last.put(byteBufferWithInt(1), byteBufferWithInt(102), byteBufferWithInt(-1));
+    last.commit();
+    Tuple<ByteBuffer,ByteBuffer,ByteBuffer> tuple = store.get(objects.getLsn(byteBufferWithInt(1), byteBufferWithInt(102)));
+    Assert.assertEquals(-1, tuple.getValue().getInt());
+    if ( tuple instanceof Disposable ) {
+      ((Disposable)tuple).dispose();
+    }
+    store.shutdown();
+
+    objects = new HeapObjectManager<ByteBuffer,ByteBuffer,ByteBuffer>(1);
+    store = RestartStoreFactory.createStore(objects, home, batched);
+    store.startup().get();
+    try {
+      Assert.assertEquals(4 * 12 + 16 * 4 - 1, objects.size());
+      Assert.assertEquals(-1L, objects.getLsn(byteBufferWithInt(1), byteBufferWithInt(101)));
+      tuple = store.get(objects.getLsn(byteBufferWithInt(1), byteBufferWithInt(102)));
+      Assert.assertEquals(-1, tuple.getValue().getInt());
+      if ( tuple instanceof Disposable ) {
+        ((Disposable)tuple).dispose();
+      }
+      tuple = store.get(objects.getLsn(byteBufferWithInt(1), byteBufferWithInt(1903)));
+      Assert.assertEquals(19, tuple.getValue().getInt());
+      if ( tuple instanceof Disposable ) {
+        ((Disposable)tuple).dispose();
+      }
+    } finally {
+      store.shutdown();
+    }
+  }
+
+  @Test
+  public void testBatchedRepeatedPutRecovers() throws Throwable {
+    File home = folder.newFolder();
+    RestartStore<ByteBuffer,ByteBuffer,ByteBuffer> store = batchedStore(home, new HeapObjectManager<ByteBuffer,ByteBuffer,ByteBuffer>(1));
+    Transaction<ByteBuffer,ByteBuffer,ByteBuffer> txn = store.beginTransaction(true);
+    txn.put(byteBufferWithInt(1), byteBufferWithInt(1), byteBufferWithInt(1));
+    txn.put(byteBufferWithInt(1), byteBufferWithInt(1), byteBufferWithInt(2));
+    txn.commit();
+  //  the older write of a second transaction lands after this one commits
+    Transaction<ByteBuffer,ByteBuffer,ByteBuffer> older = store.beginTransaction(true);
+    older.put(byteBufferWithInt(1), byteBufferWithInt(2), byteBufferWithInt(1));
+    store.beginTransaction(true).put(byteBufferWithInt(1), byteBufferWithInt(2), byteBufferWithInt(2)).commit();
+    older.commit();
+    store.shutdown();
+
+    ObjectManager<ByteBuffer,ByteBuffer,ByteBuffer> objects = new HeapObjectManager<ByteBuffer,ByteBuffer,ByteBuffer>(1);
+    store = batchedStore(home, objects);
+    try {
+      Assert.assertEquals(2, objects.size());
+      Tuple<ByteBuffer,ByteBuffer,ByteBuffer> tuple = store.get(objects.getLsn(byteBufferWithInt(1), byteBufferWithInt(1)));
+      Assert.assertEquals(2, tuple.getValue().getInt());
+      if ( tuple instanceof Disposable ) {
+        ((Disposable)tuple).dispose();
+      }
+      tuple = store.get(objects.getLsn(byteBufferWithInt(1), byteBufferWithInt(2)));
+      Assert.assertEquals(1, tuple.getValue().getInt());
+      if ( tuple instanceof Disposable ) {
+        ((Disposable)tuple).dispose();
+      }
+    } finally {
+      store.shutdown();
+    }
+  }
+
+  @Test
+  public void testBatchedPutThenRemoveRecovers() throws Throwable {
+    File home = folder.newFolder();
+    RestartStore<ByteBuffer,ByteBuffer,ByteBuffer> store = batchedStore(home, new HeapObjectManager<ByteBuffer,ByteBuffer,ByteBuffer>(1));
+    store.beginTransaction(true).put(byteBufferWithInt(1), byteBufferWithInt(1), byteBufferWithInt(1)).commit();
+    Transaction<ByteBuffer,ByteBuffer,ByteBuffer> txn = store.beginTransaction(true);
+    txn.put(byteBufferWithInt(1), byteBufferWithInt(1), byteBufferWithInt(2));
+    txn.remove(byteBufferWithInt(1), byteBufferWithInt(1));
+    txn.put(byteBufferWithInt(1), byteBufferWithInt(2), byteBufferWithInt(2));
+    txn.remove(byteBufferWithInt(1), byteBufferWithInt(2));
+    txn.commit();
+    store.shutdown();
+
+    ObjectManager<ByteBuffer,ByteBuffer,ByteBuffer> objects = new HeapObjectManager<ByteBuffer,ByteBuffer,ByteBuffer>(1);
+    store = batchedStore(home, objects);
+    try {
+      Assert.assertEquals(0, objects.size());
+      Assert.assertEquals(-1L, objects.getLsn(byteBufferWithInt(1), byteBufferWithInt(1)));
+      Assert.assertEquals(-1L, objects.getLsn(byteBufferWithInt(1), byteBufferWithInt(2)));
+    } finally {
+      store.shutdown();
+    }
+  }
+
+  private static RestartStore<ByteBuffer,ByteBuffer,ByteBuffer> batchedStore(File home, ObjectManager<ByteBuffer,ByteBuffer,ByteBuffer> objects) throws Exception {
+    Properties batched = new Properties();
+    batched.putAll(properties);
+    batched.setProperty(FrsProperty.TRANSACTION_BATCH_ACTIONS.shortName(), "8");
+    RestartStore<ByteBuffer,ByteBuffer,ByteBuffer> store = RestartStoreFactory.createStore(objects, home, batched);
+    store.startup().get();
+    return store;
+  }
+
   @Test
   public void testLoop() throws Throwable {
     int x = 0;
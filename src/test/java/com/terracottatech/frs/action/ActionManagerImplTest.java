@@ -16,9 +16,12 @@
 package com.terracottatech.frs.action;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import com.terracottatech.frs.log.LogRecord;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -26,7 +29,10 @@ import java.util.concurrent.TimeUnit;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ActionManagerImplTest extends BaseActionManagerImplTest {
@@ -75,6 +81,21 @@ public class ActionManagerImplTest extends BaseActionManagerImplTest {
     assertThat(actionFuture.isDone(), is(true));
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testHappenedBatchWhenPaused() throws Exception {
+    List<Action> batch = Arrays.asList(mock(Action.class), mock(Action.class), mock(Action.class));
+    when(logMgr.appendBatch(anyList(), eq(true))).thenAnswer(answerOnAppend(false, true, 0));
+    actionMgr.pause();
+    scheduleResumeTask(100);
+    Future<Void> actionFuture = actionMgr.happenedBatch(batch, true);
+    actionFuture.get();
+    assertThat(actionFuture.isDone(), is(true));
+    ArgumentCaptor<List<LogRecord>> records = ArgumentCaptor.forClass((Class) List.class);
+    verify(logMgr).appendBatch(records.capture(), eq(true));
+    assertThat(records.getValue().size(), is(3));
+  }
+
   @Test
   public void testPausedWhenHappenedTakesLonger() throws Exception {
     Action put = mock(Action.class);
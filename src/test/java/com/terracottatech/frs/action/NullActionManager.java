@@ -18,6 +18,8 @@ package com.terracottatech.frs.action;
 import com.terracottatech.frs.log.LogRecord;
 
 import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * @author tim
@@ -33,6 +35,16 @@ public class NullActionManager implements ActionManager {
     return null;
   }
 
+  @Override
+  public CompletionStage<Void> happenedAsync(Action action, boolean sync) {
+    return CompletableFuture.completedFuture(null);
+  }
+
+  @Override
+  public Future<Void> happened(LogRecord record, boolean sync) {
+    return null;
+  }
+
   @Override
   public Action extract(LogRecord record) {
     return null;
@@ -0,0 +1,128 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.flash;
+
+import com.terracottatech.frs.RestartStore;
+import com.terracottatech.frs.RestartStoreFactory;
+import com.terracottatech.frs.config.FrsProperty;
+import com.terracottatech.frs.object.ObjectManagerEntry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Properties;
+
+import static com.terracottatech.frs.util.TestUtils.byteBufferWithInt;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class FlashObjectManagerTest {
+
+  private static final ByteBuffer ID = byteBufferWithInt(1);
+  private static final int KEYS = 200;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File home;
+  private Properties properties;
+
+  @Before
+  public void setUp() throws Exception {
+    home = folder.newFolder();
+    properties = new Properties();
+    properties.setProperty(FrsProperty.IO_NIO_SEGMENT_SIZE.shortName(), Integer.toString(16 * 1024));
+  }
+
+  @Test
+  public void testValuesReadFromLog() throws Exception {
+    FlashObjectManager objectManager = new FlashObjectManager(2, 8);
+    RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> store = start(objectManager);
+    for (int round = 0; round < 3; round++) {
+      for (int k = 0; k < KEYS; k++) {
+        store.beginTransaction(true).put(ID, byteBufferWithInt(k), value(k, round)).commit();
+      }
+    }
+    store.beginTransaction(true).remove(ID, byteBufferWithInt(0)).commit();
+
+    assertThat(objectManager.size(), is((long) KEYS - 1));
+    assertThat(objectManager.get(ID, byteBufferWithInt(0)), nullValue());
+    assertThat(objectManager.get(byteBufferWithInt(2), byteBufferWithInt(1)), nullValue());
+    for (int k = 1; k < KEYS; k++) {
+      assertThat(objectManager.get(ID, byteBufferWithInt(k)), is(value(k, 2)));
+    }
+    assertThat(objectManager.sizeInBytes(), is((long) (KEYS - 1) * (4 + 4 + 12)));
+
+    ObjectManagerEntry<ByteBuffer, ByteBuffer, ByteBuffer> entry = objectManager.acquireCompactionEntry(Long.MAX_VALUE);
+    try {
+      int k = entry.getKey().getInt(0);
+      assertThat(entry.getValue(), is(value(k, 2)));
+      assertThat(entry.getLsn(), is(objectManager.getLsn(ID, byteBufferWithInt(k))));
+    } finally {
+      objectManager.releaseCompactionEntry(entry);
+    }
+    store.shutdown();
+  }
+
+  @Test
+  public void testRecoveryKeepsOnlyKeys() throws Exception {
+    FlashObjectManager objectManager = new FlashObjectManager(1, 4);
+    RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> store = start(objectManager);
+    for (int k = 0; k < KEYS; k++) {
+      store.beginTransaction(true).put(ID, byteBufferWithInt(k), value(k, 0)).commit();
+    }
+    store.beginTransaction(true).put(ID, byteBufferWithInt(7), value(7, 1)).commit();
+    store.shutdown();
+
+    objectManager = new FlashObjectManager(1, 4);
+    store = start(objectManager);
+    assertThat(objectManager.size(), is((long) KEYS));
+    assertThat(objectManager.sizeInBytes(), is((long) KEYS * (4 + 4 + 12)));
+    for (int k = 0; k < KEYS; k++) {
+      assertThat(objectManager.get(ID, byteBufferWithInt(k)), is(value(k, k == 7 ? 1 : 0)));
+    }
+    store.shutdown();
+
+    objectManager = new FlashObjectManager(1, 4);
+    store = start(objectManager);
+    ObjectManagerEntry<ByteBuffer, ByteBuffer, ByteBuffer> entry = objectManager.acquireCompactionEntry(Long.MAX_VALUE);
+    try {
+      int k = entry.getKey().getInt(0);
+      assertThat(entry.getValue(), is(value(k, k == 7 ? 1 : 0)));
+      assertThat(entry.getLsn(), is(objectManager.getLsn(ID, byteBufferWithInt(k))));
+    } finally {
+      objectManager.releaseCompactionEntry(entry);
+    }
+    store.shutdown();
+  }
+
+  private RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> start(FlashObjectManager objectManager) throws Exception {
+    RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> store = RestartStoreFactory.createStore(objectManager, home, properties);
+    objectManager.setRestartStore(store);
+    store.startup().get();
+    return store;
+  }
+
+  private static ByteBuffer value(int k, int round) {
+    ByteBuffer value = ByteBuffer.allocate(12);
+    value.putInt(0, k).putInt(4, round).putInt(8, k * 31 + round);
+    return value;
+  }
+}
@@ -15,7 +15,9 @@
  */
 package com.terracottatech.frs.io;
 
+import java.io.File;
 import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
@@ -264,4 +266,45 @@ public class FileBufferTest {
             assert (buffer.get(x + 64) == fill[x]);
         }
     }
+
+    @Test
+    public void testGatheringWrite() throws Exception {
+        File target = new File(folder.newFolder(), "gather");
+        FileBuffer buffer = new FileBuffer(new FileOutputStream(target).getChannel(), ByteBuffer.allocate(1024));
+        ByteBuffer[] payload = new ByteBuffer[FileBuffer.IOV_MAX * 3 + 7];
+        long expected = 8;
+        for (int x = 0; x < payload.length; x++) {
+    //  mix of empty, heap and direct buffers, more than one gathering write can take
+            payload[x] = ( x % 2 == 0 ) ? ByteBuffer.allocate(x % 5) : ByteBuffer.allocateDirect(x % 5);
+            while (payload[x].hasRemaining()) {
+                payload[x].put((byte) x);
+            }
+            payload[x].flip();
+            expected += payload[x].remaining();
+        }
+        buffer.partition(4);
+        buffer.putInt(0xCAFEBABE);
+        buffer.insert(payload, 1, false);
+        buffer.putInt(0xDEADBEEF);
+        assertEquals(expected, buffer.gatheringWrite(payload.length + 2));
+        assertEquals(expected, buffer.offset());
+        buffer.close();
+
+        ByteBuffer written = ByteBuffer.allocate((int) expected);
+        RandomAccessFile check = new RandomAccessFile(target, "r");
+        try {
+            assertEquals(expected, check.length());
+            check.getChannel().read(written);
+        } finally {
+            check.close();
+        }
+        written.flip();
+        assertEquals(0xCAFEBABE, written.getInt());
+        for (int x = 0; x < payload.length; x++) {
+            for (int b = 0; b < x % 5; b++) {
+                assertEquals((byte) x, written.get());
+            }
+        }
+        assertEquals(0xDEADBEEF, written.getInt());
+    }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.io.nio;
+
+import com.terracottatech.frs.util.JUnitTestFolder;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class DirectFileChannelTest {
+  private static final int BLOCK = 4096;
+
+  @Rule
+  public JUnitTestFolder folder = new JUnitTestFolder();
+
+  File file;
+  Random r;
+
+  @Before
+  public void setUp() throws Exception {
+    file = new File(folder.newFolder(), "direct.frs");
+    long seed = System.currentTimeMillis();
+    System.out.println("seed: " + seed);
+    r = new Random(seed);
+  }
+
+  /**
+   * the bounce buffer logic runs over a regular channel so it is checked
+   * whether or not this file system takes O_DIRECT
+   */
+  @Test
+  public void testUnalignedWritesAndReads() throws Exception {
+    FileChannel channel = new DirectFileChannel(new RandomAccessFile(file, "rw").getChannel(), true,
+        BLOCK, ByteBuffer.allocate(4 * BLOCK), ByteBuffer.allocate(BLOCK));
+    byte[] expected = new byte[0];
+    for (int x = 0; x < 100; x++) {
+      byte[] data = random(r.nextInt(3 * BLOCK) + 1);
+      if (r.nextBoolean()) {
+        channel.write(ByteBuffer.wrap(data));
+      } else {
+        int split = r.nextInt(data.length);
+        channel.write(new ByteBuffer[] {ByteBuffer.wrap(data, 0, split), ByteBuffer.wrap(data, split, data.length - split)});
+      }
+      expected = concat(expected, data);
+      assertThat(channel.size(), is((long) expected.length));
+      assertThat(channel.position(), is((long) expected.length));
+    }
+  //  padded to a block on disk until closed
+    assertThat(file.length() % BLOCK, is(0L));
+
+    for (int x = 0; x < 100; x++) {
+      int pos = r.nextInt(expected.length);
+      ByteBuffer read = ByteBuffer.allocate(r.nextInt(6 * BLOCK) + 1);
+      int expect = Math.min(read.remaining(), expected.length - pos);
+      assertThat(channel.read(read, pos), is(expect));
+      assertThat(Arrays.copyOf(read.array(), expect), is(Arrays.copyOfRange(expected, pos, pos + expect)));
+    }
+    assertThat(channel.read(ByteBuffer.allocate(1), expected.length), is(-1));
+
+    channel.close();
+    assertThat(file.length(), is((long) expected.length));
+    assertThat(readFile(), is(expected));
+  }
+
+  @Test
+  public void testOverwriteKeepsFollowingBytes() throws Exception {
+    FileChannel channel = new DirectFileChannel(new RandomAccessFile(file, "rw").getChannel(), true,
+        BLOCK, ByteBuffer.allocate(4 * BLOCK), ByteBuffer.allocate(BLOCK));
+    byte[] expected = random(5 * BLOCK + 123);
+    channel.write(ByteBuffer.wrap(expected));
+    byte[] patch = random(BLOCK + 17);
+    channel.write(ByteBuffer.wrap(patch), 1000);
+    System.arraycopy(patch, 0, expected, 1000, patch.length);
+    assertThat(channel.size(), is((long) expected.length));
+
+    channel.truncate(expected.length - 100);
+    expected = Arrays.copyOf(expected, expected.length - 100);
+    channel.position(expected.length);
+    byte[] more = random(50);
+    channel.write(ByteBuffer.wrap(more));
+    expected = concat(expected, more);
+    channel.close();
+    assertThat(readFile(), is(expected));
+  }
+
+  @Test
+  public void testDirectOpen() throws Exception {
+    FileChannel channel = DirectFileChannel.open(file, true, true);
+    Assume.assumeTrue("direct I/O not available here", channel != null);
+    byte[] expected = new byte[0];
+    for (int x = 0; x < 20; x++) {
+      byte[] data = random(r.nextInt(64 * 1024) + 1);
+      channel.write(ByteBuffer.wrap(data));
+      expected = concat(expected, data);
+    }
+    channel.force(false);
+    channel.close();
+    assertThat(file.length(), is((long) expected.length));
+
+    FileChannel reader = DirectFileChannel.open(file, false, false);
+    try {
+      ByteBuffer all = ByteBuffer.allocate(expected.length + 100);
+      while (reader.read(all) > 0) {
+      }
+      assertThat(all.position(), is(expected.length));
+      assertThat(Arrays.copyOf(all.array(), expected.length), is(expected));
+    } finally {
+      reader.close();
+    }
+  }
+
+  private byte[] random(int size) {
+    byte[] data = new byte[size];
+    r.nextBytes(data);
+    return data;
+  }
+
+  private static byte[] concat(byte[] a, byte[] b) {
+    byte[] c = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, c, a.length, b.length);
+    return c;
+  }
+
+  private byte[] readFile() throws Exception {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      byte[] content = new byte[(int) raf.length()];
+      raf.readFully(content);
+      return content;
+    } finally {
+      raf.close();
+    }
+  }
+}
@@ -17,6 +17,7 @@ package com.terracottatech.frs.io.nio;
 
 import com.terracottatech.frs.Constants;
 import com.terracottatech.frs.config.Configuration;
+import com.terracottatech.frs.config.FrsProperty;
 import com.terracottatech.frs.io.BufferSource;
 import com.terracottatech.frs.io.Chunk;
 import com.terracottatech.frs.io.Direction;
@@ -173,6 +174,18 @@ public class NIOManagerTest {
         testMTAppend(lm);
     }
 
+    @Test
+    public void testPipelinedSyncMT() throws IOException {
+        System.out.println("Pipelined sync MT append");
+        manager.close();
+        Properties overrides = new Properties();
+        overrides.setProperty(FrsProperty.IO_NIO_PIPELINED_SYNC.shortName(), "true");
+        manager = new NIOManager(Configuration.getConfiguration(workArea, overrides), src);
+        manager.setMinimumMarker(Constants.FIRST_LSN);
+        final StagingLogManager lm = new StagingLogManager(Signature.ADLER32, new AtomicCommitList( lsn, 100, 20),manager, src);
+        testMTAppend(lm);
+    }
+
     @Test
     public void testStackingMT() {
         System.out.println("Stacking MT append");
@@ -0,0 +1,150 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.io.nio;
+
+import com.terracottatech.frs.util.JUnitTestFolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class NIOSegmentPoolTest {
+  private static final long SEGMENT_SIZE = 1024 * 1024;
+
+  @Rule
+  public JUnitTestFolder folder = new JUnitTestFolder();
+
+  File workArea;
+  NIOSegmentPool pool;
+
+  @Before
+  public void setUp() throws Exception {
+    workArea = folder.newFolder();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (pool != null) {
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testSparesAreFilled() throws Exception {
+    pool = new NIOSegmentPool(workArea, SEGMENT_SIZE, 2);
+    awaitReady(2);
+
+    File[] spares = workArea.listFiles(NIOConstants.SPARE_FILENAME_FILTER);
+    assertThat(spares.length, is(2));
+    for (File spare : spares) {
+      assertTrue(NIOConstants.isReadySpare(spare));
+      assertThat(spare.length(), is(SEGMENT_SIZE));
+    }
+    assertThat(workArea.listFiles(NIOConstants.SEGMENT_FILENAME_FILTER).length, is(0));
+
+    File segment = new File(workArea, NIOConstants.convertToSegmentFileName(0));
+    assertTrue(pool.take(segment));
+    assertThat(segment.length(), is(SEGMENT_SIZE));
+    assertThat(pool.getTaken(), is(1L));
+  //  taken spares are replaced
+    awaitReady(2);
+  }
+
+  @Test
+  public void testTakeWithoutSpares() throws Exception {
+    pool = new NIOSegmentPool(workArea, SEGMENT_SIZE, 0);
+    File segment = new File(workArea, NIOConstants.convertToSegmentFileName(0));
+    assertFalse(pool.take(segment));
+    assertFalse(segment.exists());
+    assertThat(pool.getMissed(), is(1L));
+  }
+
+  @Test
+  public void testRecycleWhenFullOrClosed() throws Exception {
+    pool = new NIOSegmentPool(workArea, SEGMENT_SIZE, 1);
+    awaitReady(1);
+    File segment = new File(workArea, NIOConstants.convertToSegmentFileName(0));
+    write(segment, 4096, (byte) 0x5a);
+    assertFalse(pool.recycle(segment));
+    assertTrue(segment.exists());
+
+    assertTrue(pool.take(new File(workArea, NIOConstants.convertToSegmentFileName(1))));
+    pool.close();
+    assertFalse(pool.recycle(segment));
+    assertTrue(segment.exists());
+  }
+
+  @Test
+  public void testLeftoverSparesAreReused() throws Exception {
+  //  one spare was being filled and one was ready when the last run stopped
+    File filling = new File(workArea, NIOConstants.convertToSpareFileName(3, false));
+    write(filling, (int) SEGMENT_SIZE * 2, (byte) 0x5a);
+    File ready = new File(workArea, NIOConstants.convertToSpareFileName(4, true));
+    write(ready, (int) SEGMENT_SIZE, (byte) 0);
+
+    pool = new NIOSegmentPool(workArea, SEGMENT_SIZE, 2);
+    awaitReady(2);
+    assertFalse(filling.exists());
+    assertTrue(ready.exists());
+    assertThat(workArea.listFiles(NIOConstants.SPARE_FILENAME_FILTER).length, is(2));
+    File refilled = new File(workArea, NIOConstants.convertToSpareFileName(3, true));
+    assertThat(refilled.length(), is(SEGMENT_SIZE * 2));
+    byte[] content = new byte[(int) refilled.length()];
+    FileInputStream in = new FileInputStream(refilled);
+    try {
+      int read = 0;
+      while (read < content.length) {
+        read += in.read(content, read, content.length - read);
+      }
+    } finally {
+      in.close();
+    }
+  //  only the head of a recycled file is cleared, the rest is left as it was
+    byte[] expected = new byte[content.length];
+    Arrays.fill(expected, 4096, expected.length, (byte) 0x5a);
+    assertThat(content, is(expected));
+  }
+
+  private void awaitReady(int count) throws InterruptedException {
+    long end = System.currentTimeMillis() + 30000;
+    while (pool.getReady() < count && System.currentTimeMillis() < end) {
+      Thread.sleep(10);
+    }
+    assertThat(pool.getReady(), is(count));
+  }
+
+  private static void write(File f, int size, byte fill) throws IOException {
+    byte[] content = new byte[size];
+    Arrays.fill(content, fill);
+    FileOutputStream out = new FileOutputStream(f);
+    try {
+      out.write(content);
+    } finally {
+      out.close();
+    }
+  }
+}
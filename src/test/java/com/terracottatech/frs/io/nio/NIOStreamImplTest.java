@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -302,6 +303,161 @@ public class NIOStreamImplTest {
     }
   }  
   
+  @Test
+  public void testPipelinedSync() throws Exception {
+    stream.usePipelinedSync(true);
+    List<CompletableFuture<Void>> synced = new ArrayList<CompletableFuture<Void>>();
+    long marker = Constants.FIRST_LSN;
+    for (int x = 0; x < 40; x++) {
+  //  big enough to roll over a few segments while syncs are in flight
+      stream.append(newChunk(1024 * 1024), marker);
+      synced.add(stream.syncAsync().toCompletableFuture());
+      marker += 1;
+    }
+    CompletableFuture.allOf(synced.toArray(new CompletableFuture[synced.size()])).get();
+    assertThat(stream.getSyncdMarker(), is(marker - 1));
+    stream.close();
+
+    stream = new NIOStreamImpl(workArea, MAX_SEGMENT_SIZE);
+    stream.open();
+    assertThat(stream.getMarker(), is(marker - 1));
+  }
+
+  @Test
+  public void testSegmentPool() throws Exception {
+    stream.useSegmentPool(2);
+    awaitSpares(stream.getSegmentPool(), 2);
+    long marker = Constants.FIRST_LSN;
+    int numChunks = 35;
+    for (int x = 0; x < numChunks; x++) {
+      stream.append(newChunk(1024 * 1024), marker++);
+    }
+    assertTrue(stream.getSegmentPool().getTaken() > 0);
+  //  the live head only counts what has been written
+    assertTrue(stream.getTotalSize() < numChunks * (1024 * 1024 + CHUNK_OVERHEAD) + 4096);
+    stream.close();
+
+    File[] segments = listFiles();
+    assertThat(segments.length, is(4));
+    for (File f : segments) {
+      assertTrue(f.length() <= MAX_SEGMENT_SIZE + 1024 * 1024 + 4096);
+    }
+    assertTrue(segments[segments.length - 1].length() < MAX_SEGMENT_SIZE);
+
+    stream = new NIOStreamImpl(workArea, MAX_SEGMENT_SIZE);
+    stream.open();
+    assertThat(stream.getMarker(), is(marker - 1));
+    stream.seek(-1);
+    int foundChunks = 0;
+    while (stream.read(Direction.REVERSE) != null) {
+      foundChunks++;
+    }
+    assertThat(foundChunks, is(numChunks));
+  }
+
+  @Test
+  public void testRecoverFromSpare() throws Exception {
+    stream.useSegmentPool(2);
+    awaitSpares(stream.getSegmentPool(), 2);
+    long marker = Constants.FIRST_LSN;
+    int numChunks = 15;
+    for (int x = 0; x < numChunks; x++) {
+      stream.append(newChunk(1024 * 1024), marker++);
+    }
+    stream.sync();
+  //  stop without closing, the head is still a full size spare
+    NIOStreamImpl crashed = stream;
+    crashed.getSegmentPool().close();
+    File head = listFiles()[listFiles().length - 1];
+    assertTrue(head.length() >= MAX_SEGMENT_SIZE);
+
+    stream = new NIOStreamImpl(workArea, MAX_SEGMENT_SIZE);
+    stream.open();
+    assertThat(stream.getMarker(), is(marker - 1));
+    assertTrue(head.length() < MAX_SEGMENT_SIZE);
+    stream.seek(-1);
+    int foundChunks = 0;
+    while (stream.read(Direction.REVERSE) != null) {
+      foundChunks++;
+    }
+    assertThat(foundChunks, is(numChunks));
+  }
+
+  @Test
+  public void testRecoverOverRecycledSegment() throws Exception {
+  //  an old segment with chunks the same size as the new ones, so the new data
+  //  ends exactly where an old chunk starts
+    File previous = folder.newFolder();
+    NIOStreamImpl old = new NIOStreamImpl(previous, MAX_SEGMENT_SIZE);
+    old.setMinimumMarker(Constants.FIRST_LSN);
+    long marker = Constants.FIRST_LSN;
+    for (int x = 0; x < 8; x++) {
+      old.append(newChunk(64 * 1024), marker++);
+    }
+    old.close();
+    File recycled = previous.listFiles(NIOConstants.SEGMENT_FILENAME_FILTER)[0];
+    assertTrue(recycled.renameTo(new File(workArea, NIOConstants.convertToSpareFileName(0, false))));
+
+    stream.useSegmentPool(1);
+    awaitSpares(stream.getSegmentPool(), 1);
+    marker = 1000;
+    int numChunks = 4;
+    for (int x = 0; x < numChunks; x++) {
+      stream.append(newChunk(64 * 1024), marker++);
+    }
+    stream.sync();
+    assertThat(stream.getSegmentPool().getTaken(), is(1L));
+    stream.getSegmentPool().close();
+
+    stream = new NIOStreamImpl(workArea, MAX_SEGMENT_SIZE);
+    stream.open();
+    assertThat(stream.getMarker(), is(marker - 1));
+    stream.seek(-1);
+    int foundChunks = 0;
+    while (stream.read(Direction.REVERSE) != null) {
+      foundChunks++;
+    }
+    assertThat(foundChunks, is(numChunks));
+  }
+
+  @Test
+  public void testDirectAccess() throws Exception {
+    stream.close();
+    stream = new NIOStreamImpl(workArea, NIOAccessMethod.DIRECT, MAX_SEGMENT_SIZE, new HeapBufferSource(512 * 1024 * 1024), null);
+    stream.setMinimumMarker(Constants.FIRST_LSN);
+    long marker = Constants.FIRST_LSN;
+    int numChunks = 50;
+    for (int x = 0; x < numChunks; x++) {
+      stream.append(newChunk(r.nextInt(512 * 1024) + 1), marker++);
+      if (x % 10 == 0) {
+        stream.sync();
+      }
+    }
+    stream.close();
+  //  the padding past the last block is cut off on close
+    for (File f : listFiles()) {
+      assertTrue(f.length() <= MAX_SEGMENT_SIZE + 1024 * 1024);
+    }
+
+    stream = new NIOStreamImpl(workArea, NIOAccessMethod.DIRECT, MAX_SEGMENT_SIZE, new HeapBufferSource(512 * 1024 * 1024), null);
+    stream.open();
+    assertThat(stream.getMarker(), is(marker - 1));
+    stream.seek(-1);
+    int foundChunks = 0;
+    while (stream.read(Direction.REVERSE) != null) {
+      foundChunks++;
+    }
+    assertThat(foundChunks, is(numChunks));
+  }
+
+  private static void awaitSpares(NIOSegmentPool pool, int count) throws InterruptedException {
+    long end = System.currentTimeMillis() + 30000;
+    while (pool.getReady() < count && System.currentTimeMillis() < end) {
+      Thread.sleep(10);
+    }
+    assertThat(pool.getReady(), is(count));
+  }
+
   @Test
   public void testDisableFsync() throws Exception {
     stream.disableSync(true);
@@ -0,0 +1,317 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.io.nio;
+
+import com.terracottatech.frs.Constants;
+import com.terracottatech.frs.RestartStore;
+import com.terracottatech.frs.RestartStoreFactory;
+import com.terracottatech.frs.config.FrsProperty;
+import com.terracottatech.frs.io.BufferSource;
+import com.terracottatech.frs.io.Chunk;
+import com.terracottatech.frs.io.Direction;
+import com.terracottatech.frs.io.IOManager;
+import com.terracottatech.frs.io.IOStatistics;
+import com.terracottatech.frs.io.MaskingBufferSource;
+import com.terracottatech.frs.io.SplittingBufferSource;
+import com.terracottatech.frs.io.WrappingChunk;
+import com.terracottatech.frs.object.RegisterableObjectManager;
+import com.terracottatech.frs.object.SimpleRestartableMap;
+import com.terracottatech.frs.util.JUnitTestFolder;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StripedIOManagerTest {
+
+  private static BufferSource src;
+
+  @Rule
+  public JUnitTestFolder folder = new JUnitTestFolder();
+
+  private File[] homes;
+
+  @BeforeClass
+  public static void setupClass() throws Exception {
+    src = new MaskingBufferSource(new SplittingBufferSource(16, 8 * 1024 * 1024));
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    homes = new File[] {folder.newFolder(), folder.newFolder(), folder.newFolder()};
+  }
+
+  @Test
+  public void testWriteScanAndRecover() throws Exception {
+    StripedIOManager striped = open(homes);
+    striped.seek(IOManager.Seek.END.getValue());
+    assertThat(striped.read(Direction.REVERSE), nullValue());
+    striped.seek(IOManager.Seek.BEGINNING.getValue());
+
+    for (long lsn = Constants.FIRST_LSN; lsn < Constants.FIRST_LSN + 30; lsn++) {
+      striped.write(region(lsn, lsn % 2 == 0), lsn);
+      if (lsn % 7 == 0) {
+        striped.sync();
+      }
+    }
+    striped.sync();
+    for (long lsn = Constants.FIRST_LSN; lsn < Constants.FIRST_LSN + 30; lsn++) {
+      assertThat(content(striped.scan(lsn)), is(lsn));
+    }
+    striped.close();
+
+    striped = open(homes);
+    assertThat(striped.getCurrentMarker(), is(Constants.FIRST_LSN + 29));
+    assertRecovers(striped, Constants.FIRST_LSN + 29, Constants.FIRST_LSN);
+    for (long lsn = Constants.FIRST_LSN; lsn < Constants.FIRST_LSN + 30; lsn++) {
+      assertThat(content(striped.scan(lsn)), is(lsn));
+    }
+    striped.close();
+  }
+
+  @Test
+  public void testUnsyncedGapIsCut() throws Exception {
+    DroppingIOManager lossy = new DroppingIOManager(nio(homes[1]));
+    StripedIOManager striped = new StripedIOManager(nio(homes[0]), lossy, nio(homes[2]));
+    striped.seek(IOManager.Seek.END.getValue());
+    striped.seek(IOManager.Seek.BEGINNING.getValue());
+    for (long lsn = Constants.FIRST_LSN; lsn < Constants.FIRST_LSN + 6; lsn++) {
+      striped.write(region(lsn, true), lsn);
+    }
+    striped.sync();
+    //  the next region dealt to the middle stripe never makes it to disk
+    lossy.drop = true;
+    for (long lsn = Constants.FIRST_LSN + 6; lsn < Constants.FIRST_LSN + 9; lsn++) {
+      striped.write(region(lsn, true), lsn);
+    }
+    striped.close();
+
+    striped = open(homes);
+    assertThat(striped.getCurrentMarker(), is(Constants.FIRST_LSN + 6));
+    assertRecovers(striped, Constants.FIRST_LSN + 6, Constants.FIRST_LSN);
+    striped.write(region(Constants.FIRST_LSN + 7, false), Constants.FIRST_LSN + 7);
+    striped.sync();
+    striped.close();
+
+    //  the region written past the gap stays hidden behind the fence
+    striped = open(homes);
+    assertThat(striped.getCurrentMarker(), is(Constants.FIRST_LSN + 7));
+    assertRecovers(striped, Constants.FIRST_LSN + 7, Constants.FIRST_LSN);
+    striped.close();
+  }
+
+  @Test
+  public void testMinimumMarkerSurvivesRestart() throws Exception {
+    StripedIOManager striped = open(homes);
+    striped.seek(IOManager.Seek.END.getValue());
+    striped.seek(IOManager.Seek.BEGINNING.getValue());
+    for (long lsn = Constants.FIRST_LSN; lsn < Constants.FIRST_LSN + 12; lsn++) {
+      striped.write(region(lsn, true), lsn);
+    }
+    striped.setMinimumMarker(Constants.FIRST_LSN + 8);
+    striped.write(region(Constants.FIRST_LSN + 12, true), Constants.FIRST_LSN + 12);
+    striped.sync();
+    striped.close();
+
+    striped = open(homes);
+    assertThat(striped.getMinimumMarker(), is(Constants.FIRST_LSN + 8));
+    striped.close();
+  }
+
+  @Test
+  public void testLayoutIsChecked() throws Exception {
+    StripedIOManager.checkLayout(homes[0], Arrays.asList(homes));
+    assertTrue(StripedIOManager.isStriped(homes[0]));
+    StripedIOManager.checkLayout(homes[0], Arrays.asList(homes));
+    try {
+      StripedIOManager.checkLayout(homes[0], Arrays.asList(homes[0], homes[1]));
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void testRestartStoreRoundTrip() throws Exception {
+    Properties properties = new Properties();
+    properties.put(FrsProperty.IO_NIO_STRIPE_DIRECTORIES.shortName(),
+        homes[1].getAbsolutePath() + File.pathSeparator + homes[2].getAbsolutePath());
+
+    RegisterableObjectManager<ByteBuffer, ByteBuffer, ByteBuffer> objectManager = new RegisterableObjectManager<ByteBuffer, ByteBuffer, ByteBuffer>();
+    RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> restartStore = RestartStoreFactory.createStore(objectManager, homes[0], properties);
+    SimpleRestartableMap map = new SimpleRestartableMap(0, restartStore, true);
+    objectManager.registerObject(map);
+    restartStore.startup().get();
+    try {
+      for (int i = 0; i < 1000; i++) {
+        map.put(Integer.toString(i), "value-" + i);
+      }
+    } finally {
+      restartStore.shutdown();
+    }
+    for (File home : homes) {
+      assertTrue(home.list(NIOConstants.SEGMENT_FILENAME_FILTER).length > 0);
+    }
+
+    try {
+      RestartStoreFactory.createStore(new RegisterableObjectManager<ByteBuffer, ByteBuffer, ByteBuffer>(), homes[0], new Properties());
+      fail();
+    } catch (IOException expected) {
+    }
+
+    objectManager = new RegisterableObjectManager<ByteBuffer, ByteBuffer, ByteBuffer>();
+    restartStore = RestartStoreFactory.createStore(objectManager, homes[0], properties);
+    map = new SimpleRestartableMap(0, restartStore, false);
+    objectManager.registerObject(map);
+    restartStore.startup().get();
+    try {
+      for (int i = 0; i < 1000; i++) {
+        assertEquals("value-" + i, map.get(Integer.toString(i)));
+      }
+    } finally {
+      restartStore.shutdown();
+    }
+  }
+
+  private void assertRecovers(StripedIOManager striped, long from, long to) throws IOException {
+    striped.seek(IOManager.Seek.END.getValue());
+    for (long lsn = from; lsn >= to; lsn--) {
+      assertThat(content(striped.read(Direction.REVERSE)), is(lsn));
+    }
+    assertThat(striped.read(Direction.REVERSE), nullValue());
+    striped.seek(IOManager.Seek.BEGINNING.getValue());
+  }
+
+  private static StripedIOManager open(File[] homes) throws IOException {
+    IOManager[] stripes = new IOManager[homes.length];
+    for (int x = 0; x < homes.length; x++) {
+      stripes[x] = nio(homes[x]);
+    }
+    return new StripedIOManager(stripes);
+  }
+
+  private static NIOManager nio(File home) throws IOException {
+    return new NIOManager(home.getAbsolutePath(), "STREAM", null, 64 * 1024, -1, -1, true, src);
+  }
+
+  /**
+   * alternates between regions with headroom in front, the way the packers
+   * form them, and regions without
+   */
+  private static Chunk region(long lsn, boolean headroom) {
+    ByteBuffer data = ByteBuffer.allocate(64 + 1024);
+    data.position(headroom ? 64 : 0);
+    data.mark();
+    data.putLong(lsn);
+    while (data.hasRemaining()) {
+      data.put((byte) lsn);
+    }
+    data.reset();
+    return new WrappingChunk(data);
+  }
+
+  private static long content(Chunk c) throws IOException {
+    try {
+      long lsn = c.getLong();
+      while (c.hasRemaining()) {
+        assertThat(c.get(), is((byte) lsn));
+      }
+      return lsn;
+    } finally {
+      if (c instanceof Closeable) {
+        ((Closeable) c).close();
+      }
+    }
+  }
+
+  private static class DroppingIOManager implements IOManager {
+    private final IOManager delegate;
+    private boolean drop = false;
+
+    DroppingIOManager(IOManager delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public long write(Chunk region, long marker) throws IOException {
+      return drop ? 0 : delegate.write(region, marker);
+    }
+
+    @Override
+    public void setMinimumMarker(long marker) throws IOException {
+      delegate.setMinimumMarker(marker);
+    }
+
+    @Override
+    public long getCurrentMarker() throws IOException {
+      return delegate.getCurrentMarker();
+    }
+
+    @Override
+    public long getMinimumMarker() throws IOException {
+      return delegate.getMinimumMarker();
+    }
+
+    @Override
+    public Chunk read(Direction dir) throws IOException {
+      return delegate.read(dir);
+    }
+
+    @Override
+    public Chunk scan(long marker) throws IOException {
+      return delegate.scan(marker);
+    }
+
+    @Override
+    public long seek(long lsn) throws IOException {
+      return delegate.seek(lsn);
+    }
+
+    @Override
+    public void sync() throws IOException {
+      delegate.sync();
+    }
+
+    @Override
+    public Future<Void> clean(long timeout) throws IOException {
+      return delegate.clean(timeout);
+    }
+
+    @Override
+    public IOStatistics getStatistics() throws IOException {
+      return delegate.getStatistics();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
+}
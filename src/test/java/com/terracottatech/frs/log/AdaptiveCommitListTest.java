@@ -0,0 +1,123 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.log;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.number.OrderingComparison.lessThan;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AdaptiveCommitListTest {
+
+  private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Test
+  public void testIdleWindowDoesNotBatchSyncs() throws Exception {
+    AdaptiveCommitList.Window window = new AdaptiveCommitList.Window(1024, 5000 * MILLIS, 2 * MILLIS);
+    assertThat(window.batchSyncs(), is(false));
+
+    final AdaptiveCommitList list = new AdaptiveCommitList(10, window);
+    final LogRecord record = record(10);
+    long start = System.nanoTime();
+    new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException ie) {
+        }
+        list.append(record, true);
+      }
+    }.start();
+    list.waitForContiguous();
+    assertThat(list.getEndLsn(), is(10L));
+    assertThat(System.nanoTime() - start, lessThan(TimeUnit.SECONDS.toNanos(2)));
+  }
+
+  @Test
+  public void testWindowSizesFromArrivalsAndSyncLatency() throws Exception {
+    AdaptiveCommitList.Window window = new AdaptiveCommitList.Window(4096, 200 * MILLIS, 2 * MILLIS);
+    window.regionSynced(MILLIS);
+    //  one record per microsecond
+    window.regionReady(1000, 0, MILLIS);
+
+    assertThat(window.budget(), is(MILLIS));
+    assertThat(window.batchSyncs(), is(true));
+    assertThat(window.waitTime(true), is(MILLIS));
+    assertThat(window.batchSize(), is(2000));
+
+    //  the disk alone blows the latency goal, no time left to wait
+    window = new AdaptiveCommitList.Window(4096, 200 * MILLIS, 2 * MILLIS);
+    window.regionSynced(5 * MILLIS);
+    window.regionReady(1000, 0, MILLIS);
+    assertThat(window.budget(), is(0L));
+    assertThat(window.batchSyncs(), is(false));
+    assertThat(window.batchSize(), is(4096));
+  }
+
+  @Test
+  public void testSyncHeldOpenForBatch() throws Exception {
+    //  the latency budget never runs out during the test, the list only
+    //  completes once every slot is filled
+    AdaptiveCommitList.Window window = new AdaptiveCommitList.Window(32, 200 * MILLIS, TimeUnit.HOURS.toNanos(1));
+    window.regionReady(1000, 0, MILLIS);
+    assertThat(window.batchSyncs(), is(true));
+    assertThat(window.batchSize(), is(32));
+
+    final AdaptiveCommitList list = new AdaptiveCommitList(10, window);
+    Thread waiter = new Thread() {
+      @Override
+      public void run() {
+        try {
+          list.waitForContiguous();
+        } catch (InterruptedException ie) {
+        }
+      }
+    };
+    waiter.start();
+    while (waiter.getState() != Thread.State.TIMED_WAITING) {
+      Thread.yield();
+    }
+    for (long lsn = 10; lsn < 42; lsn++) {
+      assertThat(list.append(record(lsn), true), is(true));
+    }
+    waiter.join(TimeUnit.SECONDS.toMillis(5));
+    assertThat(waiter.isAlive(), is(false));
+    assertThat(list.getEndLsn(), is(41L));
+    assertThat(list.isSyncRequested(), is(true));
+  }
+
+  @Test
+  public void testChainSharesWindow() throws Exception {
+    AdaptiveCommitList list = new AdaptiveCommitList(10, 64, 200, 2, TimeUnit.MILLISECONDS);
+    list.append(record(10), false);
+    list.close(10);
+    CommitList next = list.next();
+    assertThat(next.getBaseLsn(), is(11L));
+    assertThat(((AdaptiveCommitList) next).getWindow() == list.getWindow(), is(true));
+  }
+
+  private LogRecord record(long lsn) {
+    LogRecord record = mock(LogRecord.class);
+    when(record.getLsn()).thenReturn(lsn);
+    return record;
+  }
+}
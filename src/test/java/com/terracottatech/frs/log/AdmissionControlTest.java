@@ -0,0 +1,83 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.log;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class AdmissionControlTest {
+
+  @Test
+  public void testOversizedAdmittedWhenIdle() throws Exception {
+    AdmissionControl admission = new AdmissionControl(100);
+    assertThat(admission.tryAcquire(500, 0, MILLISECONDS), is(true));
+    assertThat(admission.tryAcquire(1, 10, MILLISECONDS), is(false));
+    admission.release(500);
+    assertThat(admission.tryAcquire(60, 0, MILLISECONDS), is(true));
+    assertThat(admission.tryAcquire(40, 0, MILLISECONDS), is(true));
+    assertThat(admission.getInflightBytes(), is(100L));
+    assertThat(admission.getStalls(), is(1L));
+  }
+
+  @Test
+  public void testReleaseWakesWaiter() throws Exception {
+    final AdmissionControl admission = new AdmissionControl(100);
+    assertThat(admission.acquire(100), is(true));
+    final CountDownLatch admitted = new CountDownLatch(1);
+    new Thread() {
+      @Override
+      public void run() {
+        if (admission.acquire(50)) {
+          admitted.countDown();
+        }
+      }
+    }.start();
+    assertThat(admitted.await(50, MILLISECONDS), is(false));
+    admission.release(60);
+    assertThat(admitted.await(10, SECONDS), is(true));
+    assertThat(admission.getInflightBytes(), is(90L));
+    assertThat(admission.getStallTime(), greaterThan(0L));
+  }
+
+  @Test
+  public void testCloseLetsWaitersThrough() throws Exception {
+    final AdmissionControl admission = new AdmissionControl(100);
+    admission.acquire(100);
+    final CountDownLatch through = new CountDownLatch(1);
+    final AtomicBoolean admitted = new AtomicBoolean(true);
+    new Thread() {
+      @Override
+      public void run() {
+        admitted.set(admission.acquire(50));
+        through.countDown();
+      }
+    }.start();
+    admission.close();
+    assertThat(through.await(10, SECONDS), is(true));
+    assertThat(admitted.get(), is(false));
+    assertThat(admission.getInflightBytes(), is(100L));
+    assertThat(admission.acquire(1), is(false));
+    assertThat(admission.tryAcquire(1, 0, MILLISECONDS), is(false));
+  }
+}
@@ -21,6 +21,8 @@ import com.terracottatech.frs.io.CopyingChunk;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -196,4 +198,148 @@ public class LogRegionPackerTest {
       assertNotNull(lr);
     }
   }
+  @Test
+  public void testCompressedRegion() throws Exception {
+    RegionCompression compression = new RegionCompression();
+    LogRegionPacker instance = new LogRegionPacker(Signature.ADLER32, null, (String) FORCE_LOG_REGION_FORMAT.defaultValue(), compression);
+    Chunk result = instance.pack(records(1000, 1024, false));
+    Chunk check = new CopyingChunk(result);
+
+    assertTrue(check.length() < 1024 * 512);
+    assertTrue(compression.getRatio() > 4.0);
+    assertEquals(compression.getPackedBytes(), 1024 * (512 + LogRegionPacker.LOG_RECORD_HEADER_SIZE));
+
+    check.getShort();
+    check.getLong();
+    check.getLong();
+    assertEquals(LogRegionPacker.COMPRESSED_REGION_FORMAT_STRING, new String(new byte[] {check.get(), check.get()}, "US-ASCII"));
+
+    check.clear();
+    List<LogRecord> unpacked = LogRegionPacker.unpack(Signature.ADLER32, (String) FORCE_LOG_REGION_FORMAT.defaultValue(), check);
+    assertEquals(1024, unpacked.size());
+    long lsn = 1000;
+    for (LogRecord lr : unpacked) {
+      assertEquals(lsn, lr.getLsn());
+      assertEquals(ByteBuffer.wrap(payload(lsn, false)), lr.getPayload()[0]);
+      lsn++;
+    }
+
+    for (int x=0;x<1024;x+=7) {
+      check.clear();
+      LogRecord lr = LogRegionPacker.extract(Signature.NONE, (String) FORCE_LOG_REGION_FORMAT.defaultValue(), check, 1000 + x);
+      assertEquals(1000 + x, lr.getLsn());
+      assertEquals(ByteBuffer.wrap(payload(1000 + x, false)), lr.getPayload()[0]);
+    }
+  }
+
+  @Test
+  public void testIncompressibleRegionIsStoredUncompressed() throws Exception {
+    RegionCompression compression = new RegionCompression();
+    LogRegionPacker instance = new LogRegionPacker(Signature.ADLER32, null, (String) FORCE_LOG_REGION_FORMAT.defaultValue(), compression);
+    Chunk check = new CopyingChunk(instance.pack(records(1000, 1, true)));
+
+    check.getShort();
+    check.getLong();
+    check.getLong();
+    assertEquals(LogRegionPacker.NEW_REGION_FORMAT_STRING, new String(new byte[] {check.get(), check.get()}, "US-ASCII"));
+    assertEquals(1.0, compression.getRatio(), 0.0);
+
+    check.clear();
+    List<LogRecord> unpacked = LogRegionPacker.unpack(Signature.ADLER32, (String) FORCE_LOG_REGION_FORMAT.defaultValue(), check);
+    assertEquals(1, unpacked.size());
+    assertEquals(ByteBuffer.wrap(payload(1000, true)), unpacked.get(0).getPayload()[0]);
+  }
+
+  @Test
+  public void testCorruptCompressedRegion() throws Exception {
+    LogRegionPacker instance = new LogRegionPacker(Signature.ADLER32, null, (String) FORCE_LOG_REGION_FORMAT.defaultValue(), new RegionCompression());
+    Chunk check = new CopyingChunk(instance.pack(records(1000, 64, false)));
+    long last = check.length() - 10;
+    check.skip(last);
+    byte b = check.get();
+    check.clear();
+    check.skip(last);
+    check.put((byte)~b);
+    check.clear();
+    try {
+      LogRegionPacker.unpack(Signature.ADLER32, (String) FORCE_LOG_REGION_FORMAT.defaultValue(), check);
+      fail();
+    } catch (FormatException expected) {
+    }
+  }
+
+  @Test
+  public void testRecordChecksums() throws Exception {
+    LogRegionPacker instance = new LogRegionPacker(Signature.CRC32C, (String) FORCE_LOG_REGION_FORMAT.defaultValue());
+    Chunk check = new CopyingChunk(instance.pack(records(1000, 64, true)));
+
+    assertEquals(LogRegionPacker.REGION_VERSION, check.getShort());
+    assertEquals(0L, check.getLong());
+    check.clear();
+    List<LogRecord> unpacked = LogRegionPacker.unpack(Signature.ADLER32, (String) FORCE_LOG_REGION_FORMAT.defaultValue(), check);
+    assertEquals(64, unpacked.size());
+    assertEquals(ByteBuffer.wrap(payload(1010, true)), unpacked.get(10).getPayload()[0]);
+
+    //  corrupt the last byte of the payload of the last record
+    long last = check.length() - 1;
+    check.clear();
+    check.skip(last);
+    byte b = check.get();
+    check.clear();
+    check.skip(last);
+    check.put((byte)~b);
+
+    check.clear();
+    try {
+      LogRegionPacker.unpack(Signature.CRC32C, (String) FORCE_LOG_REGION_FORMAT.defaultValue(), check);
+      fail();
+    } catch (FormatException expected) {
+    }
+
+    //  random reads only verify the record they return
+    check.clear();
+    LogRecord lr = LogRegionPacker.extract(Signature.CRC32C, (String) FORCE_LOG_REGION_FORMAT.defaultValue(), check, 1062);
+    assertEquals(ByteBuffer.wrap(payload(1062, true)), lr.getPayload()[0]);
+    check.clear();
+    try {
+      LogRegionPacker.extract(Signature.CRC32C, (String) FORCE_LOG_REGION_FORMAT.defaultValue(), check, 1063);
+      fail();
+    } catch (FormatException expected) {
+    }
+    check.clear();
+    assertNotNull(LogRegionPacker.extract(Signature.NONE, (String) FORCE_LOG_REGION_FORMAT.defaultValue(), check, 1063));
+  }
+
+  @Test
+  public void testRecordChecksumsInCompressedRegion() throws Exception {
+    LogRegionPacker instance = new LogRegionPacker(Signature.CRC32C, null, (String) FORCE_LOG_REGION_FORMAT.defaultValue(), new RegionCompression());
+    Chunk check = new CopyingChunk(instance.pack(records(1000, 256, false)));
+    for (int x=0;x<256;x+=5) {
+      check.clear();
+      LogRecord lr = LogRegionPacker.extract(Signature.CRC32C, (String) FORCE_LOG_REGION_FORMAT.defaultValue(), check, 1000 + x);
+      assertEquals(ByteBuffer.wrap(payload(1000 + x, false)), lr.getPayload()[0]);
+    }
+  }
+
+  private static Iterable<LogRecord> records(long start, int count, boolean random) {
+    List<LogRecord> list = new ArrayList<LogRecord>();
+    for (int x=0;x<count;x++) {
+      LogRecord record = new LogRecordImpl(new ByteBuffer[] {ByteBuffer.wrap(payload(start + x, random))}, null);
+      record.updateLsn(start + x);
+      list.add(record);
+    }
+    return list;
+  }
+
+  private static byte[] payload(long lsn, boolean random) {
+    byte[] data = new byte[512];
+    if (random) {
+      new Random(lsn).nextBytes(data);
+    } else {
+      for (int x=0;x<data.length;x++) {
+        data[x] = (byte)(x % 16 == 0 ? lsn : x % 5);
+      }
+    }
+    return data;
+  }
 }
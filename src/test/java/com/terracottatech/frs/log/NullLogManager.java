@@ -21,7 +21,10 @@ import com.terracottatech.frs.io.IOStatistics;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author tim
@@ -60,6 +63,16 @@ public class NullLogManager implements LogManager {
     return null;
   }
 
+  @Override
+  public Future<Void> tryAppend(LogRecord record, boolean sync, long timeout, TimeUnit unit) {
+    return null;
+  }
+
+  @Override
+  public CompletionStage<Void> appendAsync(LogRecord record, boolean sync) {
+    return CompletableFuture.completedFuture(null);
+  }
+
   private Iterator<LogRecord> reader() {
     return Collections.<LogRecord>emptyList().iterator();
   }
@@ -0,0 +1,282 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.log;
+
+import org.hamcrest.Matchers;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
+
+public class RingCommitListTest {
+  private CommitList commitList;
+
+  @Before
+  public void setUp() throws Exception {
+    commitList = new RingCommitList(10, 10, 2000);
+  }
+
+  @Test
+  public void testBasicAppend() throws Exception {
+    LogRecord record0 = record(10);
+    assertThat(commitList.append(record0, false), is(true));
+    // Test re-append
+    assertThat(commitList.append(record0, false), is(false));
+
+    // Test outside of range
+    assertThat(commitList.append(record(20), false), is(false));
+
+    commitList.close(10);
+    for (LogRecord record : commitList) {
+      assertThat(record, is(record0));
+    }
+  }
+
+  @Test
+  public void testCloseKeepsClaimedRecords() throws Exception {
+    LogRecord record0 = record(10);
+    LogRecord record1 = record(11);
+    assertThat(commitList.append(record0, false), is(true));
+    assertThat(commitList.append(record1, false), is(true));
+
+    assertThat(commitList.close(10), is(true));
+    assertThat(commitList.getEndLsn(), is(11L));
+    List<LogRecord> records = new ArrayList<LogRecord>();
+    for (LogRecord record : commitList) {
+      records.add(record);
+    }
+    assertThat(records, Matchers.contains(record0, record1));
+
+    assertThat(commitList.append(record(12), true), is(false));
+    assertThat(commitList.isSyncRequested(), is(false));
+    assertThat(commitList.next().getBaseLsn(), is(12L));
+  }
+
+  @Test
+  public void testWaitForContiguous() throws Exception {
+    assertThat(commitList.append(record(15), false), is(true));
+    assertThat(commitList.close(15), is(true));
+
+    final AtomicBoolean waitComplete = new AtomicBoolean(false);
+    Thread waiter = new Thread() {
+      @Override
+      public void run() {
+        try {
+          commitList.waitForContiguous();
+          waitComplete.set(true);
+        } catch (InterruptedException e) {
+        }
+      }
+    };
+    waiter.start();
+    waiter.join(500);
+    assertThat(waitComplete.get(), is(false));
+
+    for (int i = 16; i < 20; i++) {
+      assertThat(commitList.append(record(i), false), is(false));
+      assertThat(commitList.next().append(record(i), false), is(true));
+    }
+
+    waiter.join(500);
+    assertThat(waitComplete.get(), is(false));
+
+    for (int i = 10; i < 15; i++) {
+      assertThat(commitList.append(record(i), false), is(true));
+    }
+
+    waiter.join(5 * 1000);
+    assertThat(waitComplete.get(), is(true));
+  }
+
+  @Test
+  public void testSyncAtHeadCloses() throws Exception {
+    final LogRecord record = record(10);
+    long start = System.nanoTime();
+    new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException ie) {
+        }
+        commitList.append(record, true);
+      }
+    }.start();
+    commitList.waitForContiguous();
+    assertThat(commitList.getEndLsn(), is(10L));
+    assertThat(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2), is(true));
+  }
+
+  @Test
+  public void testSlotsReusedAcrossRegions() throws Exception {
+    CommitList list = new RingCommitList(10, 4, 2000);
+    long lsn = 10;
+    for (int region = 0; region < 100; region++) {
+      for (int i = 0; i < 4; i++) {
+        assertThat(list.append(record(lsn++), false), is(true));
+      }
+      list.waitForContiguous();
+      long expected = list.getBaseLsn();
+      for (LogRecord record : list) {
+        assertThat(record.getLsn(), is(expected++));
+      }
+      assertThat(expected, is(lsn));
+      list.written();
+      list = list.next();
+    }
+  }
+
+  @Test
+  public void testWrappedAppendWaitsForWrite() throws Exception {
+    final CommitList head = new RingCommitList(10, 4, 2000);
+    for (int i = 10; i < 14; i++) {
+      assertThat(head.append(record(i), false), is(true));
+    }
+    head.waitForContiguous();
+
+    //  the ring holds 16 slots, lsn 26 lands on the slot of lsn 10
+    CommitList list = head;
+    while (list.getBaseLsn() < 26) {
+      list = list.next();
+    }
+    final CommitList wrapped = list;
+    final AtomicBoolean appended = new AtomicBoolean();
+    Thread appender = new Thread() {
+      @Override
+      public void run() {
+        appended.set(wrapped.append(record(26), false));
+      }
+    };
+    appender.start();
+    appender.join(500);
+    assertThat(appender.isAlive(), is(true));
+
+    head.written();
+    appender.join(5 * 1000);
+    assertThat(appended.get(), is(true));
+  }
+
+  @Test
+  public void testRecycledRecordReleasesSlot() throws Exception {
+    final CommitList head = new RingCommitList(10, 4, 2000);
+    LogRecord[] records = new LogRecord[4];
+    for (int i = 0; i < 4; i++) {
+      records[i] = record(10 + i);
+      assertThat(head.append(records[i], false), is(true));
+    }
+    head.waitForContiguous();
+    //  pooled records are restamped as soon as they are handed back
+    for (LogRecord record : records) {
+      record.updateLsn(record.getLsn() + 1000);
+    }
+    head.written();
+
+    CommitList list = head;
+    while (list.getBaseLsn() < 26) {
+      list = list.next();
+    }
+    final CommitList wrapped = list;
+    final AtomicBoolean appended = new AtomicBoolean();
+    Thread appender = new Thread() {
+      @Override
+      public void run() {
+        appended.set(wrapped.append(record(26), false));
+      }
+    };
+    appender.start();
+    appender.join(5 * 1000);
+    assertThat(appended.get(), is(true));
+  }
+
+  @Test
+  public void testMultiThreadedAppend() throws Exception {
+    final CommitList first = new RingCommitList(10, 16, 1);
+    final AtomicLong lsn = new AtomicLong(10);
+    final int count = 20000;
+    final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+    ExecutorService executorService = Executors.newFixedThreadPool(8);
+    for (int i = 0; i < 8; i++) {
+      executorService.submit(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            CommitList l = first;
+            long next = lsn.getAndIncrement();
+            while (next < 10 + count) {
+              LogRecord record = record(next);
+              while (!l.append(record, next % 7 == 0)) {
+                l = l.next();
+              }
+              next = lsn.getAndIncrement();
+            }
+          } catch (Throwable t) {
+            errors.add(t);
+          }
+        }
+      });
+    }
+
+    CommitList list = first;
+    long expected = 10;
+    while (expected < 10 + count) {
+      list.waitForContiguous();
+      for (LogRecord record : list) {
+        assertThat(record.getLsn(), is(expected++));
+      }
+      list.written();
+      list = list.next();
+    }
+    executorService.shutdown();
+    assertThat(executorService.awaitTermination(30, TimeUnit.SECONDS), is(true));
+    assertThat(errors, Matchers.<Throwable>empty());
+  }
+
+  @Test
+  public void testThrowingException() throws Exception {
+    new Thread() {
+      public void run() {
+        commitList.exceptionThrown(new IOException());
+      }
+    }.start();
+
+    try {
+      commitList.getWriteFuture().get();
+      fail();
+    } catch (ExecutionException ex) {
+      assertThat(ex.getCause() instanceof IOException, is(true));
+    }
+  }
+
+  private LogRecord record(long lsn) {
+    LogRecord record = new LogRecordImpl(new ByteBuffer[0], null);
+    record.updateLsn(lsn);
+    return record;
+  }
+}
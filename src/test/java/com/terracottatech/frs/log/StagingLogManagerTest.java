@@ -25,26 +25,34 @@ import com.terracottatech.frs.io.Chunk;
 import com.terracottatech.frs.io.Direction;
 import com.terracottatech.frs.io.IOManager;
 import com.terracottatech.frs.io.IOStatistics;
+import com.terracottatech.frs.util.Log2LatencyBins;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.Assert;
 
 import static com.terracottatech.frs.config.FrsProperty.FORCE_LOG_REGION_FORMAT;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
@@ -54,8 +62,10 @@ import static org.junit.Assert.fail;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 
 /**
@@ -134,6 +144,228 @@ public class StagingLogManagerTest {
         assert(logManager.currentLsn() >= logManager.firstCommitListLsn());
     }
     
+    @Test
+    public void testAppendAsync() throws Exception {
+        logManager.startup();
+        List<CompletableFuture<Void>> stages = new ArrayList<CompletableFuture<Void>>();
+        for (int x=0;x<1000;x++) {
+            stages.add(logManager.appendAsync(newRecord(), x % 10 == 0).toCompletableFuture());
+        }
+        CompletableFuture.allOf(stages.toArray(new CompletableFuture[stages.size()])).get(LOG_REGION_WRITE_TIMEOUT, SECONDS);
+        verify(ioManager, atLeastOnce()).sync();
+        logManager.shutdown();
+    }
+
+    @Test
+    public void testAppendAsyncFailsOnWriteError() throws Exception {
+        logManager.startup();
+        ioManager.haltWrites();
+        CompletableFuture<Void> stage = logManager.appendAsync(newRecord(), true).toCompletableFuture();
+        ioManager.throwException(new IOException("disk full"));
+        try {
+            stage.get(LOG_REGION_WRITE_TIMEOUT, SECONDS);
+            fail();
+        } catch ( ExecutionException ee ) {
+            assertThat(ee.getCause() instanceof IOException, is(true));
+        }
+        assertThat(logManager.appendAsync(newRecord(), true).toCompletableFuture().isCompletedExceptionally(), is(true));
+    }
+
+    @Test
+    public void testAppendBatch() throws Exception {
+        logManager.startup();
+        logManager.append(newRecord());
+        long first = logManager.currentLsn();
+  //  bigger than a commit list so the batch spills over into the next ones
+        List<LogRecord> batch = new ArrayList<LogRecord>();
+        for (int x=0;x<3000;x++) {
+            batch.add(newRecord(16));
+        }
+        logManager.appendBatch(batch, true).get(LOG_REGION_WRITE_TIMEOUT, SECONDS);
+        for (int x=0;x<batch.size();x++) {
+            assertThat(batch.get(x).getLsn(), is(first + x));
+        }
+        assertThat(logManager.currentLsn(), is(first + batch.size()));
+        verify(ioManager, atLeastOnce()).sync();
+        logManager.shutdown();
+    }
+
+    @Test
+    public void testAppendBatchWithConcurrentAppends() throws Exception {
+        logManager.startup();
+        final AtomicInteger running = new AtomicInteger(4);
+        List<Future<Void>> singles = new ArrayList<Future<Void>>();
+        ExecutorService appenders = Executors.newFixedThreadPool(4);
+        try {
+            for (int t=0;t<4;t++) {
+                singles.add(appenders.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        try {
+                            for (int x=0;x<2000;x++) {
+                                logManager.append(newRecord(8));
+                            }
+                        } finally {
+                            running.decrementAndGet();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            List<List<LogRecord>> batches = new ArrayList<List<LogRecord>>();
+            List<Future<Void>> written = new ArrayList<Future<Void>>();
+            while (running.get() > 0 || batches.size() < 10) {
+                List<LogRecord> batch = new ArrayList<LogRecord>();
+                for (int x=0;x<100;x++) {
+                    batch.add(newRecord(8));
+                }
+                batches.add(batch);
+                written.add(logManager.appendBatch(batch, false));
+            }
+            for (Future<Void> f : singles) {
+                f.get(LOG_REGION_WRITE_TIMEOUT, SECONDS);
+            }
+            for (Future<Void> f : written) {
+                f.get(LOG_REGION_WRITE_TIMEOUT, SECONDS);
+            }
+  //  no single append ever lands inside a batch
+            for (List<LogRecord> batch : batches) {
+                long base = batch.get(0).getLsn();
+                for (int x=0;x<batch.size();x++) {
+                    assertThat(batch.get(x).getLsn(), is(base + x));
+                }
+            }
+        } finally {
+            appenders.shutdown();
+        }
+        logManager.shutdown();
+    }
+
+    @Test
+    public void testAdmissionBoundsInflightBytes() throws Exception {
+        logManager.setMaxInflightBytes(1024);
+        logManager.startup();
+        ioManager.haltWrites();
+        logManager.append(newRecord(512));
+        logManager.append(newRecord(512));
+        try {
+            logManager.tryAppend(newRecord(512), false, 100, MILLISECONDS);
+            fail();
+        } catch ( TimeoutException expected ) {
+        }
+        assertThat(logManager.getIOStatistics().getAdmissionStalls(), is(1L));
+        
+        final CountDownLatch admitted = new CountDownLatch(1);
+        new Thread() {
+            public void run() {
+                logManager.appendAndSync(newRecord(512));
+                admitted.countDown();
+            }
+        }.start();
+        assertThat(admitted.await(100, MILLISECONDS), is(false));
+        ioManager.resumeWrites();
+        assertThat(admitted.await(LOG_REGION_WRITE_TIMEOUT, SECONDS), is(true));
+        logManager.tryAppend(newRecord(512), true, LOG_REGION_WRITE_TIMEOUT, SECONDS).get(LOG_REGION_WRITE_TIMEOUT, SECONDS);
+        
+        IOStatistics stats = logManager.getIOStatistics();
+        assertThat(stats.getAdmissionStalls(), greaterThan(1L));
+        assertThat(stats.getAdmissionStallTime(), greaterThan(MILLISECONDS.toNanos(100)));
+        logManager.shutdown();
+    }
+
+    @Test
+    public void testAdmissionReleasedOnWriteError() throws Exception {
+        logManager.setMaxInflightBytes(1024);
+        logManager.startup();
+        ioManager.haltWrites();
+        logManager.append(newRecord(1024));
+        final CountDownLatch released = new CountDownLatch(1);
+        new Thread() {
+            public void run() {
+                try {
+                    logManager.append(newRecord(512));
+                } catch ( LogWriteError expected ) {
+                    released.countDown();
+                }
+            }
+        }.start();
+        ioManager.throwException(new IOException("disk full"));
+        assertThat(released.await(LOG_REGION_WRITE_TIMEOUT, SECONDS), is(true));
+    }
+
+    @Test
+    public void testDeadlineSyncsAreCoalesced() throws Exception {
+        logManager.startup();
+        List<Future<Void>> synced = new ArrayList<Future<Void>>();
+        for (int x=0;x<20;x++) {
+            synced.add(logManager.appendAndSyncWithin(newRecord(), 500, MILLISECONDS));
+        }
+        Thread.sleep(100);
+        for ( Future<Void> f : synced ) {
+            assertThat(f.isDone(), is(false));
+        }
+        for ( Future<Void> f : synced ) {
+            f.get(LOG_REGION_WRITE_TIMEOUT, SECONDS);
+        }
+        verify(ioManager, atMost(2)).sync();
+        logManager.shutdown();
+    }
+
+    @Test
+    public void testStrictSyncCompletesDeadlineSyncs() throws Exception {
+        logManager.startup();
+        Future<Void> deferred = logManager.appendAndSyncWithin(newRecord(), 1, TimeUnit.HOURS);
+        logManager.appendAndSync(newRecord()).get(LOG_REGION_WRITE_TIMEOUT, SECONDS);
+        deferred.get(LOG_REGION_WRITE_TIMEOUT, SECONDS);
+        logManager.shutdown();
+    }
+
+    @Test
+    public void testDeadlineSyncFailsOnWriteError() throws Exception {
+        logManager.startup();
+        ioManager.haltWrites();
+        Future<Void> deferred = logManager.appendAndSyncWithin(newRecord(), 1, TimeUnit.HOURS);
+        ioManager.throwException(new IOException("disk full"));
+        try {
+            deferred.get(LOG_REGION_WRITE_TIMEOUT, SECONDS);
+            fail();
+        } catch ( ExecutionException ee ) {
+            assertThat(ee.getCause() instanceof IOException, is(true));
+        }
+    }
+
+    @Test
+    public void testPipelinedSyncOverlapsWrites() throws Exception {
+        logManager.startup();
+        ioManager.holdSyncs();
+        Future<Void> first = logManager.appendAndSync(newRecord());
+        verify(ioManager, timeout(LOG_REGION_WRITE_TIMEOUT * 1000).times(1)).syncAsync();
+  //  the next region is written while the first is still being synced
+        Future<Void> second = logManager.appendAndSync(newRecord());
+        verify(ioManager, timeout(LOG_REGION_WRITE_TIMEOUT * 1000).times(2)).syncAsync();
+        assertThat(first.isDone(), is(false));
+        assertThat(second.isDone(), is(false));
+        ioManager.releaseSyncs();
+        first.get(LOG_REGION_WRITE_TIMEOUT, SECONDS);
+        second.get(LOG_REGION_WRITE_TIMEOUT, SECONDS);
+        logManager.shutdown();
+    }
+
+    @Test
+    public void testPipelinedSyncFailure() throws Exception {
+        logManager.startup();
+        ioManager.holdSyncs();
+        Future<Void> first = logManager.appendAndSync(newRecord());
+        verify(ioManager, timeout(LOG_REGION_WRITE_TIMEOUT * 1000).times(1)).syncAsync();
+        ioManager.failSyncs(new IOException("disk full"));
+        try {
+            first.get(LOG_REGION_WRITE_TIMEOUT, SECONDS);
+            fail();
+        } catch ( ExecutionException ee ) {
+            assertThat(ee.getCause() instanceof IOException, is(true));
+        }
+    }
+
     @Test 
     public void testAppendException() {
         logManager.startup();
@@ -199,6 +431,89 @@ public class StagingLogManagerTest {
         verify(ioManager, atLeast(syncs.get() / 10)).write(any(Chunk.class),any(Long.class));
     }
 
+    @Test
+    public void testParallelPackingPreservesOrder() throws Exception {
+        logManager = new StagingLogManager(Signature.ADLER32, new AtomicCommitList(Constants.FIRST_LSN, 16, 20), ioManager, null, 4);
+        logManager.startup();
+        ExecutorService executorService = Executors.newFixedThreadPool(20);
+        List<Callable<Void>> runnables = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < 2000; i++) {
+            final boolean sync = (i % 10 == 0);
+            runnables.add(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    LogRecord record = new LogRecordImpl(new ByteBuffer[] {ByteBuffer.allocate(128)}, mock(LSNEventListener.class));
+                    Future<Void> f = sync ? logManager.appendAndSync(record) : logManager.append(record);
+                    f.get(LOG_REGION_WRITE_TIMEOUT, SECONDS);
+                    return null;
+                }
+            });
+        }
+        for (Future<Void> future : executorService.invokeAll(runnables)) {
+            future.get();
+        }
+        executorService.shutdown();
+        logManager.shutdown();
+
+        assertThat(ioManager.getCurrentMarker(), is(logManager.currentLsn() - 1));
+        verify(ioManager, atLeast(2000 / 16)).write(any(Chunk.class),any(Long.class));
+    }
+
+    @Test
+    public void testAdaptiveCommitList() throws Exception {
+        logManager = new StagingLogManager(Signature.ADLER32, 
+                new AdaptiveCommitList(Constants.FIRST_LSN, 1024, 200, 1, TimeUnit.MILLISECONDS), ioManager, null);
+        logManager.startup();
+        ExecutorService executorService = Executors.newFixedThreadPool(20);
+        List<Callable<Void>> runnables = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < 1000; i++) {
+            runnables.add(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    logManager.appendAndSync(newRecord()).get(LOG_REGION_WRITE_TIMEOUT, SECONDS);
+                    return null;
+                }
+            });
+        }
+        for (Future<Void> future : executorService.invokeAll(runnables)) {
+            future.get();
+        }
+        executorService.shutdown();
+        logManager.shutdown();
+
+        assertThat(ioManager.getCurrentMarker(), is(logManager.currentLsn() - 1));
+    }
+
+    @Test
+    public void testRingCommitList() throws Exception {
+        logManager = new StagingLogManager(Signature.ADLER32, new RingCommitList(Constants.FIRST_LSN, 64, 20), ioManager, null);
+        logManager.startup();
+        ExecutorService executorService = Executors.newFixedThreadPool(20);
+        List<Callable<Void>> runnables = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < 5000; i++) {
+            final boolean sync = (i % 10 == 0);
+            runnables.add(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    LogRecord record = newRecord();
+                    Future<Void> f = sync ? logManager.appendAndSync(record) : logManager.append(record);
+                    f.get(LOG_REGION_WRITE_TIMEOUT, SECONDS);
+                    return null;
+                }
+            });
+        }
+        for (Future<Void> future : executorService.invokeAll(runnables)) {
+            future.get();
+        }
+        executorService.shutdown();
+        logManager.shutdown();
+
+        assertThat(ioManager.getCurrentMarker(), is(logManager.currentLsn() - 1));
+    }
+
     /**
      * Test of reader method, of class StagingLogManager.
      */
@@ -329,6 +644,21 @@ public class StagingLogManagerTest {
         org.junit.Assert.assertNotNull(stats);
     }    
     
+    @Test
+    public void testStageLatencies() throws Exception {
+        logManager.startup();
+        for (int x=0;x<100;x++) {
+            logManager.appendAndSync(newRecord(64)).get(LOG_REGION_WRITE_TIMEOUT, SECONDS);
+        }
+        Map<String, Log2LatencyBins> stages = logManager.getIOStatistics().getStageLatencies();
+        assertThat(new ArrayList<String>(stages.keySet()), is(Arrays.asList("append", "contiguous", "packing", "queue", "write", "fsync")));
+        assertThat(stages.get("append").count(), is(100L));
+        for (Log2LatencyBins stage : stages.values()) {
+            assertThat(stage.getName(), stage.count(), greaterThan(0L));
+        }
+        logManager.shutdown();
+    }
+    
     @Test
     public void testSlowReader() throws Exception {
         long lsn = Constants.FIRST_LSN;
@@ -361,6 +691,10 @@ public class StagingLogManagerTest {
         return new LogRecordImpl(new ByteBuffer[0], mock(LSNEventListener.class));
     }
 
+    private LogRecord newRecord(int size) {
+        return new LogRecordImpl(new ByteBuffer[] {ByteBuffer.allocate(size)}, mock(LSNEventListener.class));
+    }
+
     private class DummyIOManager implements IOManager {
 
         private final Deque<Chunk> chunks = new LinkedList<Chunk>();
@@ -370,6 +704,8 @@ public class StagingLogManagerTest {
         private boolean dieOnRead = false;
         private boolean haltWrites = false;
         private volatile IOException exception;
+        private final Object syncLock = new Object();
+        private List<CompletableFuture<Void>> heldSyncs;
 
         @Override
         public long write(Chunk region, long lsn) throws IOException {
@@ -383,7 +719,7 @@ public class StagingLogManagerTest {
         
         private synchronized void block() {
             try {
-                while ( exception == null ) {
+                while ( haltWrites && exception == null ) {
                   this.wait();
                 }
             } catch ( InterruptedException ie ) {
@@ -424,6 +760,11 @@ public class StagingLogManagerTest {
         haltWrites = true;
     }
     
+    public synchronized void resumeWrites() {
+        haltWrites = false;
+        this.notifyAll();
+    }
+    
     public synchronized void throwException(IOException exp) {
         exception = exp;
         this.notifyAll();
@@ -498,6 +839,45 @@ public class StagingLogManagerTest {
         public void sync() throws IOException {
         }
 
+        @Override
+        public CompletionStage<Void> syncAsync() throws IOException {
+            synchronized ( syncLock ) {
+                if ( heldSyncs != null ) {
+                    CompletableFuture<Void> sync = new CompletableFuture<Void>();
+                    heldSyncs.add(sync);
+                    return sync;
+                }
+            }
+            sync();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        public void holdSyncs() {
+            synchronized ( syncLock ) {
+                heldSyncs = new ArrayList<CompletableFuture<Void>>();
+            }
+        }
+
+        public void releaseSyncs() {
+            for ( CompletableFuture<Void> sync : takeSyncs() ) {
+                sync.complete(null);
+            }
+        }
+
+        public void failSyncs(IOException exp) {
+            for ( CompletableFuture<Void> sync : takeSyncs() ) {
+                sync.completeExceptionally(exp);
+            }
+        }
+
+        private List<CompletableFuture<Void>> takeSyncs() {
+            synchronized ( syncLock ) {
+                List<CompletableFuture<Void>> held = heldSyncs;
+                heldSyncs = null;
+                return held;
+            }
+        }
+
         @Override
         public void close() throws IOException {
         }
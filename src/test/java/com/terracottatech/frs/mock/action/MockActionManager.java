@@ -16,6 +16,7 @@
 package com.terracottatech.frs.mock.action;
 
 import java.util.concurrent.Future;
+import java.util.concurrent.CompletionStage;
 
 import com.terracottatech.frs.action.ActionManager;
 import com.terracottatech.frs.log.LogManager;
@@ -42,6 +43,16 @@ public class MockActionManager implements ActionManager {
     return logManager.append(record);
   }
 
+  @Override
+  public CompletionStage<Void> happenedAsync(Action action, boolean sync) {
+    return logManager.appendAsync(new MockLogRecord(action), sync);
+  }
+
+  @Override
+  public Future<Void> happened(LogRecord record, boolean sync) {
+    return sync ? logManager.appendAndSync(record) : logManager.append(record);
+  }
+
   public void asyncHappened(Action action) {
     happened(action);
   }
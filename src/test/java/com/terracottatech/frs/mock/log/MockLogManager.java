@@ -40,6 +40,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -134,6 +136,12 @@ public class MockLogManager implements LogManager {
         return new MockFuture();
     }
 
+    @Override
+    public CompletionStage<Void> appendAsync(LogRecord record, boolean sync) {
+        appendAndSync(record);
+        return CompletableFuture.completedFuture(null);
+    }
+
     private Iterator<LogRecord> reader() {
         try {
             ioManager.seek(IOManager.Seek.END.getValue());
@@ -15,9 +15,18 @@
  */
 package com.terracottatech.frs.object;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import org.hamcrest.core.CombinableMatcher;
 import org.junit.Assume;
 import org.junit.Ignore;
@@ -310,4 +319,52 @@ public abstract class ObjectManagerTest {
       assertThat(testlow.getLowestLsn(),is(2L));
         
   } 
+
+  /**
+   * Threads churning their own keys across several identifiers, the lowest lsn
+   * maintained along the way has to agree with what is left once they stop.
+   */
+  @Test
+  public void concurrentLowestLsnTest() throws Exception {
+    final ObjectManager<Integer, Integer, String> objMgr = createObjectManager();
+    final AtomicLong lsns = new AtomicLong();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Map<Integer, Long>>> futures = new ArrayList<Future<Map<Integer, Long>>>();
+      for (int t = 0; t < 4; t++) {
+        final int thread = t;
+        futures.add(executor.submit(new Callable<Map<Integer, Long>>() {
+          @Override
+          public Map<Integer, Long> call() {
+            Random rndm = new Random(thread);
+            Map<Integer, Long> live = new HashMap<Integer, Long>();
+            for (int i = 0; i < 20000; i++) {
+              int key = thread * 1000 + rndm.nextInt(1000);
+              int id = key % 3;
+              if (rndm.nextInt(3) == 0) {
+                objMgr.remove(id, key);
+                live.remove(key);
+              } else {
+                long lsn = lsns.incrementAndGet();
+                objMgr.put(id, key, "value", lsn);
+                live.put(key, lsn);
+              }
+            }
+            return live;
+          }
+        }));
+      }
+      long lowest = -1;
+      for (Future<Map<Integer, Long>> future : futures) {
+        Map<Integer, Long> live = future.get();
+        if (!live.isEmpty()) {
+          long min = Collections.min(live.values());
+          lowest = lowest < 0 ? min : Math.min(lowest, min);
+        }
+      }
+      assertThat(objMgr.getLowestLsn(), is(lowest));
+    } finally {
+      executor.shutdown();
+    }
+  }
 }
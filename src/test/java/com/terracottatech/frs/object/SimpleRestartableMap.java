@@ -32,26 +32,22 @@ public class SimpleRestartableMap extends RestartableMap<String, String, ByteBuf
 
   @Override
   protected ByteBuffer encodeKey(String key) {
-    return ByteBuffer.wrap(key.getBytes());
+    return encode(key);
   }
 
   @Override
   protected ByteBuffer encodeValue(String value) {
-    return ByteBuffer.wrap(value.getBytes());
+    return encode(value);
   }
 
   @Override
   protected String decodeKey(ByteBuffer rKey) {
-    byte[] buf = new byte[rKey.remaining()];
-    rKey.slice().get(buf);
-    return new String(buf);
+    return decode(rKey);
   }
 
   @Override
   protected String decodeValue(ByteBuffer rValue) {
-    byte[] buf = new byte[rValue.remaining()];
-    rValue.slice().get(buf);
-    return new String(buf);
+    return decode(rValue);
   }
 
   @Override
@@ -63,4 +59,18 @@ public class SimpleRestartableMap extends RestartableMap<String, String, ByteBuf
   protected long valueByteSize(String value, ByteBuffer encodedValue) {
     return encodedValue.remaining();
   }
+
+  /**
+   * The encoding used for both keys and values, shared with the other map
+   * fixtures.
+   */
+  static ByteBuffer encode(String s) {
+    return ByteBuffer.wrap(s.getBytes());
+  }
+
+  static String decode(ByteBuffer encoded) {
+    byte[] buf = new byte[encoded.remaining()];
+    encoded.slice().get(buf);
+    return new String(buf);
+  }
 }
@@ -0,0 +1,251 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.object;
+
+import com.terracottatech.frs.RestartStore;
+import com.terracottatech.frs.RestartStoreFactory;
+import com.terracottatech.frs.Transaction;
+import com.terracottatech.frs.config.FrsProperty;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.terracottatech.frs.util.TestUtils.byteBufferWithInt;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StripedRestartableMapTest {
+
+  private static final int THREADS = 4;
+  private static final int KEYS_PER_THREAD = 100;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private TestStripedRestartableMap map;
+  private RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> restartStore;
+
+  @Test
+  public void testConcurrentWritesRecover() throws Exception {
+    File storage = folder.newFolder();
+    initialize(storage);
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    Map<String, String> expected = new HashMap<String, String>();
+    try {
+      List<Future<Map<String, String>>> futures = new ArrayList<Future<Map<String, String>>>();
+      for (int t = 0; t < THREADS; t++) {
+        final int thread = t;
+        futures.add(executor.submit(new Callable<Map<String, String>>() {
+          @Override
+          public Map<String, String> call() {
+            Random rndm = new Random(thread);
+            Map<String, String> written = new HashMap<String, String>();
+            for (int i = 0; i < 2000; i++) {
+              String key = thread + "-" + rndm.nextInt(KEYS_PER_THREAD);
+              if (rndm.nextInt(4) == 0) {
+                assertThat(map.remove(key), is(written.remove(key)));
+              } else {
+                String value = key + "=" + i;
+                assertThat(map.put(key, value), is(written.put(key, value)));
+              }
+            }
+            return written;
+          }
+        }));
+      }
+      for (Future<Map<String, String>> future : futures) {
+        expected.putAll(future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertContents(expected);
+    restartStore.shutdown();
+
+    initialize(storage);
+    assertContents(expected);
+    restartStore.shutdown();
+  }
+
+  @Test
+  public void testConditionalOperationsAndClear() throws Exception {
+    File storage = folder.newFolder();
+    initialize(storage);
+
+    assertThat(map.putIfAbsent("a", "1"), nullValue());
+    assertThat(map.putIfAbsent("a", "2"), is("1"));
+    assertThat(map.replace("b", "1"), nullValue());
+    assertThat(map.replace("a", "2", "3"), is(false));
+    assertThat(map.replace("a", "1", "22"), is(true));
+    assertThat(map.replace("a", "333"), is("22"));
+    map.put("b", "4");
+    map.put("c", "5");
+    assertThat(map.remove("b", "5"), is(false));
+    assertThat(map.remove("b", "4"), is(true));
+
+    Map<String, String> expected = new HashMap<String, String>();
+    expected.put("a", "333");
+    expected.put("c", "5");
+    assertContents(expected);
+    restartStore.shutdown();
+
+    initialize(storage);
+    assertContents(expected);
+    map.clear();
+    map.put("d", "6");
+    restartStore.shutdown();
+
+    initialize(storage);
+    expected.clear();
+    expected.put("d", "6");
+    assertContents(expected);
+    restartStore.shutdown();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testConcurrentCommitsShareOneSync() throws Exception {
+    final CompletableFuture<Void> sync = new CompletableFuture<Void>();
+    final CountDownLatch committed = new CountDownLatch(THREADS);
+    Transaction<ByteBuffer, ByteBuffer, ByteBuffer> transaction = mock(Transaction.class);
+    when(transaction.put(any(ByteBuffer.class), any(ByteBuffer.class), any(ByteBuffer.class))).thenReturn(transaction);
+    when(transaction.commitAsync()).thenAnswer(new Answer<CompletionStage<Void>>() {
+      @Override
+      public CompletionStage<Void> answer(InvocationOnMock invocation) {
+        committed.countDown();
+        return sync;
+      }
+    });
+    RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> store = mock(RestartStore.class);
+    when(store.beginTransaction(true)).thenReturn(transaction);
+    map = new TestStripedRestartableMap(1, store);
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<String>> puts = new ArrayList<Future<String>>();
+      for (int t = 0; t < THREADS; t++) {
+        final String value = Integer.toString(t);
+        puts.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() {
+            //  every thread writes the same key, so the same segment
+            return map.put("key", value);
+          }
+        }));
+      }
+      assertThat(committed.await(30, TimeUnit.SECONDS), is(true));
+      for (Future<String> put : puts) {
+        assertThat(put.isDone(), is(false));
+      }
+      sync.complete(null);
+      for (Future<String> put : puts) {
+        put.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdown();
+    }
+    verify(transaction, times(THREADS)).commitAsync();
+  }
+
+  private void assertContents(Map<String, String> expected) {
+    assertThat(map.size(), is(expected.size()));
+    long byteSize = 0;
+    for (Map.Entry<String, String> e : expected.entrySet()) {
+      assertThat(map.get(e.getKey()), is(e.getValue()));
+      byteSize += 4 + e.getKey().length() + e.getValue().length();
+    }
+    assertThat(map.getObjectManagerStripe().size(), is((long) expected.size()));
+    assertThat(map.getObjectManagerStripe().sizeInBytes(), is(byteSize));
+  }
+
+  private void initialize(File storage) throws Exception {
+    RegisterableObjectManager<ByteBuffer, ByteBuffer, ByteBuffer> objectManager = new RegisterableObjectManager<ByteBuffer, ByteBuffer, ByteBuffer>();
+
+    Properties properties = new Properties();
+    properties.setProperty(FrsProperty.IO_NIO_SEGMENT_SIZE.shortName(), Integer.toString(16 * 1024));
+    properties.setProperty(FrsProperty.COMPACTOR_SIZEBASED_THRESHOLD.shortName(), Double.toString(0.0d));
+    restartStore = RestartStoreFactory.createStore(objectManager, storage, properties);
+    map = new TestStripedRestartableMap(1, restartStore);
+
+    objectManager.registerObject(map);
+
+    restartStore.startup().get();
+  }
+
+  private static class TestStripedRestartableMap extends StripedRestartableMap<String, String, ByteBuffer, ByteBuffer, ByteBuffer> {
+
+    TestStripedRestartableMap(int identifier, RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> restartability) {
+      super(byteBufferWithInt(identifier), restartability, true, 8);
+    }
+
+    @Override
+    protected ByteBuffer encodeKey(String key) {
+      return SimpleRestartableMap.encode(key);
+    }
+
+    @Override
+    protected ByteBuffer encodeValue(String value) {
+      return SimpleRestartableMap.encode(value);
+    }
+
+    @Override
+    protected String decodeKey(ByteBuffer rKey) {
+      return SimpleRestartableMap.decode(rKey);
+    }
+
+    @Override
+    protected String decodeValue(ByteBuffer rValue) {
+      return SimpleRestartableMap.decode(rValue);
+    }
+
+    @Override
+    protected long keyByteSize(String key, ByteBuffer encodedKey) {
+      return encodedKey.remaining();
+    }
+
+    @Override
+    protected long valueByteSize(String value, ByteBuffer encodedValue) {
+      return encodedValue.remaining();
+    }
+  }
+}
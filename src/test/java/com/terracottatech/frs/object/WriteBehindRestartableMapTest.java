@@ -0,0 +1,225 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.object;
+
+import com.terracottatech.frs.RestartStore;
+import com.terracottatech.frs.RestartStoreFactory;
+import com.terracottatech.frs.Transaction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.terracottatech.frs.util.TestUtils.byteBufferWithInt;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WriteBehindRestartableMapTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private TestWriteBehindRestartableMap map;
+  private RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> restartStore;
+
+  @Test
+  public void testUpdatesCoalesce() throws Exception {
+    File storage = folder.newFolder();
+    initialize(storage, 1000, 1, TimeUnit.HOURS);
+
+    map.put("gone", "0");
+    for (int i = 0; i < 100; i++) {
+      map.put("hot", Integer.toString(i));
+    }
+    map.put("cold", "x");
+    map.remove("gone");
+    assertThat(map.getObjectManagerStripe().size(), is(0L));
+
+    map.flush();
+    ObjectManagerStripe<ByteBuffer, ByteBuffer, ByteBuffer> stripe = map.getObjectManagerStripe();
+    assertThat(stripe.size(), is(2L));
+    long hot = stripe.getLsn(ByteBuffer.wrap("hot".getBytes()));
+    long cold = stripe.getLsn(ByteBuffer.wrap("cold".getBytes()));
+    assertThat(cold - hot, is(1L));
+    assertThat(stripe.getLsn(ByteBuffer.wrap("gone".getBytes())), nullValue());
+
+    map.remove("hot");
+    map.shutdown();
+    restartStore.shutdown();
+
+    initialize(storage, 1000, 1, TimeUnit.HOURS);
+    assertThat(map.size(), is(1));
+    assertThat(map.get("cold"), is("x"));
+    assertThat(map.getObjectManagerStripe().sizeInBytes(), is(4L + 4 + 1));
+    map.shutdown();
+    restartStore.shutdown();
+  }
+
+  @Test
+  public void testSizeTrigger() throws Exception {
+    initialize(folder.newFolder(), 10, 1, TimeUnit.HOURS);
+    for (int i = 0; i < 9; i++) {
+      map.put(Integer.toString(i), "v");
+      map.put(Integer.toString(i), "value");
+    }
+    assertThat(map.getObjectManagerStripe().size(), is(0L));
+    map.put("9", "value");
+    assertThat(map.getObjectManagerStripe().size(), is(10L));
+    map.shutdown();
+    restartStore.shutdown();
+  }
+
+  @Test
+  public void testTimeTrigger() throws Exception {
+    initialize(folder.newFolder(), 1000, 10, TimeUnit.MILLISECONDS);
+    map.put("a", "1");
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (map.getObjectManagerStripe().size() == 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(map.getObjectManagerStripe().size(), is(1L));
+    map.shutdown();
+    restartStore.shutdown();
+  }
+
+  @Test
+  public void testRecoversLastFlushedState() throws Exception {
+    File storage = folder.newFolder();
+    initialize(storage, 1000, 1, TimeUnit.HOURS);
+    map.put("a", "1");
+    map.put("b", "1");
+    map.flush();
+    map.put("a", "2");
+    map.remove("b");
+    map.put("c", "2");
+    assertThat(map.getObjectManagerStripe().getLsn(ByteBuffer.wrap("c".getBytes())), nullValue());
+    map.shutdown();
+    restartStore.shutdown();
+
+    initialize(storage, 1000, 1, TimeUnit.HOURS);
+    assertThat(map.size(), is(2));
+    assertThat(map.get("a"), is("2"));
+    assertThat(map.get("b"), nullValue());
+    assertThat(map.get("c"), is("2"));
+
+    map.clear();
+    map.put("d", "3");
+    map.shutdown();
+    restartStore.shutdown();
+
+    initialize(storage, 1000, 1, TimeUnit.HOURS);
+    assertThat(map.size(), is(1));
+    assertThat(map.get("d"), is("3"));
+    map.shutdown();
+    restartStore.shutdown();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testFailingCodecLeavesNoTransactionOpen() throws Exception {
+    Transaction<ByteBuffer, ByteBuffer, ByteBuffer> transaction = mock(Transaction.class);
+    when(transaction.put(any(ByteBuffer.class), any(ByteBuffer.class), any(ByteBuffer.class))).thenReturn(transaction);
+    when(transaction.commitAsync()).thenReturn(CompletableFuture.<Void>completedFuture(null));
+    RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> store = mock(RestartStore.class);
+    when(store.beginTransaction(true)).thenReturn(transaction);
+    map = new TestWriteBehindRestartableMap(1, store, 1000, 1, TimeUnit.HOURS);
+
+    map.put("a", "1");
+    map.put("b", "2");
+    map.failEncoding = true;
+    try {
+      map.flush();
+      fail("Expected RuntimeException");
+    } catch (RuntimeException e) {
+      assertThat(e.getMessage(), is("encoding failed"));
+    }
+    verify(store, never()).beginTransaction(anyBoolean());
+
+    map.failEncoding = false;
+    map.shutdown();
+    verify(store).beginTransaction(true);
+    verify(transaction, times(2)).put(any(ByteBuffer.class), any(ByteBuffer.class), any(ByteBuffer.class));
+    verify(transaction).commitAsync();
+  }
+
+  private void initialize(File storage, int maxPending, long maxDelay, TimeUnit unit) throws Exception {
+    RegisterableObjectManager<ByteBuffer, ByteBuffer, ByteBuffer> objectManager = new RegisterableObjectManager<ByteBuffer, ByteBuffer, ByteBuffer>();
+
+    restartStore = RestartStoreFactory.createStore(objectManager, storage, new Properties());
+    map = new TestWriteBehindRestartableMap(1, restartStore, maxPending, maxDelay, unit);
+
+    objectManager.registerObject(map);
+
+    restartStore.startup().get();
+  }
+
+  private static class TestWriteBehindRestartableMap extends WriteBehindRestartableMap<String, String, ByteBuffer, ByteBuffer, ByteBuffer> {
+
+    volatile boolean failEncoding;
+
+    TestWriteBehindRestartableMap(int identifier, RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> restartability,
+                                  int maxPending, long maxDelay, TimeUnit unit) {
+      super(byteBufferWithInt(identifier), restartability, true, maxPending, maxDelay, unit);
+    }
+
+    @Override
+    protected ByteBuffer encodeKey(String key) {
+      return SimpleRestartableMap.encode(key);
+    }
+
+    @Override
+    protected ByteBuffer encodeValue(String value) {
+      if (failEncoding) {
+        throw new IllegalStateException("encoding failed");
+      }
+      return SimpleRestartableMap.encode(value);
+    }
+
+    @Override
+    protected String decodeKey(ByteBuffer rKey) {
+      return SimpleRestartableMap.decode(rKey);
+    }
+
+    @Override
+    protected String decodeValue(ByteBuffer rValue) {
+      return SimpleRestartableMap.decode(rValue);
+    }
+
+    @Override
+    protected long keyByteSize(String key, ByteBuffer encodedKey) {
+      return encodedKey.remaining();
+    }
+
+    @Override
+    protected long valueByteSize(String value, ByteBuffer encodedValue) {
+      return encodedValue.remaining();
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.object.heap;
+
+import com.terracottatech.frs.object.ValueSortedMap;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Times {@link HeapLongValueSortedMap} against {@link HeapValueSortedMap}.
+ * Not part of the unit suite, run it by hand.
+ */
+public class HeapLongValueSortedMapBenchmark {
+
+  /**
+   * The same workload of updates and removes on a population of live keys,
+   * as the object manager segments see it, timed for each map.
+   */
+  @Test
+  public void compare() {
+    Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    int live = 4096;
+    int operations = 200000;
+    Integer[] keys = new Integer[live];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = i;
+    }
+
+    for (int round = 0; round < 3; round++) {
+      HeapValueSortedMap<Integer, Long> boxed = new HeapValueSortedMap<Integer, Long>();
+      HeapLongValueSortedMap<Integer> primitive = new HeapLongValueSortedMap<Integer>();
+      long[] boxedRun = run(threads, boxed, keys, operations);
+      long[] primitiveRun = run(threads, primitive, keys, operations);
+      System.out.println("HeapValueSortedMap: " + (boxedRun[0] / operations) + " ns/op "
+                         + ((double) boxedRun[1] / operations) + " bytes/op, HeapLongValueSortedMap: "
+                         + (primitiveRun[0] / operations) + " ns/op " + ((double) primitiveRun[1] / operations) + " bytes/op");
+    }
+  }
+
+  /**
+   * @return nanoseconds and bytes allocated for the churn after populating
+   */
+  private static long[] run(com.sun.management.ThreadMXBean threads, ValueSortedMap<Integer, Long> map, Integer[] keys, int operations) {
+    HeapLongValueSortedMap<Integer> primitive = map instanceof HeapLongValueSortedMap<?> ? (HeapLongValueSortedMap<Integer>) map : null;
+    Random rndm = new Random(0);
+    long lsn = 0;
+    for (Integer key : keys) {
+      put(map, primitive, key, ++lsn);
+    }
+    long thread = Thread.currentThread().getId();
+    long allocated = threads.getThreadAllocatedBytes(thread);
+    long start = System.nanoTime();
+    long sink = 0;
+    for (int i = 0; i < operations; i++) {
+      Integer key = keys[rndm.nextInt(keys.length)];
+      if ((i & 3) == 3) {
+        map.remove(key);
+      } else {
+        put(map, primitive, key, ++lsn);
+      }
+      if (map.size() > 0) {
+        sink += primitive == null ? map.firstValue() : primitive.firstLongValue();
+      }
+    }
+    long time = System.nanoTime() - start;
+    allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+    if (sink == 0) {
+      throw new AssertionError();
+    }
+    return new long[] {time, allocated};
+  }
+
+  private static void put(ValueSortedMap<Integer, Long> map, HeapLongValueSortedMap<Integer> primitive, Integer key, long lsn) {
+    if (primitive == null) {
+      map.put(key, lsn);
+    } else {
+      primitive.put(key, lsn);
+    }
+  }
+}
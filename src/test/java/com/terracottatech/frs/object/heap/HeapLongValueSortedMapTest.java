@@ -0,0 +1,139 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.object.heap;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class HeapLongValueSortedMapTest {
+
+  @Test
+  public void testBasics() {
+    HeapLongValueSortedMap<String> map = new HeapLongValueSortedMap<String>();
+    assertThat(map.firstKey(), nullValue());
+    assertThat(map.firstValue(), nullValue());
+    assertThat(map.get("a"), nullValue());
+    assertThat(map.getLong("a", -1), is(-1L));
+
+    map.put("a", 3L);
+    map.put("b", 1L);
+    map.put("c", 2L);
+    assertThat(map.size(), is(3));
+    assertThat(map.firstKey(), is("b"));
+    assertThat(map.firstLongValue(), is(1L));
+
+    map.put("b", 4L);
+    assertThat(map.firstKey(), is("c"));
+    assertThat(map.get("b"), is(4L));
+
+    map.remove("c");
+    map.remove("d");
+    assertThat(map.firstKey(), is("a"));
+    assertThat(map.size(), is(2));
+
+    map.clear();
+    assertThat(map.size(), is(0));
+    assertThat(map.firstKey(), nullValue());
+    assertThat(map.get("a"), nullValue());
+  }
+
+  @Test
+  public void testAgainstHeapValueSortedMap() {
+    long seed = System.nanoTime();
+    String reason = "seed " + seed;
+    Random rndm = new Random(seed);
+
+    HeapLongValueSortedMap<Integer> map = new HeapLongValueSortedMap<Integer>();
+    HeapValueSortedMap<Integer, Long> model = new HeapValueSortedMap<Integer, Long>();
+    long value = 0;
+    for (int i = 0; i < 100000; i++) {
+      Integer key = rndm.nextInt(1000);
+      switch (rndm.nextInt(3)) {
+        case 0:
+          map.remove(key);
+          model.remove(key);
+          break;
+        case 1:
+          value++;
+          map.put(key, value);
+          model.put(key, value);
+          break;
+        default:
+        //  out of order values as compaction and replay produce
+          long random = rndm.nextInt(1000000);
+          map.put(key, random);
+          model.put(key, random);
+      }
+      assertThat(reason, map.size(), is(model.size()));
+      assertThat(reason, map.firstValue(), is(model.firstValue()));
+      assertThat(reason, map.get(key), is(model.get(key)));
+      if (map.size() > 0) {
+        assertThat(reason, map.get(map.firstKey()), is(model.firstValue()));
+      }
+    }
+  }
+
+  @Test
+  public void testChurnDoesNotAllocate() {
+    Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    Integer[] keys = new Integer[4096];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = i;
+    }
+    HeapLongValueSortedMap<Integer> map = new HeapLongValueSortedMap<Integer>();
+    long lsn = 0;
+    for (Integer key : keys) {
+      map.put(key, ++lsn);
+    }
+    Random rndm = new Random(0);
+    lsn = churn(map, keys, rndm, lsn, 200000);
+
+    long thread = Thread.currentThread().getId();
+    long allocated = threads.getThreadAllocatedBytes(thread);
+    churn(map, keys, rndm, lsn, 200000);
+    assertThat(threads.getThreadAllocatedBytes(thread) - allocated, is(0L));
+  }
+
+  /**
+   * updates and removes on a population of live keys, as the object manager
+   * segments see them
+   */
+  private static long churn(HeapLongValueSortedMap<Integer> map, Integer[] keys, Random rndm, long lsn, int operations) {
+    for (int i = 0; i < operations; i++) {
+      Integer key = keys[rndm.nextInt(keys.length)];
+      if ((i & 3) == 3) {
+        map.remove(key);
+      } else {
+        map.put(key, ++lsn);
+      }
+      if (map.size() > 0 && map.firstLongValue() > lsn) {
+        throw new AssertionError();
+      }
+    }
+    return lsn;
+  }
+}
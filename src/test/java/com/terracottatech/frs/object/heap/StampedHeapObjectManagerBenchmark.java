@@ -0,0 +1,37 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.object.heap;
+
+import org.junit.Test;
+
+/**
+ * Lookup throughput of the read write lock and stamped segments with one
+ * writer and 1 to 64 readers.  Not part of the unit suite, run it by hand.
+ */
+public class StampedHeapObjectManagerBenchmark {
+
+  private static final long RUN_MILLIS = 1000;
+
+  @Test
+  public void readScaling() throws Exception {
+    for (int threads = 1; threads <= 64; threads <<= 1) {
+      long locked = StampedHeapObjectManagerTest.run(new HeapObjectManager<String, Integer, String>(4, false), threads, RUN_MILLIS);
+      long optimistic = StampedHeapObjectManagerTest.run(new HeapObjectManager<String, Integer, String>(4, true), threads, RUN_MILLIS);
+      System.out.println(threads + " readers: read write lock " + (locked / RUN_MILLIS) + " lookups/ms, stamped "
+                         + (optimistic / RUN_MILLIS) + " lookups/ms");
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.object.heap;
+
+import com.terracottatech.frs.object.ObjectManager;
+import com.terracottatech.frs.object.ObjectManagerTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class StampedHeapObjectManagerTest extends ObjectManagerTest {
+
+  private static final int KEYS = 1024;
+  private static final long RUN_MILLIS = 500;
+
+  @Override
+  protected <I, K, V> ObjectManager<I, K, V> createObjectManager() {
+    return new HeapObjectManager<I, K, V>(1, true);
+  }
+
+  /**
+   * One writer updating lsns while readers look them up.  Every reader checks
+   * that the lsns it sees for a key never go backwards, which a torn optimistic
+   * read would break.
+   */
+  @Test
+  public void testConcurrentLsnsNeverGoBack() throws Exception {
+    run(new HeapObjectManager<String, Integer, String>(4, true), 8, RUN_MILLIS);
+  }
+
+  /**
+   * @return lookups made by all the readers
+   */
+  static long run(final ObjectManager<String, Integer, String> objectManager, int threads, long millis) throws Exception {
+    final Integer[] keys = new Integer[KEYS];
+    for (int k = 0; k < KEYS; k++) {
+      keys[k] = k;
+      objectManager.put("id", keys[k], "value", k + 1);
+    }
+    final AtomicBoolean stop = new AtomicBoolean();
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+    try {
+      Future<Long> writer = executor.submit(new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          start.await();
+          Random rndm = new Random(0);
+          long lsn = KEYS;
+          while (!stop.get()) {
+            objectManager.put("id", keys[rndm.nextInt(KEYS)], "value", ++lsn);
+          }
+          return lsn;
+        }
+      });
+      List<Future<Long>> readers = new ArrayList<Future<Long>>();
+      for (int t = 0; t < threads; t++) {
+        final int seed = t;
+        readers.add(executor.submit(new Callable<Long>() {
+          @Override
+          public Long call() throws Exception {
+            start.await();
+            Random rndm = new Random(seed);
+            long[] seen = new long[KEYS];
+            long lookups = 0;
+            while (!stop.get()) {
+              int k = rndm.nextInt(KEYS);
+              long lsn = objectManager.getLsn("id", keys[k]);
+              if (lsn < seen[k]) {
+                throw new AssertionError("lsn of " + k + " went back from " + seen[k] + " to " + lsn);
+              }
+              seen[k] = lsn;
+              lookups++;
+            }
+            return lookups;
+          }
+        }));
+      }
+      start.countDown();
+      TimeUnit.MILLISECONDS.sleep(millis);
+      stop.set(true);
+      long total = 0;
+      for (Future<Long> reader : readers) {
+        total += reader.get();
+      }
+      long lastLsn = writer.get();
+      assertThat(objectManager.getLowestLsn() > 0 && objectManager.getLowestLsn() <= lastLsn, is(true));
+      return total;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
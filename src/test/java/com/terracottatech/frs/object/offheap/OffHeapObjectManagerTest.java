@@ -0,0 +1,188 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.object.offheap;
+
+import com.terracottatech.frs.object.ObjectManagerEntry;
+import com.terracottatech.frs.object.SimpleObjectManagerEntry;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.terracottatech.frs.util.TestUtils.byteBufferWithInt;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+import static org.junit.Assert.assertThat;
+
+public class OffHeapObjectManagerTest {
+
+  private static final ByteBuffer ID = byteBufferWithInt(1);
+
+  @Test
+  public void testPutRemove() {
+    OffHeapObjectManager objMgr = new OffHeapObjectManager(1);
+    assertThat(objMgr.getLowestLsn(), is(-1L));
+    assertThat(objMgr.acquireCompactionEntry(Long.MAX_VALUE), nullValue());
+
+    objMgr.put(ID, key(1), value(1, 10), 1);
+    objMgr.put(ID, key(2), value(2, 20), 2);
+    assertThat(objMgr.getLsn(ID, key(1)), is(1L));
+    assertThat(objMgr.getLsn(ID, key(2)), is(2L));
+    assertThat(objMgr.getLsn(ID, key(3)), is(-1L));
+    assertThat(objMgr.getLowestLsn(), is(1L));
+    assertThat(objMgr.size(), is(2L));
+    assertThat(objMgr.sizeInBytes(), is(2L * ID.remaining() + 8 + 10 + 20));
+
+    ObjectManagerEntry<ByteBuffer, ByteBuffer, ByteBuffer> entry = objMgr.acquireCompactionEntry(Long.MAX_VALUE);
+    assertThat(entry, is(entry(key(1), value(1, 10), 1)));
+    objMgr.releaseCompactionEntry(entry);
+    assertThat(objMgr.acquireCompactionEntry(1), nullValue());
+
+    objMgr.put(ID, key(1), value(1, 5), 3);
+    assertThat(objMgr.getLowestLsn(), is(2L));
+    assertThat(objMgr.sizeInBytes(), is(2L * ID.remaining() + 8 + 5 + 20));
+
+    objMgr.remove(ID, key(2));
+    assertThat(objMgr.getLsn(ID, key(2)), is(-1L));
+    assertThat(objMgr.getLowestLsn(), is(3L));
+    entry = objMgr.acquireCompactionEntry(Long.MAX_VALUE);
+    assertThat(entry, is(entry(key(1), value(1, 5), 3)));
+    objMgr.releaseCompactionEntry(entry);
+
+    objMgr.remove(ID, key(1));
+    assertThat(objMgr.size(), is(0L));
+    assertThat(objMgr.sizeInBytes(), is(0L));
+    assertThat(objMgr.getLowestLsn(), is(-1L));
+  }
+
+  @Test
+  public void testUpdateLsn() {
+    OffHeapObjectManager objMgr = new OffHeapObjectManager(1);
+    objMgr.put(ID, key(1), value(1, 4), 1);
+    objMgr.put(ID, key(2), value(2, 4), 2);
+
+    ObjectManagerEntry<ByteBuffer, ByteBuffer, ByteBuffer> entry = objMgr.acquireCompactionEntry(Long.MAX_VALUE);
+    objMgr.updateLsn(entry, 3);
+    objMgr.releaseCompactionEntry(entry);
+    assertThat(objMgr.getLsn(ID, key(1)), is(3L));
+    assertThat(objMgr.getLowestLsn(), is(2L));
+
+  //  a stale entry leaves the newer lsn alone
+    objMgr.updateLsn(entry, 4);
+    assertThat(objMgr.getLsn(ID, key(1)), is(3L));
+  }
+
+  @Test
+  public void testDelete() {
+    OffHeapObjectManager objMgr = new OffHeapObjectManager(2);
+    ByteBuffer other = byteBufferWithInt(2);
+    objMgr.put(ID, key(1), value(1, 4), 1);
+    objMgr.put(other, key(1), value(1, 4), 2);
+
+    objMgr.delete(ID);
+    assertThat(objMgr.getLsn(ID, key(1)), is(-1L));
+    assertThat(objMgr.getLowestLsn(), is(2L));
+    assertThat(objMgr.size(), is(1L));
+  }
+
+  /**
+   * runs a small initial capacity through enough churn to resize the tables
+   * and compact the arenas many times over
+   */
+  @Test
+  public void testRandomAgainstModel() {
+    long seed = System.nanoTime();
+    System.err.println("testRandomAgainstModel using seed " + seed);
+    Random rndm = new Random(seed);
+
+    OffHeapObjectManager objMgr = new OffHeapObjectManager(4, 1);
+    Map<Integer, Long> lsns = new HashMap<Integer, Long>();
+    Map<Integer, Integer> lengths = new HashMap<Integer, Integer>();
+    long lsn = 0;
+    for (int i = 0; i < 200000; i++) {
+      int k = rndm.nextInt(5000);
+      if (rndm.nextInt(4) == 0) {
+        objMgr.remove(ID, key(k));
+        lsns.remove(k);
+        lengths.remove(k);
+      } else {
+        int length = rndm.nextInt(64);
+        objMgr.put(ID, key(k), value(k, length), ++lsn);
+        lsns.put(k, lsn);
+        lengths.put(k, length);
+      }
+
+      if (i % 1000 == 0) {
+        long bytes = 0;
+        for (Map.Entry<Integer, Long> e : lsns.entrySet()) {
+          assertThat(objMgr.getLsn(ID, key(e.getKey())), is(e.getValue()));
+          bytes += ID.remaining() + 4 + lengths.get(e.getKey());
+        }
+        assertThat(objMgr.size(), is((long) lsns.size()));
+        assertThat(objMgr.sizeInBytes(), is(bytes));
+        assertThat(objMgr.getLowestLsn(), is(lsns.isEmpty() ? -1L : Collections.min(lsns.values())));
+      }
+    }
+    assertThat(objMgr.allocatedMemory(), greaterThan(0L));
+  }
+
+  @Test
+  public void testCompactionWalksLsnOrder() {
+    OffHeapObjectManager objMgr = new OffHeapObjectManager(1, 1);
+    List<Integer> keys = new ArrayList<Integer>();
+    for (int i = 0; i < 1000; i++) {
+      keys.add(i);
+    }
+    Collections.shuffle(keys, new Random(42));
+    long lsn = 0;
+    for (int k : keys) {
+      objMgr.put(ID, key(k), value(k, k % 16), ++lsn);
+    }
+
+  //  move every entry to the head of the log in turn, lowest first
+    for (int i = 0; i < keys.size(); i++) {
+      ObjectManagerEntry<ByteBuffer, ByteBuffer, ByteBuffer> entry = objMgr.acquireCompactionEntry(Long.MAX_VALUE);
+      int k = keys.get(i);
+      assertThat(entry, is(entry(key(k), value(k, k % 16), i + 1)));
+      objMgr.updateLsn(entry, ++lsn);
+      objMgr.releaseCompactionEntry(entry);
+    }
+    assertThat(objMgr.getLowestLsn(), is(keys.size() + 1L));
+    assertThat(objMgr.acquireCompactionEntry(keys.size() + 1L), nullValue());
+  }
+
+  private static ObjectManagerEntry<ByteBuffer, ByteBuffer, ByteBuffer> entry(ByteBuffer key, ByteBuffer value, long lsn) {
+    return new SimpleObjectManagerEntry<ByteBuffer, ByteBuffer, ByteBuffer>(ID, key, value, lsn);
+  }
+
+  private static ByteBuffer key(int k) {
+    return byteBufferWithInt(k);
+  }
+
+  private static ByteBuffer value(int k, int length) {
+    ByteBuffer value = ByteBuffer.allocate(length);
+    for (int i = 0; i < length; i++) {
+      value.put(i, (byte) (k + i));
+    }
+    return value;
+  }
+}
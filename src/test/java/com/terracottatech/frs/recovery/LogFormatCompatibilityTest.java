@@ -32,6 +32,7 @@ import java.nio.file.Path;
 import java.util.Properties;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class LogFormatCompatibilityTest extends AbstractRecoveryManagerImplTest {
@@ -98,4 +99,106 @@ public class LogFormatCompatibilityTest extends AbstractRecoveryManagerImplTest
       restartStore.shutdown();
     }
   }
+
+  @Test
+  public void testRecoverCompressedLog() throws Exception {
+    File dbHome = folder.newFolder();
+    Properties properties = new Properties();
+    properties.put(FrsProperty.IO_COMPRESS_REGIONS.shortName(), "true");
+
+    RegisterableObjectManager<ByteBuffer, ByteBuffer, ByteBuffer> objectManager = new RegisterableObjectManager<ByteBuffer, ByteBuffer, ByteBuffer>();
+    RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> restartStore = RestartStoreFactory.createStore(objectManager, dbHome, properties);
+    SimpleRestartableMap map = new SimpleRestartableMap(0, restartStore, true);
+    objectManager.registerObject(map);
+    restartStore.startup().get();
+    try {
+      for (int i = 0; i < 1000; i++) {
+        map.put(Integer.toString(i), "value-" + i + "-value-value-value-value-value");
+      }
+      assertTrue(restartStore.getStatistics().getCompressionRatio() > 1.0);
+    } finally {
+      restartStore.shutdown();
+    }
+
+    //  the region format is read from each region, no configuration needed to recover
+    objectManager = new RegisterableObjectManager<ByteBuffer, ByteBuffer, ByteBuffer>();
+    restartStore = RestartStoreFactory.createStore(objectManager, dbHome, new Properties());
+    map = new SimpleRestartableMap(0, restartStore, false);
+    objectManager.registerObject(map);
+    restartStore.startup().get();
+    try {
+      for (int i = 0; i < 1000; i++) {
+        assertEquals("value-" + i + "-value-value-value-value-value", map.get(Integer.toString(i)));
+      }
+    } finally {
+      restartStore.shutdown();
+    }
+  }
+
+  @Test
+  public void testRecoverZeroCopyLog() throws Exception {
+    File dbHome = folder.newFolder();
+    Properties properties = new Properties();
+    properties.put(FrsProperty.IO_ZERO_COPY.shortName(), "true");
+
+    RegisterableObjectManager<ByteBuffer, ByteBuffer, ByteBuffer> objectManager = new RegisterableObjectManager<ByteBuffer, ByteBuffer, ByteBuffer>();
+    RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> restartStore = RestartStoreFactory.createStore(objectManager, dbHome, properties);
+    SimpleRestartableMap map = new SimpleRestartableMap(0, restartStore, true);
+    objectManager.registerObject(map);
+    restartStore.startup().get();
+    try {
+      for (int i = 0; i < 1000; i++) {
+        map.put(Integer.toString(i), "value-" + i);
+      }
+    } finally {
+      restartStore.shutdown();
+    }
+
+    //  gathering writes produce the same log, recovery does not care how it was written
+    objectManager = new RegisterableObjectManager<ByteBuffer, ByteBuffer, ByteBuffer>();
+    restartStore = RestartStoreFactory.createStore(objectManager, dbHome, new Properties());
+    map = new SimpleRestartableMap(0, restartStore, false);
+    objectManager.registerObject(map);
+    restartStore.startup().get();
+    try {
+      for (int i = 0; i < 1000; i++) {
+        assertEquals("value-" + i, map.get(Integer.toString(i)));
+      }
+    } finally {
+      restartStore.shutdown();
+    }
+  }
+
+  @Test
+  public void testRecoverLogWithRecordChecksums() throws Exception {
+    File dbHome = folder.newFolder();
+    Properties properties = new Properties();
+    properties.put(FrsProperty.IO_CHECKSUM.shortName(), "CRC32C");
+
+    RegisterableObjectManager<ByteBuffer, ByteBuffer, ByteBuffer> objectManager = new RegisterableObjectManager<ByteBuffer, ByteBuffer, ByteBuffer>();
+    RestartStore<ByteBuffer, ByteBuffer, ByteBuffer> restartStore = RestartStoreFactory.createStore(objectManager, dbHome, properties);
+    SimpleRestartableMap map = new SimpleRestartableMap(0, restartStore, false);
+    objectManager.registerObject(map);
+    restartStore.startup().get();
+    try {
+      for (int i = 0; i < 1000; i++) {
+        map.put(Integer.toString(i), Integer.toString(i + 1));
+      }
+    } finally {
+      restartStore.shutdown();
+    }
+
+    objectManager = new RegisterableObjectManager<ByteBuffer, ByteBuffer, ByteBuffer>();
+    restartStore = RestartStoreFactory.createStore(objectManager, dbHome, new Properties());
+    map = new SimpleRestartableMap(0, restartStore, false);
+    objectManager.registerObject(map);
+    restartStore.startup().get();
+    try {
+      for (int i = 0; i < 1000; i++) {
+        assertEquals(Integer.toString(i + 1), map.get(Integer.toString(i)));
+      }
+    } finally {
+      restartStore.shutdown();
+    }
+  }
 }
@@ -18,6 +18,9 @@ package com.terracottatech.frs.transaction;
 import com.terracottatech.frs.TransactionException;
 import com.terracottatech.frs.action.Action;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 /**
  * @author tim
  */
@@ -32,6 +35,11 @@ public class NullTransactionManager implements TransactionManager {
   public void commit(TransactionHandle handle, boolean synchronous) throws TransactionException {
   }
 
+  @Override
+  public CompletionStage<Void> commitAsync(TransactionHandle handle, boolean synchronous) {
+    return CompletableFuture.completedFuture(null);
+  }
+
   @Override
   public void happened(TransactionHandle handle, Action action) {
   }
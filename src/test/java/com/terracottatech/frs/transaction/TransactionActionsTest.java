@@ -76,4 +76,10 @@ public class TransactionActionsTest {
     assertThat(decoded.getHandle(), is((TransactionHandle) new TransactionHandleImpl(3L)));
     assertThat(decoded.isBegin(), is(true));
   }
+
+  @Test
+  public void testBatchedAction() throws Exception {
+    checkEncodeDecode(new BatchedAction(mapActionFactory.put(1, 2, 3)));
+    checkEncodeDecode(new BatchCommitAction(7));
+  }
 }
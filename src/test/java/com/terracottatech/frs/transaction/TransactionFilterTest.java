@@ -101,6 +101,32 @@ public class TransactionFilterTest {
     verify(delegate, never()).filter(action, 1L, false);
   }
 
+  @Test
+  public void testCommittedBatch() throws Exception {
+    assertThat(filter.filter(new BatchCommitAction(2), 10, false), is(true));
+    verify(delegate, never()).filter(any(Action.class), anyLong(), anyBoolean());
+
+    assertThat(filter.filter(new BatchedAction(action), 9, false), is(true));
+    verify(delegate).filter(action, 9L, false);
+    assertThat(filter.filter(new BatchedAction(action), 8, false), is(true));
+    verify(delegate).filter(action, 8L, false);
+    // anything below the batch is not covered by its commit
+    assertThat(filter.filter(new BatchedAction(action), 7, false), is(false));
+    verify(delegate).filter(action, 7L, true);
+  }
+
+  @Test
+  public void testUncommittedBatch() throws Exception {
+    // the tail of a batch cut off before its commit reached disk
+    assertThat(filter.filter(new BatchedAction(action), 12, false), is(false));
+    verify(delegate).filter(action, 12L, true);
+
+    assertThat(filter.filter(new BatchCommitAction(1), 11, false), is(true));
+    // skipped actions in a committed batch stay skipped
+    assertThat(filter.filter(new BatchedAction(action), 10, true), is(false));
+    verify(delegate).filter(action, 10L, true);
+  }
+
   private TransactionalAction transactionalAction(long id, boolean begin) {
     return new TransactionalAction(new TransactionHandleImpl(id), begin, false, action, null);
   }
@@ -17,12 +17,22 @@ package com.terracottatech.frs.transaction;
 
 import com.terracottatech.frs.TransactionException;
 import com.terracottatech.frs.action.Action;
+import com.terracottatech.frs.action.KeyedAction;
 import com.terracottatech.frs.action.NullActionManager;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
@@ -86,6 +96,30 @@ public class TransactionManagerImplTest {
             new TransactionCommitAction(handle, true));
   }
 
+  @Test
+  public void testCommitAsync() throws Exception {
+    CompletableFuture<Void> written = new CompletableFuture<Void>();
+    doReturn(written).when(actionManager).happenedAsync(any(Action.class), anyBoolean());
+    TransactionHandle handle = transactionManager.begin();
+    CompletableFuture<Void> committed = transactionManager.commitAsync(handle, true).toCompletableFuture();
+    verify(actionManager).happenedAsync(new TransactionCommitAction(handle, true), true);
+    assertThat(committed.isDone(), is(false));
+    written.complete(null);
+    assertThat(committed.isDone(), is(true));
+    assertThat(transactionManager.getLowestOpenTransactionLsn(), is(Long.MAX_VALUE));
+
+    written = new CompletableFuture<Void>();
+    doReturn(written).when(actionManager).happenedAsync(any(Action.class), anyBoolean());
+    committed = transactionManager.commitAsync(transactionManager.begin(), false).toCompletableFuture();
+    written.completeExceptionally(new IOException("disk full"));
+    try {
+      committed.get();
+      fail("Commit should have failed.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause() instanceof TransactionException, is(true));
+    }
+  }
+
   @Test
   public void testHappened() throws Exception {
     TransactionHandle handle = transactionManager.begin();
@@ -123,6 +157,136 @@ public class TransactionManagerImplTest {
     assertThat(transactionManager.getLowestOpenTransactionLsn(), is(Long.MAX_VALUE));
   }
 
+  @Test
+  public void testLowestLsnOutOfOrderCommits() throws Exception {
+    TransactionHandle txn1 = transactionManager.begin();
+    TransactionHandle txn2 = transactionManager.begin();
+    TransactionHandle txn3 = transactionManager.begin();
+    transactionManager.happened(txn1, action);
+    transactionManager.happened(txn2, action);
+    transactionManager.happened(txn1, action);
+    // txn3 has not reached the log yet
+    assertThat(transactionManager.getLowestOpenTransactionLsn(), is(0L));
+
+    transactionManager.commit(txn2, true);
+    assertThat(transactionManager.getLowestOpenTransactionLsn(), is(0L));
+    transactionManager.happened(txn3, action);
+    transactionManager.commit(txn1, true);
+    assertThat(transactionManager.getLowestOpenTransactionLsn(), is(3L));
+    transactionManager.commit(txn3, false);
+    assertThat(transactionManager.getLowestOpenTransactionLsn(), is(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testConcurrentTransactions() throws Exception {
+    final AtomicLong lsn = new AtomicLong();
+    final TransactionManager manager = new TransactionManagerImpl(new NullActionManager() {
+      @Override
+      public Future<Void> happened(Action action) {
+        action.record(lsn.getAndIncrement());
+        return CompletableFuture.completedFuture(null);
+      }
+
+      @Override
+      public Future<Void> syncHappened(Action action) {
+        return happened(action);
+      }
+    });
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> done = new ArrayList<Future<?>>();
+      for (int t = 0; t < 4; t++) {
+        done.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int x = 0; x < 10000; x++) {
+              TransactionHandle handle = manager.begin();
+              manager.happened(handle, mock(Action.class));
+              assertThat(manager.getLowestOpenTransactionLsn() <= lsn.get(), is(true));
+              manager.commit(handle, (x & 1) == 0);
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<?> f : done) {
+        f.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(manager.getLowestOpenTransactionLsn(), is(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testBatchedCommit() throws Exception {
+    transactionManager = new TransactionManagerImpl(actionManager, 2);
+    TransactionHandle handle = transactionManager.begin();
+    transactionManager.happened(handle, action);
+    transactionManager.happened(handle, action);
+    verify(actionManager, never()).happened(any(Action.class));
+    assertThat(transactionManager.getLowestOpenTransactionLsn(), is(Long.MAX_VALUE));
+
+    transactionManager.commit(handle, true);
+    verify(actionManager).happenedBatch(Arrays.asList(new BatchedAction(action), new BatchedAction(action),
+        new BatchCommitAction(2)), true);
+    verify(action, times(2)).record(anyLong());
+  }
+
+  @Test
+  public void testBatchKeepsLastRefreshedChangePerKey() throws Exception {
+    transactionManager = new TransactionManagerImpl(actionManager, 4);
+    KeyedAction first = keyed("id", "key");
+    KeyedAction second = keyed("id", "key");
+    KeyedAction other = keyed("id", "other");
+    KeyedAction refreshed = keyed("id", "key");
+    KeyedAction otherRefreshed = keyed("id", "other");
+    when(second.refresh()).thenReturn(refreshed);
+    when(other.refresh()).thenReturn(otherRefreshed);
+    TransactionHandle handle = transactionManager.begin();
+    transactionManager.happened(handle, first);
+    transactionManager.happened(handle, other);
+    transactionManager.happened(handle, second);
+
+    transactionManager.commit(handle, true);
+    verify(actionManager).happenedBatch(Arrays.asList(new BatchedAction(otherRefreshed), new BatchedAction(refreshed),
+        new BatchCommitAction(2)), true);
+    verify(first, never()).refresh();
+  }
+
+  @Test
+  public void testBatchOverflow() throws Exception {
+    transactionManager = new TransactionManagerImpl(actionManager, 1);
+    TransactionHandle handle = transactionManager.begin();
+    transactionManager.happened(handle, action);
+    verify(actionManager, never()).happened(any(Action.class));
+    // the second action does not fit, both go out as they would unbatched
+    transactionManager.happened(handle, action);
+    verify(actionManager).happened(new TransactionalAction(handle, true, false, action, callback));
+    verify(actionManager).happened(new TransactionalAction(handle, false, false, action, callback));
+    transactionManager.commit(handle, true);
+    verify(actionManager).syncHappened(new TransactionCommitAction(handle, false));
+    verify(actionManager, never()).happenedBatch(anyList(), anyBoolean());
+  }
+
+  @Test
+  public void testBatchCommitAsyncWritesUnbatched() throws Exception {
+    doReturn(CompletableFuture.completedFuture(null)).when(actionManager).happenedAsync(any(Action.class), anyBoolean());
+    transactionManager = new TransactionManagerImpl(actionManager, 4);
+    TransactionHandle handle = transactionManager.begin();
+    transactionManager.happened(handle, action);
+    transactionManager.commitAsync(handle, true).toCompletableFuture().get();
+    verify(actionManager).happened(new TransactionalAction(handle, true, false, action, callback));
+    verify(actionManager).happenedAsync(new TransactionCommitAction(handle, false), true);
+  }
+
+  private static KeyedAction keyed(Object id, Object key) {
+    KeyedAction action = mock(KeyedAction.class);
+    when(action.getIdentifier()).thenReturn(id);
+    when(action.getKey()).thenReturn(key);
+    return action;
+  }
+
   private class TxnManagerTestActionManager extends NullActionManager {
     long lsn = 0;
     @Override
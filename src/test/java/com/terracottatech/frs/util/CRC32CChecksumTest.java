@@ -0,0 +1,72 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.util;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Checksum;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CRC32CChecksumTest {
+
+  @Test
+  public void testKnownValue() {
+    byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+    Checksum portable = new CRC32CChecksum();
+    portable.update(check, 0, check.length);
+    assertThat(portable.getValue(), is(0xE3069283L));
+
+    Checksum platform = CRC32CChecksum.newInstance();
+    platform.update(check, 0, check.length);
+    assertThat(platform.getValue(), is(0xE3069283L));
+  }
+
+  @Test
+  public void testMatchesPlatform() {
+    Random r = new Random(7);
+    for (int x = 0; x < 100; x++) {
+      byte[] data = new byte[r.nextInt(4096)];
+      r.nextBytes(data);
+      int split = data.length / 3;
+
+      Checksum portable = new CRC32CChecksum();
+      portable.update(data, 0, split);
+      for (int i = split; i < split * 2; i++) {
+        portable.update(data[i]);
+      }
+      portable.update(data, split * 2, data.length - split * 2);
+
+      Checksum platform = CRC32CChecksum.newInstance();
+      platform.update(data, 0, data.length);
+      assertThat(portable.getValue(), is(platform.getValue()));
+    }
+  }
+
+  @Test
+  public void testReset() {
+    Checksum crc = new CRC32CChecksum();
+    long empty = crc.getValue();
+    crc.update(new byte[] {1, 2, 3}, 0, 3);
+    crc.reset();
+    assertThat(crc.getValue(), is(empty));
+    assertThat(empty, is(0L));
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.terracottatech.frs.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class LZBlockCodecTest {
+
+  private final int[] table = new int[LZBlockCodec.HASH_TABLE_SIZE];
+
+  @Test
+  public void testEmptyAndTinyBlocks() {
+    for (int size = 0; size < 20; size++) {
+      byte[] data = new byte[size];
+      Arrays.fill(data, (byte) 7);
+      assertThat(roundTrip(data), is(data));
+    }
+  }
+
+  @Test
+  public void testRepetitiveData() {
+    byte[] data = new byte[64 * 1024];
+    for (int x = 0; x < data.length; x++) {
+      data[x] = (byte) ((x / 8) % 11);
+    }
+    byte[] packed = new byte[LZBlockCodec.maxCompressedLength(data.length)];
+    int size = LZBlockCodec.compress(data, 0, data.length, packed, 0, table);
+    assertThat(size, lessThan(data.length / 20));
+    assertThat(roundTrip(data), is(data));
+  }
+
+  @Test
+  public void testOverlappingRuns() {
+    byte[] data = new byte[10000];
+    Arrays.fill(data, 100, 9000, (byte) 'a');
+    data[5000] = 'b';
+    assertThat(roundTrip(data), is(data));
+  }
+
+  @Test
+  public void testRandomData() {
+    Random r = new Random(42);
+    for (int round = 0; round < 50; round++) {
+      byte[] data = new byte[r.nextInt(200000)];
+      r.nextBytes(data);
+  //  splice in repeats at random distances, some beyond the match window
+      for (int x = 0; x < 20 && data.length > 1000; x++) {
+        int len = r.nextInt(500);
+        int from = r.nextInt(data.length - len);
+        int to = r.nextInt(data.length - len);
+        System.arraycopy(data, from, data, to, len);
+      }
+      assertThat(roundTrip(data), is(data));
+    }
+  }
+
+  @Test
+  public void testOffsetsInsideLargerArrays() {
+    byte[] data = "header|the quick brown fox, the quick brown fox, the quick brown dog|trailer".getBytes();
+    byte[] packed = new byte[LZBlockCodec.maxCompressedLength(data.length) + 10];
+    int size = LZBlockCodec.compress(data, 7, data.length - 15, packed, 10, table);
+    byte[] restored = new byte[data.length];
+    LZBlockCodec.decompress(packed, 10, size, restored, 7, data.length - 15);
+    assertThat(Arrays.copyOfRange(restored, 7, data.length - 8), is(Arrays.copyOfRange(data, 7, data.length - 8)));
+  }
+
+  @Test
+  public void testCorruptBlock() {
+    byte[] data = new byte[4096];
+    for (int x = 0; x < data.length; x++) {
+      data[x] = (byte) (x % 13);
+    }
+    byte[] packed = new byte[LZBlockCodec.maxCompressedLength(data.length)];
+    int size = LZBlockCodec.compress(data, 0, data.length, packed, 0, table);
+    try {
+      LZBlockCodec.decompress(packed, 0, size, new byte[data.length - 1], 0, data.length - 1);
+      Assert.fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      LZBlockCodec.decompress(packed, 0, size - 1, new byte[data.length], 0, data.length);
+      Assert.fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  private byte[] roundTrip(byte[] data) {
+    byte[] packed = new byte[LZBlockCodec.maxCompressedLength(data.length)];
+    int size = LZBlockCodec.compress(data, 0, data.length, packed, 0, table);
+    assertThat(size <= LZBlockCodec.maxCompressedLength(data.length), is(true));
+    byte[] restored = new byte[data.length];
+    LZBlockCodec.decompress(packed, 0, size, restored, 0, data.length);
+    return restored;
+  }
+}